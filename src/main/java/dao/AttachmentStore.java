@@ -0,0 +1,286 @@
+package dao;
+
+import model.*;
+import utils.ApplicationProperties;
+import utils.BlobStore;
+import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stores document content on disk for the documents table, so that evidence
+ * such as multi-hundred-megabyte batch record scans never has to fit on the
+ * heap.
+ *
+ * <p>
+ * Content is streamed into a {@link BlobStore} under {@code attachments.directory},
+ * addressed by its SHA-256, which is recorded in documents.content_hash. The
+ * same file attached to several complaints is stored once. Downloads send the
+ * file, or the byte range an HTTP {@code Range} header asks for, straight from
+ * the file to the response channel.
+ * </p>
+ *
+ * <p>
+ * The store also keeps the content of evidence documents uploaded through
+ * {@link EvidenceUploadsDAO}. Deleting a document leaves its blob, which
+ * other documents may share; {@link #collectGarbage()} removes blobs that
+ * neither table refers to once they are older than
+ * {@code attachments.gcGraceMillis}, which protects uploads whose row is not
+ * committed yet.
+ * </p>
+ *
+ * <p>
+ * Formats listed in {@code attachments.compressFormats}, such as CSV exports
+ * and logs, are stored deflated and inflated as they are read; scans and
+ * other formats that are already compressed are stored as they are, so their
+ * downloads stay zero-copy. When {@code attachments.coldDirectory} is set,
+ * {@link #moveColdBlobs()} moves blobs nobody has read for
+ * {@code attachments.coldAfterDays} days there, and reads find them through
+ * the store as before.
+ * </p>
+ */
+public final class AttachmentStore {
+
+	private static final Logger LOGGER = Logger.getLogger(AttachmentStore.class.getName());
+
+	private static final String COLD_DIRECTORY = ApplicationProperties.getString("attachments.coldDirectory", "").trim();
+	public static final BlobStore BLOBS = new BlobStore(
+			Paths.get(ApplicationProperties.getString("attachments.directory", "attachments")),
+			COLD_DIRECTORY.isEmpty() ? null : Paths.get(COLD_DIRECTORY));
+	private static final long GC_GRACE_MILLIS = ApplicationProperties.getLong("attachments.gcGraceMillis", 86400000);
+	private static final int COLD_AFTER_DAYS = ApplicationProperties.getInt("attachments.coldAfterDays", 90);
+	private static final Set<String> COMPRESS_FORMATS = formats(
+			ApplicationProperties.getString("attachments.compressFormats", "csv,tsv,txt,log,json,xml,html,htm,eml,rtf"));
+	private static final int GC_BATCH_SIZE = 1000;
+
+	/**
+	 * Links evidence documents to their content and lets garbage collection
+	 * find the rows referring to a blob. Idempotent.
+	 */
+	public static final String[] SCHEMA_DDL = {
+			"CREATE INDEX IF NOT EXISTS idx_documents_content_hash ON documents (content_hash)",
+			"ALTER TABLE evidence_documents ADD COLUMN IF NOT EXISTS content_hash text",
+			"CREATE INDEX IF NOT EXISTS idx_evidence_documents_content_hash ON evidence_documents (content_hash)" };
+
+	/** Records a stored document and queues it for {@link DocumentDerivationPipeline}. */
+	private static final String INSERT_SQL =
+			"WITH created AS ("
+			+ " INSERT INTO documents (document_name, upload_time, document_type, file_size, file_format, content_hash, fk_complaint_id)"
+			+ " VALUES (?, CURRENT_TIMESTAMP, ?, ?, ?, ?, ?) RETURNING *"
+			+ "), queued AS (" + DocumentDerivationPipeline.enqueueSql("created") + ")"
+			+ " SELECT * FROM created";
+
+	private static final String REFERENCED_SQL =
+			"SELECT content_hash FROM documents WHERE content_hash = ANY(?)"
+			+ " UNION SELECT content_hash FROM evidence_documents WHERE content_hash = ANY(?)";
+
+	private AttachmentStore() {
+	}
+
+	/**
+	 * A document's content ready to be sent, with what the response needs to
+	 * say about it.
+	 */
+	public static final class Download {
+		private final Documents document;
+		private final BlobStore.Range range;
+
+		Download(Documents document, BlobStore.Range range) {
+			this.document = document;
+			this.range = range;
+		}
+
+		public Documents getDocument() {
+			return document;
+		}
+
+		/**
+		 * @return the bytes to send, or null if the requested range is not
+		 *         satisfiable
+		 */
+		public BlobStore.Range getRange() {
+			return range;
+		}
+
+		/**
+		 * @return 200, 206 for a partial range, or 416
+		 */
+		public int getStatus() {
+			return range == null ? 416 : range.isPartial() ? 206 : 200;
+		}
+
+		/**
+		 * Sends the range's bytes; nothing for a 416.
+		 *
+		 * @return the number of bytes sent
+		 */
+		public long transferTo(WritableByteChannel target) throws IOException {
+			return range == null ? 0 : BLOBS.transferTo(document.getContentHash(), range, target);
+		}
+	}
+
+	/**
+	 * Creates the content hash index if it does not exist.
+	 *
+	 * @return true if the schema is in place
+	 */
+	public static boolean installSchema() {
+		try (Connection conn = DatabaseUtility.getConnection(); Statement stmt = conn.createStatement()) {
+			for (String ddl : SCHEMA_DDL) {
+				stmt.execute(ddl);
+			}
+			return true;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error installing attachment store schema", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Stores a document's content and records it in the documents table.
+	 *
+	 * @param content read to the end, not closed
+	 * @return the new document, with its size and content hash, or null on
+	 *         error
+	 */
+	public static Documents upload(String documentName, Documents.DocumentTypes documentType, String fileFormat,
+			int complaintId, InputStream content) {
+		BlobStore.StoredBlob blob;
+		try {
+			blob = BLOBS.put(content, isCompressible(fileFormat));
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "Error storing document " + documentName, e);
+			return null;
+		}
+		try {
+			Documents document = JdbcTemplate.queryForObject(INSERT_SQL, ps -> {
+				ps.setString(1, documentName);
+				ps.setObject(2, documentType.name(), Types.OTHER);
+				ps.setBigDecimal(3, BigDecimal.valueOf(blob.getSize()));
+				ps.setString(4, fileFormat);
+				ps.setString(5, blob.getHash());
+				ps.setInt(6, complaintId);
+			}, RowMappers.DOCUMENTS);
+			DocumentDerivationPipeline.wake();
+			return document;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error recording document " + documentName, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Looks up a document for download.
+	 *
+	 * @param rangeHeader the request's {@code Range} header, or null
+	 * @return the download, or null if the document does not exist, has no
+	 *         stored content or could not be read
+	 */
+	public static Download openDownload(long documentId, String rangeHeader) {
+		try {
+			Documents document = JdbcTemplate.queryForObject("SELECT * FROM documents WHERE id = ?",
+					ps -> ps.setLong(1, documentId), RowMappers.DOCUMENTS);
+			if (document == null || document.getContentHash() == null || !BLOBS.exists(document.getContentHash())) {
+				return null;
+			}
+			return new Download(document, BlobStore.Range.parse(rangeHeader, BLOBS.size(document.getContentHash())));
+		} catch (SQLException | IOException | IllegalArgumentException e) {
+			LOGGER.log(Level.SEVERE, "Error opening document " + documentId + " for download", e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return true if documents of this format are stored deflated
+	 */
+	public static boolean isCompressible(String fileFormat) {
+		return fileFormat != null && COMPRESS_FORMATS.contains(normalizeFormat(fileFormat));
+	}
+
+	/**
+	 * Moves blobs nobody has stored or read for {@code attachments.coldAfterDays}
+	 * days to {@code attachments.coldDirectory}.
+	 *
+	 * @return the number of blobs moved, 0 if no cold directory is configured,
+	 *         or -1 on error
+	 */
+	public static int moveColdBlobs() {
+		if (COLD_DIRECTORY.isEmpty()) {
+			return 0;
+		}
+		try {
+			return BLOBS.moveToCold(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(COLD_AFTER_DAYS));
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "Error moving document blobs to " + COLD_DIRECTORY, e);
+			return -1;
+		}
+	}
+
+	/**
+	 * Deletes blobs older than {@code attachments.gcGraceMillis} that no
+	 * document or evidence document refers to.
+	 *
+	 * @return the number of blobs deleted, or -1 on error
+	 */
+	public static int collectGarbage() {
+		try {
+			long cutoff = System.currentTimeMillis() - GC_GRACE_MILLIS;
+			List<String> candidates = BLOBS.listOlderThan(cutoff);
+			int deleted = 0;
+			for (int from = 0; from < candidates.size(); from += GC_BATCH_SIZE) {
+				List<String> batch = candidates.subList(from, Math.min(from + GC_BATCH_SIZE, candidates.size()));
+				Set<String> referenced = new HashSet<>(JdbcTemplate.query(REFERENCED_SQL,
+						ps -> {
+							Array hashes = ps.getConnection().createArrayOf("text", batch.toArray());
+							ps.setArray(1, hashes);
+							ps.setArray(2, hashes);
+						}, RowMappers.scalar(String.class)));
+				List<String> unreferenced = new ArrayList<>();
+				for (String hash : batch) {
+					if (!referenced.contains(hash)) {
+						unreferenced.add(hash);
+					}
+				}
+				// An upload of the same content may have touched a blob since it
+				// was listed, and committed its row after the query above.
+				deleted += BLOBS.deleteAll(unreferenced, cutoff);
+			}
+			return deleted;
+		} catch (SQLException | IOException e) {
+			LOGGER.log(Level.SEVERE, "Error collecting unreferenced document blobs", e);
+			return -1;
+		}
+	}
+
+	private static Set<String> formats(String configured) {
+		Set<String> formats = new HashSet<>();
+		for (String format : configured.split(",")) {
+			if (!format.trim().isEmpty()) {
+				formats.add(normalizeFormat(format));
+			}
+		}
+		return formats;
+	}
+
+	private static String normalizeFormat(String fileFormat) {
+		String format = fileFormat.trim().toLowerCase(Locale.ROOT);
+		return format.startsWith(".") ? format.substring(1) : format;
+	}
+}
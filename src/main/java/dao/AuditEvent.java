@@ -0,0 +1,195 @@
+package dao;
+
+import model.AuditLogs;
+import model.DocumentAccessLogs;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One audit or document access record on its way to the database through the
+ * {@link AuditLogPipeline}.
+ *
+ * <p>
+ * Values are held in their textual form and cast in SQL, so an event can be
+ * spooled to a local file and replayed without losing type information. Each
+ * event carries a random id assigned when it is created and stored in the
+ * {@code event_id} column, whose unique index makes a replayed insert a no-op
+ * (see {@link AuditLogPipeline#EVENT_ID_DDL}).
+ * </p>
+ */
+public final class AuditEvent {
+
+	/**
+	 * The target table and column layout of an event.
+	 */
+	public enum Kind {
+		/** A row in audit_logs, as written by {@link AuditLogsDAO#logDocumentAccess}. */
+		AUDIT_LOG("INSERT INTO audit_logs (event_id, user_id, document_id, action_date, action_type, action_time) VALUES (CAST(? AS uuid), ?, ?, CAST(? AS timestamp), ?, CAST(? AS timestamp)) ON CONFLICT DO NOTHING", 5),
+		/** A row in document_access_logs, as written by {@link DocumentAccessLogsDAO#logDocumentAccess}. */
+		DOCUMENT_ACCESS("INSERT INTO document_access_logs (event_id, access_time, action_type, fk_user_id, fk_document_id) VALUES (CAST(? AS uuid), CAST(? AS timestamp), CAST(? AS action_type), CAST(? AS bigint), CAST(? AS bigint)) ON CONFLICT DO NOTHING", 4),
+		/** A row in document_access_logs, as written by {@link EvidenceDocumentsDAO#logDocumentAccess}. */
+		EVIDENCE_ACCESS("INSERT INTO document_access_logs (event_id, user_id, document_id, access_time) VALUES (CAST(? AS uuid), ?, CAST(? AS integer), CAST(? AS timestamp)) ON CONFLICT DO NOTHING", 3);
+
+		private final String insertSql;
+		private final int columns;
+
+		Kind(String insertSql, int columns) {
+			this.insertSql = insertSql;
+			this.columns = columns;
+		}
+
+		public String getInsertSql() {
+			return insertSql;
+		}
+
+		/**
+		 * @return the number of values, not counting the leading event id
+		 */
+		public int getColumns() {
+			return columns;
+		}
+	}
+
+	private final String eventId;
+	private final Kind kind;
+	private final String[] values;
+
+	AuditEvent(String eventId, Kind kind, String[] values) {
+		if (values.length != kind.getColumns()) {
+			throw new IllegalArgumentException(kind + " expects " + kind.getColumns() + " values");
+		}
+		this.eventId = eventId;
+		this.kind = kind;
+		this.values = values;
+	}
+
+	static AuditEvent auditLog(String userId, String documentId, AuditLogs.ActionType actionType, Timestamp actionTime) {
+		String time = text(actionTime);
+		return new AuditEvent(UUID.randomUUID().toString(), Kind.AUDIT_LOG,
+				new String[] { userId, documentId, time, actionType.name(), time });
+	}
+
+	static AuditEvent documentAccess(Timestamp accessTime, DocumentAccessLogs.ActionType actionType, long staffMemberId,
+			long documentId) {
+		return new AuditEvent(UUID.randomUUID().toString(), Kind.DOCUMENT_ACCESS, new String[] { text(accessTime),
+				actionType.name(), String.valueOf(staffMemberId), String.valueOf(documentId) });
+	}
+
+	static AuditEvent evidenceAccess(String userId, int documentId, Date accessTime) {
+		return new AuditEvent(UUID.randomUUID().toString(), Kind.EVIDENCE_ACCESS,
+				new String[] { userId, String.valueOf(documentId), text(accessTime) });
+	}
+
+	public String getEventId() {
+		return eventId;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the value of the given zero-based column, or null
+	 */
+	public String getValue(int column) {
+		return values[column];
+	}
+
+	/**
+	 * Encodes the event as a single line of tab-separated fields: kind, event
+	 * id, then the values. Backslashes, tabs and line breaks are escaped and
+	 * null is written as {@code \N}.
+	 */
+	String encode() {
+		StringBuilder line = new StringBuilder(64);
+		line.append(kind.name()).append('\t').append(eventId);
+		for (String value : values) {
+			line.append('\t');
+			if (value == null) {
+				line.append("\\N");
+				continue;
+			}
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '\\':
+					line.append("\\\\");
+					break;
+				case '\t':
+					line.append("\\t");
+					break;
+				case '\n':
+					line.append("\\n");
+					break;
+				case '\r':
+					line.append("\\r");
+					break;
+				default:
+					line.append(c);
+				}
+			}
+		}
+		return line.toString();
+	}
+
+	/**
+	 * Decodes a line produced by {@link #encode()}.
+	 *
+	 * @throws IllegalArgumentException if the line is malformed
+	 */
+	static AuditEvent decode(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean isNull = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (c == '\t') {
+				fields.add(isNull ? null : field.toString());
+				field.setLength(0);
+				isNull = false;
+			} else if (c == '\\' && i + 1 < line.length()) {
+				char e = line.charAt(++i);
+				switch (e) {
+				case 't':
+					field.append('\t');
+					break;
+				case 'n':
+					field.append('\n');
+					break;
+				case 'r':
+					field.append('\r');
+					break;
+				case 'N':
+					isNull = true;
+					break;
+				default:
+					field.append(e);
+				}
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(isNull ? null : field.toString());
+		if (fields.size() < 2) {
+			throw new IllegalArgumentException("Malformed audit event: " + line);
+		}
+		Kind kind = Kind.valueOf(fields.get(0));
+		String[] values = fields.subList(2, fields.size()).toArray(new String[0]);
+		return new AuditEvent(fields.get(1), kind, values);
+	}
+
+	private static String text(Date time) {
+		if (time == null) {
+			return null;
+		}
+		return time instanceof Timestamp ? time.toString() : new Timestamp(time.getTime()).toString();
+	}
+
+	@Override
+	public String toString() {
+		return "AuditEvent{" + kind + ", " + eventId + "}";
+	}
+}
@@ -0,0 +1,276 @@
+package dao;
+
+import utils.ApplicationProperties;
+import utils.AsyncBatchWriter;
+import utils.DatabaseUtility;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind ingestion of audit and document access events.
+ *
+ * <p>
+ * The {@code logDocumentAccess} methods of {@link AuditLogsDAO},
+ * {@link DocumentAccessLogsDAO} and {@link EvidenceDocumentsDAO} hand their
+ * events to this pipeline instead of taking a pooled connection for a single
+ * INSERT on the request thread. A background writer flushes the buffered
+ * events in JDBC batches, one transaction per batch, which turns thousands of
+ * connection checkouts into a handful.
+ * </p>
+ *
+ * <p>
+ * Configuration ({@code application.properties}):
+ * </p>
+ * <ul>
+ * <li>{@code audit.pipeline.enabled} - when false, events are written
+ * synchronously as before</li>
+ * <li>{@code audit.pipeline.mode} - {@code FIRE_AND_FORGET},
+ * {@code WAIT_FOR_FLUSH}, {@code SPILL} or {@code DURABLE}, see
+ * {@link AsyncBatchWriter.Mode}</li>
+ * <li>{@code audit.pipeline.bufferSize}, {@code batchSize},
+ * {@code lingerMillis} and {@code flushTimeoutMillis}</li>
+ * <li>{@code audit.pipeline.spoolDir}, {@code spoolSegmentBytes} and
+ * {@code spoolFsyncIntervalMillis} - the local write-ahead spool that
+ * DURABLE events are written to first, and that other modes spill to when
+ * the database rejects a batch</li>
+ * </ul>
+ *
+ * <p>
+ * The default, DURABLE, never loses an accepted event: it is on local disk
+ * before the request continues and stays there until the database has
+ * committed it, whatever the database's availability in between. An event
+ * the database rejects for its values is moved to the spool's dead-letter
+ * file, see {@link AuditWalSpool}.
+ * </p>
+ *
+ * <p>
+ * Inserts need the {@code event_id} column that {@link #installSchema()}
+ * adds. The pipeline checks for it when it starts; while it is missing,
+ * events are still accepted and spooled, but no batch is written and the
+ * spool is not replayed until the column exists.
+ * </p>
+ */
+public final class AuditLogPipeline {
+
+	private static final Logger LOGGER = Logger.getLogger(AuditLogPipeline.class.getName());
+
+	private static final boolean ENABLED = ApplicationProperties.getBoolean("audit.pipeline.enabled", true);
+	private static final AsyncBatchWriter.Mode MODE = AsyncBatchWriter.Mode
+			.valueOf(ApplicationProperties.getString("audit.pipeline.mode", "DURABLE"));
+
+	/**
+	 * Schema the pipeline's inserts rely on: every event carries its id so that
+	 * events replayed after a crash are inserted at most once.
+	 */
+	public static final String[] EVENT_ID_DDL = {
+			"ALTER TABLE audit_logs ADD COLUMN IF NOT EXISTS event_id uuid",
+			"ALTER TABLE document_access_logs ADD COLUMN IF NOT EXISTS event_id uuid" };
+
+	/**
+	 * The unique index on the event id of each table while it is unpartitioned;
+	 * partitioned tables index the id together with the partition column, see
+	 * {@link LogPartitionsDAO.LogTable}.
+	 */
+	private static final String[][] EVENT_ID_INDEXES = {
+			{ "audit_logs", "CREATE UNIQUE INDEX IF NOT EXISTS idx_audit_logs_event_id ON audit_logs (event_id)" },
+			{ "document_access_logs", "CREATE UNIQUE INDEX IF NOT EXISTS idx_document_access_logs_event_id ON document_access_logs (event_id)" } };
+
+	private static final String PARTITIONED_SQL = "SELECT relkind = 'p' FROM pg_class WHERE oid = to_regclass(?)";
+
+	private static final String EVENT_ID_COLUMNS_SQL = "SELECT count(*) FROM pg_attribute"
+			+ " WHERE attrelid IN (to_regclass('audit_logs'), to_regclass('document_access_logs'))"
+			+ " AND attname = 'event_id' AND NOT attisdropped";
+
+	/**
+	 * Set when the startup check found no event id column; cleared by
+	 * {@link #installSchema()} or once a write finds the column.
+	 */
+	private static volatile boolean schemaMissing = isSchemaMissing();
+
+	private static final AuditWalSpool SPOOL = ENABLED ? openSpool() : null;
+
+	private static final AsyncBatchWriter<AuditEvent> WRITER = ENABLED ? new AsyncBatchWriter<>("audit-pipeline",
+			AuditLogPipeline::writeBatch, SPOOL,
+			ApplicationProperties.getInt("audit.pipeline.bufferSize", 8192),
+			ApplicationProperties.getInt("audit.pipeline.batchSize", 500),
+			ApplicationProperties.getLong("audit.pipeline.lingerMillis", 50),
+			ApplicationProperties.getLong("audit.pipeline.flushTimeoutMillis", 5000)) : null;
+
+	private AuditLogPipeline() {
+	}
+
+	/**
+	 * Adds the event id column to both log tables, with a unique index on
+	 * tables that are not partitioned, and lets the writer replay the events
+	 * spooled while the column was missing.
+	 *
+	 * @return true if the schema is in place
+	 */
+	public static boolean installSchema() {
+		try (Connection conn = DatabaseUtility.getConnection(); Statement stmt = conn.createStatement();
+				PreparedStatement partitioned = conn.prepareStatement(PARTITIONED_SQL)) {
+			for (String ddl : EVENT_ID_DDL) {
+				stmt.execute(ddl);
+			}
+			for (String[] index : EVENT_ID_INDEXES) {
+				partitioned.setString(1, index[0]);
+				try (ResultSet rs = partitioned.executeQuery()) {
+					if (rs.next() && rs.getBoolean(1)) {
+						continue;
+					}
+				}
+				stmt.execute(index[1]);
+			}
+			schemaMissing = false;
+			return true;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error installing audit pipeline schema", e);
+			return false;
+		}
+	}
+
+	/**
+	 * @return true only if the database was reached and a log table lacks the
+	 *         event id column; an unreachable database is left to the spool
+	 */
+	private static boolean isSchemaMissing() {
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			if (hasEventIdColumns(conn)) {
+				return false;
+			}
+			LOGGER.log(Level.SEVERE, "audit_logs or document_access_logs has no event_id column; audit events are spooled"
+					+ " but not written until AuditLogPipeline.installSchema() has run");
+			return true;
+		} catch (SQLException e) {
+			LOGGER.log(Level.WARNING, "Could not check the audit pipeline schema", e);
+			return false;
+		}
+	}
+
+	private static boolean hasEventIdColumns(Connection conn) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(EVENT_ID_COLUMNS_SQL); ResultSet rs = ps.executeQuery()) {
+			return rs.next() && rs.getInt(1) == EVENT_ID_DDL.length;
+		}
+	}
+
+	/**
+	 * Submits an event in the configured mode.
+	 *
+	 * @return whether the event was accepted, see
+	 *         {@link AsyncBatchWriter#submit(Object, AsyncBatchWriter.Mode)}; when
+	 *         the pipeline is disabled, whether the synchronous insert succeeded
+	 */
+	static boolean submit(AuditEvent event) {
+		if (WRITER == null) {
+			try {
+				writeBatch(Collections.singletonList(event));
+				return true;
+			} catch (SQLException e) {
+				LOGGER.log(Level.SEVERE, "Error writing audit event " + event, e);
+				return false;
+			}
+		}
+		return WRITER.submit(event, MODE);
+	}
+
+	/**
+	 * @return the pipeline's writer for monitoring, or null when disabled
+	 */
+	public static AsyncBatchWriter<AuditEvent> getWriter() {
+		return WRITER;
+	}
+
+	/**
+	 * @return the number of events moved to the dead-letter file since start
+	 */
+	public static long getDeadLetteredCount() {
+		return SPOOL == null ? 0 : SPOOL.getDeadLetteredCount();
+	}
+
+	/**
+	 * Flushes buffered events and stops the writer, spilling whatever could not
+	 * be written within the timeout, then closes the spool. Spooled events are
+	 * replayed on the next start. Call on application shutdown.
+	 */
+	public static void shutdown(long timeoutMillis) {
+		if (WRITER != null) {
+			WRITER.shutdown(timeoutMillis);
+		}
+		if (SPOOL != null) {
+			SPOOL.close();
+		}
+	}
+
+	private static AuditWalSpool openSpool() {
+		Path directory = Paths.get(ApplicationProperties.getString("audit.pipeline.spoolDir", "audit-spool"));
+		try {
+			return new AuditWalSpool(directory, ApplicationProperties.getInt("audit.pipeline.spoolSegmentBytes", 16 << 20),
+					ApplicationProperties.getLong("audit.pipeline.spoolFsyncIntervalMillis", 2));
+		} catch (IOException e) {
+			// Without a spool DURABLE submissions fail and are logged by the DAOs.
+			LOGGER.log(Level.SEVERE, "Failed to open audit spool " + directory.toAbsolutePath(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Writes one batch in a single transaction, with one JDBC batch per target
+	 * statement. Events keep their relative order within each statement, and
+	 * events already in the database are skipped.
+	 *
+	 * @throws SQLException with SQLSTATE 42703 (undefined column) while the
+	 *                      event id column is missing, which leaves the events
+	 *                      spooled rather than dead-lettered
+	 */
+	static void writeBatch(List<AuditEvent> events) throws SQLException {
+		Map<AuditEvent.Kind, List<AuditEvent>> byKind = new EnumMap<>(AuditEvent.Kind.class);
+		for (AuditEvent event : events) {
+			byKind.computeIfAbsent(event.getKind(), k -> new ArrayList<>()).add(event);
+		}
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			if (schemaMissing) {
+				if (!hasEventIdColumns(conn)) {
+					throw new SQLException("audit_logs or document_access_logs has no event_id column;"
+							+ " run AuditLogPipeline.installSchema()", "42703");
+				}
+				schemaMissing = false;
+			}
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			try {
+				for (Map.Entry<AuditEvent.Kind, List<AuditEvent>> entry : byKind.entrySet()) {
+					AuditEvent.Kind kind = entry.getKey();
+					try (PreparedStatement ps = conn.prepareStatement(kind.getInsertSql())) {
+						for (AuditEvent event : entry.getValue()) {
+							ps.setString(1, event.getEventId());
+							for (int i = 0; i < kind.getColumns(); i++) {
+								ps.setString(i + 2, event.getValue(i));
+							}
+							ps.addBatch();
+						}
+						ps.executeBatch();
+					}
+				}
+				conn.commit();
+			} catch (SQLException | RuntimeException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(autoCommit);
+			}
+		}
+	}
+}
@@ -2,20 +2,18 @@ package dao;
 
 
 import model.AuditLogs;
+import model.Documents;
 import utils.DatabaseUtility;
+import utils.JdbcTemplate;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.sql.ResultSet;
-import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
-import model.Documents;
 import java.util.Map;
 import java.util.Map.Entry;
-import model.Documents;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 
@@ -32,29 +30,13 @@ public class AuditLogsDAO {
 	 * @return List<Documents> A list of documents meeting the specified criteria.
 	 */
 	public List<Documents> fetchDocuments(String documentTypeFilter, int complaintIdFilter, String sortBy, int limit, int offset) {
-	    List<Documents> documents = new ArrayList<>();
 	    String sql = "SELECT * FROM audit_logs WHERE document_type LIKE ? AND fk_complaint_id = ? ORDER BY " + sortBy + " LIMIT ? OFFSET ?;";
-	    Connection conn = DatabaseUtility.connect();
-	    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setString(1, documentTypeFilter);
-	        pstmt.setInt(2, complaintIdFilter);
-	        pstmt.setInt(3, limit);
-	        pstmt.setInt(4, offset);
-	
-	        try (ResultSet rs = pstmt.executeQuery()) {
-	            while (rs.next()) {
-	                Documents document = new Documents();
-	                // Set properties from ResultSet to Documents object
-	                documents.add(document);
-	            }
-	        }
+	    try {
+	        return JdbcTemplate.query(sql, JdbcTemplate.params(documentTypeFilter, complaintIdFilter, limit, offset), RowMappers.DOCUMENTS);
 	    } catch (SQLException ex) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	
-	    return documents;
+	    return new ArrayList<>();
 	}
 	
 	/**
@@ -64,37 +46,18 @@ public class AuditLogsDAO {
 	 * @return boolean indicating success or failure of the update operation.
 	 */
 	public boolean updateDocumentPermissions(int documentId, Map<String, Boolean> permissions) {
-	    Connection conn = DatabaseUtility.connect();
-	    PreparedStatement pstmt = null;
-	    boolean updateSuccess = true;
-	    try {
-	        String sql = "UPDATE document_permissions SET access = ? WHERE document_id = ? AND user_role = ?";
-	    
+	    String sql = "UPDATE document_permissions SET access = ? WHERE document_id = ? AND user_role = ?";
+	    try (Connection conn = DatabaseUtility.getConnection()) {
 	        for (Entry<String, Boolean> entry : permissions.entrySet()) {
-	            pstmt = conn.prepareStatement(sql);
-	            pstmt.setBoolean(1, entry.getValue());
-	            pstmt.setInt(2, documentId);
-	            pstmt.setString(3, entry.getKey());
-	            int rowsAffected = pstmt.executeUpdate();
-	            if (rowsAffected == 0) {
-	                updateSuccess = false;
-	                break;
+	            if (JdbcTemplate.update(conn, sql, JdbcTemplate.params(entry.getValue(), documentId, entry.getKey())) == 0) {
+	                return false;
 	            }
 	        }
+	        return true;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	        updateSuccess = false;
-	    } finally {
-	        if (pstmt != null) {
-	            try {
-	                pstmt.close();
-	            } catch (SQLException e) {
-	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	            }
-	        }
-	        DatabaseUtility.disconnect(conn);
+	        return false;
 	    }
-	    return updateSuccess;
 	}
 	
 	/**
@@ -104,54 +67,29 @@ public class AuditLogsDAO {
 	 * @return Documents object containing detailed information about the document.
 	 */
 	public Documents fetchDocumentById(int documentId) {
-	    Documents document = null;
-	    String sql = "SELECT id, document_name, document_type, document_name, user_role, fk_document_id FROM audit_logs WHERE id = ?;";
-	    try (Connection conn = DatabaseUtility.connect();
-	         PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setInt(1, documentId);
-	        ResultSet rs = pstmt.executeQuery();
-	        if (rs.next()) {
-	            document = new Documents();
-	            document.setId(rs.getInt("id"));
-	            document.setDocumentName(rs.getString("document_name"));
-	            document.setDocumentType(Documents.DocumentTypes.valueOf(rs.getString("document_type")));
-	            document.setUserRole(rs.getString("user_role"));
-	            // Assuming 'fk_document_id' is a placeholder for linking to the documents table
-	            document.setFkDocumentId(new Documents(rs.getInt("fk_document_id")));
-	        }
+	    // Documents has no user role or document link, so user_role and fk_document_id are not selected.
+	    String sql = "SELECT id, document_name, document_type FROM audit_logs WHERE id = ?;";
+	    try {
+	        return JdbcTemplate.queryForObject(sql, pstmt -> pstmt.setInt(1, documentId), RowMappers.DOCUMENTS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(AuditLogs.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return document;
+	    return null;
 	}
 	
-	
 	/**
 	 * Deletes a specific document from the repository.
 	 * @param documentId An integer identifying the document to be deleted.
 	 * @return boolean indicating success or failure of the deletion operation.
 	 */
 	public boolean deleteDocument(int documentId) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean isDeleted = false;
 	    String sql = "DELETE FROM documents WHERE id = ?;";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setInt(1, documentId);
-	
-	        int affectedRows = pstmt.executeUpdate();
-	        isDeleted = affectedRows > 0;
+	        return JdbcTemplate.update(sql, pstmt -> pstmt.setInt(1, documentId)) > 0;
 	    } catch (SQLException ex) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        if (pstmt != null) try { pstmt.close(); } catch (SQLException ex) { /* Ignored */ }
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return isDeleted;
+	    return false;
 	}
 	
 	/**
@@ -161,28 +99,9 @@ public class AuditLogsDAO {
 	 * @param accessTime A timestamp marking the date and time when the access occurred.
 	 */
 	public void logDocumentAccess(String userId, String documentId, Timestamp accessTime) {
-	    Connection conn = null;
-	    PreparedStatement ps = null;
-	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "INSERT INTO audit_logs (user_id, document_id, action_date, action_type, action_time) VALUES (?, ?, ?, ?, ?)";
-	        ps = conn.prepareStatement(sql);
-	        ps.setString(1, userId);
-	        ps.setString(2, documentId);
-	        ps.setTimestamp(3, accessTime);
-	        ps.setString(4, 'DOCUMENT_VIEWED');
-	        ps.setTimestamp(5, accessTime);
-	        int affectedRows = ps.executeUpdate();
-	        if (affectedRows == 0) {
-	            throw new SQLException("Creating log failed, no rows affected.");
-	        }
-	    } catch (SQLException ex) {
-	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        if (ps != null) {
-	            try { ps.close(); } catch (SQLException e) { /* ignored */ }
-	        }
-	        DatabaseUtility.disconnect(conn);
+	    // Written in the background by the audit pipeline, batched with other events.
+	    if (!AuditLogPipeline.submit(AuditEvent.auditLog(userId, documentId, AuditLogs.ActionType.DOCUMENT_VIEWED, accessTime))) {
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Document access audit event was not accepted for document " + documentId);
 	    }
 	}
 }
@@ -0,0 +1,161 @@
+package dao;
+
+import utils.AsyncBatchWriter;
+import utils.WriteAheadSpool;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Spill store for the {@link AuditLogPipeline} backed by a
+ * {@link WriteAheadSpool}, one {@link AuditEvent#encode() encoded} event per
+ * record.
+ *
+ * <p>
+ * An append returns only once its events are on disk. Replay sends events
+ * to the database in the order they were appended and advances the spool's
+ * checkpoint after each batch commits. A batch that committed but was not
+ * checkpointed before a crash is sent again; the event id makes the second
+ * insert a no-op.
+ * </p>
+ *
+ * <p>
+ * A batch the database rejects for its data (SQLSTATE class 22, data
+ * exception, or 23, integrity constraint violation) is split in halves and
+ * retried until the events it cannot take are isolated. Each of those is
+ * appended, encoded, to {@value #DEAD_LETTER_FILE} in the spool directory and
+ * passed over, so that one bad event does not hold back every event behind
+ * it. Any other failure stops the replay until the next attempt.
+ * </p>
+ */
+class AuditWalSpool implements AsyncBatchWriter.SpillStore<AuditEvent> {
+
+	private static final Logger LOGGER = Logger.getLogger(AuditWalSpool.class.getName());
+
+	static final String DEAD_LETTER_FILE = "dead-letter.log";
+
+	private final WriteAheadSpool spool;
+	private final Path deadLetters;
+	private final AtomicLong deadLettered = new AtomicLong();
+
+	AuditWalSpool(Path directory, int segmentBytes, long fsyncIntervalMillis) throws IOException {
+		this.spool = new WriteAheadSpool(directory, segmentBytes, fsyncIntervalMillis);
+		this.deadLetters = directory.resolve(DEAD_LETTER_FILE);
+	}
+
+	@Override
+	public void append(List<AuditEvent> events) throws IOException {
+		long position = -1;
+		for (AuditEvent event : events) {
+			position = spool.append(event.encode().getBytes(StandardCharsets.UTF_8));
+		}
+		if (position >= 0) {
+			spool.awaitDurable(position);
+		}
+	}
+
+	@Override
+	public long replay(AsyncBatchWriter.BatchSink<AuditEvent> sink, int batchSize) throws Exception {
+		long count = 0;
+		List<byte[]> records = new ArrayList<>(batchSize);
+		List<AuditEvent> batch = new ArrayList<>(batchSize);
+		while (true) {
+			records.clear();
+			batch.clear();
+			long from = spool.getCheckpoint();
+			long next = spool.read(from, batchSize, records);
+			if (next == from) {
+				return count;
+			}
+			for (byte[] record : records) {
+				String line = new String(record, StandardCharsets.UTF_8);
+				try {
+					batch.add(AuditEvent.decode(line));
+				} catch (IllegalArgumentException e) {
+					LOGGER.log(Level.SEVERE, "Skipping undecodable spooled audit event: " + line, e);
+				}
+			}
+			if (!batch.isEmpty()) {
+				count += write(sink, batch);
+			}
+			spool.checkpoint(next);
+		}
+	}
+
+	/**
+	 * @return the number of events moved to the dead-letter file since start
+	 */
+	long getDeadLetteredCount() {
+		return deadLettered.get();
+	}
+
+	/**
+	 * Writes a batch, isolating the events the database rejects for their
+	 * data by bisection.
+	 *
+	 * @return the number of events written
+	 * @throws Exception if the sink fails for another reason
+	 */
+	private long write(AsyncBatchWriter.BatchSink<AuditEvent> sink, List<AuditEvent> batch) throws Exception {
+		try {
+			sink.write(batch);
+			return batch.size();
+		} catch (SQLException e) {
+			if (!isRejectedData(e)) {
+				throw e;
+			}
+			if (batch.size() == 1) {
+				deadLetter(batch.get(0), e);
+				return 0;
+			}
+			int half = batch.size() / 2;
+			// Copies, as the sink may hold on to what it is given.
+			return write(sink, new ArrayList<>(batch.subList(0, half)))
+					+ write(sink, new ArrayList<>(batch.subList(half, batch.size())));
+		}
+	}
+
+	/**
+	 * @return true if the failure is caused by the values of some row, so
+	 *         that retrying the same rows can never succeed
+	 */
+	private static boolean isRejectedData(SQLException e) {
+		for (SQLException cause = e; cause != null; cause = cause.getNextException()) {
+			String state = cause.getSQLState();
+			if (state != null && (state.startsWith("22") || state.startsWith("23"))) {
+				return true;
+			}
+			if (state != null && !(cause instanceof BatchUpdateException)) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private void deadLetter(AuditEvent event, SQLException cause) throws IOException {
+		String line = event.encode() + '\n';
+		Files.write(deadLetters, line.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+		deadLettered.incrementAndGet();
+		LOGGER.log(Level.SEVERE, "Audit event " + event.getEventId() + " was rejected by the database and moved to "
+				+ deadLetters.toAbsolutePath(), cause);
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return spool.isEmpty();
+	}
+
+	void close() {
+		spool.close();
+	}
+}
@@ -2,12 +2,11 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import utils.StatementBinder;
 import java.sql.*;
 import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
-import java.sql.PreparedStatement;
-import java.sql.SQLException;
 
 
 public class CommunicationTemplatesDAO {
@@ -16,33 +15,21 @@ public class CommunicationTemplatesDAO {
 	/**
 	 * This method retrieves all available communication templates for the dropdown selection, supporting the selection of appropriate message formats for various stages of complaint resolution.
 	 * 
+	 * Results are copied from {@link ReferenceDataCache}.
+	 * 
 	 * @return A list of CommunicationTemplates objects representing all communication templates available in the database.
 	 */
 	public List<CommunicationTemplates> getAllCommunicationTemplates() {
-	    List<CommunicationTemplates> templates = new ArrayList<>();
-	    Connection conn = DatabaseUtility.connect();
 	    String sql = "SELECT * FROM communication_templates";
-	    try (PreparedStatement pstmt = conn.prepareStatement(sql);
-	         ResultSet rs = pstmt.executeQuery()) {
-	        while (rs.next()) {
-	            CommunicationTemplates template = new CommunicationTemplates();
-	            template.setId(rs.getInt("id"));
-	            template.setTemplateName(rs.getString("template_name"));
-	            template.setTemplateContent(rs.getString("template_content"));
-	            template.setTemplateType(rs.getString("template_type"));
-	            template.setCreationDate(rs.getDate("creation_date"));
-	            template.setLastModifiedDate(rs.getTimestamp("last_modified_date"));
-	            templates.add(template);
-	        }
+	    try {
+	        return ReferenceDataCache.COMMUNICATION_TEMPLATES.get(ReferenceDataCache.ALL,
+	                () -> JdbcTemplate.query(sql, StatementBinder.NONE, RowMappers.COMMUNICATION_TEMPLATES));
 	    } catch (SQLException e) {
 	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error retrieving communication templates", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return templates;
+	    return new ArrayList<>();
 	}
-	
-	
+
 	/**
 	 * Fetches a specific communication template based on its ID. This supports dynamically loading template content into the form for previewing, editing, and sending to complainants.
 	 *
@@ -50,30 +37,38 @@ public class CommunicationTemplatesDAO {
 	 * @return A CommunicationTemplates object containing the template's details or null if not found.
 	 */
 	public CommunicationTemplates getTemplateById(int templateId) {
-	    Connection conn = DatabaseUtility.connect();
 	    String sql = "SELECT * FROM communication_templates WHERE id = ?;";
-	    CommunicationTemplates template = null;
-	
-	    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setInt(1, templateId);
-	        try (ResultSet rs = pstmt.executeQuery()) {
-	            if (rs.next()) {
-	                template = new CommunicationTemplates();
-	                template.setId(rs.getInt("id"));
-	                template.setTemplateName(rs.getString("template_name"));
-	                template.setTemplateContent(rs.getString("template_content"));
-	                template.setTemplateType(rs.getString("template_type"));
-	                template.setCreationDate(rs.getDate("creation_date"));
-	                template.setLastModifiedDate(rs.getTimestamp("last_modified_date"));
-	            }
-	        }
+	    try {
+	        return ReferenceDataCache.COMMUNICATION_TEMPLATES_BY_ID.get(templateId,
+	                () -> JdbcTemplate.queryForObject(sql, pstmt -> pstmt.setInt(1, templateId), RowMappers.COMMUNICATION_TEMPLATES));
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error fetching template by ID", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	
-	    return template;
+	    return null;
+	}
+
+	/**
+	 * Updates the name, content and type of an existing communication template and
+	 * evicts it from the template caches on every node.
+	 *
+	 * @param templateId The unique id of the template to update.
+	 * @param templateName The new display name of the template.
+	 * @param templateContent The new body of the template.
+	 * @param templateType The new type of the template.
+	 * @return true if the template was updated, false otherwise.
+	 */
+	public boolean updateCommunicationTemplate(int templateId, String templateName, String templateContent, String templateType) {
+	    String sql = "UPDATE communication_templates SET template_name = ?, template_content = ?, template_type = ?, last_modified_date = CURRENT_TIMESTAMP WHERE id = ?";
+	    try {
+	        int affectedRows = JdbcTemplate.update(sql, JdbcTemplate.params(templateName, templateContent, templateType, templateId));
+	        if (affectedRows > 0) {
+	            ReferenceDataCache.communicationTemplatesChanged();
+	        }
+	        return affectedRows > 0;
+	    } catch (SQLException e) {
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error updating communication template", e);
+	        return false;
+	    }
 	}
 	
 	/**
@@ -85,26 +80,12 @@ public class CommunicationTemplatesDAO {
 	 * @return true if draft saved successfully, false otherwise.
 	 */
 	public boolean saveCommunicationDraft(String subjectLine, String messageBody, int templateId, String recipientEmail) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
 	    String sql = "INSERT INTO communication_drafts (subject_line, message_body, template_id, recipient_email) VALUES (?, ?, ?, ?)";
-	
 	    try {
-	        conn = DatabaseUtility.connect();
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setString(1, subjectLine);
-	        pstmt.setString(2, messageBody);
-	        pstmt.setInt(3, templateId);
-	        pstmt.setString(4, recipientEmail);
-	
-	        int affectedRows = pstmt.executeUpdate();
-	        return affectedRows > 0;
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(subjectLine, messageBody, templateId, recipientEmail)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	        return false;
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        if (pstmt != null) try { pstmt.close(); } catch (SQLException e) { e.printStackTrace(); }
 	    }
 	}
 	
@@ -119,24 +100,13 @@ public class CommunicationTemplatesDAO {
 	 * @return boolean indicating whether the communication was sent successfully.
 	 */
 	public boolean sendCommunication(String subjectLine, String messageBody, int templateId, String recipientEmail) {
-	    Connection conn = null;
+	    // Assuming existence of a table `communications` for logging purposes
+	    String sql = "INSERT INTO communications (subject_line, message_body, template_id, recipient_email) VALUES (?, ?, ?, ?)";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        // Assuming existence of a table `communications` for logging purposes
-	        String sql = "INSERT INTO communications (subject_line, message_body, template_id, recipient_email) VALUES (?, ?, ?, ?)";
-	        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	            pstmt.setString(1, subjectLine);
-	            pstmt.setString(2, messageBody);
-	            pstmt.setInt(3, templateId);
-	            pstmt.setString(4, recipientEmail);
-	            int affectedRows = pstmt.executeUpdate();
-	            return affectedRows > 0;
-	        }
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(subjectLine, messageBody, templateId, recipientEmail)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error when sending communication: ", e);
 	        return false;
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
 	}
 }
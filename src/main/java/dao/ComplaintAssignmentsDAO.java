@@ -2,17 +2,13 @@ package dao;
 
 
 import model.ComplaintAssignments;
-import utils.DatabaseUtility;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
+import utils.JdbcTemplate;
 import java.sql.SQLException;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-import java.sql.ResultSet;
-import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.List;
 import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 
 public class ComplaintAssignmentsDAO {
@@ -27,35 +23,13 @@ public class ComplaintAssignmentsDAO {
 	 * @return List<ComplaintAssignments> A list of filtered complaint assignments.
 	 */
 	public List<ComplaintAssignments> fetchAllComplaintAssignments(String statusFilter, int limit, int offset) {
-	    List<ComplaintAssignments> assignments = new ArrayList<>();
-	    Connection conn = DatabaseUtility.connect();
-	    PreparedStatement pstmt = null;
-	    ResultSet rs = null;
+	    String sql = "SELECT * FROM complaint_assignments WHERE assignment_status = ? LIMIT ? OFFSET ?";
 	    try {
-	        String sql = "SELECT * FROM complaint_assignments WHERE assignment_status = ? LIMIT ? OFFSET ?";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setString(1, statusFilter);
-	        pstmt.setInt(2, limit);
-	        pstmt.setInt(3, offset);
-	        rs = pstmt.executeQuery();
-	        while (rs.next()) {
-	            ComplaintAssignments assignment = new ComplaintAssignments();
-	            assignment.setId(rs.getInt("id"));
-	            assignment.setAssignmentDate(rs.getDate("assignment_date"));
-	            // Map ENUM values appropriately
-	            // assignment.setComplaintPriority(ComplaintPriorities.valueOf(rs.getString("complaint_priority")));
-	            assignment.setAssignmentStatus(rs.getString("assignment_status"));
-	            assignment.setCompletionDate(rs.getDate("completion_date"));
-	            // Set foreign keys or related entities if needed
-	            assignments.add(assignment);
-	        }
+	        return JdbcTemplate.query(sql, JdbcTemplate.params(statusFilter, limit, offset), RowMappers.COMPLAINT_ASSIGNMENTS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        try { if (rs != null) rs.close(); if (pstmt != null) pstmt.close(); } catch (SQLException e) { Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e); }
 	    }
-	    return assignments;
+	    return new ArrayList<>();
 	}
 	
 	/**
@@ -65,48 +39,21 @@ public class ComplaintAssignmentsDAO {
 	 * @param newStatus The new status to update the complaint assignment to.
 	 */
 	public boolean updateComplaintAssignmentStatus(Integer assignmentId, String newStatus) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
 	    String updateSql = "UPDATE complaint_assignments SET assignment_status = ? WHERE id = ?;";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        pstmt = conn.prepareStatement(updateSql);
-	        pstmt.setString(1, newStatus);
-	        pstmt.setInt(2, assignmentId);
-	        int affectedRows = pstmt.executeUpdate();
-	        return affectedRows > 0;
+	        return JdbcTemplate.update(updateSql, JdbcTemplate.params(newStatus, assignmentId)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	        return false;
-	    } finally {
-	        if (pstmt != null) try { pstmt.close(); } catch (SQLException e) { /* ignored */ }
-	        DatabaseUtility.disconnect(conn);
 	    }
 	}
 	
 	public boolean assignComplaintToStaffMember(Integer complaintId, Integer staffMemberId, ComplaintPriorities priority, String status) {
-	    Connection conn = DatabaseUtility.connect();
-	    PreparedStatement pstmt = null;
 	    String sql = "INSERT INTO complaint_assignments (fk_complaint_id, fk_staff_member_id, complaint_priority, assignment_status, assignment_date) VALUES (?, ?, CAST(? AS complaint_priorities), ?, CURRENT_DATE)";
 	    try {
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setInt(1, complaintId);
-	        pstmt.setInt(2, staffMemberId);
-	        pstmt.setString(3, priority.name());
-	        pstmt.setString(4, status);
-	        int affectedRows = pstmt.executeUpdate();
-	        return affectedRows > 0;
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(complaintId, staffMemberId, priority, status)) > 0;
 	    } catch (SQLException ex) {
 	        Logger.getLogger(ComplaintAssignments.class.getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        try {
-	            if (pstmt != null) {
-	                pstmt.close();
-	            }
-	        } catch (SQLException ex) {
-	            Logger.getLogger(ComplaintAssignments.class.getName()).log(Level.SEVERE, null, ex);
-	        }
 	    }
 	    return false;
 	}
@@ -118,29 +65,13 @@ public class ComplaintAssignmentsDAO {
 	 * @return A list of ComplaintAssignments objects that are assigned to the specified staff member.
 	 */
 	public List<ComplaintAssignments> fetchComplaintAssignmentsForStaff(Integer staffMemberId) {
-	    List<ComplaintAssignments> assignments = new ArrayList<>();
-	    Connection conn = DatabaseUtility.connect();
 	    String sql = "SELECT * FROM complaint_assignments WHERE fk_staff_member_id = ?";
-	    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setInt(1, staffMemberId);
-	        try (ResultSet rs = pstmt.executeQuery()) {
-	            while (rs.next()) {
-	                ComplaintAssignments assignment = new ComplaintAssignments();
-	                assignment.setId(rs.getInt("id"));
-	                assignment.setAssignmentDate(rs.getDate("assignment_date"));
-	                assignment.setAssignmentStatus(rs.getString("assignment_status"));
-	                assignment.setCompletionDate(rs.getDate("completion_date"));
-	                // Assuming Complaint and StaffMember objects are set elsewhere or further 
-	                // implementation details required for setting up the whole object
-	                assignments.add(assignment);
-	            }
-	        }
+	    try {
+	        return JdbcTemplate.query(sql, pstmt -> pstmt.setInt(1, staffMemberId), RowMappers.COMPLAINT_ASSIGNMENTS);
 	    } catch (SQLException ex) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return assignments;
+	    return new ArrayList<>();
 	}
 	
 	/**
@@ -149,35 +80,11 @@ public class ComplaintAssignmentsDAO {
 	 * @param completionDate The date when the complaint handling or investigation is completed.
 	 */
 	public boolean updateComplaintAssignmentCompletionDate(Integer assignmentId, Date completionDate) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
 	    String sql = "UPDATE complaint_assignments SET completion_date = ? WHERE id = ?;";
-	
 	    try {
-	        conn = DatabaseUtility.connect();
-	        pstmt = conn.prepareStatement(sql);
-	
-	        // Convert java.util.Date to java.sql.Date
-	        java.sql.Date sqlCompletionDate = new java.sql.Date(completionDate.getTime());
-	
-	        pstmt.setDate(1, sqlCompletionDate);
-	        pstmt.setInt(2, assignmentId);
-	
-	        int rowsAffected = pstmt.executeUpdate();
-	        if (rowsAffected > 0) {
-	            return true;
-	        }
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(new java.sql.Date(completionDate.getTime()), assignmentId)) > 0;
 	    } catch (SQLException ex) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        if (pstmt != null) {
-	            try {
-	                pstmt.close();
-	            } catch (SQLException ex) {
-	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	            }
-	        }
-	        DatabaseUtility.disconnect(conn);
 	    }
 	    return false;
 	}
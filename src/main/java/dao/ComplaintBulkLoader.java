@@ -0,0 +1,291 @@
+package dao;
+
+import model.ComplaintAttachments;
+import model.ComplaintStatusUpdates;
+import model.Complaints;
+import utils.BulkLoadReport;
+import utils.CopyInWriter;
+import utils.DatabaseUtility;
+import utils.EnumLookup;
+import utils.RecordReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bulk loader for historical complaints and their notes, status updates and
+ * attachment metadata, for migrations and yearly backfills where going through
+ * {@link ComplaintsDAO#createComplaint} row by row is not feasible.
+ *
+ * <p>
+ * Each input is read one record at a time from CSV or JSON Lines and streamed
+ * with the COPY protocol into a temporary staging table typed like its target
+ * table, so memory use does not depend on the size of the input. Staged
+ * complaints draw their ids from the complaints sequence during the COPY, and
+ * related rows are then inserted with a single set-based
+ * {@code INSERT ... SELECT} joined on the legacy complaint id. The whole load
+ * runs in one transaction: it either completes or leaves no rows behind.
+ * </p>
+ *
+ * <p>
+ * Input fields are named after the target columns. Complaint records carry
+ * their source-system id in {@code legacy_id}; note, status update and
+ * attachment records refer to their complaint through
+ * {@code complaint_legacy_id}. Enum columns accept any case and spaces or
+ * hyphens in place of underscores, and are written as the constants of
+ * {@link Complaints.ComplaintStatus}, {@link Complaints.ComplaintPriority},
+ * {@link ComplaintStatusUpdates.ComplaintStatus} and
+ * {@link ComplaintAttachments.DocumentTypes}. Records with missing required
+ * fields or unparseable values are rejected and reported without stopping the
+ * load; related records whose complaint is not part of the load are counted as
+ * orphaned.
+ * </p>
+ */
+public class ComplaintBulkLoader {
+
+	private static final Logger LOGGER = Logger.getLogger(ComplaintBulkLoader.class.getName());
+
+	private static final long PROGRESS_INTERVAL = 100000;
+
+	static final String COMPLAINTS = "complaints";
+	static final String NOTES = "complaint_notes";
+	static final String STATUS_UPDATES = "complaint_status_updates";
+	static final String ATTACHMENTS = "complaint_attachments";
+
+	private static final EnumLookup<ComplaintAttachments.DocumentTypes> ATTACHMENT_TYPE = new EnumLookup<>(
+			ComplaintAttachments.DocumentTypes.class);
+
+	private static final String[] STAGING_DDL = {
+			"CREATE TEMP TABLE bulk_complaints ON COMMIT DROP AS SELECT id, complaint_description, complaint_date, complaint_status, complaint_priority, customer_feedback, resolution_date, product_name, model, serial_number, NULL::text AS legacy_id FROM complaints WITH NO DATA",
+			"ALTER TABLE bulk_complaints ALTER COLUMN id SET DEFAULT nextval(pg_get_serial_sequence('complaints', 'id'))",
+			"CREATE TEMP TABLE bulk_complaint_notes ON COMMIT DROP AS SELECT note_content, created_at, updated_at, NULL::text AS complaint_legacy_id FROM complaint_notes WITH NO DATA",
+			"CREATE TEMP TABLE bulk_complaint_status_updates ON COMMIT DROP AS SELECT update_timestamp, complaint_status, reason_for_change, changed_by_role, NULL::text AS complaint_legacy_id FROM complaint_status_updates WITH NO DATA",
+			"CREATE TEMP TABLE bulk_complaint_attachments ON COMMIT DROP AS SELECT attachment_name, file_type, upload_date, file_size, NULL::text AS complaint_legacy_id FROM complaint_attachments WITH NO DATA" };
+
+	private static final String COPY_COMPLAINTS = "COPY bulk_complaints (legacy_id, complaint_description, complaint_date, complaint_status, complaint_priority, customer_feedback, resolution_date, product_name, model, serial_number) FROM STDIN";
+	private static final String COPY_NOTES = "COPY bulk_complaint_notes (complaint_legacy_id, note_content, created_at, updated_at) FROM STDIN";
+	private static final String COPY_STATUS_UPDATES = "COPY bulk_complaint_status_updates (complaint_legacy_id, update_timestamp, complaint_status, reason_for_change, changed_by_role) FROM STDIN";
+	private static final String COPY_ATTACHMENTS = "COPY bulk_complaint_attachments (complaint_legacy_id, attachment_name, file_type, upload_date, file_size) FROM STDIN";
+
+	private static final String INSERT_COMPLAINTS = "INSERT INTO complaints (id, complaint_description, complaint_date, complaint_status, complaint_priority, customer_feedback, resolution_date, product_name, model, serial_number) SELECT id, complaint_description, complaint_date, complaint_status, complaint_priority, customer_feedback, resolution_date, product_name, model, serial_number FROM bulk_complaints";
+	private static final String INSERT_NOTES = "INSERT INTO complaint_notes (note_content, created_at, updated_at, fk_complaint_id) SELECT n.note_content, n.created_at, n.updated_at, c.id FROM bulk_complaint_notes n JOIN bulk_complaints c ON c.legacy_id = n.complaint_legacy_id";
+	private static final String INSERT_STATUS_UPDATES = "INSERT INTO complaint_status_updates (complaint_id, update_timestamp, complaint_status, reason_for_change, changed_by_role) SELECT c.id, s.update_timestamp, s.complaint_status, s.reason_for_change, s.changed_by_role FROM bulk_complaint_status_updates s JOIN bulk_complaints c ON c.legacy_id = s.complaint_legacy_id";
+	private static final String QUEUE_TREND_REFRESH = "INSERT INTO complaint_trend_queue (complaint_id) SELECT id FROM bulk_complaints ON CONFLICT DO NOTHING";
+	private static final String INDEX_COMPLAINTS = ComplaintSearchDAO.indexSql(ComplaintSearchDAO.Source.COMPLAINT,
+			"complaints WHERE id IN (SELECT id FROM bulk_complaints)");
+	private static final String INDEX_NOTES = ComplaintSearchDAO.indexSql(ComplaintSearchDAO.Source.NOTE,
+			"complaint_notes WHERE fk_complaint_id IN (SELECT id FROM bulk_complaints)");
+	private static final String INSERT_ATTACHMENTS = "INSERT INTO complaint_attachments (attachment_name, file_type, upload_date, file_size, fk_complaint_id) SELECT a.attachment_name, a.file_type, a.upload_date, a.file_size, c.id FROM bulk_complaint_attachments a JOIN bulk_complaints c ON c.legacy_id = a.complaint_legacy_id";
+
+	/**
+	 * Converts one input record into COPY column values.
+	 */
+	private interface RecordConverter {
+		Object[] convert(Map<String, String> record);
+	}
+
+	/**
+	 * Loads files of the given format. Any of the related inputs may be null.
+	 *
+	 * @return the per-table counts and throughput of the load
+	 * @throws IOException  if an input cannot be read or is malformed; nothing is
+	 *                      loaded
+	 * @throws SQLException if the load fails; nothing is loaded
+	 */
+	public BulkLoadReport load(RecordReader.Format format, Path complaints, Path notes, Path statusUpdates,
+			Path attachments) throws IOException, SQLException {
+		try (RecordReader complaintReader = open(complaints, format);
+				RecordReader noteReader = open(notes, format);
+				RecordReader statusReader = open(statusUpdates, format);
+				RecordReader attachmentReader = open(attachments, format)) {
+			return load(complaintReader, noteReader, statusReader, attachmentReader);
+		}
+	}
+
+	/**
+	 * Loads complaints and their related records from already opened readers.
+	 * Any of the related readers may be null. The readers are not closed.
+	 *
+	 * @return the per-table counts and throughput of the load
+	 * @throws IOException  if an input cannot be read or is malformed; nothing is
+	 *                      loaded
+	 * @throws SQLException if the load fails; nothing is loaded
+	 */
+	public BulkLoadReport load(RecordReader complaints, RecordReader notes, RecordReader statusUpdates,
+			RecordReader attachments) throws IOException, SQLException {
+		BulkLoadReport report = new BulkLoadReport();
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			try (Statement stmt = conn.createStatement()) {
+				for (String ddl : STAGING_DDL) {
+					stmt.execute(ddl);
+				}
+
+				copy(conn, COPY_COMPLAINTS, 10, complaints, COMPLAINTS, report, ComplaintBulkLoader::complaintRow);
+				// Duplicate legacy ids would multiply related rows; fail the load instead.
+				stmt.execute("CREATE UNIQUE INDEX ON bulk_complaints (legacy_id)");
+				stmt.execute("ANALYZE bulk_complaints");
+				copy(conn, COPY_NOTES, 4, notes, NOTES, report, ComplaintBulkLoader::noteRow);
+				copy(conn, COPY_STATUS_UPDATES, 5, statusUpdates, STATUS_UPDATES, report,
+						ComplaintBulkLoader::statusUpdateRow);
+				copy(conn, COPY_ATTACHMENTS, 5, attachments, ATTACHMENTS, report, ComplaintBulkLoader::attachmentRow);
+
+				report.recordInserted(COMPLAINTS, stmt.executeUpdate(INSERT_COMPLAINTS));
+				if (notes != null) {
+					report.recordInserted(NOTES, stmt.executeUpdate(INSERT_NOTES));
+				}
+				if (statusUpdates != null) {
+					report.recordInserted(STATUS_UPDATES, stmt.executeUpdate(INSERT_STATUS_UPDATES));
+				}
+				if (attachments != null) {
+					report.recordInserted(ATTACHMENTS, stmt.executeUpdate(INSERT_ATTACHMENTS));
+				}
+				// Counted into complaint_trends by the ComplaintTrendAggregator once committed.
+				stmt.executeUpdate(QUEUE_TREND_REFRESH);
+				stmt.executeUpdate(INDEX_COMPLAINTS);
+				stmt.executeUpdate(INDEX_NOTES);
+				conn.commit();
+			} catch (IOException | SQLException | RuntimeException e) {
+				conn.rollback();
+				LOGGER.log(Level.SEVERE, "Bulk load failed and was rolled back: " + e.getMessage(), e);
+				throw e;
+			} finally {
+				conn.setAutoCommit(autoCommit);
+			}
+		}
+		report.finish();
+		LOGGER.log(Level.INFO, "Bulk load completed: {0}", report);
+		return report;
+	}
+
+	private static RecordReader open(Path path, RecordReader.Format format) throws IOException {
+		return path == null ? null : RecordReader.open(Files.newBufferedReader(path, StandardCharsets.UTF_8), format);
+	}
+
+	private static void copy(Connection conn, String copySql, int columns, RecordReader reader, String table,
+			BulkLoadReport report, RecordConverter converter) throws IOException, SQLException {
+		if (reader == null) {
+			return;
+		}
+		long started = System.nanoTime();
+		try (CopyInWriter writer = new CopyInWriter(conn, copySql, columns)) {
+			Map<String, String> record;
+			while ((record = reader.next()) != null) {
+				report.recordRead(table);
+				Object[] values;
+				try {
+					values = converter.convert(record);
+				} catch (IllegalArgumentException e) {
+					report.recordRejected(table, reader.getLineNumber(), e.getMessage());
+					continue;
+				}
+				writer.writeRow(values);
+				if (writer.getRowCount() % PROGRESS_INTERVAL == 0) {
+					long millis = Math.max(1, (System.nanoTime() - started) / 1000000L);
+					LOGGER.log(Level.INFO, "Bulk load {0}: {1} rows copied, {2} rows/s",
+							new Object[] { table, writer.getRowCount(), writer.getRowCount() * 1000 / millis });
+				}
+			}
+			report.recordCopied(table, writer.finish());
+		}
+	}
+
+	private static Object[] complaintRow(Map<String, String> r) {
+		return new Object[] {
+				r.get("legacy_id"),
+				required(r, "complaint_description"),
+				timestamp(required(r, "complaint_date")),
+				RowMappers.COMPLAINT_STATUS.lookup(enumName(required(r, "complaint_status"))),
+				RowMappers.COMPLAINT_PRIORITY.lookup(enumName(required(r, "complaint_priority"))),
+				r.get("customer_feedback"),
+				timestamp(r.get("resolution_date")),
+				r.get("product_name"),
+				r.get("model"),
+				r.get("serial_number") };
+	}
+
+	private static Object[] noteRow(Map<String, String> r) {
+		return new Object[] {
+				required(r, "complaint_legacy_id"),
+				required(r, "note_content"),
+				timestamp(r.get("created_at")),
+				timestamp(r.get("updated_at")) };
+	}
+
+	private static Object[] statusUpdateRow(Map<String, String> r) {
+		return new Object[] {
+				required(r, "complaint_legacy_id"),
+				timestamp(required(r, "update_timestamp")),
+				RowMappers.STATUS_UPDATE_STATUS.lookup(enumName(required(r, "complaint_status"))),
+				r.get("reason_for_change"),
+				r.get("changed_by_role") };
+	}
+
+	private static Object[] attachmentRow(Map<String, String> r) {
+		String fileSize = r.get("file_size");
+		Double size;
+		try {
+			size = fileSize == null ? null : Double.valueOf(fileSize.trim());
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid file_size '" + fileSize + "'");
+		}
+		return new Object[] {
+				required(r, "complaint_legacy_id"),
+				required(r, "attachment_name"),
+				ATTACHMENT_TYPE.lookup(enumName(r.get("file_type"))),
+				timestamp(r.get("upload_date")),
+				size };
+	}
+
+	private static String required(Map<String, String> record, String field) {
+		String value = record.get(field);
+		if (value == null || value.trim().isEmpty()) {
+			throw new IllegalArgumentException("Missing required field " + field);
+		}
+		return value;
+	}
+
+	private static String enumName(String value) {
+		return value == null ? null : value.trim().replace(' ', '_').replace('-', '_');
+	}
+
+	/**
+	 * Parses an ISO date, date-time or offset date-time and returns it in the
+	 * form PostgreSQL expects for a timestamp without time zone. Offsets are
+	 * converted to the JVM time zone, as {@code setTimestamp} would.
+	 */
+	private static String timestamp(String value) {
+		if (value == null) {
+			return null;
+		}
+		String text = value.trim();
+		try {
+			if (text.length() == 10) {
+				return Timestamp.valueOf(LocalDate.parse(text).atStartOfDay()).toString();
+			}
+			String iso = text.replace(' ', 'T');
+			try {
+				return Timestamp.valueOf(LocalDateTime.parse(iso)).toString();
+			} catch (DateTimeParseException e) {
+				return Timestamp.valueOf(OffsetDateTime.parse(iso).atZoneSameInstant(ZoneId.systemDefault())
+						.toLocalDateTime()).toString();
+			}
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Invalid timestamp '" + value + "'");
+		}
+	}
+}
@@ -2,7 +2,8 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import utils.StatementBinder;
 import java.sql.*;
 import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
@@ -17,18 +18,16 @@ public class ComplaintCategoriesDAO {
 	 * @param description A textual description of the complaint category.
 	 */
 	public boolean createComplaintCategory(String categoryName, String description) {
-	    Connection conn = DatabaseUtility.connect();
 	    String query = "INSERT INTO complaint_categories (category_name, description, created_at, updated_at) VALUES (?, ?, NOW(), NOW())";
-	    try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-	        pstmt.setString(1, categoryName);
-	        pstmt.setString(2, description);
-	        int affectedRows = pstmt.executeUpdate();
+	    try {
+	        int affectedRows = JdbcTemplate.update(query, JdbcTemplate.params(categoryName, description));
+	        if (affectedRows > 0) {
+	            ReferenceDataCache.categoriesChanged();
+	        }
 	        return affectedRows > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error creating complaint category", e);
 	        return false;
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
 	}
 	
@@ -38,65 +37,51 @@ public class ComplaintCategoriesDAO {
 	 * complaint categorization or filtering by category might be required,
 	 * facilitating comprehensive analytics and reporting.
 	 *
+	 * Results are copied from {@link ReferenceDataCache}.
+	 *
 	 * @return A list of ComplaintCategories objects.
 	 */
 	public List<ComplaintCategories> fetchAllComplaintCategories() {
-	    List<ComplaintCategories> categories = new ArrayList<>();
 	    String sql = "SELECT * FROM complaint_categories";
-	    try (Connection conn = DatabaseUtility.connect();
-	         PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        ResultSet rs = pstmt.executeQuery();
-	        while (rs.next()) {
-	            ComplaintCategories category = new ComplaintCategories();
-	            category.setId(rs.getInt("id"));
-	            category.setCategoryName(rs.getString("category_name"));
-	            category.setDescription(rs.getString("description"));
-	            category.setCreatedAt(rs.getTimestamp("created_at"));
-	            category.setUpdatedAt(rs.getTimestamp("updated_at"));
-	            categories.add(category);
-	        }
+	    try {
+	        return ReferenceDataCache.CATEGORIES.get(ReferenceDataCache.ALL,
+	                () -> JdbcTemplate.query(sql, StatementBinder.NONE, RowMappers.COMPLAINT_CATEGORIES));
 	    } catch (SQLException e) {
 	        Logger.getLogger(ComplaintCategoriesDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect();
 	    }
-	    return categories;
+	    return new ArrayList<>();
 	}
-	
+
 	/**
 	 * Allows for the modification of existing complaint categories in the system.
 	 *
 	 * @param id The unique identifier of the complaint category to be updated.
 	 * @param categoryName The new name for the complaint category.
 	 * @param description The updated textual description of the complaint category.
+	 * If the name changes, the category's complaints are queued for {@link ComplaintTrendAggregator}
+	 * in the same statement, as trends count them under the category name.
 	 * @return boolean indicating the success of the update operation.
 	 */
 	public boolean updateComplaintCategory(int id, String categoryName, String description) {
-	    Connection conn = DatabaseUtility.connect();
-	    PreparedStatement pstmt = null;
-	    boolean updateSuccess = false;
-	    String sql = "UPDATE complaint_categories SET category_name = ?, description = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?;";
+	    // The old row is read from the statement's snapshot, before the update.
+	    String sql = "WITH old AS (SELECT id, category_name FROM complaint_categories WHERE id = ?"
+	            + "), updated AS ("
+	            + " UPDATE complaint_categories SET category_name = ?, description = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?"
+	            + " RETURNING id, category_name"
+	            + "), renamed AS ("
+	            + " SELECT c.id FROM complaints c JOIN updated u ON u.id = c.category_id JOIN old o ON o.id = u.id"
+	            + " WHERE u.category_name IS DISTINCT FROM o.category_name"
+	            + "), queued AS (" + ComplaintTrendAggregator.enqueueSql("renamed") + ")"
+	            + " SELECT id FROM updated";
 	    try {
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setString(1, categoryName);
-	        pstmt.setString(2, description);
-	        pstmt.setInt(3, id);
-	
-	        int rowsAffected = pstmt.executeUpdate();
-	        if (rowsAffected > 0) {
-	            updateSuccess = true;
+	        if (JdbcTemplate.queryForObject(sql, JdbcTemplate.params(id, categoryName, description, id), RowMappers.IDS) != null) {
+	            ReferenceDataCache.categoriesChanged();
+	            return true;
 	        }
 	    } catch (SQLException e) {
 	        Logger.getLogger(ComplaintCategoriesDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        try {
-	            if (pstmt != null) pstmt.close();
-	        } catch (SQLException e) {
-	            Logger.getLogger(ComplaintCategoriesDAO.class.getName()).log(Level.SEVERE, null, e);
-	        }
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return updateSuccess;
+	    return false;
 	}
 	
 	/**
@@ -104,29 +89,16 @@ public class ComplaintCategoriesDAO {
 	 * @param id The unique identifier of the complaint category to be deleted.
 	 */
 	public boolean deleteComplaintCategory(int id) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean isDeleted = false;
-	
+	    String sql = "DELETE FROM complaint_categories WHERE id = ?;";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "DELETE FROM complaint_categories WHERE id = ?;";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setInt(1, id);
-	
-	        // Execute the delete operation
-	        int rowsAffected = pstmt.executeUpdate();
-	        if(rowsAffected > 0) {
-	            isDeleted = true;
+	        if (JdbcTemplate.update(sql, pstmt -> pstmt.setInt(1, id)) > 0) {
+	            ReferenceDataCache.categoriesChanged();
+	            return true;
 	        }
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error deleting complaint category", e);
-	    } finally {
-	        // Close resources
-	        DatabaseUtility.closeQuietly(pstmt);
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return isDeleted;
+	    return false;
 	}
 	
 	/**
@@ -135,25 +107,12 @@ public class ComplaintCategoriesDAO {
 	 * @return A ComplaintCategories object containing details of the requested category.
 	 */
 	public ComplaintCategories fetchComplaintCategoryById(int id) {
-	    ComplaintCategories category = null;
-	    Connection conn = DatabaseUtility.connect();
 	    String sql = "SELECT id, category_name, description, created_at, updated_at FROM complaint_categories WHERE id = ?;";
-	    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setInt(1, id);
-	        ResultSet rs = pstmt.executeQuery();
-	        if (rs.next()) {
-	            category = new ComplaintCategories();
-	            category.setId(rs.getInt("id"));
-	            category.setCategoryName(rs.getString("category_name"));
-	            category.setDescription(rs.getString("description"));
-	            category.setCreatedAt(rs.getTimestamp("created_at"));
-	            category.setUpdatedAt(rs.getTimestamp("updated_at"));
-	        }
+	    try {
+	        return JdbcTemplate.queryForObject(sql, pstmt -> pstmt.setInt(1, id), RowMappers.COMPLAINT_CATEGORIES);
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error fetching complaint category by ID", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return category;
+	    return null;
 	}
 }
@@ -0,0 +1,240 @@
+package dao;
+
+import utils.ApplicationProperties;
+import utils.JdbcTemplate;
+import utils.LshIndex;
+import utils.MinHash;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds likely duplicates of a complaint at intake, such as the same adverse
+ * event reported by the patient, the pharmacist and the distributor, so that
+ * they can be linked before investigators open separate cases.
+ *
+ * <p>
+ * A complaint is reduced to a token set: the character shingles of its
+ * description, of length {@code dedup.shingleLength}, plus its product, model
+ * and serial number, each repeated {@code dedup.identityWeight} times so that
+ * they count about as much as a sentence of description. The
+ * {@link MinHash} signature of that set goes into an in-memory
+ * {@link LshIndex} of {@code dedup.bands} bands of {@code dedup.rows} values,
+ * and {@link #findCandidates} returns the stored complaints whose estimated
+ * Jaccard similarity is at least {@code dedup.minSimilarity}. A lookup hashes
+ * one description and probes one chain per band, and never touches the
+ * database.
+ * </p>
+ *
+ * <p>
+ * {@link #rebuild()} loads the complaints of the last {@code dedup.lookbackDays}
+ * days and should run at startup; until it has, the first lookup runs it. If
+ * that fails, lookups find nothing and do not load again for
+ * {@code dedup.retryDelayMillis}. Complaints created through
+ * {@link ComplaintsDAO} are added as they are created. Complaints loaded in
+ * bulk, and the ageing out of old complaints, are picked up by the next
+ * rebuild. A complaint with no description shingles and no identity fields
+ * has nothing to compare, so it is neither indexed nor looked up.
+ * </p>
+ */
+public final class ComplaintDuplicateDetector {
+
+	private static final Logger LOGGER = Logger.getLogger(ComplaintDuplicateDetector.class.getName());
+
+	private static final int BANDS = ApplicationProperties.getInt("dedup.bands", 16);
+	private static final int ROWS = ApplicationProperties.getInt("dedup.rows", 4);
+	private static final long SEED = ApplicationProperties.getLong("dedup.seed", 0x5DEECE66DL);
+	private static final int SHINGLE_LENGTH = ApplicationProperties.getInt("dedup.shingleLength", 5);
+	private static final int IDENTITY_WEIGHT = ApplicationProperties.getInt("dedup.identityWeight", 20);
+	private static final double MIN_SIMILARITY = ApplicationProperties.getDouble("dedup.minSimilarity", 0.5);
+	private static final int MAX_CANDIDATES = ApplicationProperties.getInt("dedup.maxCandidates", 10);
+	private static final int LOOKBACK_DAYS = ApplicationProperties.getInt("dedup.lookbackDays", 365);
+	private static final long RETRY_DELAY_MILLIS = ApplicationProperties.getLong("dedup.retryDelayMillis", 60000L);
+
+	private static final String LOAD_SQL =
+			"SELECT id, complaint_description, product_name, model, serial_number FROM complaints WHERE complaint_date >= ?";
+
+	private static final MinHash MIN_HASH = new MinHash(BANDS * ROWS, SEED);
+
+	/** Complaints added while a rebuild was loading, applied after it. Also guards the fields below. */
+	private static final List<Object[]> PENDING = new ArrayList<>();
+	private static boolean rebuilding;
+	private static volatile LshIndex index = new LshIndex(BANDS, ROWS);
+	private static volatile boolean loaded;
+	/** When a lookup may next load the index after a failed load; 0 if it has not failed. */
+	private static volatile long retryAt;
+
+	/** A stored complaint that may describe the same event. */
+	public static final class Candidate {
+		private final long complaintId;
+		private final double similarity;
+
+		Candidate(long complaintId, double similarity) {
+			this.complaintId = complaintId;
+			this.similarity = similarity;
+		}
+
+		public long getComplaintId() {
+			return complaintId;
+		}
+
+		/**
+		 * @return the estimated similarity of the two complaints, from
+		 *         {@code dedup.minSimilarity} to 1
+		 */
+		public double getSimilarity() {
+			return similarity;
+		}
+
+		@Override
+		public String toString() {
+			return "Candidate{complaintId=" + complaintId + ", similarity=" + String.format("%.2f", similarity) + '}';
+		}
+	}
+
+	private ComplaintDuplicateDetector() {
+	}
+
+	/**
+	 * Finds stored complaints similar to one being taken in.
+	 *
+	 * @return the candidates, most similar first, at most
+	 *         {@code dedup.maxCandidates}; empty if none, if the complaint
+	 *         has no tokens or if the index could not be loaded
+	 */
+	public static List<Candidate> findCandidates(String complaintDescription, String productName, String model,
+			String serialNumber) {
+		List<Candidate> candidates = new ArrayList<>();
+		Set<String> tokens = tokens(complaintDescription, productName, model, serialNumber);
+		if (tokens.isEmpty()) {
+			return candidates;
+		}
+		if (!loaded && System.currentTimeMillis() >= retryAt) {
+			ensureLoaded();
+		}
+		int[] signature = MIN_HASH.signature(tokens);
+		for (LshIndex.Match match : index.query(signature, MIN_SIMILARITY, MAX_CANDIDATES)) {
+			candidates.add(new Candidate(match.getId(), match.getSimilarity()));
+		}
+		return candidates;
+	}
+
+	/**
+	 * Adds a created complaint, or replaces it after its description changed.
+	 * Ignored until the index has been loaded, which includes it anyway. A
+	 * complaint whose new text has no tokens is removed instead.
+	 */
+	public static void add(long complaintId, String complaintDescription, String productName, String model,
+			String serialNumber) {
+		Set<String> tokens = tokens(complaintDescription, productName, model, serialNumber);
+		if (tokens.isEmpty()) {
+			remove(complaintId);
+			return;
+		}
+		int[] signature = MIN_HASH.signature(tokens);
+		synchronized (PENDING) {
+			if (rebuilding) {
+				PENDING.add(new Object[] { complaintId, signature });
+			} else if (loaded) {
+				index.put(complaintId, signature);
+			}
+		}
+	}
+
+	public static void remove(long complaintId) {
+		synchronized (PENDING) {
+			if (rebuilding) {
+				PENDING.add(new Object[] { complaintId, null });
+			} else {
+				index.remove(complaintId);
+			}
+		}
+	}
+
+	/**
+	 * Reloads the index from the complaints of the last
+	 * {@code dedup.lookbackDays} days. Lookups see the old contents until it
+	 * has finished.
+	 *
+	 * @return the number of complaints read, including any without tokens, or
+	 *         -1 on error
+	 */
+	public static synchronized long rebuild() {
+		synchronized (PENDING) {
+			rebuilding = true;
+		}
+		LshIndex fresh = new LshIndex(BANDS, ROWS);
+		long indexed = -1;
+		try {
+			indexed = JdbcTemplate.forEach(LOAD_SQL, ps -> ps.setDate(1, Date.valueOf(LocalDate.now().minusDays(LOOKBACK_DAYS))),
+					RowMappers.COMPLAINTS, complaint -> {
+						Set<String> tokens = tokens(complaint.getComplaintDescription(), complaint.getProductName(),
+								complaint.getModel(), complaint.getSerialNumber());
+						if (!tokens.isEmpty()) {
+							fresh.put(complaint.getId(), MIN_HASH.signature(tokens));
+						}
+					});
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error loading the complaint duplicate index", e);
+		}
+		synchronized (PENDING) {
+			if (indexed >= 0) {
+				index = fresh;
+				loaded = true;
+				retryAt = 0;
+			} else if (!loaded) {
+				retryAt = System.currentTimeMillis() + RETRY_DELAY_MILLIS;
+			}
+			for (Object[] change : PENDING) {
+				if (change[1] == null) {
+					index.remove((Long) change[0]);
+				} else {
+					index.put((Long) change[0], (int[]) change[1]);
+				}
+			}
+			PENDING.clear();
+			rebuilding = false;
+		}
+		return indexed;
+	}
+
+	private static synchronized void ensureLoaded() {
+		// The first lookup has nothing to search, so it waits; lookups queued
+		// behind it find the index loaded, or the load just failed.
+		if (!loaded && System.currentTimeMillis() >= retryAt) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * @return the number of complaints in the index
+	 */
+	public static int size() {
+		return index.size();
+	}
+
+	static Set<String> tokens(String complaintDescription, String productName, String model, String serialNumber) {
+		Set<String> tokens = MinHash.shingles(complaintDescription, SHINGLE_LENGTH);
+		addIdentity(tokens, "product", productName);
+		addIdentity(tokens, "model", model);
+		addIdentity(tokens, "serial", serialNumber);
+		return tokens;
+	}
+
+	private static void addIdentity(Set<String> tokens, String field, String value) {
+		if (value == null || value.trim().isEmpty()) {
+			return;
+		}
+		String normalized = value.trim().toLowerCase(Locale.ROOT);
+		// Shingles hold only letters, digits and spaces, so these never collide with them.
+		for (int i = 0; i < IDENTITY_WEIGHT; i++) {
+			tokens.add("\u0000" + field + ':' + normalized + '#' + i);
+		}
+	}
+}
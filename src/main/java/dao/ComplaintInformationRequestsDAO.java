@@ -2,7 +2,7 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
 import java.sql.*;
 import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
@@ -17,47 +17,13 @@ public class ComplaintInformationRequestsDAO {
 	 * @return A list of ComplaintInformationRequests objects.
 	 */
 	public List<ComplaintInformationRequests> fetchComplaintInformationRequests(int complaintId) {
-	    List<ComplaintInformationRequests> informationRequests = new ArrayList<>();
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    ResultSet rs = null;
+	    String sql = "SELECT * FROM complaint_information_requests WHERE fk_complaint_id = ?;";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "SELECT * FROM complaint_information_requests WHERE fk_complaint_id = ?;";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setInt(1, complaintId);
-	        rs = pstmt.executeQuery();
-	        while (rs.next()) {
-	            ComplaintInformationRequests request = new ComplaintInformationRequests();
-	            request.setId(rs.getInt("id"));
-	            request.setRequestDate(rs.getTimestamp("request_date"));
-	            request.setRequestStatus(ComplaintInformationRequests.CommunicationStatus.valueOf(rs.getString("request_status")));
-	            request.setRequestType(rs.getString("request_type"));
-	            request.setResponseDueDate(rs.getDate("response_due_date"));
-	            request.setFollowUpCount(rs.getInt("follow_up_count"));
-	            request.setCustomMessage(rs.getString("custom_message"));
-	            informationRequests.add(request);
-	        }
+	        return JdbcTemplate.query(sql, pstmt -> pstmt.setInt(1, complaintId), RowMappers.COMPLAINT_INFORMATION_REQUESTS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(ComplaintInformationRequestsDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        if (pstmt != null) {
-	            try {
-	                pstmt.close();
-	            } catch (SQLException e) {
-	                Logger.getLogger(ComplaintInformationRequestsDAO.class.getName()).log(Level.SEVERE, null, e);
-	            }
-	        }
-	        if (rs != null) {
-	            try {
-	                rs.close();
-	            } catch (SQLException e) {
-	                Logger.getLogger(ComplaintInformationRequestsDAO.class.getName()).log(Level.SEVERE, null, e);
-	            }
-	        }
 	    }
-	    return informationRequests;
+	    return new ArrayList<>();
 	}
 	
 	/**
@@ -71,31 +37,24 @@ public class ComplaintInformationRequestsDAO {
 	 * @param complaintId The unique identifier of the complaint to which this information request is linked.
 	 * @return boolean Returns true if the operation is successful, false otherwise.
 	 */
-	public boolean createInformationRequest(Timestamp requestDate, CommunicationStatus requestStatus, String requestType, Date responseDueDate, int followUpCount, String customMessage, int complaintId) {
-	    Connection conn = DatabaseUtility.connect();
-	    boolean isSuccess = false;
+	public boolean createInformationRequest(Timestamp requestDate, ComplaintInformationRequests.CommunicationStatus requestStatus, String requestType, Date responseDueDate, int followUpCount, String customMessage, int complaintId) {
 	    String sql = "INSERT INTO complaint_information_requests (request_date, request_status, request_type, response_due_date, follow_up_count, custom_message, fk_complaint_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
-	    
-	    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setTimestamp(1, requestDate);
-	        pstmt.setString(2, requestStatus.name());
-	        pstmt.setString(3, requestType);
-	        pstmt.setDate(4, new java.sql.Date(responseDueDate.getTime()));
-	        pstmt.setInt(5, followUpCount);
-	        pstmt.setString(6, customMessage);
-	        pstmt.setInt(7, complaintId);
-	        
-	        int affectedRows = pstmt.executeUpdate();
-	        isSuccess = affectedRows > 0;
+	    try {
+	        return JdbcTemplate.update(sql, pstmt -> {
+	            pstmt.setTimestamp(1, requestDate);
+	            pstmt.setString(2, requestStatus.name());
+	            pstmt.setString(3, requestType);
+	            pstmt.setDate(4, new java.sql.Date(responseDueDate.getTime()));
+	            pstmt.setInt(5, followUpCount);
+	            pstmt.setString(6, customMessage);
+	            pstmt.setInt(7, complaintId);
+	        }) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(ComplaintInformationRequestsDAO.class.getName()).log(Level.SEVERE, "Error creating information request", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return isSuccess;
+	    return false;
 	}
-	
-	
+
 	/**
 	 * Updates the status of an existing information request.
 	 * @param requestId The unique identifier of the information request being updated.
@@ -103,23 +62,13 @@ public class ComplaintInformationRequestsDAO {
 	 * @return true if the update was successful, false otherwise.
 	 */
 	public boolean updateInformationRequestStatus(int requestId, ComplaintInformationRequests.CommunicationStatus newStatus) {
-	    Connection conn = DatabaseUtility.connect();
-	    boolean updateResult = false;
 	    String query = "UPDATE complaint_information_requests SET request_status = ? WHERE id = ?;";
-	    try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-	        pstmt.setString(1, newStatus.toString());
-	        pstmt.setInt(2, requestId);
-	
-	        int rowAffected = pstmt.executeUpdate();
-	        if (rowAffected == 1) {
-	            updateResult = true;
-	        }
+	    try {
+	        return JdbcTemplate.update(query, JdbcTemplate.params(newStatus, requestId)) == 1;
 	    } catch (SQLException ex) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return updateResult;
+	    return false;
 	}
 	
 	/**
@@ -127,24 +76,12 @@ public class ComplaintInformationRequestsDAO {
 	 * @param requestId The unique identifier of the information request to be deleted.
 	 */
 	public boolean deleteInformationRequest(int requestId) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean success = false;
 	    String sql = "DELETE FROM complaint_information_requests WHERE id = ?;";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setInt(1, requestId);
-	        int affectedRows = pstmt.executeUpdate();
-	        if (affectedRows > 0) {
-	            success = true;
-	        }
+	        return JdbcTemplate.update(sql, pstmt -> pstmt.setInt(1, requestId)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error deleting information request", e);
-	    } finally {
-	        DatabaseUtility.closePreparedStatement(pstmt);
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return success;
+	    return false;
 	}
 }
@@ -2,7 +2,7 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
 import java.sql.*;
 import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
@@ -11,7 +11,6 @@ import java.util.List;
 public class ComplaintNotesDAO {
 
 	
-	
 	/**
 	 * Saves assessment notes made by an officer on a complaint to the database.
 	 * @param noteContent The actual text of the assessment officer's review notes.
@@ -21,29 +20,14 @@ public class ComplaintNotesDAO {
 	 * @return boolean indicating success or failure of the operation.
 	 */
 	public boolean saveComplaintNote(String noteContent, Timestamp createdAt, Timestamp updatedAt, int fkComplaintId) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean isSaved = false;
+	    String sql = "WITH saved AS (INSERT INTO complaint_notes (note_content, created_at, updated_at, fk_complaint_id) VALUES (?, ?, ?, ?) RETURNING *) "
+	            + ComplaintSearchDAO.indexSql(ComplaintSearchDAO.Source.NOTE, "saved");
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "INSERT INTO complaint_notes (note_content, created_at, updated_at, fk_complaint_id) VALUES (?, ?, ?, ?)";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setString(1, noteContent);
-	        pstmt.setTimestamp(2, createdAt);
-	        pstmt.setTimestamp(3, updatedAt);
-	        pstmt.setInt(4, fkComplaintId);
-	
-	        int rowsAffected = pstmt.executeUpdate();
-	        if (rowsAffected > 0) {
-	            isSaved = true;
-	        }
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(noteContent, createdAt, updatedAt, fkComplaintId)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.closeStatement(pstmt);
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return isSaved;
+	    return false;
 	}
 	
 	/**
@@ -52,31 +36,15 @@ public class ComplaintNotesDAO {
 	 * @return A list of ComplaintNotes objects associated with the given complaint ID.
 	 */
 	public List<ComplaintNotes> fetchAllComplaintNotes(int complaintId) {
-	  List<ComplaintNotes> notes = new ArrayList<>();
 	  String sql = "SELECT * FROM complaint_notes WHERE fk_complaint_id = ?";
-	  try (Connection conn = DatabaseUtility.connect();
-	      PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	      pstmt.setInt(1, complaintId);
-	      ResultSet rs = pstmt.executeQuery();
-	      while (rs.next()) {
-	          ComplaintNotes note = new ComplaintNotes();
-	          note.setId(rs.getInt("id"));
-	          note.setNoteContent(rs.getString("note_content"));
-	          note.setCreatedAt(rs.getTimestamp("created_at"));
-	          note.setUpdatedAt(rs.getTimestamp("updated_at"));
-	          note.setFkComplaint(new Complaints()); // Placeholder for related complaint object
-	          note.getFkComplaint().setId(rs.getInt("fk_complaint_id"));
-	          notes.add(note);
-	      }
+	  try {
+	      return JdbcTemplate.query(sql, pstmt -> pstmt.setInt(1, complaintId), RowMappers.COMPLAINT_NOTES);
 	  } catch (SQLException e) {
 	      Logger.getLogger(ComplaintNotesDAO.class.getName()).log(Level.SEVERE, null, e);
-	  } finally {
-	      DatabaseUtility.disconnect(conn);
 	  }
-	  return notes;
+	  return new ArrayList<>();
 	}
-	
-	
+
 	/**
 	 * Updates an existing complaint note in the database.
 	 * @param id The unique identifier of the complaint note to be updated.
@@ -84,33 +52,14 @@ public class ComplaintNotesDAO {
 	 * @param updatedAt The new timestamp marking the latest update to the note.
 	 */
 	public boolean updateComplaintNote(int id, String noteContent, Timestamp updatedAt) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean updateSuccess = false;
+	    String sql = "WITH saved AS (UPDATE complaint_notes SET note_content = ?, updated_at = ? WHERE id = ? RETURNING *) "
+	            + ComplaintSearchDAO.indexSql(ComplaintSearchDAO.Source.NOTE, "saved");
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "UPDATE complaint_notes SET note_content = ?, updated_at = ? WHERE id = ?";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setString(1, noteContent);
-	        pstmt.setTimestamp(2, updatedAt);
-	        pstmt.setInt(3, id);
-	        int rowsAffected = pstmt.executeUpdate();
-	        if (rowsAffected > 0) {
-	            updateSuccess = true;
-	        }
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(noteContent, updatedAt, id)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        try {
-	            if (pstmt != null) {
-	                pstmt.close();
-	            }
-	        } catch (SQLException e) {
-	            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	        }
 	    }
-	    return updateSuccess;
+	    return false;
 	}
 	
 	/*
@@ -118,31 +67,13 @@ public class ComplaintNotesDAO {
 	 @param id The unique identifier of the complaint note to be deleted.
 	*/
 	public boolean deleteComplaintNote(int id) {
-	  Connection conn = null;
-	  PreparedStatement pstmt = null;
-	  boolean isSuccess = false;
+	  String sql = "WITH deleted AS (DELETE FROM complaint_notes WHERE id = ? RETURNING id), unindexed AS ("
+	      + ComplaintSearchDAO.unindexSql(ComplaintSearchDAO.Source.NOTE, "deleted") + ") SELECT id FROM deleted";
 	  try {
-	    conn = DatabaseUtility.connect();
-	    String sql = "DELETE FROM complaint_notes WHERE id = ?;";
-	    pstmt = conn.prepareStatement(sql);
-	    pstmt.setInt(1, id);
-	
-	    int rowsAffected = pstmt.executeUpdate();
-	    if (rowsAffected > 0) {
-	      isSuccess = true;
-	    }
+	    return JdbcTemplate.queryForObject(sql, pstmt -> pstmt.setInt(1, id), RowMappers.IDS) != null;
 	  } catch (SQLException e) {
 	    Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Failed to delete complaint note", e);
-	  } finally {
-	    DatabaseUtility.disconnect(conn);
-	    if (pstmt != null) {
-	      try {
-	        pstmt.close();
-	      } catch (SQLException e) {
-	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Failed to close PreparedStatement", e);
-	      }
-	    }
 	  }
-	  return isSuccess;
+	  return false;
 	}
 }
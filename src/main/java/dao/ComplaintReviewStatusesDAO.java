@@ -2,11 +2,9 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
 import java.sql.*;
-import java.util.logging.*;import java.sql.PreparedStatement;
-import java.sql.SQLException;
-import java.util.ArrayList;
+import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
 
 
@@ -21,28 +19,13 @@ public class ComplaintReviewStatusesDAO {
 	 * Used in the Review and Closure Module page, specifically within the Complaint Review Checklist section.
 	 */
 	public ComplaintReviewStatuses findComplaintDetailsById(long complaintId) {
-	    ComplaintReviewStatuses reviewStatus = null;
-	    Connection conn = DatabaseUtility.connect();
+	    String query = "SELECT * FROM complaint_review_statuses WHERE fk_complaint_id = ?";
 	    try {
-	        String query = "SELECT * FROM complaint_review_statuses WHERE fk_complaint_id = ?";
-	        PreparedStatement pstmt = conn.prepareStatement(query);
-	        pstmt.setLong(1, complaintId);
-	        ResultSet rs = pstmt.executeQuery();
-	        if (rs.next()) {
-	            reviewStatus = new ComplaintReviewStatuses();
-	            reviewStatus.setId(rs.getInt("id"));
-	            reviewStatus.setReviewStatus(rs.getBoolean("review_status"));
-	            reviewStatus.setReviewNotes(rs.getString("review_notes"));
-	            reviewStatus.setReviewDate(rs.getDate("review_date"));
-	            // Assuming Complaints object initialization here
-	            // reviewStatus.setFkComplaintId(...);
-	        }
+	        return JdbcTemplate.queryForObject(query, pstmt -> pstmt.setLong(1, complaintId), RowMappers.COMPLAINT_REVIEW_STATUSES);
 	    } catch (SQLException e) {
 	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error fetching complaint review details by ID", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return reviewStatus;
+	    return null;
 	}
 	
 	/**
@@ -53,21 +36,11 @@ public class ComplaintReviewStatusesDAO {
 	* @return boolean indicating the success of the operation.
 	*/
 	public boolean saveComplaintReviewStatus(long complaintId, boolean reviewStatus, String reviewNotes) {
-	    Connection conn = DatabaseUtility.connect();
 	    String sql = "UPDATE complaint_review_statuses SET review_status = ?, review_notes = ? WHERE fk_complaint_id = ?";
-	    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setBoolean(1, reviewStatus);
-	        pstmt.setString(2, reviewNotes);
-	        pstmt.setLong(3, complaintId);
-	
-	        int affectedRows = pstmt.executeUpdate();
-	        if (affectedRows > 0) {
-	            return true;
-	        }
+	    try {
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(reviewStatus, reviewNotes, complaintId)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error updating complaint review status", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
 	    return false;
 	}
@@ -76,27 +49,21 @@ public class ComplaintReviewStatusesDAO {
 	 * Retrieves a list of required documents for completing the review based on the provided complaint ID.
 	 * @param complaintId The unique ID of the complaint for which required documents for the review are being retrieved.
 	 * @return A list of DocumentDetail objects representing the required documents for the review.
+	 * @see DocumentPreviewsDAO#fetchForComplaint(long, int) for each document's text excerpt and preview, without downloading it.
 	 */
 	public List<DocumentDetail> getAllRequiredDocumentsForReview(long complaintId) {
-	    Connection conn = null;
+	    String sql = "SELECT document_name, document_type, upload_time FROM documents WHERE fk_complaint_id = ?";
 	    List<DocumentDetail> documentDetails = new ArrayList<>();
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "SELECT document_name, document_type, upload_date FROM documents WHERE fk_complaint_id = ?";
-	        PreparedStatement pstmt = conn.prepareStatement(sql);
-	        pstmt.setLong(1, complaintId);
-	        ResultSet rs = pstmt.executeQuery();
-	        while (rs.next()) {
+	        for (Documents document : JdbcTemplate.query(sql, pstmt -> pstmt.setLong(1, complaintId), RowMappers.DOCUMENTS)) {
 	            DocumentDetail detail = new DocumentDetail();
-	            detail.setDocumentName(rs.getString("document_name"));
-	            detail.setDocumentType(rs.getString("document_type"));
-	            detail.setUploadDate(rs.getDate("upload_date"));
+	            detail.setDocumentName(document.getDocumentName());
+	            detail.setDocumentType(document.getDocumentType() != null ? document.getDocumentType().name() : null);
+	            detail.setUploadDate(document.getUploadTime());
 	            documentDetails.add(detail);
 	        }
 	    } catch (SQLException e) {
-	        Logger.getLogger(DatabaseUtility.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
+	        Logger.getLogger(ComplaintReviewStatusesDAO.class.getName()).log(Level.SEVERE, null, e);
 	    }
 	    return documentDetails;
 	}
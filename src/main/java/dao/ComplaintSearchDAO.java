@@ -0,0 +1,258 @@
+package dao;
+
+
+import model.*;
+import utils.ApplicationProperties;
+import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Full-text search over complaint descriptions, complaint notes,
+ * investigation records and the text of complaint documents, for
+ * investigators looking for prior similar cases.
+ *
+ * <p>
+ * Every searchable row has an entry in complaint_search_index holding its
+ * text as a tsvector under a GIN index, with the complaint it belongs to.
+ * Complaint descriptions weigh most, then investigation summaries, then notes
+ * and investigator notes, then document text extracted by
+ * {@link DocumentDerivationPipeline}. The entries are written by the code
+ * that writes the text, in the same statement, using
+ * {@link #indexSql(Source, String)}; the status and date filters read the
+ * complaint itself, so status changes never touch the index.
+ * {@link #reindexAll(Source)} fills the index for existing rows.
+ * </p>
+ *
+ * <p>
+ * Queries use web search syntax: words are matched by stem, a quoted
+ * {@code "phrase"} must appear in that order, {@code or} gives alternatives and
+ * {@code -word} excludes. Results are complaints ranked by the summed cover
+ * density of their matching entries, with a highlighted excerpt of the
+ * description.
+ * </p>
+ */
+public class ComplaintSearchDAO {
+
+	private static final Logger LOGGER = Logger.getLogger(ComplaintSearchDAO.class.getName());
+
+	public static final int MAX_RESULTS = 100;
+
+	/** The text search configuration, from {@code search.textConfig}. */
+	private static final String TEXT_CONFIG = "CAST('" + textConfig(ApplicationProperties.getString("search.textConfig", "english"))
+			+ "' AS regconfig)";
+
+	/**
+	 * The tables whose text is indexed, with the expressions giving each row's
+	 * complaint and weighted document.
+	 */
+	public enum Source {
+		COMPLAINT("complaint", "complaints", "id", "setweight(to_tsvector(" + TEXT_CONFIG + ", coalesce(complaint_description, '')), 'A')"),
+		NOTE("note", "complaint_notes", "fk_complaint_id", "setweight(to_tsvector(" + TEXT_CONFIG + ", coalesce(note_content, '')), 'C')"),
+		INVESTIGATION("investigation", "investigation_records", "fk_complaint_id",
+				"setweight(to_tsvector(" + TEXT_CONFIG + ", coalesce(investigation_summary, '')), 'B')"
+						+ " || setweight(to_tsvector(" + TEXT_CONFIG + ", coalesce(investigator_notes, '')), 'C')"),
+		DOCUMENT("document", "document_derivatives", "fk_complaint_id",
+				"setweight(to_tsvector(" + TEXT_CONFIG + ", coalesce(extracted_text, '')), 'D')");
+
+		private final String label;
+		private final String table;
+		private final String complaintIdColumn;
+		private final String documentExpression;
+
+		Source(String label, String table, String complaintIdColumn, String documentExpression) {
+			this.label = label;
+			this.table = table;
+			this.complaintIdColumn = complaintIdColumn;
+			this.documentExpression = documentExpression;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+
+		public String getTable() {
+			return table;
+		}
+	}
+
+	/** The index table and its indexes. Idempotent. */
+	public static final String[] SCHEMA_DDL = {
+			"CREATE TABLE IF NOT EXISTS complaint_search_index (source text NOT NULL, source_id bigint NOT NULL,"
+					+ " complaint_id bigint NOT NULL, document tsvector NOT NULL, PRIMARY KEY (source, source_id))",
+			"CREATE INDEX IF NOT EXISTS idx_complaint_search_index_document ON complaint_search_index USING gin (document)",
+			"CREATE INDEX IF NOT EXISTS idx_complaint_search_index_complaint ON complaint_search_index (complaint_id)" };
+
+	/**
+	 * Creates the index table if it does not exist.
+	 *
+	 * @return true if the schema is in place
+	 */
+	public static boolean installSchema() {
+	    try (Connection conn = DatabaseUtility.getConnection(); Statement stmt = conn.createStatement()) {
+	        for (String ddl : SCHEMA_DDL) {
+	            stmt.execute(ddl);
+	        }
+	        return true;
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error installing complaint search schema", e);
+	        return false;
+	    }
+	}
+
+	/**
+	 * Builds the statement that indexes rows of a source, for use as the main
+	 * statement or a data-modifying WITH query after the write that produced
+	 * the rows. It affects one row per indexed row.
+	 *
+	 * @param source The table the rows come from.
+	 * @param rows A FROM clause yielding full rows of that table, such as a
+	 *             WITH query over {@code RETURNING *}, optionally with a WHERE
+	 *             clause.
+	 * @return The INSERT statement, without parameters.
+	 */
+	static String indexSql(Source source, String rows) {
+	    return "INSERT INTO complaint_search_index (source, source_id, complaint_id, document)"
+	            + " SELECT '" + source.label + "', id, " + source.complaintIdColumn + ", " + source.documentExpression
+	            + " FROM " + rows
+	            + " ON CONFLICT (source, source_id) DO UPDATE SET complaint_id = EXCLUDED.complaint_id, document = EXCLUDED.document";
+	}
+
+	/**
+	 * Builds the statement that removes index entries for deleted rows, for
+	 * use as a data-modifying WITH query.
+	 *
+	 * @param source The table the rows were deleted from.
+	 * @param deletedIds A WITH query or subquery yielding the deleted ids as {@code id}.
+	 * @return The DELETE statement, without parameters.
+	 */
+	static String unindexSql(Source source, String deletedIds) {
+	    return "DELETE FROM complaint_search_index WHERE source = '" + source.label + "' AND source_id IN (SELECT id FROM "
+	            + deletedIds + ")";
+	}
+
+	/**
+	 * Indexes the given rows of a source again, for writers that cannot index
+	 * in their own statement such as JDBC batches.
+	 *
+	 * @return false on error; the rows are then found once they are next
+	 *         written or by {@link #reindexAll(Source)}
+	 */
+	public static boolean reindex(Source source, Collection<Long> ids) {
+	    if (ids.isEmpty()) {
+	        return true;
+	    }
+	    try (Connection conn = DatabaseUtility.getConnection()) {
+	        reindex(conn, source, ids);
+	        return true;
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error indexing " + ids.size() + " " + source.getTable() + " rows for search", e);
+	        return false;
+	    }
+	}
+
+	/**
+	 * Indexes the given rows of a source again on a caller-managed connection,
+	 * so that a batch writer's rows and their index entries commit together.
+	 */
+	static void reindex(Connection conn, Source source, Collection<Long> ids) throws SQLException {
+	    if (ids.isEmpty()) {
+	        return;
+	    }
+	    String sql = indexSql(source, source.getTable() + " WHERE id = ANY(?)");
+	    JdbcTemplate.update(conn, sql, ps -> ps.setArray(1, conn.createArrayOf("bigint", ids.toArray())));
+	}
+
+	/**
+	 * Indexes every row of a source, for the first installation or after
+	 * changing {@code search.textConfig}.
+	 *
+	 * @return the number of rows indexed, or -1 on error
+	 */
+	public static int reindexAll(Source source) {
+	    try {
+	        return JdbcTemplate.update(indexSql(source, source.getTable()), ps -> {
+	        });
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error indexing " + source.getTable() + " for search", e);
+	        return -1;
+	    }
+	}
+
+	/**
+	 * Searches complaints by the text of their descriptions, notes and
+	 * investigation records.
+	 * @param query The search terms in web search syntax; quoted text is matched as a phrase.
+	 * @param statuses The complaint statuses to keep, or null or empty for all.
+	 * @param from The earliest complaint date to keep, or null.
+	 * @param to The complaint date to keep complaints before, or null.
+	 * @param limit The maximum number of results, capped at {@link #MAX_RESULTS}.
+	 * @return The matching complaints, best first; empty if none matched or the search failed.
+	 */
+	public List<ComplaintSearchHit> searchComplaints(String query, List<Complaints.ComplaintStatus> statuses, Date from, Date to, int limit) {
+	    if (query == null || query.trim().isEmpty()) {
+	        return new ArrayList<>();
+	    }
+	    boolean byStatus = statuses != null && !statuses.isEmpty();
+	    StringBuilder sql = new StringBuilder("WITH q AS (SELECT websearch_to_tsquery(" + TEXT_CONFIG + ", ?) AS query), ranked AS ("
+	            + " SELECT s.complaint_id, SUM(ts_rank_cd(s.document, q.query)) AS rank, string_agg(DISTINCT s.source, ',') AS matched_in"
+	            + " FROM q, complaint_search_index s JOIN complaints c ON c.id = s.complaint_id"
+	            + " WHERE s.document @@ q.query");
+	    if (byStatus) {
+	        sql.append(" AND c.complaint_status = ANY(CAST(? AS complaint_status[]))");
+	    }
+	    if (from != null) {
+	        sql.append(" AND c.complaint_date >= ?");
+	    }
+	    if (to != null) {
+	        sql.append(" AND c.complaint_date < ?");
+	    }
+	    // Excerpts are only built for the complaints returned.
+	    sql.append(" GROUP BY s.complaint_id ORDER BY rank DESC, s.complaint_id DESC LIMIT ?)"
+	            + " SELECT c.id, c.complaint_description, c.complaint_date, c.complaint_status, c.product_name, r.rank, r.matched_in,"
+	            + " ts_headline(" + TEXT_CONFIG + ", coalesce(c.complaint_description, ''), q.query,"
+	            + " 'MaxFragments=2, MinWords=5, MaxWords=20') AS headline"
+	            + " FROM ranked r JOIN complaints c ON c.id = r.complaint_id, q ORDER BY r.rank DESC, c.id DESC");
+	    int resultLimit = Math.max(1, Math.min(limit, MAX_RESULTS));
+	    try {
+	        return JdbcTemplate.query(sql.toString(), pstmt -> {
+	            int i = 1;
+	            pstmt.setString(i++, query);
+	            if (byStatus) {
+	                String[] names = new String[statuses.size()];
+	                for (int s = 0; s < names.length; s++) {
+	                    names[s] = statuses.get(s).name();
+	                }
+	                pstmt.setArray(i++, pstmt.getConnection().createArrayOf("text", names));
+	            }
+	            if (from != null) {
+	                pstmt.setDate(i++, from);
+	            }
+	            if (to != null) {
+	                pstmt.setDate(i++, to);
+	            }
+	            pstmt.setInt(i, resultLimit);
+	        }, RowMappers.COMPLAINT_SEARCH_HITS);
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error searching complaints", e);
+	    }
+	    return new ArrayList<>();
+	}
+
+	private static String textConfig(String name) {
+	    // Spliced into DDL-like expressions, so only a plain identifier is accepted.
+	    if (!name.matches("[a-z_]+")) {
+	        throw new IllegalArgumentException("Invalid text search configuration: " + name);
+	    }
+	    return name;
+	}
+}
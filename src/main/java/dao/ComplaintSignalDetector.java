@@ -0,0 +1,373 @@
+package dao;
+
+import utils.ApplicationProperties;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Detects spikes in complaint volume per product, model and serial number
+ * prefix as complaints are created, so that pharmacovigilance hears about a
+ * spike within minutes instead of spotting it in the trend tables.
+ *
+ * <p>
+ * Every complaint counts towards three keys: its product name, its product and
+ * model, and its product and the first {@code signals.serialPrefixLength}
+ * characters of its serial number, which usually identify the lot. Counts are
+ * kept per key in fixed windows of {@code signals.windowMillis}. Each closed
+ * window updates an exponentially weighted mean and variance of the key's
+ * window count (weight {@code signals.ewmaAlpha}) and a one-sided CUSUM of its
+ * standardized excess over that mean; windows that raise the CUSUM are kept
+ * out of the baseline until it returns to zero, and after a CUSUM alert the
+ * baseline restarts at the new level. A key raises an alert
+ * </p>
+ * <ul>
+ * <li>{@link Trigger#THRESHOLD} as soon as the open window's count exceeds the
+ * mean by {@code signals.threshold} standard deviations, and</li>
+ * <li>{@link Trigger#CUSUM} when a window closes with the CUSUM above
+ * {@code signals.cusumLimit}, which catches sustained moderate rises that no
+ * single window shows.</li>
+ * </ul>
+ * <p>
+ * No key alerts before {@code signals.warmupWindows} windows of history or
+ * below {@code signals.minCount} complaints in a window, and each key alerts
+ * at most once per window. The standard deviation is floored at the square
+ * root of the mean, as for a Poisson count, so that a flat history does not
+ * make any increase an alert.
+ * </p>
+ *
+ * <p>
+ * State is held in memory only, in primitive arrays indexed through one map
+ * from key to slot: a few counters per key, and no database access per
+ * complaint. Windows close lazily when a key next sees a complaint. After a
+ * restart baselines are learned again, and at most {@code signals.maxKeys}
+ * keys are tracked. Alerts go to every registered {@link AlertSink}, outside
+ * the detector's lock; the default sink logs them.
+ * </p>
+ */
+public final class ComplaintSignalDetector {
+
+	private static final Logger LOGGER = Logger.getLogger(ComplaintSignalDetector.class.getName());
+
+	private static final long WINDOW_MILLIS = ApplicationProperties.getLong("signals.windowMillis", 900000);
+	private static final double EWMA_ALPHA = ApplicationProperties.getDouble("signals.ewmaAlpha", 0.1);
+	private static final int WARMUP_WINDOWS = ApplicationProperties.getInt("signals.warmupWindows", 8);
+	private static final int MIN_COUNT = ApplicationProperties.getInt("signals.minCount", 5);
+	private static final double THRESHOLD = ApplicationProperties.getDouble("signals.threshold", 4.0);
+	private static final double CUSUM_SLACK = ApplicationProperties.getDouble("signals.cusumSlack", 0.5);
+	private static final double CUSUM_LIMIT = ApplicationProperties.getDouble("signals.cusumLimit", 5.0);
+	private static final int SERIAL_PREFIX_LENGTH = ApplicationProperties.getInt("signals.serialPrefixLength", 6);
+	private static final int MAX_KEYS = ApplicationProperties.getInt("signals.maxKeys", 200000);
+
+	/**
+	 * Empty windows after which the mean has decayed to a few percent of its
+	 * value; a key idle for longer restarts from there instead of closing
+	 * every missed window.
+	 */
+	private static final int MAX_CATCH_UP_WINDOWS = (int) Math.ceil(4 / EWMA_ALPHA);
+
+	/** What an alert's key is made of. */
+	public enum KeyType {
+		PRODUCT, MODEL, SERIAL_PREFIX
+	}
+
+	/** Which test raised an alert. */
+	public enum Trigger {
+		THRESHOLD, CUSUM
+	}
+
+	/**
+	 * Receives alerts. Called on the thread that created the complaint, so
+	 * implementations should hand slow work off.
+	 */
+	@FunctionalInterface
+	public interface AlertSink {
+		void onAlert(SignalAlert alert);
+	}
+
+	/** A detected spike for one key and window. */
+	public static final class SignalAlert {
+		private final KeyType keyType;
+		private final String key;
+		private final Trigger trigger;
+		private final long windowStart;
+		private final int count;
+		private final double baseline;
+		private final double standardDeviation;
+		private final double score;
+
+		SignalAlert(KeyType keyType, String key, Trigger trigger, long windowStart, int count, double baseline,
+				double standardDeviation, double score) {
+			this.keyType = keyType;
+			this.key = key;
+			this.trigger = trigger;
+			this.windowStart = windowStart;
+			this.count = count;
+			this.baseline = baseline;
+			this.standardDeviation = standardDeviation;
+			this.score = score;
+		}
+
+		public KeyType getKeyType() {
+			return keyType;
+		}
+
+		/**
+		 * @return the product name, {@code product/model} or
+		 *         {@code product/serialPrefix}
+		 */
+		public String getKey() {
+			return key;
+		}
+
+		public Trigger getTrigger() {
+			return trigger;
+		}
+
+		/**
+		 * @return the start of the window, in epoch milliseconds
+		 */
+		public long getWindowStart() {
+			return windowStart;
+		}
+
+		/**
+		 * @return the complaints counted in the window when the alert was raised
+		 */
+		public int getCount() {
+			return count;
+		}
+
+		/**
+		 * @return the expected count per window before this one
+		 */
+		public double getBaseline() {
+			return baseline;
+		}
+
+		public double getStandardDeviation() {
+			return standardDeviation;
+		}
+
+		/**
+		 * @return the z-score for {@link Trigger#THRESHOLD}, the CUSUM for
+		 *         {@link Trigger#CUSUM}
+		 */
+		public double getScore() {
+			return score;
+		}
+
+		@Override
+		public String toString() {
+			return "SignalAlert{" + keyType + " '" + key + "' " + trigger + ", windowStart=" + windowStart + ", count=" + count
+					+ ", baseline=" + String.format("%.2f", baseline) + ", sd=" + String.format("%.2f", standardDeviation)
+					+ ", score=" + String.format("%.2f", score) + '}';
+		}
+	}
+
+	private static final List<AlertSink> SINKS = new CopyOnWriteArrayList<>();
+	private static final Baselines BASELINES = new Baselines();
+
+	static {
+		SINKS.add(alert -> LOGGER.log(Level.WARNING, "Complaint volume spike: {0}", alert));
+	}
+
+	private ComplaintSignalDetector() {
+	}
+
+	/**
+	 * Registers a sink to receive every alert, in addition to the log.
+	 */
+	public static void addSink(AlertSink sink) {
+		SINKS.add(sink);
+	}
+
+	public static void removeSink(AlertSink sink) {
+		SINKS.remove(sink);
+	}
+
+	/**
+	 * Counts a complaint created now.
+	 *
+	 * @param productName  the complaint's product; complaints without one are
+	 *                     not counted
+	 * @param model        the product model, or null
+	 * @param serialNumber the unit's serial number, or null
+	 */
+	public static void record(String productName, String model, String serialNumber) {
+		record(productName, model, serialNumber, System.currentTimeMillis());
+	}
+
+	static void record(String productName, String model, String serialNumber, long nowMillis) {
+		if (productName == null || productName.trim().isEmpty()) {
+			return;
+		}
+		String product = productName.trim();
+		List<SignalAlert> alerts = new ArrayList<>(0);
+		long window = Math.floorDiv(nowMillis, WINDOW_MILLIS);
+		synchronized (BASELINES) {
+			BASELINES.count(KeyType.PRODUCT, product, window, alerts);
+			if (model != null && !model.trim().isEmpty()) {
+				BASELINES.count(KeyType.MODEL, product + "/" + model.trim(), window, alerts);
+			}
+			if (serialNumber != null && serialNumber.trim().length() >= SERIAL_PREFIX_LENGTH) {
+				BASELINES.count(KeyType.SERIAL_PREFIX, product + "/" + serialNumber.trim().substring(0, SERIAL_PREFIX_LENGTH),
+						window, alerts);
+			}
+		}
+		for (SignalAlert alert : alerts) {
+			for (AlertSink sink : SINKS) {
+				try {
+					sink.onAlert(alert);
+				} catch (RuntimeException e) {
+					LOGGER.log(Level.SEVERE, "Signal alert sink failed", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return the number of keys tracked
+	 */
+	public static int keyCount() {
+		synchronized (BASELINES) {
+			return BASELINES.size;
+		}
+	}
+
+	/**
+	 * Per-key window counts and baselines in parallel arrays, indexed by the
+	 * slot {@link #slots} assigns each key. Guarded by its own monitor.
+	 */
+	private static final class Baselines {
+		private final Map<String, Integer> slots = new HashMap<>();
+		private KeyType[] keyTypes = new KeyType[1024];
+		private String[] keys = new String[1024];
+		private long[] windows = new long[1024];
+		private int[] counts = new int[1024];
+		private int[] history = new int[1024];
+		private double[] means = new double[1024];
+		private double[] variances = new double[1024];
+		private double[] cusums = new double[1024];
+		private long[] alertedWindows = new long[1024];
+		private int size;
+		private boolean full;
+
+		void count(KeyType keyType, String key, long window, List<SignalAlert> alerts) {
+			int slot = slot(keyType, key, window);
+			if (slot < 0) {
+				return;
+			}
+			roll(slot, window, alerts);
+			int count = ++counts[slot];
+			if (history[slot] < WARMUP_WINDOWS || count < MIN_COUNT || alertedWindows[slot] == window) {
+				return;
+			}
+			double sd = standardDeviation(slot);
+			double z = (count - means[slot]) / sd;
+			if (z > THRESHOLD) {
+				alertedWindows[slot] = window;
+				alerts.add(new SignalAlert(keyType, key, Trigger.THRESHOLD, window * WINDOW_MILLIS, count, means[slot], sd, z));
+			}
+		}
+
+		private int slot(KeyType keyType, String key, long window) {
+			String mapKey = keyType.ordinal() + key;
+			Integer slot = slots.get(mapKey);
+			if (slot != null) {
+				return slot;
+			}
+			if (size >= MAX_KEYS) {
+				if (!full) {
+					full = true;
+					LOGGER.log(Level.WARNING, "Complaint signal detector is tracking {0} keys; new keys are ignored", size);
+				}
+				return -1;
+			}
+			if (size == keys.length) {
+				grow();
+			}
+			slot = size++;
+			slots.put(mapKey, slot);
+			keyTypes[slot] = keyType;
+			keys[slot] = key;
+			windows[slot] = window;
+			alertedWindows[slot] = Long.MIN_VALUE;
+			return slot;
+		}
+
+		/** Closes the key's windows before {@code window}. */
+		private void roll(int slot, long window, List<SignalAlert> alerts) {
+			long missed = window - windows[slot];
+			if (missed <= 0) {
+				return;
+			}
+			close(slot, alerts);
+			for (long i = 1; i < Math.min(missed, MAX_CATCH_UP_WINDOWS); i++) {
+				windows[slot]++;
+				close(slot, alerts);
+			}
+			windows[slot] = window;
+		}
+
+		private void close(int slot, List<SignalAlert> alerts) {
+			int count = counts[slot];
+			counts[slot] = 0;
+			if (history[slot] == 0) {
+				means[slot] = count;
+				history[slot] = 1;
+				return;
+			}
+			double mean = means[slot];
+			double sd = standardDeviation(slot);
+			cusums[slot] = Math.max(0, cusums[slot] + (count - mean) / sd - CUSUM_SLACK);
+			if (history[slot] >= WARMUP_WINDOWS && count >= MIN_COUNT && cusums[slot] > CUSUM_LIMIT) {
+				if (alertedWindows[slot] != windows[slot]) {
+					alertedWindows[slot] = windows[slot];
+					alerts.add(new SignalAlert(keyTypes[slot], keys[slot], Trigger.CUSUM, windows[slot] * WINDOW_MILLIS, count,
+							mean, sd, cusums[slot]));
+					// The shift has been reported; take the new level as the baseline.
+					means[slot] = count;
+				}
+				// Otherwise the window was a one-off spike already reported by
+				// the threshold test, and is left out of the baseline.
+				cusums[slot] = 0;
+				return;
+			}
+			if (cusums[slot] > 0 && history[slot] >= WARMUP_WINDOWS) {
+				// Keep a possible shift out of the baseline until the CUSUM
+				// either confirms or dismisses it.
+				return;
+			}
+			double diff = count - mean;
+			double increment = EWMA_ALPHA * diff;
+			means[slot] = mean + increment;
+			variances[slot] = (1 - EWMA_ALPHA) * (variances[slot] + diff * increment);
+			if (history[slot] < WARMUP_WINDOWS) {
+				history[slot]++;
+			}
+		}
+
+		private double standardDeviation(int slot) {
+			return Math.sqrt(Math.max(variances[slot], Math.max(means[slot], 1)));
+		}
+
+		private void grow() {
+			int capacity = keys.length * 2;
+			keyTypes = Arrays.copyOf(keyTypes, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+			windows = Arrays.copyOf(windows, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			history = Arrays.copyOf(history, capacity);
+			means = Arrays.copyOf(means, capacity);
+			variances = Arrays.copyOf(variances, capacity);
+			cusums = Arrays.copyOf(cusums, capacity);
+			alertedWindows = Arrays.copyOf(alertedWindows, capacity);
+		}
+	}
+}
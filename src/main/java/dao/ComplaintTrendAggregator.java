@@ -0,0 +1,474 @@
+package dao;
+
+import utils.ApplicationProperties;
+import utils.DatabaseUtility;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps complaint_trends up to date incrementally, so that the dashboards read
+ * by {@link ComplaintTrendsDAO} are minutes rather than a day behind and no
+ * job ever recomputes them over the whole complaints table.
+ *
+ * <p>
+ * Every complaint contributes one count to a bucket per configured
+ * {@link TimeFrame}, keyed by the period of its complaint date, its category
+ * name (the trend's complaint type), status and priority; resolved complaints
+ * also contribute their resolution time in days. The contribution last
+ * applied for each complaint is kept in complaint_trend_contributions. When a
+ * complaint changes, its id goes into complaint_trend_queue, and
+ * {@link #refresh(int)} reads the complaint's current state, subtracts the old
+ * contribution and adds the new one. Because each refresh reconciles against
+ * the complaint as it is now, it does not matter in which order, how late or
+ * how often changes arrive.
+ * </p>
+ *
+ * <p>
+ * Changes reach the queue in three ways: {@link ComplaintsDAO#createComplaint},
+ * {@link ComplaintsDAO#updateComplaintStatus},
+ * {@link ComplaintSubcategoriesDAO#updateComplaintsSubCategory} and
+ * {@link ComplaintCategoriesDAO#updateComplaintCategory}, for a renamed
+ * category's complaints, queue the ids in the same statement as their write,
+ * through {@link #enqueueSql}; batch and bulk intake call {@link #enqueue}; and
+ * {@link #sweepStatusUpdates()} queues every complaint that gained a
+ * complaint_status_updates row, which covers writers outside this DAO. The
+ * sweep re-reads the last {@code trends.statusLogLookback} rows each time so
+ * that history rows committed out of id order are not missed.
+ * </p>
+ *
+ * <p>
+ * customer_satisfaction_score has no source in the complaints table and is
+ * left to whatever maintains it today.
+ * </p>
+ */
+public final class ComplaintTrendAggregator {
+
+	private static final Logger LOGGER = Logger.getLogger(ComplaintTrendAggregator.class.getName());
+
+	/**
+	 * The periods trends are bucketed by, with the {@code to_char} pattern that
+	 * renders a complaint date as the time_frame value and the
+	 * {@code date_trunc} unit that gives the period's first day.
+	 */
+	public enum TimeFrame {
+		DAY("YYYY-MM-DD", "day"), WEEK("IYYY-\"W\"IW", "week"), MONTH("YYYY-MM", "month"),
+		QUARTER("YYYY-\"Q\"Q", "quarter"), YEAR("YYYY", "year");
+
+		private final String pattern;
+		private final String unit;
+
+		TimeFrame(String pattern, String unit) {
+			this.pattern = pattern;
+			this.unit = unit;
+		}
+
+		public String getPattern() {
+			return pattern;
+		}
+
+		public String getUnit() {
+			return unit;
+		}
+
+		/**
+		 * @return the time frame whose {@link #getUnit()} is the given unit
+		 */
+		public static TimeFrame forUnit(String unit) {
+			for (TimeFrame timeFrame : values()) {
+				if (timeFrame.unit.equals(unit)) {
+					return timeFrame;
+				}
+			}
+			throw new IllegalArgumentException("No time frame with unit " + unit);
+		}
+
+		/**
+		 * @return the first day of the period after the one starting on
+		 *         {@code start}
+		 */
+		public LocalDate next(LocalDate start) {
+			switch (this) {
+			case DAY:
+				return start.plusDays(1);
+			case WEEK:
+				return start.plusWeeks(1);
+			case MONTH:
+				return start.plusMonths(1);
+			case QUARTER:
+				return start.plusMonths(3);
+			case YEAR:
+			default:
+				return start.plusYears(1);
+			}
+		}
+
+		/**
+		 * @return the time_frame value {@link #getPattern()} gives for the date
+		 */
+		public String label(LocalDate date) {
+			switch (this) {
+			case DAY:
+				return date.toString();
+			case WEEK:
+				return String.format("%04d-W%02d", date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+			case MONTH:
+				return String.format("%04d-%02d", date.getYear(), date.getMonthValue());
+			case QUARTER:
+				return String.format("%04d-Q%d", date.getYear(), date.get(IsoFields.QUARTER_OF_YEAR));
+			case YEAR:
+			default:
+				return String.format("%04d", date.getYear());
+			}
+		}
+	}
+
+	public static final int BATCH_SIZE = ApplicationProperties.getInt("trends.batchSize", 1000);
+	private static final long REFRESH_INTERVAL_MILLIS = ApplicationProperties.getLong("trends.refreshIntervalMillis", 5000);
+	private static final long STATUS_LOG_LOOKBACK = ApplicationProperties.getLong("trends.statusLogLookback", 200);
+	private static final List<TimeFrame> TIME_FRAMES = timeFrames(
+			ApplicationProperties.getString("trends.timeFrames", "WEEK,MONTH,QUARTER,YEAR"));
+
+	private static final String STATUS_LOG_SOURCE = "complaint_status_updates";
+
+	/**
+	 * Tables and columns the aggregation needs, in execution order. Idempotent.
+	 * The contribution table copies the complaint status and priority types
+	 * from complaints.
+	 */
+	public static final String[] SCHEMA_DDL = {
+			"CREATE TABLE IF NOT EXISTS complaint_trend_queue (complaint_id bigint PRIMARY KEY, queued_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP)",
+			"CREATE TABLE IF NOT EXISTS complaint_trend_contributions AS SELECT CAST(id AS bigint) AS complaint_id, CAST(complaint_date AS date) AS complaint_date, CAST(NULL AS text) AS complaint_type, complaint_status, complaint_priority, CAST(NULL AS double precision) AS resolution_days FROM complaints WITH NO DATA",
+			"CREATE UNIQUE INDEX IF NOT EXISTS idx_complaint_trend_contributions_id ON complaint_trend_contributions (complaint_id)",
+			"CREATE SEQUENCE IF NOT EXISTS complaint_trend_change_seq",
+			"ALTER TABLE complaint_trend_contributions ADD COLUMN IF NOT EXISTS sub_category text",
+			"ALTER TABLE complaint_trend_contributions ADD COLUMN IF NOT EXISTS product_name text",
+			"ALTER TABLE complaint_trend_contributions ADD COLUMN IF NOT EXISTS change_seq bigint NOT NULL DEFAULT nextval('complaint_trend_change_seq')",
+			"CREATE INDEX IF NOT EXISTS idx_complaint_trend_contributions_seq ON complaint_trend_contributions (change_seq)",
+			"ALTER TABLE complaint_trend_contributions ADD COLUMN IF NOT EXISTS serial_number text",
+			"CREATE INDEX IF NOT EXISTS idx_complaint_trend_contributions_bucket ON complaint_trend_contributions (complaint_type, COALESCE(product_name, ''), complaint_date)",
+			"CREATE TABLE IF NOT EXISTS complaint_trend_sketch_queue (unit text NOT NULL, period_start date NOT NULL, complaint_type text NOT NULL,"
+					+ " product_name text NOT NULL, PRIMARY KEY (unit, period_start, complaint_type, product_name))",
+			"CREATE TABLE IF NOT EXISTS complaint_trend_sketches (time_frame text NOT NULL, complaint_type text NOT NULL, product_name text NOT NULL,"
+					+ " complaint_count bigint NOT NULL, serial_numbers bytea NOT NULL, resolution_days bytea NOT NULL,"
+					+ " updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP, PRIMARY KEY (time_frame, complaint_type, product_name))",
+			"CREATE TABLE IF NOT EXISTS complaint_trend_watermarks (source text PRIMARY KEY, last_id bigint NOT NULL)",
+			"INSERT INTO complaint_trend_watermarks (source, last_id) VALUES ('" + STATUS_LOG_SOURCE + "', 0) ON CONFLICT DO NOTHING",
+			"ALTER TABLE complaint_trends ADD COLUMN IF NOT EXISTS resolved_count bigint NOT NULL DEFAULT 0",
+			"ALTER TABLE complaint_trends ADD COLUMN IF NOT EXISTS resolution_time_sum double precision NOT NULL DEFAULT 0",
+			"CREATE UNIQUE INDEX IF NOT EXISTS idx_complaint_trends_bucket ON complaint_trends (time_frame, complaint_type, complaint_status, complaint_priority)" };
+
+	/**
+	 * Takes a batch of queued complaints, skipping any another refresh holds,
+	 * and applies the difference between their stored and current
+	 * contributions in one statement. Buckets are upserted in key order so
+	 * that concurrent refreshes cannot deadlock. Unchanged contributions cancel
+	 * out and write nothing. A contribution that changes gets a new
+	 * change_seq, and one whose complaint is gone is kept with a null date, so
+	 * that {@link ComplaintTrendCube} can follow the table. The sketch buckets
+	 * of every changed contribution, before and after, are queued for
+	 * {@link ComplaintTrendSketches}.
+	 */
+	private static final String REFRESH_SQL =
+			"WITH picked AS ("
+			+ " DELETE FROM complaint_trend_queue q WHERE q.complaint_id IN ("
+			+ " SELECT complaint_id FROM complaint_trend_queue ORDER BY complaint_id LIMIT ? FOR UPDATE SKIP LOCKED)"
+			+ " RETURNING q.complaint_id"
+			+ "), old AS ("
+			+ " SELECT t.* FROM complaint_trend_contributions t JOIN picked p ON p.complaint_id = t.complaint_id"
+			+ "), cur AS ("
+			+ " SELECT CAST(c.id AS bigint) AS complaint_id, CAST(c.complaint_date AS date) AS complaint_date,"
+			+ " COALESCE(cat.category_name, 'Uncategorized') AS complaint_type, c.complaint_status, c.complaint_priority,"
+			+ " EXTRACT(EPOCH FROM CAST(c.resolution_date AS timestamp) - CAST(c.complaint_date AS timestamp)) / 86400.0 AS resolution_days,"
+			+ " sub.sub_category_name AS sub_category, c.product_name, c.serial_number"
+			+ " FROM complaints c JOIN picked p ON p.complaint_id = c.id"
+			+ " LEFT JOIN complaint_categories cat ON cat.id = c.category_id"
+			+ " LEFT JOIN complaint_subcategories sub ON sub.id = c.sub_category_id"
+			+ " WHERE c.complaint_date IS NOT NULL"
+			+ "), saved AS ("
+			+ " INSERT INTO complaint_trend_contributions AS t (complaint_id, complaint_date, complaint_type, complaint_status, complaint_priority, resolution_days,"
+			+ " sub_category, product_name, serial_number)"
+			+ " SELECT complaint_id, complaint_date, complaint_type, complaint_status, complaint_priority, resolution_days, sub_category, product_name, serial_number"
+			+ " FROM cur"
+			+ " ON CONFLICT (complaint_id) DO UPDATE SET complaint_date = EXCLUDED.complaint_date, complaint_type = EXCLUDED.complaint_type,"
+			+ " complaint_status = EXCLUDED.complaint_status, complaint_priority = EXCLUDED.complaint_priority, resolution_days = EXCLUDED.resolution_days,"
+			+ " sub_category = EXCLUDED.sub_category, product_name = EXCLUDED.product_name, serial_number = EXCLUDED.serial_number,"
+			+ " change_seq = nextval('complaint_trend_change_seq')"
+			+ " WHERE (t.complaint_date, t.complaint_type, t.complaint_status, t.complaint_priority, t.resolution_days, t.sub_category, t.product_name,"
+			+ " t.serial_number)"
+			+ " IS DISTINCT FROM (EXCLUDED.complaint_date, EXCLUDED.complaint_type, EXCLUDED.complaint_status, EXCLUDED.complaint_priority,"
+			+ " EXCLUDED.resolution_days, EXCLUDED.sub_category, EXCLUDED.product_name, EXCLUDED.serial_number)"
+			+ " RETURNING t.complaint_id"
+			+ "), removed AS ("
+			+ " UPDATE complaint_trend_contributions t SET complaint_date = NULL, change_seq = nextval('complaint_trend_change_seq') FROM old o"
+			+ " WHERE t.complaint_id = o.complaint_id AND o.complaint_date IS NOT NULL"
+			+ " AND NOT EXISTS (SELECT 1 FROM cur WHERE cur.complaint_id = o.complaint_id)"
+			+ " RETURNING t.complaint_id"
+			+ "), deltas AS ("
+			+ " SELECT complaint_date, complaint_type, complaint_status, complaint_priority, -1 AS n, resolution_days FROM old"
+			+ " WHERE complaint_date IS NOT NULL"
+			+ " UNION ALL"
+			+ " SELECT complaint_date, complaint_type, complaint_status, complaint_priority, 1, resolution_days FROM cur"
+			+ "), framed AS ("
+			+ " SELECT to_char(d.complaint_date, f.pattern) AS time_frame, d.complaint_type, d.complaint_status, d.complaint_priority,"
+			+ " SUM(d.n) AS count_delta, SUM(CASE WHEN d.resolution_days IS NULL THEN 0 ELSE d.n END) AS resolved_delta,"
+			+ " SUM(d.n * COALESCE(d.resolution_days, 0)) AS resolution_delta"
+			+ " FROM deltas d CROSS JOIN unnest(CAST(? AS text[])) AS f(pattern)"
+			+ " GROUP BY 1, 2, 3, 4"
+			+ " HAVING SUM(d.n) <> 0 OR SUM(CASE WHEN d.resolution_days IS NULL THEN 0 ELSE d.n END) <> 0"
+			+ " OR SUM(d.n * COALESCE(d.resolution_days, 0)) <> 0"
+			+ "), applied AS ("
+			+ " INSERT INTO complaint_trends AS t (time_frame, complaint_type, complaint_status, complaint_priority,"
+			+ " complaint_count, resolved_count, resolution_time_sum, average_resolution_time)"
+			+ " SELECT time_frame, complaint_type, complaint_status, complaint_priority, count_delta, resolved_delta, resolution_delta,"
+			+ " CASE WHEN resolved_delta > 0 THEN resolution_delta / resolved_delta ELSE 0 END"
+			+ " FROM framed ORDER BY 1, 2, 3, 4"
+			+ " ON CONFLICT (time_frame, complaint_type, complaint_status, complaint_priority) DO UPDATE SET"
+			+ " complaint_count = t.complaint_count + EXCLUDED.complaint_count,"
+			+ " resolved_count = t.resolved_count + EXCLUDED.resolved_count,"
+			+ " resolution_time_sum = t.resolution_time_sum + EXCLUDED.resolution_time_sum,"
+			+ " average_resolution_time = CASE WHEN t.resolved_count + EXCLUDED.resolved_count > 0"
+			+ " THEN (t.resolution_time_sum + EXCLUDED.resolution_time_sum) / (t.resolved_count + EXCLUDED.resolved_count) ELSE 0 END"
+			+ "), changed AS ("
+			+ " SELECT complaint_id FROM saved UNION SELECT complaint_id FROM removed"
+			+ "), stale AS ("
+			+ " INSERT INTO complaint_trend_sketch_queue (unit, period_start, complaint_type, product_name)"
+			+ " SELECT DISTINCT f.unit, CAST(date_trunc(f.unit, s.complaint_date) AS date), s.complaint_type, COALESCE(s.product_name, '')"
+			+ " FROM (SELECT complaint_id, complaint_date, complaint_type, product_name FROM old WHERE complaint_date IS NOT NULL"
+			+ " UNION ALL SELECT complaint_id, complaint_date, complaint_type, product_name FROM cur) s"
+			+ " JOIN changed ON changed.complaint_id = s.complaint_id"
+			+ " CROSS JOIN unnest(CAST(? AS text[])) AS f(unit)"
+			+ " ON CONFLICT DO NOTHING"
+			+ ")"
+			+ " SELECT count(*) FROM picked";
+
+	private static final String SWEEP_SQL =
+			"WITH w AS ("
+			+ " SELECT last_id FROM complaint_trend_watermarks WHERE source = ? FOR UPDATE"
+			+ "), scanned AS ("
+			+ " SELECT u.id, u.complaint_id FROM complaint_status_updates u, w WHERE u.id > w.last_id - ?"
+			+ "), queued AS ("
+			+ " INSERT INTO complaint_trend_queue (complaint_id) SELECT DISTINCT complaint_id FROM scanned WHERE complaint_id IS NOT NULL"
+			+ " ON CONFLICT DO NOTHING"
+			+ ")"
+			+ " UPDATE complaint_trend_watermarks SET last_id = GREATEST(last_id, (SELECT COALESCE(MAX(id), 0) FROM scanned))"
+			+ " WHERE source = ?";
+
+	private static volatile Thread worker;
+	private static volatile boolean running;
+
+	private ComplaintTrendAggregator() {
+	}
+
+	/**
+	 * Creates the aggregation tables and columns if they do not exist.
+	 *
+	 * @return true if the schema is in place
+	 */
+	public static boolean installSchema() {
+		try (Connection conn = DatabaseUtility.getConnection(); Statement stmt = conn.createStatement()) {
+			for (String ddl : SCHEMA_DDL) {
+				stmt.execute(ddl);
+			}
+			return true;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error installing complaint trend schema", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Builds the statement that queues complaints, for use after a
+	 * data-modifying WITH query. A complaint that is already queued counts as
+	 * affected, so the statement's update count is the number of rows given.
+	 *
+	 * @param rows a FROM clause yielding the complaint ids as {@code id}
+	 */
+	static String enqueueSql(String rows) {
+		return "INSERT INTO complaint_trend_queue (complaint_id) SELECT id FROM " + rows
+				+ " ON CONFLICT (complaint_id) DO UPDATE SET queued_at = EXCLUDED.queued_at";
+	}
+
+	/**
+	 * Queues complaints whose trend contribution may have changed.
+	 *
+	 * @return false if they could not be queued; they are then only counted
+	 *         again when they next change
+	 */
+	public static boolean enqueue(Collection<Long> complaintIds) {
+		if (complaintIds.isEmpty()) {
+			return true;
+		}
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			enqueue(conn, complaintIds);
+			return true;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error queueing " + complaintIds.size() + " complaints for trend refresh", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Queues complaints on a caller-managed connection, so that they are queued
+	 * if and only if the caller's transaction commits.
+	 */
+	static void enqueue(Connection conn, Collection<Long> complaintIds) throws SQLException {
+		if (complaintIds.isEmpty()) {
+			return;
+		}
+		String sql = "INSERT INTO complaint_trend_queue (complaint_id) SELECT unnest(?) ON CONFLICT DO NOTHING";
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			ps.setArray(1, conn.createArrayOf("bigint", complaintIds.toArray(new Long[0])));
+			ps.executeUpdate();
+		}
+	}
+
+	/**
+	 * Queues every complaint with new complaint_status_updates rows since the
+	 * last sweep.
+	 *
+	 * @return false on error
+	 */
+	public static boolean sweepStatusUpdates() {
+		try (Connection conn = DatabaseUtility.getConnection(); PreparedStatement ps = conn.prepareStatement(SWEEP_SQL)) {
+			ps.setString(1, STATUS_LOG_SOURCE);
+			ps.setLong(2, STATUS_LOG_LOOKBACK);
+			ps.setString(3, STATUS_LOG_SOURCE);
+			ps.executeUpdate();
+			return true;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error sweeping complaint status updates", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Applies up to {@code batchSize} queued complaints to complaint_trends in
+	 * one transaction.
+	 *
+	 * @return the number of complaints applied, or -1 on error, in which case
+	 *         they stay queued
+	 */
+	public static int refresh(int batchSize) {
+		try (Connection conn = DatabaseUtility.getConnection(); PreparedStatement ps = conn.prepareStatement(REFRESH_SQL)) {
+			ps.setInt(1, batchSize);
+			ps.setArray(2, conn.createArrayOf("text", TIME_FRAMES.stream().map(TimeFrame::getPattern).toArray()));
+			ps.setArray(3, conn.createArrayOf("text", TIME_FRAMES.stream().map(TimeFrame::getUnit).toArray()));
+			try (ResultSet rs = ps.executeQuery()) {
+				return rs.next() ? rs.getInt(1) : 0;
+			}
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error refreshing complaint trends", e);
+			return -1;
+		}
+	}
+
+	/**
+	 * Sweeps the status log and drains the queue.
+	 *
+	 * @return the number of complaints applied
+	 */
+	public static long refreshAll() {
+		sweepStatusUpdates();
+		long total = 0;
+		int applied;
+		while ((applied = refresh(BATCH_SIZE)) > 0) {
+			total += applied;
+		}
+		return total;
+	}
+
+	/**
+	 * Clears complaint_trends and queues every complaint, for the one-off
+	 * switch from the nightly recompute or after changing the configured time
+	 * frames. The background refresh then rebuilds the trends in batches;
+	 * {@link ComplaintTrendCube#reload()} should follow once it has.
+	 *
+	 * @return false on error, in which case nothing was changed
+	 */
+	public static boolean rebuild() {
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			conn.setAutoCommit(false);
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("TRUNCATE complaint_trends, complaint_trend_contributions, complaint_trend_sketches, complaint_trend_sketch_queue");
+				stmt.execute("INSERT INTO complaint_trend_queue (complaint_id) SELECT id FROM complaints ON CONFLICT DO NOTHING");
+				conn.commit();
+				return true;
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error rebuilding complaint trends", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Starts the background refresh, which runs {@link #refreshAll()} every
+	 * {@code trends.refreshIntervalMillis}.
+	 */
+	public static synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		Thread thread = new Thread(ComplaintTrendAggregator::run, "complaint-trend-aggregator");
+		thread.setDaemon(true);
+		thread.start();
+		worker = thread;
+	}
+
+	/**
+	 * Stops the background refresh. Queued complaints are applied after the
+	 * next start.
+	 */
+	public static synchronized void stop() {
+		running = false;
+		Thread thread = worker;
+		if (thread != null) {
+			thread.interrupt();
+			worker = null;
+		}
+	}
+
+	private static void run() {
+		while (running) {
+			try {
+				long applied = refreshAll();
+				if (applied > 0) {
+					LOGGER.log(Level.FINE, "Applied {0} complaint changes to trends", applied);
+				}
+				ComplaintTrendSketches.refreshAll();
+				Thread.sleep(REFRESH_INTERVAL_MILLIS);
+			} catch (InterruptedException e) {
+				if (!running) {
+					break;
+				}
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.SEVERE, "Complaint trend refresh failed", e);
+			}
+		}
+	}
+
+	private static List<TimeFrame> timeFrames(String configured) {
+		List<TimeFrame> timeFrames = new ArrayList<>();
+		for (String name : configured.split(",")) {
+			if (!name.trim().isEmpty()) {
+				timeFrames.add(TimeFrame.valueOf(name.trim().toUpperCase()));
+			}
+		}
+		return timeFrames;
+	}
+}
@@ -0,0 +1,264 @@
+package dao;
+
+import utils.ApplicationProperties;
+import utils.JdbcTemplate;
+import utils.OlapCube;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * In-process cube of complaint trends for the trend dashboard, so that each
+ * filter click is answered from memory instead of by a query against
+ * complaint_trends.
+ *
+ * <p>
+ * The cube holds one cell per {@link Dimension} combination, with day as the
+ * finest time grain; weeks, months, quarters and years are roll-ups of it. It
+ * is fed from complaint_trend_contributions, which
+ * {@link ComplaintTrendAggregator} keeps up to date: every contribution that
+ * changes gets a new change_seq, and {@link #refresh()} reads the rows past
+ * the last change_seq it saw, subtracts what it previously counted for each
+ * complaint and adds the new contribution. As with the aggregator, applying a
+ * row twice changes nothing, so each refresh re-reads the last
+ * {@code cube.changeLookback} sequence values to pick up rows committed out of
+ * sequence order.
+ * </p>
+ *
+ * <p>
+ * {@link #query()} refreshes first when the cube is older than
+ * {@code cube.maxStalenessMillis}; a query that finds another thread
+ * refreshing answers from the cube as it is rather than waiting.
+ * </p>
+ */
+public final class ComplaintTrendCube {
+
+	private static final Logger LOGGER = Logger.getLogger(ComplaintTrendCube.class.getName());
+
+	/** The cube's dimensions; their names are the dimension names of the cube. */
+	public enum Dimension {
+		/** The complaint date as {@code yyyy-MM-dd}. */
+		DAY, CATEGORY, SUBCATEGORY, STATUS, PRIORITY, PRODUCT
+	}
+
+	/** The cube's measures, in {@link OlapCube.Row#getValue(int)} order. */
+	public enum Measure {
+		COUNT, RESOLVED_COUNT, RESOLUTION_DAYS_SUM
+	}
+
+	private static final long MAX_STALENESS_NANOS = ApplicationProperties.getLong("cube.maxStalenessMillis", 2000) * 1000000L;
+	private static final long CHANGE_LOOKBACK = ApplicationProperties.getLong("cube.changeLookback", 1000);
+
+	private static final String CHANGES_SQL =
+			"SELECT complaint_id, complaint_date, complaint_type, sub_category, complaint_status, complaint_priority,"
+			+ " product_name, resolution_days, change_seq FROM complaint_trend_contributions"
+			+ " WHERE change_seq > ? ORDER BY change_seq";
+
+	private static final OlapCube CUBE = new OlapCube(names(Dimension.values()), names(Measure.values()));
+	/** What the cube currently counts for each complaint; guarded by REFRESH_LOCK. */
+	private static final ContributionIndex COUNTED = new ContributionIndex();
+	private static final ReentrantLock REFRESH_LOCK = new ReentrantLock();
+
+	private static long lastChangeSeq;
+	private static volatile long refreshedAtNanos;
+	private static volatile boolean loaded;
+
+	private ComplaintTrendCube() {
+	}
+
+	/**
+	 * A row of complaint_trend_contributions. A null day means the complaint
+	 * no longer contributes.
+	 */
+	static final class Contribution {
+		long complaintId;
+		String day;
+		String category;
+		String subcategory;
+		String status;
+		String priority;
+		String product;
+		/** NaN while the complaint is unresolved. */
+		double resolutionDays;
+		long changeSeq;
+	}
+
+	/**
+	 * Starts a query over the cube, refreshing it first if it is stale. Filter
+	 * and group by {@link Dimension} names; row values are in {@link Measure}
+	 * order.
+	 */
+	public static OlapCube.Query query() {
+		ensureFresh();
+		return CUBE.query();
+	}
+
+	/**
+	 * Applies the contributions changed since the last refresh.
+	 *
+	 * @return the number of rows read, or -1 on error, in which case the next
+	 *         refresh reads them again
+	 */
+	public static long refresh() {
+		REFRESH_LOCK.lock();
+		try {
+			long[] maxSeq = { lastChangeSeq };
+			long rows = JdbcTemplate.forEach(CHANGES_SQL, JdbcTemplate.params(lastChangeSeq - CHANGE_LOOKBACK),
+					RowMappers.TREND_CONTRIBUTIONS, contribution -> {
+						apply(contribution);
+						maxSeq[0] = Math.max(maxSeq[0], contribution.changeSeq);
+					});
+			lastChangeSeq = maxSeq[0];
+			refreshedAtNanos = System.nanoTime();
+			loaded = true;
+			return rows;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error refreshing complaint trend cube", e);
+			return -1;
+		} finally {
+			REFRESH_LOCK.unlock();
+		}
+	}
+
+	/**
+	 * Empties the cube and loads it again, after
+	 * {@link ComplaintTrendAggregator#rebuild()}.
+	 *
+	 * @return the number of rows read, or -1 on error
+	 */
+	public static long reload() {
+		REFRESH_LOCK.lock();
+		try {
+			CUBE.clear();
+			COUNTED.clear();
+			lastChangeSeq = 0;
+			loaded = false;
+			return refresh();
+		} finally {
+			REFRESH_LOCK.unlock();
+		}
+	}
+
+	private static void ensureFresh() {
+		if (!loaded) {
+			// The first query has nothing to answer from, so it waits.
+			refresh();
+			return;
+		}
+		if (System.nanoTime() - refreshedAtNanos > MAX_STALENESS_NANOS && REFRESH_LOCK.tryLock()) {
+			try {
+				if (System.nanoTime() - refreshedAtNanos > MAX_STALENESS_NANOS) {
+					refresh();
+				}
+			} finally {
+				REFRESH_LOCK.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Replaces what the cube counts for a complaint in one cube update, so
+	 * that a concurrent query sees either the old contribution or the new one.
+	 */
+	private static void apply(Contribution contribution) {
+		int slot = COUNTED.slot(contribution.complaintId);
+		int oldCell = COUNTED.cells[slot];
+		double oldDays = COUNTED.days[slot];
+		double newDays = contribution.resolutionDays;
+		String[] members = contribution.day == null ? null
+				: new String[] { contribution.day, contribution.category, contribution.subcategory, contribution.status,
+						contribution.priority, contribution.product };
+		if (oldCell < 0 && members == null) {
+			return;
+		}
+		COUNTED.cells[slot] = CUBE.move(oldCell, measures(oldDays, -1), members, measures(newDays, 1));
+		COUNTED.days[slot] = newDays;
+	}
+
+	/**
+	 * @return the {@link Measure} deltas of one complaint, with the given sign
+	 */
+	private static double[] measures(double resolutionDays, int sign) {
+		return Double.isNaN(resolutionDays) ? new double[] { sign, 0, 0 }
+				: new double[] { sign, sign, sign * resolutionDays };
+	}
+
+	private static String[] names(Enum<?>[] values) {
+		return Arrays.stream(values).map(Enum::name).toArray(String[]::new);
+	}
+
+	/**
+	 * Open-addressing map from complaint id to the cell and resolution time
+	 * counted for it, kept in primitive arrays since it has one entry per
+	 * complaint. Complaint ids are positive, so 0 marks an empty slot; a cell
+	 * of -1 means nothing is counted.
+	 */
+	private static final class ContributionIndex {
+		private static final int INITIAL_SLOTS = 1 << 14;
+
+		long[] ids;
+		int[] cells;
+		double[] days;
+		private int size;
+
+		ContributionIndex() {
+			clear();
+		}
+
+		void clear() {
+			ids = new long[INITIAL_SLOTS];
+			cells = new int[INITIAL_SLOTS];
+			days = new double[INITIAL_SLOTS];
+			size = 0;
+		}
+
+		/** Finds or adds the slot for a complaint. */
+		int slot(long id) {
+			int mask = ids.length - 1;
+			int slot = mix(id) & mask;
+			while (ids[slot] != 0) {
+				if (ids[slot] == id) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			if ((size + 1) * 2 > ids.length) {
+				grow();
+				return slot(id);
+			}
+			ids[slot] = id;
+			cells[slot] = -1;
+			days[slot] = Double.NaN;
+			size++;
+			return slot;
+		}
+
+		private void grow() {
+			long[] oldIds = ids;
+			int[] oldCells = cells;
+			double[] oldDays = days;
+			ids = new long[oldIds.length * 2];
+			cells = new int[oldIds.length * 2];
+			days = new double[oldIds.length * 2];
+			int mask = ids.length - 1;
+			for (int i = 0; i < oldIds.length; i++) {
+				if (oldIds[i] != 0) {
+					int slot = mix(oldIds[i]) & mask;
+					while (ids[slot] != 0) {
+						slot = (slot + 1) & mask;
+					}
+					ids[slot] = oldIds[i];
+					cells[slot] = oldCells[i];
+					days[slot] = oldDays[i];
+				}
+			}
+		}
+
+		private static int mix(long id) {
+			long h = id * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package dao;
+
+import utils.ApplicationProperties;
+import utils.DatabaseUtility;
+import utils.HyperLogLog;
+import utils.KllSketch;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Maintains complaint_trend_sketches: per time frame, complaint type and
+ * product, a {@link HyperLogLog} of the distinct serial numbers complained
+ * about and a {@link KllSketch} of resolution times in days, for distinct
+ * counts and p50/p90/p99 resolution times that would be too expensive to
+ * compute exactly on every dashboard view.
+ *
+ * <p>
+ * Sketches are mergeable, so they are kept at the finest grain the
+ * statistics are asked for and {@link ComplaintTrendsDAO#fetchTrendStatistics}
+ * merges them into per-category or per-product figures. They leave out status
+ * and priority, which move complaints between complaint_trends buckets but do
+ * not change which serial numbers or resolution times a period had.
+ * </p>
+ *
+ * <p>
+ * Unlike complaint_trends' counts, a sketch cannot subtract a complaint that
+ * leaves its bucket. {@link ComplaintTrendAggregator#refresh(int)} therefore
+ * queues the buckets a changed contribution left and entered, and
+ * {@link #refresh(int)} rebuilds each queued bucket from
+ * complaint_trend_contributions. Rebuilding is bounded by the bucket's size,
+ * and a bucket queued many times between refreshes is rebuilt once.
+ * </p>
+ */
+public final class ComplaintTrendSketches {
+
+	private static final Logger LOGGER = Logger.getLogger(ComplaintTrendSketches.class.getName());
+
+	public static final int HLL_PRECISION = ApplicationProperties.getInt("trends.sketches.hllPrecision",
+			HyperLogLog.DEFAULT_PRECISION);
+	public static final int KLL_K = ApplicationProperties.getInt("trends.sketches.kllK", KllSketch.DEFAULT_K);
+	private static final int BATCH_SIZE = ApplicationProperties.getInt("trends.sketches.batchSize", 50);
+
+	private static final String TAKE_SQL =
+			"DELETE FROM complaint_trend_sketch_queue q WHERE (q.unit, q.period_start, q.complaint_type, q.product_name) IN ("
+			+ " SELECT unit, period_start, complaint_type, product_name FROM complaint_trend_sketch_queue"
+			+ " ORDER BY period_start LIMIT ? FOR UPDATE SKIP LOCKED)"
+			+ " RETURNING q.unit, q.period_start, q.complaint_type, q.product_name";
+
+	private static final String INPUTS_SQL =
+			"SELECT serial_number, resolution_days FROM complaint_trend_contributions"
+			+ " WHERE complaint_type = ? AND COALESCE(product_name, '') = ? AND complaint_date >= ? AND complaint_date < ?";
+
+	private static final String UPSERT_SQL =
+			"INSERT INTO complaint_trend_sketches (time_frame, complaint_type, product_name, complaint_count, serial_numbers, resolution_days)"
+			+ " VALUES (?, ?, ?, ?, ?, ?)"
+			+ " ON CONFLICT (time_frame, complaint_type, product_name) DO UPDATE SET complaint_count = EXCLUDED.complaint_count,"
+			+ " serial_numbers = EXCLUDED.serial_numbers, resolution_days = EXCLUDED.resolution_days, updated_at = CURRENT_TIMESTAMP";
+
+	private static final String DELETE_SQL =
+			"DELETE FROM complaint_trend_sketches WHERE time_frame = ? AND complaint_type = ? AND product_name = ?";
+
+	private ComplaintTrendSketches() {
+	}
+
+	/**
+	 * The sketches of one complaint_trend_sketches row, or of several merged.
+	 */
+	static final class Sketch {
+		long complaintCount;
+		HyperLogLog serialNumbers;
+		KllSketch resolutionDays;
+
+		void merge(Sketch other) {
+			complaintCount += other.complaintCount;
+			serialNumbers.merge(other.serialNumbers);
+			resolutionDays.merge(other.resolutionDays);
+		}
+	}
+
+	/** A queued complaint_trend_sketch_queue row; a null product is stored as ''. */
+	private static final class Bucket {
+		final ComplaintTrendAggregator.TimeFrame timeFrame;
+		final LocalDate start;
+		final String complaintType;
+		final String productName;
+
+		Bucket(ComplaintTrendAggregator.TimeFrame timeFrame, LocalDate start, String complaintType, String productName) {
+			this.timeFrame = timeFrame;
+			this.start = start;
+			this.complaintType = complaintType;
+			this.productName = productName;
+		}
+	}
+
+	/**
+	 * Rebuilds up to {@code batchSize} queued buckets in one transaction.
+	 *
+	 * @return the number of buckets rebuilt, or -1 on error, in which case
+	 *         they stay queued
+	 */
+	public static int refresh(int batchSize) {
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			conn.setAutoCommit(false);
+			try {
+				List<Bucket> buckets = new ArrayList<>();
+				try (PreparedStatement ps = conn.prepareStatement(TAKE_SQL)) {
+					ps.setInt(1, batchSize);
+					try (ResultSet rs = ps.executeQuery()) {
+						while (rs.next()) {
+							buckets.add(new Bucket(ComplaintTrendAggregator.TimeFrame.forUnit(rs.getString(1)),
+									rs.getDate(2).toLocalDate(), rs.getString(3), rs.getString(4)));
+						}
+					}
+				}
+				for (Bucket bucket : buckets) {
+					rebuild(conn, bucket);
+				}
+				conn.commit();
+				return buckets.size();
+			} catch (SQLException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error refreshing complaint trend sketches", e);
+			return -1;
+		}
+	}
+
+	/**
+	 * Drains the sketch queue.
+	 *
+	 * @return the number of buckets rebuilt
+	 */
+	public static long refreshAll() {
+		long total = 0;
+		int rebuilt;
+		while ((rebuilt = refresh(BATCH_SIZE)) > 0) {
+			total += rebuilt;
+		}
+		return total;
+	}
+
+	/**
+	 * @return empty sketches with the configured accuracy
+	 */
+	static Sketch emptySketch() {
+		Sketch sketch = new Sketch();
+		sketch.serialNumbers = new HyperLogLog(HLL_PRECISION);
+		sketch.resolutionDays = new KllSketch(KLL_K);
+		return sketch;
+	}
+
+	private static void rebuild(Connection conn, Bucket bucket) throws SQLException {
+		Sketch sketch = emptySketch();
+		try (PreparedStatement ps = conn.prepareStatement(INPUTS_SQL)) {
+			ps.setString(1, bucket.complaintType);
+			ps.setString(2, bucket.productName);
+			ps.setDate(3, Date.valueOf(bucket.start));
+			ps.setDate(4, Date.valueOf(bucket.timeFrame.next(bucket.start)));
+			try (ResultSet rs = ps.executeQuery()) {
+				while (rs.next()) {
+					sketch.complaintCount++;
+					sketch.serialNumbers.add(rs.getString(1));
+					double days = rs.getDouble(2);
+					if (!rs.wasNull()) {
+						sketch.resolutionDays.update(days);
+					}
+				}
+			}
+		}
+		String label = bucket.timeFrame.label(bucket.start);
+		if (sketch.complaintCount == 0) {
+			try (PreparedStatement ps = conn.prepareStatement(DELETE_SQL)) {
+				ps.setString(1, label);
+				ps.setString(2, bucket.complaintType);
+				ps.setString(3, bucket.productName);
+				ps.executeUpdate();
+			}
+			return;
+		}
+		try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+			ps.setString(1, label);
+			ps.setString(2, bucket.complaintType);
+			ps.setString(3, bucket.productName);
+			ps.setLong(4, sketch.complaintCount);
+			ps.setBytes(5, sketch.serialNumbers.toBytes());
+			ps.setBytes(6, sketch.resolutionDays.toBytes());
+			ps.executeUpdate();
+		}
+	}
+}
@@ -2,15 +2,15 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import utils.KllSketch;
+import utils.OlapCube;
 import java.sql.*;
 import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.time.LocalDate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 public class ComplaintTrendsDAO {
@@ -25,50 +25,148 @@ public class ComplaintTrendsDAO {
 	 * @return A list of {@link ComplaintTrends} objects representing the complaint trends.
 	 */
 	public List<ComplaintTrends> fetchComplaintTrends(String timeFrame, String category, int limit, int offset) {
-	    List<ComplaintTrends> trends = new ArrayList<>();
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    ResultSet rs = null;
-	
 	    String query = "SELECT * FROM complaint_trends WHERE time_frame = ? AND complaint_type = ? LIMIT ? OFFSET ?";
 	
 	    try {
-	        conn = DatabaseUtility.connect();
-	        pstmt = conn.prepareStatement(query);
-	        pstmt.setString(1, timeFrame);
-	        pstmt.setString(2, category);
-	        pstmt.setInt(3, limit);
-	        pstmt.setInt(4, offset);
+	        return JdbcTemplate.query(query, ps -> {
+	            ps.setString(1, timeFrame);
+	            ps.setString(2, category);
+	            ps.setInt(3, limit);
+	            ps.setInt(4, offset);
+	        }, RowMappers.COMPLAINT_TRENDS);
+	    } catch (SQLException e) {
+	        Logger.getLogger(ComplaintTrendsDAO.class.getName()).log(Level.SEVERE, null, e);
+	    }
 	
-	        rs = pstmt.executeQuery();
+	    return new ArrayList<>();
+	}
+
+	/**
+	 * Streams all complaint trends for a time frame and complaint type through a
+	 * server-side cursor, for exports where the paged fetchComplaintTrends would
+	 * otherwise be called repeatedly or with very large limits. The returned
+	 * stream keeps a database connection open and must be closed.
+	 * @param timeFrame The time frame of the trends.
+	 * @param category The complaint type of the trends.
+	 * @return A lazily populated stream of trends; an empty stream if the query could not be started.
+	 */
+	public Stream<ComplaintTrends> streamComplaintTrends(String timeFrame, String category) {
+	    String query = "SELECT * FROM complaint_trends WHERE time_frame = ? AND complaint_type = ? ORDER BY id";
 	
-	        while (rs.next()) {
-	            ComplaintTrends trend = new ComplaintTrends();
-	            trend.setId(rs.getInt("id"));
-	            trend.setTimeFrame(rs.getString("time_frame"));
-	            trend.setComplaintCount(rs.getInt("complaint_count"));
-	            trend.setComplaintType(rs.getString("complaint_type"));
-	            trend.setAverageResolutionTime(rs.getDouble("average_resolution_time"));
-	            trend.setCustomerSatisfactionScore(rs.getDouble("customer_satisfaction_score"));
-	            trend.setComplaintStatus(ComplaintTrends.ComplaintStatus.valueOf(rs.getString("complaint_status"))); 
-	            trend.setComplaintPriority(ComplaintTrends.ComplaintPriorities.valueOf(rs.getString("complaint_priority")));
-	            trends.add(trend);
-	        }
+	    try {
+	        return JdbcTemplate.stream(query, ps -> {
+	            ps.setString(1, timeFrame);
+	            ps.setString(2, category);
+	        }, RowMappers.COMPLAINT_TRENDS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(ComplaintTrendsDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        try {
-	            if (pstmt != null) pstmt.close();
-	            if (rs != null) rs.close();
-	        } catch (SQLException e) {
-	            Logger.getLogger(ComplaintTrendsDAO.class.getName()).log(Level.SEVERE, null, e);
-	        }
 	    }
 	
+	    return Stream.empty();
+	}
+
+	/**
+	 * Slices complaint trends from the in-memory {@link ComplaintTrendCube}
+	 * rather than complaint_trends, for interactive filtering on the trend
+	 * dashboard. Trends are grouped by period, complaint type, status and
+	 * priority like the rows of complaint_trends; the cube has no satisfaction
+	 * score, so it is left at 0.
+	 * @param timeFrame The period to roll complaint dates up to.
+	 * @param category The complaint type to keep, or null for all.
+	 * @param statuses The statuses to keep, or null or empty for all.
+	 * @return The matching trends ordered by period, type, status and priority.
+	 */
+	public List<ComplaintTrends> sliceComplaintTrends(ComplaintTrendAggregator.TimeFrame timeFrame, String category,
+	        List<String> statuses) {
+	    OlapCube.Query query = ComplaintTrendCube.query();
+	    if (category != null) {
+	        query.where(ComplaintTrendCube.Dimension.CATEGORY.name(), category);
+	    }
+	    if (statuses != null && !statuses.isEmpty()) {
+	        query.where(ComplaintTrendCube.Dimension.STATUS.name(), statuses.toArray(new String[0]));
+	    }
+	    query.groupBy(ComplaintTrendCube.Dimension.DAY.name(), day -> timeFrame.label(LocalDate.parse(day)))
+	            .groupBy(ComplaintTrendCube.Dimension.CATEGORY.name())
+	            .groupBy(ComplaintTrendCube.Dimension.STATUS.name())
+	            .groupBy(ComplaintTrendCube.Dimension.PRIORITY.name());
+	
+	    List<ComplaintTrends> trends = new ArrayList<>();
+	    for (OlapCube.Row row : query.rows()) {
+	        double resolved = row.getValue(ComplaintTrendCube.Measure.RESOLVED_COUNT.ordinal());
+	        ComplaintTrends trend = new ComplaintTrends();
+	        trend.setTimeFrame(row.getMember(0));
+	        trend.setComplaintType(row.getMember(1));
+	        trend.setComplaintStatus(RowMappers.TREND_STATUS.lookup(cubeMember(row, 2)));
+	        trend.setComplaintPriority(RowMappers.TREND_PRIORITY.lookup(cubeMember(row, 3)));
+	        trend.setComplaintCount((int) row.getValue(ComplaintTrendCube.Measure.COUNT.ordinal()));
+	        trend.setAverageResolutionTime(resolved > 0
+	                ? row.getValue(ComplaintTrendCube.Measure.RESOLUTION_DAYS_SUM.ordinal()) / resolved : 0);
+	        trends.add(trend);
+	    }
 	    return trends;
 	}
+
+	/**
+	 * Fetches approximate distinct serial number counts and resolution time
+	 * percentiles for a time frame, merged from the sketches
+	 * {@link ComplaintTrendSketches} keeps per complaint type and product.
+	 * Distinct counts are within about 2% and percentiles within about 1% of
+	 * rank at the default sketch sizes.
+	 * @param timeFrame The time frame, as in complaint_trends.
+	 * @param category The complaint type to narrow to, or null for all.
+	 * @param productName The product to narrow to, or null for all.
+	 * @return The statistics, with a complaint count of 0 if nothing matched; null on error.
+	 */
+	public ComplaintTrendStatistics fetchTrendStatistics(String timeFrame, String category, String productName) {
+	    StringBuilder sql = new StringBuilder(
+	            "SELECT complaint_count, serial_numbers, resolution_days FROM complaint_trend_sketches WHERE time_frame = ?");
+	    if (category != null) {
+	        sql.append(" AND complaint_type = ?");
+	    }
+	    if (productName != null) {
+	        sql.append(" AND product_name = ?");
+	    }
+	
+	    try {
+	        List<ComplaintTrendSketches.Sketch> sketches = JdbcTemplate.query(sql.toString(), ps -> {
+	            int index = 1;
+	            ps.setString(index++, timeFrame);
+	            if (category != null) {
+	                ps.setString(index++, category);
+	            }
+	            if (productName != null) {
+	                ps.setString(index, productName);
+	            }
+	        }, RowMappers.TREND_SKETCHES);
 	
+	        ComplaintTrendSketches.Sketch merged = ComplaintTrendSketches.emptySketch();
+	        for (ComplaintTrendSketches.Sketch sketch : sketches) {
+	            merged.merge(sketch);
+	        }
+	        KllSketch resolutionDays = merged.resolutionDays;
+	        ComplaintTrendStatistics statistics = new ComplaintTrendStatistics();
+	        statistics.setTimeFrame(timeFrame);
+	        statistics.setComplaintType(category);
+	        statistics.setProductName(productName);
+	        statistics.setComplaintCount(merged.complaintCount);
+	        statistics.setDistinctSerialNumbers(merged.serialNumbers.estimate());
+	        statistics.setResolvedCount(resolutionDays.getCount());
+	        statistics.setMedianResolutionTime(resolutionDays.quantile(0.5));
+	        statistics.setP90ResolutionTime(resolutionDays.quantile(0.9));
+	        statistics.setP99ResolutionTime(resolutionDays.quantile(0.99));
+	        return statistics;
+	    } catch (SQLException | IllegalArgumentException e) {
+	        // IllegalArgumentException: a stored sketch is unreadable or was
+	        // built with a different precision before a configuration change.
+	        Logger.getLogger(ComplaintTrendsDAO.class.getName()).log(Level.SEVERE, "Error fetching trend statistics", e);
+	    }
+	    return null;
+	}
+	
+	private static String cubeMember(OlapCube.Row row, int i) {
+	    String member = row.getMember(i);
+	    return OlapCube.NONE.equals(member) ? null : member;
+	}
 	
 	/**
 	 * Fetches detailed information of a specific complaint when analyzing complaint trends.
@@ -76,28 +174,28 @@ public class ComplaintTrendsDAO {
 	 * @return ComplaintDetails object containing detailed information of the complaint.
 	 */
 	public ComplaintDetails getComplaintDetail(String complaintId) {
-	  ComplaintDetails complaintDetails = null;
 	  String sql = "SELECT * FROM complaints WHERE id = ?;";
-	  try (Connection conn = DatabaseUtility.connect();
-	       PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	    pstmt.setString(1, complaintId);
-	    ResultSet rs = pstmt.executeQuery();
-	    if (rs.next()) {
-	      complaintDetails = new ComplaintDetails();
-	      complaintDetails.setId(rs.getInt("id"));
-	      complaintDetails.setComplaintDescription(rs.getString("complaint_description"));
-	      complaintDetails.setComplaintDate(rs.getDate("complaint_date"));
-	      complaintDetails.setComplaintStatus(ComplaintTrends.ComplaintStatus.valueOf(rs.getString("complaint_status")));
-	      complaintDetails.setComplaintPriority(ComplaintTrends.ComplaintPriorities.valueOf(rs.getString("complaint_priority")));
-	      // Additional fields can be set here as needed
+	  try {
+	    Complaints complaint = JdbcTemplate.queryForObject(sql, pstmt -> pstmt.setString(1, complaintId), RowMappers.COMPLAINTS);
+	    if (complaint == null) {
+	      return null;
 	    }
-	    rs.close();
+	    ComplaintDetails complaintDetails = new ComplaintDetails();
+	    complaintDetails.setId(complaint.getId());
+	    complaintDetails.setComplaintDescription(complaint.getComplaintDescription());
+	    complaintDetails.setComplaintDate(complaint.getComplaintDate());
+	    complaintDetails.setComplaintStatus(RowMappers.TREND_STATUS.lookup(enumName(complaint.getComplaintStatus())));
+	    complaintDetails.setComplaintPriority(RowMappers.TREND_PRIORITY.lookup(enumName(complaint.getComplaintPriority())));
+	    // Additional fields can be set here as needed
+	    return complaintDetails;
 	  } catch (SQLException e) {
 	    Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error fetching complaint detail", e);
-	  } finally {
-	    DatabaseUtility.disconnect(conn);
 	  }
-	  return complaintDetails;
+	  return null;
+	}
+
+	private static String enumName(Enum<?> constant) {
+	  return constant != null ? constant.name() : null;
 	}
 	
 	/**
@@ -108,30 +206,13 @@ public class ComplaintTrendsDAO {
 	 * @return boolean indicating success or failure of the update operation.
 	 */
 	public boolean updateComplaintStatus(String complaintId, String newStatus) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean updateStatus = false;
+	    String sql = "UPDATE complaints SET status = ? WHERE id = ?";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "UPDATE complaints SET status = ? WHERE id = ?";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setString(1, newStatus);
-	        pstmt.setString(2, complaintId);
-	        int rowsAffected = pstmt.executeUpdate();
-	        if (rowsAffected > 0) {
-	            updateStatus = true;
-	        }
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(newStatus, complaintId)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(ComplaintTrendsDAO.class.getName()).log(Level.SEVERE, "Error updating complaint status", e);
-	    } finally {
-	        try {
-	            if (pstmt != null) pstmt.close();
-	        } catch (SQLException e) {
-	            Logger.getLogger(ComplaintTrendsDAO.class.getName()).log(Level.SEVERE, "Failed to close PreparedStatement", e);
-	        }
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return updateStatus;
+	    return false;
 	}
 	
 	/**
@@ -140,26 +221,14 @@ public class ComplaintTrendsDAO {
 	 * @return List<String> containing all complaint categories from the database.
 	 */
 	public List<String> getComplaintCategories() {
-	    List<String> categories = new ArrayList<>();
-	    String query = "SELECT DISTINCT category_name FROM complaint_categories ORDER BY category_name ASC;";
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    ResultSet rs = null;
-	    try {
-	        conn = DatabaseUtility.connect();
-	        pstmt = conn.prepareStatement(query);
-	        rs = pstmt.executeQuery();
-	        while (rs.next()) {
-	            categories.add(rs.getString("category_name"));
-	        }
-	    } catch (SQLException e) {
-	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        if (rs != null) try { rs.close(); } catch (SQLException e) { /* Ignored */ }
-	        if (pstmt != null) try { pstmt.close(); } catch (SQLException e) { /* Ignored */ }
-	        DatabaseUtility.disconnect(conn);
-	    }
-	    return categories;
+	    // Derived from the cached category list rather than a separate
+	    // SELECT DISTINCT, so category writes only invalidate one cache.
+	    return new ComplaintCategoriesDAO().fetchAllComplaintCategories().stream()
+	            .map(ComplaintCategories::getCategoryName)
+	            .filter(name -> name != null)
+	            .distinct()
+	            .sorted()
+	            .collect(Collectors.toList());
 	}
 	
 	/**
@@ -172,32 +241,20 @@ public class ComplaintTrendsDAO {
 	 * @return List<ComplaintTrends> Matching complaint trends based on the provided parameters.
 	 */
 	public List<ComplaintTrends> filterComplaintsByStatus(List<String> statuses, String timeFrame, int limit, int offset) {
-	    Connection conn = DatabaseUtility.connect();
-	    List<ComplaintTrends> complaintTrends = new ArrayList<>();
-	    String statusesInSql = statuses.stream().map(status -> "'" + status + "'").collect(Collectors.joining(","));
-	    String sql = "SELECT * FROM complaint_trends WHERE complaint_status IN (" + statusesInSql + ") AND time_frame = ? LIMIT ? OFFSET ?";
-	    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	        stmt.setString(1, timeFrame);
-	        stmt.setInt(2, limit);
-	        stmt.setInt(3, offset);
-	        ResultSet rs = stmt.executeQuery();
-	        while (rs.next()) {
-	            ComplaintTrends trend = new ComplaintTrends();
-	            trend.setId(rs.getInt("id"));
-	            trend.setTimeFrame(rs.getString("time_frame"));
-	            trend.setComplaintCount(rs.getInt("complaint_count"));
-	            trend.setComplaintType(rs.getString("complaint_type"));
-	            trend.setAverageResolutionTime(rs.getDouble("average_resolution_time"));
-	            trend.setCustomerSatisfactionScore(rs.getDouble("customer_satisfaction_score"));
-	            trend.setComplaintStatus(ComplaintTrends.ComplaintStatus.valueOf(rs.getString("complaint_status")));
-	            trend.setComplaintPriority(ComplaintTrends.ComplaintPriorities.valueOf(rs.getString("complaint_priority")));
-	            complaintTrends.add(trend);
-	        }
+	    // One bound array rather than a literal IN list, so statuses are never
+	    // spliced into the SQL and the statement text is the same for any list.
+	    // The array is cast rather than the column, which keeps the predicate indexable.
+	    String sql = "SELECT * FROM complaint_trends WHERE complaint_status = ANY(CAST(? AS complaint_status[])) AND time_frame = ? LIMIT ? OFFSET ?";
+	    try {
+	        return JdbcTemplate.query(sql, ps -> {
+	            ps.setArray(1, ps.getConnection().createArrayOf("text", statuses.toArray(new String[0])));
+	            ps.setString(2, timeFrame);
+	            ps.setInt(3, limit);
+	            ps.setInt(4, offset);
+	        }, RowMappers.COMPLAINT_TRENDS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(ComplaintTrendsDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return complaintTrends;
+	    return new ArrayList<>();
 	}
 }
@@ -2,23 +2,111 @@ package dao;
 
 
 import model.Complaints;
+import utils.BatchResult;
 import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import utils.KeysetCursor;
+import utils.KeysetPage;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.sql.ResultSet;
-import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.List;
 import java.sql.Timestamp;
+import java.util.stream.Stream;
 
 
 public class ComplaintsDAO {
 
+	/**
+	 * Sort orders supported by keyset pagination of the assessment queue. Each
+	 * one is backed by a composite index on (complaint_status, sort key, id)
+	 * so that the status filter, the seek predicate and the ORDER BY are all
+	 * satisfied by a single index range scan. complaint_date is nullable, so
+	 * its sort key maps NULL to 'infinity': a NULL in a row comparison matches
+	 * nothing and would end paging at the first undated complaint.
+	 * {@link ComplaintsDAO#installIndexes()} creates the indexes.
+	 */
+	public enum AssessmentSort {
+		COMPLAINT_DATE("complaint_date", "COALESCE(complaint_date, 'infinity')",
+				"CREATE INDEX IF NOT EXISTS idx_complaints_status_date_key_id ON complaints (complaint_status, (COALESCE(complaint_date, 'infinity')), id)"),
+		ID("id", "id",
+				"CREATE INDEX IF NOT EXISTS idx_complaints_status_id ON complaints (complaint_status, id)");
+
+		private final String column;
+		private final String sortKey;
+		private final String indexDefinition;
+
+		AssessmentSort(String column, String sortKey, String indexDefinition) {
+			this.column = column;
+			this.sortKey = sortKey;
+			this.indexDefinition = indexDefinition;
+		}
+
+		public String getColumn() {
+			return column;
+		}
+
+		/**
+		 * @return the never-null expression keyset pages are ordered and sought by
+		 */
+		public String getSortKey() {
+			return sortKey;
+		}
+
+		/**
+		 * @return the DDL of the index this sort order relies on
+		 */
+		public String getIndexDefinition() {
+			return indexDefinition;
+		}
+	}
+
+	public static final int MAX_ASSESSMENT_PAGE_SIZE = 200;
+
+	/**
+	 * Per-complaint outcome of {@link #bulkRecategorize}.
+	 */
+	public enum BulkUpdateOutcome {
+		UPDATED, NOT_FOUND, FAILED
+	}
+
+	/**
+	 * Complaint ids per bulk recategorization statement. Each chunk commits on its
+	 * own, which bounds how long row locks are held.
+	 */
+	public static final int BULK_UPDATE_CHUNK_SIZE = 5000;
+
+	/**
+	 * Locks the requested complaints in id order, so concurrent bulk updates cannot
+	 * deadlock, updates them, and writes one status history row per updated complaint,
+	 * all in a single statement.
+	 */
+	private static final String BULK_RECATEGORIZE_SQL =
+	        "WITH locked AS ("
+	        + " SELECT id FROM complaints WHERE id = ANY(?) ORDER BY id FOR UPDATE"
+	        + "), updated AS ("
+	        + " UPDATE complaints c SET category_id = COALESCE(?, c.category_id),"
+	        + " sub_category_id = COALESCE(?, c.sub_category_id),"
+	        + " complaint_priority = COALESCE(?, c.complaint_priority)"
+	        + " FROM locked l WHERE c.id = l.id"
+	        + " RETURNING c.id, c.complaint_status"
+	        + "), history AS ("
+	        + " INSERT INTO complaint_status_updates (complaint_id, update_timestamp, complaint_status, reason_for_change, changed_by_role)"
+	        + " SELECT id, CURRENT_TIMESTAMP, CAST(complaint_status AS complaint_status), ?, ? FROM updated"
+	        + ")"
+	        + " SELECT id FROM updated";
+
 	
 	/**
-	 * Creates a new complaint record in the database.
+	 * Creates a new complaint record in the database. Intake should first check
+	 * {@link ComplaintDuplicateDetector#findCandidates} for earlier reports of the same event.
 	 * @param complaintDescription The detailed description of the customer's complaint.
 	 * @param complaintDate The date when the complaint was filed.
 	 * @param complaintStatus The current status of the complaint.
@@ -31,30 +119,146 @@ public class ComplaintsDAO {
 	 * @return boolean True if the complaint was successfully created, false otherwise.
 	 */
 	public boolean createComplaint(String complaintDescription, Date complaintDate, Complaints.ComplaintStatus complaintStatus, Complaints.ComplaintPriority complaintPriority,  String customerFeedback, Date resolutionDate, String productName, String model, String serialNumber) {
-	  Connection conn = DatabaseUtility.connect();
+	  // Indexes the new complaint for search and queues it for the trend aggregation in the same statement.
+	  String sql = "WITH created AS (INSERT INTO complaints (complaint_description, complaint_date, complaint_status, complaint_priority, customer_feedback, resolution_date, product_name, model, serial_number) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) RETURNING *), "
+	          + "indexed AS (" + ComplaintSearchDAO.indexSql(ComplaintSearchDAO.Source.COMPLAINT, "created") + ") "
+	          + ComplaintTrendAggregator.enqueueSql("created") + " RETURNING complaint_id AS id";
 	  try {
-	      PreparedStatement stmt = conn.prepareStatement("INSERT INTO complaints (complaint_description, complaint_date, complaint_status, complaint_priority, customer_feedback, resolution_date, product_name, model, serial_number) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)");
-	      stmt.setString(1, complaintDescription);
-	      stmt.setTimestamp(2, new Timestamp(complaintDate.getTime()));
-	      stmt.setString(3, complaintStatus.name());
-	      stmt.setString(4, complaintPriority.name());
-	      stmt.setString(5, customerFeedback);
-	      stmt.setTimestamp(6, resolutionDate != null ? new Timestamp(resolutionDate.getTime()) : null);
-	      stmt.setString(7, productName);
-	      stmt.setString(8, model);
-	      stmt.setString(9, serialNumber);
-	      int affectedRows = stmt.executeUpdate();
-	      stmt.close();
-	      return affectedRows > 0;
+	      List<Long> created = JdbcTemplate.query(sql, JdbcTemplate.params(complaintDescription, new Timestamp(complaintDate.getTime()),
+	              complaintStatus, complaintPriority, customerFeedback, resolutionDate, productName, model, serialNumber), RowMappers.IDS);
+	      for (Long id : created) {
+	          ComplaintSignalDetector.record(productName, model, serialNumber);
+	          ComplaintDuplicateDetector.add(id, complaintDescription, productName, model, serialNumber);
+	      }
+	      return !created.isEmpty();
 	  } catch (SQLException e) {
 	      Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error creating complaint: " + e.getMessage(), e);
 	      return false;
-	  } finally {
-	      DatabaseUtility.disconnect(conn);
 	  }
 	}
 	
 	
+	/**
+	 * Creates many complaint records in a single transaction using JDBC batching.
+	 * Intended for bulk intake such as the nightly import of distributor complaint files.
+	 * Rows missing a description, complaint date, status or priority are rejected without
+	 * affecting the others, as are rows the database refuses. The created complaints are
+	 * queued for trend refresh and indexed for search in the same transaction.
+	 * @param complaints The complaints to create; their ids are ignored.
+	 * @return BatchResult holding the generated id of each complaint in input order, or the
+	 *         reason it was not created.
+	 */
+	public BatchResult createComplaints(List<Complaints> complaints) {
+	  String sql = "INSERT INTO complaints (complaint_description, complaint_date, complaint_status, complaint_priority, customer_feedback, resolution_date, product_name, model, serial_number) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+	  try (Connection conn = DatabaseUtility.getConnection()) {
+	      boolean autoCommit = conn.getAutoCommit();
+	      conn.setAutoCommit(false);
+	      BatchResult result;
+	      try {
+	          result = JdbcTemplate.batchInsert(conn, sql, complaints, (ps, complaint) -> {
+	              if (complaint == null) {
+	                  throw new IllegalArgumentException("Complaint is null");
+	              }
+	              if (complaint.getComplaintDescription() == null || complaint.getComplaintDate() == null
+	                      || complaint.getComplaintStatus() == null || complaint.getComplaintPriority() == null) {
+	                  throw new IllegalArgumentException("Description, complaint date, status and priority are required");
+	              }
+	              JdbcTemplate.bindValue(ps, 1, complaint.getComplaintDescription());
+	              JdbcTemplate.bindValue(ps, 2, new Timestamp(complaint.getComplaintDate().getTime()));
+	              JdbcTemplate.bindValue(ps, 3, complaint.getComplaintStatus());
+	              JdbcTemplate.bindValue(ps, 4, complaint.getComplaintPriority());
+	              JdbcTemplate.bindValue(ps, 5, complaint.getCustomerFeedback());
+	              JdbcTemplate.bindValue(ps, 6, complaint.getResolutionDate());
+	              JdbcTemplate.bindValue(ps, 7, complaint.getProductName());
+	              JdbcTemplate.bindValue(ps, 8, complaint.getModel());
+	              JdbcTemplate.bindValue(ps, 9, complaint.getSerialNumber());
+	          });
+	          List<Long> created = new ArrayList<>();
+	          for (Long id : result.getGeneratedIds()) {
+	              if (id != null) {
+	                  created.add(id);
+	              }
+	          }
+	          // Queued and indexed in the batch's transaction, so no committed complaint is missed.
+	          ComplaintTrendAggregator.enqueue(conn, created);
+	          ComplaintSearchDAO.reindex(conn, ComplaintSearchDAO.Source.COMPLAINT, created);
+	          conn.commit();
+	      } catch (SQLException | RuntimeException e) {
+	          conn.rollback();
+	          throw e;
+	      } finally {
+	          conn.setAutoCommit(autoCommit);
+	      }
+	      List<Long> generatedIds = result.getGeneratedIds();
+	      for (int i = 0; i < generatedIds.size(); i++) {
+	          if (generatedIds.get(i) != null) {
+	              Complaints complaint = complaints.get(i);
+	              ComplaintSignalDetector.record(complaint.getProductName(), complaint.getModel(), complaint.getSerialNumber());
+	              ComplaintDuplicateDetector.add(generatedIds.get(i), complaint.getComplaintDescription(), complaint.getProductName(),
+	                      complaint.getModel(), complaint.getSerialNumber());
+	          }
+	      }
+	      return result;
+	  } catch (SQLException e) {
+	      Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error creating complaints in batch: " + e.getMessage(), e);
+	      return BatchResult.allFailed(complaints.size(), e.getMessage());
+	  }
+	}
+	
+	
+	/**
+	 * Recategorizes many complaints at once for the bulk-categorization modal. Each
+	 * chunk of {@link #BULK_UPDATE_CHUNK_SIZE} ids is handled by one set-based statement
+	 * which binds the ids as an array, updates the category, subcategory and priority,
+	 * and records a complaint_status_updates history row for every updated complaint.
+	 * Null arguments leave the corresponding column unchanged.
+	 * @param complaintIds The complaints to update; duplicates are ignored. Must not contain null.
+	 * @param categoryId The new category, or null to keep the current one.
+	 * @param subCategoryId The new subcategory, or null to keep the current one.
+	 * @param priority The new priority, or null to keep the current one.
+	 * @param reasonForChange The reason recorded in the status history.
+	 * @param changedByRole The role recorded in the status history.
+	 * @return The outcome for each requested id, in request order. Ids in a chunk whose
+	 *         statement failed are reported as FAILED; other chunks are unaffected.
+	 * @throws IllegalArgumentException if no column is to change or an id is null.
+	 */
+	public Map<Long, BulkUpdateOutcome> bulkRecategorize(List<Long> complaintIds, Integer categoryId, Integer subCategoryId, Complaints.ComplaintPriority priority, String reasonForChange, String changedByRole) {
+	    if (categoryId == null && subCategoryId == null && priority == null) {
+	        throw new IllegalArgumentException("At least one of category, subcategory or priority is required");
+	    }
+	    if (complaintIds.contains(null)) {
+	        throw new IllegalArgumentException("Complaint ids must not contain null");
+	    }
+	    Map<Long, BulkUpdateOutcome> outcomes = new LinkedHashMap<>();
+	    for (Long complaintId : complaintIds) {
+	        outcomes.put(complaintId, BulkUpdateOutcome.NOT_FOUND);
+	    }
+	    List<Long> distinctIds = new ArrayList<>(outcomes.keySet());
+	    for (int start = 0; start < distinctIds.size(); start += BULK_UPDATE_CHUNK_SIZE) {
+	        Long[] chunk = distinctIds.subList(start, Math.min(start + BULK_UPDATE_CHUNK_SIZE, distinctIds.size())).toArray(new Long[0]);
+	        try {
+	            List<Long> updated = JdbcTemplate.query(BULK_RECATEGORIZE_SQL, ps -> {
+	                ps.setArray(1, ps.getConnection().createArrayOf("bigint", chunk));
+	                JdbcTemplate.bindValue(ps, 2, categoryId);
+	                JdbcTemplate.bindValue(ps, 3, subCategoryId);
+	                JdbcTemplate.bindValue(ps, 4, priority);
+	                ps.setString(5, reasonForChange);
+	                ps.setString(6, changedByRole);
+	            }, RowMappers.IDS);
+	            for (Long id : updated) {
+	                outcomes.put(id, BulkUpdateOutcome.UPDATED);
+	            }
+	        } catch (SQLException e) {
+	            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error in bulk recategorization of " + chunk.length + " complaints", e);
+	            for (Long id : chunk) {
+	                outcomes.put(id, BulkUpdateOutcome.FAILED);
+	            }
+	        }
+	    }
+	    return outcomes;
+	}
+	
+	
 	/**
 	 * Updates the status of a specified complaint. This method is used across multiple sections including
 	 * 'Complaint Status Updates', 'Initial Assessment Workspace', 'Review and Closure Module', and
@@ -65,28 +269,17 @@ public class ComplaintsDAO {
 	 * @return boolean indicating if the update was successful.
 	 */
 	public boolean updateComplaintStatus(int complaintId, Complaints.ComplaintStatus newStatus) {
-	    Connection conn = DatabaseUtility.connect();
-	    PreparedStatement ps = null;
-	    String query = "UPDATE complaints SET complaint_status = ? WHERE id = ?";
+	    String query = "WITH updated AS (UPDATE complaints SET complaint_status = ? WHERE id = ? RETURNING id) "
+	            + ComplaintTrendAggregator.enqueueSql("updated");
 	
 	    try {
-	        ps = conn.prepareStatement(query);
-	        ps.setString(1, newStatus.toString());
-	        ps.setInt(2, complaintId);
-	
-	        int rowsAffected = ps.executeUpdate();
+	        int rowsAffected = JdbcTemplate.update(query, ps -> {
+	            ps.setString(1, newStatus.toString());
+	            ps.setInt(2, complaintId);
+	        });
 	        return rowsAffected > 0;
 	    } catch (SQLException ex) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        if (ps != null) {
-	            try {
-	                ps.close();
-	            } catch (SQLException ex) {
-	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	            }
-	        }
-	        DatabaseUtility.disconnect(conn);
 	    }
 	    return false;
 	}
@@ -97,37 +290,13 @@ public class ComplaintsDAO {
 	 * @return Complaints The complaint object filled with complaint details.
 	 */
 	public Complaints fetchComplaintDetailsForAssessment(int complaintId) {
-	    Complaints complaint = null;
-	    Connection conn = null;
-	    PreparedStatement stmt = null;
-	    ResultSet rs = null;
+	    String query = "SELECT * FROM complaints WHERE id = ?";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String query = "SELECT * FROM complaints WHERE id = ?";
-	        stmt = conn.prepareStatement(query);
-	        stmt.setInt(1, complaintId);
-	        rs = stmt.executeQuery();
-	        if (rs.next()) {
-	            complaint = new Complaints();
-	            complaint.setId(rs.getInt("id"));
-	            complaint.setComplaintDescription(rs.getString("complaint_description"));
-	            complaint.setComplaintDate(rs.getDate("complaint_date"));
-	            complaint.setComplaintStatus(Complaints.ComplaintStatus.valueOf(rs.getString("complaint_status").toUpperCase()));
-	            complaint.setComplaintPriority(Complaints.ComplaintPriority.valueOf(rs.getString("complaint_priority").toUpperCase()));
-	            complaint.setCustomerFeedback(rs.getString("customer_feedback"));
-	            complaint.setResolutionDate(rs.getDate("resolution_date"));
-	            complaint.setProductName(rs.getString("product_name"));
-	            complaint.setModel(rs.getString("model"));
-	            complaint.setSerialNumber(rs.getString("serial_number"));
-	        }
+	        return JdbcTemplate.queryForObject(query, ps -> ps.setInt(1, complaintId), RowMappers.COMPLAINTS);
 	    } catch (SQLException ex) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        if (stmt != null) { try { stmt.close(); } catch (SQLException ex) { Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex); } }
-	        if (rs != null) { try { rs.close(); } catch (SQLException ex) { Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex); } }
 	    }
-	    return complaint;
+	    return null;
 	}
 	
 	/**
@@ -140,37 +309,122 @@ public class ComplaintsDAO {
 	 * @return A List of Complaints objects that match the criteria.
 	 */
 	public List<Complaints> fetchComplaintsForAssessment(int offset, int limit, String sortBy, String sortDirection, String filterByStatus) {
-	    Connection conn = DatabaseUtility.connect();
-	    List<Complaints> complaintsList = new ArrayList<>();
 	    String query = "SELECT * FROM complaints WHERE complaint_status = ? ORDER BY " + sortBy + " " + sortDirection + " LIMIT ? OFFSET ?";
 	
-	    try (PreparedStatement statement = conn.prepareStatement(query)) {
-	        statement.setString(1, filterByStatus);
-	        statement.setInt(2, limit);
-	        statement.setInt(3, offset);
+	    try {
+	        return JdbcTemplate.query(query, ps -> {
+	            ps.setString(1, filterByStatus);
+	            ps.setInt(2, limit);
+	            ps.setInt(3, offset);
+	        }, RowMappers.COMPLAINTS);
+	    } catch (SQLException e) {
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
+	    }
 	
-	        ResultSet rs = statement.executeQuery();
+	    return new ArrayList<>();
+	}
 	
-	        while (rs.next()) {
-	            Complaints complaint = new Complaints();
-	            complaint.setId(rs.getInt("id"));
-	            complaint.setComplaintDescription(rs.getString("complaint_description"));
-	            complaint.setComplaintDate(rs.getDate("complaint_date"));
-	            complaint.setComplaintStatus(Complaints.ComplaintStatus.valueOf(rs.getString("complaint_status")));
-	            complaint.setComplaintPriority(Complaints.ComplaintPriority.valueOf(rs.getString("complaint_priority")));
-	            complaint.setCustomerFeedback(rs.getString("customer_feedback"));
-	            complaint.setResolutionDate(rs.getDate("resolution_date"));
-	            complaint.setProductName(rs.getString("product_name"));
-	            complaint.setModel(rs.getString("model"));
-	            complaint.setSerialNumber(rs.getString("serial_number"));
-	            complaintsList.add(complaint);
+	/**
+	 * Creates the indexes of {@link AssessmentSort} that do not exist.
+	 *
+	 * @return true if they are in place
+	 */
+	public static boolean installIndexes() {
+	    try (Connection conn = DatabaseUtility.getConnection(); Statement stmt = conn.createStatement()) {
+	        for (AssessmentSort sort : AssessmentSort.values()) {
+	            stmt.execute(sort.getIndexDefinition());
 	        }
+	        return true;
+	    } catch (SQLException e) {
+	        Logger.getLogger(ComplaintsDAO.class.getName()).log(Level.SEVERE, "Error creating assessment queue indexes", e);
+	        return false;
+	    }
+	}
+
+	/**
+	 * Fetches one page of complaints awaiting initial assessment using keyset
+	 * pagination. Unlike {@link #fetchComplaintsForAssessment(int, int, String, String, String)},
+	 * the cost of a page does not grow with its depth, and rows inserted or
+	 * removed between requests do not shift later pages.
+	 * @param filterByStatus The complaint status to list.
+	 * @param sortBy The sort order; only index-backed orders are accepted.
+	 * @param ascending True for ascending order, false for descending.
+	 * @param continuationToken The token returned with the previous page, or null for the first page.
+	 * @param limit The maximum number of complaints to return, capped at {@link #MAX_ASSESSMENT_PAGE_SIZE}.
+	 * @return The page of complaints and the token for the next one; an empty page on error.
+	 * @throws IllegalArgumentException if the token is malformed or was issued for another status or sort order.
+	 */
+	public KeysetPage<Complaints> fetchComplaintsForAssessmentPage(String filterByStatus, AssessmentSort sortBy, boolean ascending, String continuationToken, int limit) {
+	    String fingerprint = "complaints-assessment:" + filterByStatus + ":" + sortBy.name() + ":" + (ascending ? "asc" : "desc");
+	    KeysetCursor cursor = KeysetCursor.decode(continuationToken, fingerprint);
+	    int pageSize = Math.max(1, Math.min(limit, MAX_ASSESSMENT_PAGE_SIZE));
+	    String query = assessmentPageQuery(sortBy, ascending, cursor != null);
+
+	    try {
+	        return JdbcTemplate.queryPage(query, ps -> {
+	            int i = 1;
+	            ps.setString(i++, filterByStatus);
+	            if (cursor != null) {
+	                if (sortBy != AssessmentSort.ID) {
+	                    ps.setObject(i++, cursor.getLastSortKey(), Types.OTHER);
+	                }
+	                ps.setLong(i++, cursor.getLastId());
+	            }
+	            ps.setInt(i, pageSize + 1);
+	        }, RowMappers.COMPLAINTS, "sort_key", fingerprint, pageSize);
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
+
+	    return new KeysetPage<>(new ArrayList<Complaints>(), null);
+	}
 	
-	    return complaintsList;
+	/**
+	 * Streams every complaint with the given status in the requested order through
+	 * a server-side cursor, for exports that must not hold the full result in memory.
+	 * The returned stream keeps a database connection open and must be closed,
+	 * preferably with try-with-resources.
+	 * @param filterByStatus The complaint status to export.
+	 * @param sortBy The sort order; only index-backed orders are accepted.
+	 * @param ascending True for ascending order, false for descending.
+	 * @return A lazily populated stream of complaints; an empty stream if the query could not be started.
+	 */
+	public Stream<Complaints> streamComplaintsForAssessment(String filterByStatus, AssessmentSort sortBy, boolean ascending) {
+	    String direction = ascending ? "ASC" : "DESC";
+	    String query = "SELECT * FROM complaints WHERE complaint_status = ? ORDER BY " + sortBy.getColumn() + " " + direction
+	            + (sortBy == AssessmentSort.ID ? "" : ", id " + direction);
+
+	    try {
+	        return JdbcTemplate.stream(query, ps -> ps.setString(1, filterByStatus), RowMappers.COMPLAINTS);
+	    } catch (SQLException e) {
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
+	    }
+
+	    return Stream.empty();
+	}
+	
+	/**
+	 * Builds the SQL for one keyset page. The text depends only on the sort
+	 * order, direction and whether a cursor is present, so each of these shapes
+	 * is prepared once and reused from the statement cache.
+	 */
+	private static String assessmentPageQuery(AssessmentSort sortBy, boolean ascending, boolean afterCursor) {
+	    String direction = ascending ? "ASC" : "DESC";
+	    String comparison = ascending ? ">" : "<";
+	    StringBuilder query = new StringBuilder("SELECT *, ").append(sortBy.getSortKey())
+	            .append(" AS sort_key FROM complaints WHERE complaint_status = ?");
+	    if (sortBy == AssessmentSort.ID) {
+	        if (afterCursor) {
+	            query.append(" AND id ").append(comparison).append(" ?");
+	        }
+	        query.append(" ORDER BY id ").append(direction);
+	    } else {
+	        if (afterCursor) {
+	            query.append(" AND (").append(sortBy.getSortKey()).append(", id) ").append(comparison).append(" (?, ?)");
+	        }
+	        query.append(" ORDER BY ").append(sortBy.getSortKey()).append(' ').append(direction)
+	                .append(", id ").append(direction);
+	    }
+	    return query.append(" LIMIT ?").toString();
 	}
 }
@@ -3,74 +3,227 @@ package dao;
 
 import model.*;
 import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import utils.KeysetCursor;
+import utils.KeysetPage;
 import java.sql.*;
-import java.util.logging.*;
+import java.util.logging.*;import java.util.ArrayList;
+import java.time.YearMonth;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 
 public class DocumentAccessLogsDAO {
 
 	
 	
+	/** Upper bound on the page size accepted by {@link #fetchDocumentAccessLogsPage}. */
+	public static final int MAX_PAGE_SIZE = 500;
+
+	/** SQLSTATE raised when a table named in a query no longer exists. */
+	private static final String UNDEFINED_TABLE = "42P01";
+	/** How often a history page is read before an export racing with it is reported. */
+	private static final int HISTORY_ATTEMPTS = 3;
+
 	/**
 	 * Fetches a list of document access logs based on provided filters.
 	 *
 	 * @param startDateTime The start date and time to filter logs.
 	 * @param endDateTime The end date and time to filter logs.
-	 * @param userId The unique identifier of the staff member who accessed the document.
-	 * @param documentId The unique identifier of the document that was accessed.
+	 * @param userId The unique identifier of the staff member who accessed the document, or 0 for any.
+	 * @param documentId The unique identifier of the document that was accessed, or 0 for any.
 	 * @param limit The maximum number of log entries to return.
 	 * @param offset The offset from where to start fetching the log entries.
 	 * @return List<DocumentAccessLogs> The list of document access logs matching the filters.
 	 */
 	public List<DocumentAccessLogs> fetchDocumentAccessLogs(Timestamp startDateTime, Timestamp endDateTime, long userId, long documentId, int limit, int offset) {
-	    List<DocumentAccessLogs> logs = new ArrayList<>();
-	    String sql = "SELECT * FROM document_access_logs WHERE access_time >= ? AND access_time <= ? AND (fk_user_id = ? OR ? = 0) AND (fk_document_id = ? OR ? = 0) LIMIT ? OFFSET ?;";
-	    try (Connection conn = DatabaseUtility.connect();
-	         PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setTimestamp(1, startDateTime);
-	        pstmt.setTimestamp(2, endDateTime);
-	        pstmt.setLong(3, userId);
-	        pstmt.setLong(4, userId);
-	        pstmt.setLong(5, documentId);
-	        pstmt.setLong(6, documentId);
-	        pstmt.setInt(7, limit);
-	        pstmt.setInt(8, offset);
-	        ResultSet rs = pstmt.executeQuery();
-	        while (rs.next()) {
-	            DocumentAccessLogs log = new DocumentAccessLogs();
-	            log.setId(rs.getLong("id"));
-	            log.setAccessTime(rs.getTimestamp("access_time"));
-	            log.setActionType(DocumentAccessLogs.ActionType.valueOf(rs.getString("action_type")));
-	            log.setStaffMember(new StaffMembers());  // Placeholder for actual staff member retrieval
-	            log.setDocument(new Documents());  // Placeholder for actual document retrieval
-	            logs.add(log);
-	        }
+	    String sql = accessLogQuery(userId != 0, documentId != 0, false) + " OFFSET ?";
+	    try {
+	        return JdbcTemplate.query(sql, pstmt -> {
+	            int i = bindFilters(pstmt, startDateTime, endDateTime, userId, documentId);
+	            pstmt.setInt(i++, limit);
+	            pstmt.setInt(i, offset);
+	        }, RowMappers.DOCUMENT_ACCESS_LOGS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(DocumentAccessLogsDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(null);
 	    }
-	    return logs;
+	    return new ArrayList<>();
 	}
-	
-	public boolean logDocumentAccess(Timestamp accessTime, DocumentAccessLogs.ActionType actionType, long staffMemberId, long documentId) {
-	    Connection conn = DatabaseUtility.connect();
-	    PreparedStatement pstmt = null;
-	    String insertStatement = "INSERT INTO document_access_logs (access_time, action_type, fk_user_id, fk_document_id) VALUES (?, ?::action_type, ?, ?)";
-	
+
+	/**
+	 * Fetches one page of document access logs in (access_time, id) order,
+	 * continuing after the last row of the previous page instead of skipping an
+	 * OFFSET, so deep pages cost the same as the first.
+	 *
+	 * @param startDateTime The start date and time to filter logs.
+	 * @param endDateTime The end date and time to filter logs.
+	 * @param userId The unique identifier of the staff member who accessed the document, or 0 for any.
+	 * @param documentId The unique identifier of the document that was accessed, or 0 for any.
+	 * @param continuationToken The token from the previous page, or null for the first page.
+	 * @param limit The page size, capped at {@link #MAX_PAGE_SIZE}.
+	 * @return The page; empty if the query failed.
+	 * @throws IllegalArgumentException if the token is malformed or was issued for other filters.
+	 */
+	public KeysetPage<DocumentAccessLogs> fetchDocumentAccessLogsPage(Timestamp startDateTime, Timestamp endDateTime, long userId, long documentId, String continuationToken, int limit) {
+	    String fingerprint = "document-access-logs:" + startDateTime + ":" + endDateTime + ":" + userId + ":" + documentId;
+	    KeysetCursor cursor = KeysetCursor.decode(continuationToken, fingerprint);
+	    int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+	    String sql = accessLogQuery(userId != 0, documentId != 0, cursor != null);
 	    try {
-	        pstmt = conn.prepareStatement(insertStatement);
-	        pstmt.setTimestamp(1, accessTime);
-	        pstmt.setString(2, actionType.name());
-	        pstmt.setLong(3, staffMemberId);
-	        pstmt.setLong(4, documentId);
-	
-	        int affectedRows = pstmt.executeUpdate();
-	        return affectedRows > 0;
+	        return JdbcTemplate.queryPage(sql, pstmt -> {
+	            int i = bindFilters(pstmt, startDateTime, endDateTime, userId, documentId);
+	            if (cursor != null) {
+	                pstmt.setObject(i++, cursor.getLastSortKey(), Types.OTHER);
+	                pstmt.setLong(i++, cursor.getLastId());
+	            }
+	            pstmt.setInt(i, pageSize + 1);
+	        }, RowMappers.DOCUMENT_ACCESS_LOGS, "access_time", fingerprint, pageSize);
 	    } catch (SQLException e) {
-	        Logger.getLogger(DocumentAccessLogsDAO.class.getName()).log(Level.SEVERE, "Error logging document access", e);
-	        return false;
-	    } finally {
-	        DatabaseUtility.closeConnection(conn, pstmt, null);
+	        Logger.getLogger(DocumentAccessLogsDAO.class.getName()).log(Level.SEVERE, null, e);
+	    }
+	    return new KeysetPage<>(new ArrayList<DocumentAccessLogs>(), null);
+	}
+
+	/**
+	 * Fetches one page of document access logs for an inspection, covering the
+	 * live table, partitions detached into {@link LogPartitionsDAO#ARCHIVE_SCHEMA}
+	 * that are not yet exported, and months already exported to the columnar
+	 * archive by {@link LogArchiveDAO}. Each source is read in (access_time, id)
+	 * order and merged, so callers page through the whole history with one
+	 * token as if it were a single table. A partition still in the archive
+	 * schema is read from there and not from its files, which may be partial.
+	 *
+	 * @param startDateTime The start date and time to filter logs.
+	 * @param endDateTime The end date and time to filter logs.
+	 * @param userId The unique identifier of the staff member who accessed the document, or 0 for any.
+	 * @param documentId The unique identifier of the document that was accessed, or 0 for any.
+	 * @param continuationToken The token from the previous page, or null for the first page.
+	 * @param limit The page size, capped at {@link #MAX_PAGE_SIZE}.
+	 * @return The page; empty if the database could not be queried.
+	 * @throws IllegalArgumentException if the token is malformed or was issued for other filters.
+	 */
+	public KeysetPage<DocumentAccessLogs> fetchDocumentAccessLogHistory(Timestamp startDateTime, Timestamp endDateTime, long userId, long documentId, String continuationToken, int limit) {
+	    String fingerprint = "document-access-history:" + startDateTime + ":" + endDateTime + ":" + userId + ":" + documentId;
+	    KeysetCursor cursor = KeysetCursor.decode(continuationToken, fingerprint);
+	    int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+	    Timestamp afterTime = cursor != null ? Timestamp.valueOf(cursor.getLastSortKey()) : null;
+	    long afterId = cursor != null ? cursor.getLastId() : 0L;
+
+	    List<DocumentAccessLogs> merged = null;
+	    for (int attempt = 1; merged == null; attempt++) {
+	        try {
+	            merged = fetchHistory(startDateTime, endDateTime, userId, documentId, afterTime, afterId, pageSize + 1);
+	        } catch (SQLException e) {
+	            if (UNDEFINED_TABLE.equals(e.getSQLState()) && attempt < HISTORY_ATTEMPTS) {
+	                // An archived partition was exported and dropped while we read; its files are complete now.
+	                continue;
+	            }
+	            Logger.getLogger(DocumentAccessLogsDAO.class.getName()).log(Level.SEVERE, null, e);
+	            return new KeysetPage<>(new ArrayList<DocumentAccessLogs>(), null);
+	        }
+	    }
+
+	    merged.sort(Comparator.comparing(DocumentAccessLogs::getAccessTime).thenComparingLong(DocumentAccessLogs::getId));
+	    if (merged.size() <= pageSize) {
+	        return new KeysetPage<>(merged, null);
+	    }
+	    List<DocumentAccessLogs> items = new ArrayList<>(merged.subList(0, pageSize));
+	    DocumentAccessLogs last = items.get(pageSize - 1);
+	    String nextToken = new KeysetCursor(fingerprint, last.getId(), last.getAccessTime().toString()).encode();
+	    return new KeysetPage<>(items, nextToken);
+	}
+
+	/**
+	 * Reads up to {@code limit} rows from each source, unsorted. Archived
+	 * partitions are listed first, so a partition exported after the listing
+	 * fails the database query instead of being missed.
+	 */
+	private static List<DocumentAccessLogs> fetchHistory(Timestamp startDateTime, Timestamp endDateTime, long userId, long documentId,
+	        Timestamp afterTime, long afterId, int limit) throws SQLException {
+	    LogPartitionsDAO.LogTable logTable = LogPartitionsDAO.LogTable.DOCUMENT_ACCESS_LOGS;
+	    List<String> archived = LogArchiveDAO.archivedPartitions(logTable);
+	    List<DocumentAccessLogs> merged = new ArrayList<>(new LogArchiveDAO().fetchArchivedDocumentAccessLogs(
+	            startDateTime, endDateTime, userId, documentId, afterTime, afterId, limit, new HashSet<>(archived)));
+
+	    YearMonth first = YearMonth.from(startDateTime.toLocalDateTime());
+	    YearMonth last = YearMonth.from(endDateTime.toLocalDateTime());
+	    List<String> tables = new ArrayList<>();
+	    tables.add(logTable.getTable());
+	    for (String partition : archived) {
+	        YearMonth month = logTable.partitionMonth(partition);
+	        if (month == null || (!month.isBefore(first) && !month.isAfter(last))) {
+	            tables.add(LogPartitionsDAO.ARCHIVE_SCHEMA + "." + partition);
+	        }
+	    }
+	    // Detached partitions are outside the parent's pruning; each branch uses its own (access_time, id) indexes.
+	    StringBuilder sql = new StringBuilder();
+	    for (String table : tables) {
+	        sql.append(sql.length() == 0 ? "(" : " UNION ALL (")
+	                .append(accessLogQuery(table, userId != 0, documentId != 0, afterTime != null)).append(')');
+	    }
+	    merged.addAll(JdbcTemplate.query(sql.toString(), pstmt -> {
+	        int i = 1;
+	        for (int t = 0; t < tables.size(); t++) {
+	            i = bindFilters(pstmt, i, startDateTime, endDateTime, userId, documentId);
+	            if (afterTime != null) {
+	                pstmt.setTimestamp(i++, afterTime);
+	                pstmt.setLong(i++, afterId);
+	            }
+	            pstmt.setInt(i++, limit);
+	        }
+	    }, RowMappers.DOCUMENT_ACCESS_LOGS));
+	    return merged;
+	}
+
+	/**
+	 * Builds the access log query for the filters actually in use. Leaving out
+	 * an absent filter, rather than writing {@code (col = ? OR ? = 0)}, lets the
+	 * planner pick the (fk_user_id, access_time, id) or (fk_document_id,
+	 * access_time, id) index, and the access_time range prunes the table to the
+	 * monthly partitions it spans (see {@link LogPartitionsDAO}). Each
+	 * combination is a distinct statement with its own cached plan.
+	 */
+	private static String accessLogQuery(boolean byUser, boolean byDocument, boolean afterCursor) {
+	    return accessLogQuery("document_access_logs", byUser, byDocument, afterCursor);
+	}
+
+	private static String accessLogQuery(String table, boolean byUser, boolean byDocument, boolean afterCursor) {
+	    StringBuilder sql = new StringBuilder("SELECT * FROM ").append(table).append(" WHERE access_time >= ? AND access_time <= ?");
+	    if (byUser) {
+	        sql.append(" AND fk_user_id = ?");
+	    }
+	    if (byDocument) {
+	        sql.append(" AND fk_document_id = ?");
+	    }
+	    if (afterCursor) {
+	        sql.append(" AND (access_time, id) > (?, ?)");
+	    }
+	    return sql.append(" ORDER BY access_time, id LIMIT ?").toString();
+	}
+
+	private static int bindFilters(PreparedStatement pstmt, Timestamp startDateTime, Timestamp endDateTime, long userId, long documentId) throws SQLException {
+	    return bindFilters(pstmt, 1, startDateTime, endDateTime, userId, documentId);
+	}
+
+	private static int bindFilters(PreparedStatement pstmt, int i, Timestamp startDateTime, Timestamp endDateTime, long userId, long documentId) throws SQLException {
+	    pstmt.setTimestamp(i++, startDateTime);
+	    pstmt.setTimestamp(i++, endDateTime);
+	    if (userId != 0) {
+	        pstmt.setLong(i++, userId);
+	    }
+	    if (documentId != 0) {
+	        pstmt.setLong(i++, documentId);
+	    }
+	    return i;
+	}
+
+	
+	public boolean logDocumentAccess(Timestamp accessTime, DocumentAccessLogs.ActionType actionType, long staffMemberId, long documentId) {
+	    // Written in the background by the audit pipeline, batched with other events.
+	    boolean accepted = AuditLogPipeline.submit(AuditEvent.documentAccess(accessTime, actionType, staffMemberId, documentId));
+	    if (!accepted) {
+	        Logger.getLogger(DocumentAccessLogsDAO.class.getName()).log(Level.SEVERE, "Document access event was not accepted for document " + documentId);
 	    }
+	    return accepted;
 	}
 }
@@ -0,0 +1,458 @@
+package dao;
+
+import model.*;
+import utils.ApplicationProperties;
+import utils.DatabaseUtility;
+import utils.DocumentDerivers;
+import utils.JdbcTemplate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Derives previews and plain text from stored documents in the background, so
+ * that reviewers can tell what a document is without downloading it and
+ * search finds complaints by the text of their documents.
+ *
+ * <p>
+ * Every document stored through {@link AttachmentStore#upload} is queued in
+ * document_derivation_jobs in the same statement; {@link #enqueueMissing()}
+ * queues documents stored before. A poller claims due jobs with
+ * {@code FOR UPDATE SKIP LOCKED}, so that several application instances can
+ * share the queue, and hands them to a fixed pool of {@code derivation.threads}
+ * workers. It never claims more jobs than there are idle workers, nor more
+ * jobs of one format than {@code derivation.maxPerFormat} or that format's
+ * entry in {@code derivation.formatLimits}, so a run of large scans cannot
+ * hold every worker while text documents wait.
+ * </p>
+ *
+ * <p>
+ * A worker streams the stored content through the
+ * {@link DocumentDerivers.Deriver} for the document's format and saves the
+ * result in document_derivatives, indexing the text for
+ * {@link ComplaintSearchDAO} in the same statement. A failed job is retried
+ * after {@code derivation.retryDelayMillis}, doubling with every attempt, up
+ * to {@code derivation.maxAttempts} attempts. A claimed job is leased for
+ * {@code derivation.leaseMillis}, after which a job whose worker died is
+ * claimed again. Documents whose format has no deriver are marked
+ * {@link DocumentPreviews.DerivationStatus#UNSUPPORTED};
+ * {@link #requeue(DocumentPreviews.DerivationStatus)} retries them once
+ * one is registered.
+ * </p>
+ */
+public final class DocumentDerivationPipeline {
+
+	private static final Logger LOGGER = Logger.getLogger(DocumentDerivationPipeline.class.getName());
+
+	private static final int THREADS = ApplicationProperties.getInt("derivation.threads", 4);
+	private static final int MAX_PER_FORMAT = ApplicationProperties.getInt("derivation.maxPerFormat", 2);
+	private static final Map<String, Integer> FORMAT_LIMITS = formatLimits(
+			ApplicationProperties.getString("derivation.formatLimits", ""));
+	private static final int MAX_ATTEMPTS = ApplicationProperties.getInt("derivation.maxAttempts", 5);
+	private static final long RETRY_DELAY_MILLIS = ApplicationProperties.getLong("derivation.retryDelayMillis", 60000);
+	private static final long LEASE_MILLIS = ApplicationProperties.getLong("derivation.leaseMillis", 600000);
+	private static final long POLL_INTERVAL_MILLIS = ApplicationProperties.getLong("derivation.pollIntervalMillis", 5000);
+
+	/**
+	 * The job queue and the derived text and previews, which go with their
+	 * documents. A RUNNING job's run_after is the end of its lease. Idempotent.
+	 */
+	public static final String[] SCHEMA_DDL = {
+			"CREATE TABLE IF NOT EXISTS document_derivation_jobs (document_id bigint PRIMARY KEY REFERENCES documents (id) ON DELETE CASCADE,"
+					+ " file_format text, status text NOT NULL DEFAULT 'QUEUED', attempts int NOT NULL DEFAULT 0,"
+					+ " run_after timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP, last_error text,"
+					+ " updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP)",
+			"CREATE INDEX IF NOT EXISTS idx_document_derivation_jobs_due ON document_derivation_jobs (run_after)"
+					+ " WHERE status IN ('QUEUED', 'RUNNING')",
+			"CREATE TABLE IF NOT EXISTS document_derivatives (id bigint PRIMARY KEY REFERENCES documents (id) ON DELETE CASCADE,"
+					+ " fk_complaint_id bigint, extracted_text text, text_truncated boolean NOT NULL DEFAULT false,"
+					+ " preview bytea, preview_format text, derived_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP)" };
+
+	/** The format as {@link DocumentDerivers#normalize} gives it, for throttling in SQL. */
+	private static final String FORMAT_KEY = "lower(ltrim(btrim(coalesce(file_format, '')), '.'))";
+
+	private static final String CLAIM_SQL =
+			"UPDATE document_derivation_jobs j SET status = 'RUNNING', attempts = j.attempts + 1,"
+			+ " run_after = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond', updated_at = CURRENT_TIMESTAMP"
+			+ " WHERE j.document_id IN (SELECT document_id FROM document_derivation_jobs"
+			+ " WHERE status IN ('QUEUED', 'RUNNING') AND run_after <= CURRENT_TIMESTAMP AND " + FORMAT_KEY + " <> ALL(?)"
+			+ " ORDER BY run_after LIMIT ? FOR UPDATE SKIP LOCKED)"
+			+ " RETURNING j.document_id, j.file_format, j.attempts";
+
+	/**
+	 * Saves a derivative, indexes or unindexes its text and completes the job.
+	 * The job is matched on its attempt, so a worker whose lease ran out
+	 * cannot complete the job another worker now holds.
+	 */
+	private static final String SAVE_SQL =
+			"WITH saved AS ("
+			+ " INSERT INTO document_derivatives AS v (id, fk_complaint_id, extracted_text, text_truncated, preview, preview_format, derived_at)"
+			+ " SELECT id, fk_complaint_id, ?, ?, ?, ?, CURRENT_TIMESTAMP FROM documents WHERE id = ?"
+			+ " ON CONFLICT (id) DO UPDATE SET fk_complaint_id = EXCLUDED.fk_complaint_id, extracted_text = EXCLUDED.extracted_text,"
+			+ " text_truncated = EXCLUDED.text_truncated, preview = EXCLUDED.preview, preview_format = EXCLUDED.preview_format,"
+			+ " derived_at = EXCLUDED.derived_at"
+			+ " RETURNING *"
+			+ "), indexed AS ("
+			+ ComplaintSearchDAO.indexSql(ComplaintSearchDAO.Source.DOCUMENT, "saved WHERE extracted_text IS NOT NULL")
+			+ "), unindexed AS ("
+			+ ComplaintSearchDAO.unindexSql(ComplaintSearchDAO.Source.DOCUMENT, "saved WHERE extracted_text IS NULL")
+			+ "), finished AS ("
+			+ " UPDATE document_derivation_jobs SET status = 'DONE', last_error = NULL, updated_at = CURRENT_TIMESTAMP"
+			+ " WHERE document_id = ? AND attempts = ?"
+			+ ")"
+			+ " SELECT id FROM saved";
+
+	private static final String FAIL_SQL =
+			"UPDATE document_derivation_jobs SET status = CASE WHEN attempts >= ? THEN 'FAILED' ELSE 'QUEUED' END,"
+			+ " run_after = CURRENT_TIMESTAMP + ? * power(2, attempts - 1) * INTERVAL '1 millisecond', last_error = ?,"
+			+ " updated_at = CURRENT_TIMESTAMP WHERE document_id = ? AND attempts = ?";
+
+	/** Guards the in-flight counts, and is notified when a worker frees up or work arrives. */
+	private static final Object MONITOR = new Object();
+	private static final Map<String, Integer> IN_FLIGHT = new HashMap<>();
+	private static int inFlight;
+	private static long signals;
+
+	private static volatile boolean running;
+	private static volatile Thread poller;
+	private static volatile ThreadPoolExecutor workers;
+
+	/** A claimed document_derivation_jobs row. */
+	static final class Job {
+		long documentId;
+		String fileFormat;
+		int attempts;
+	}
+
+	private DocumentDerivationPipeline() {
+	}
+
+	/**
+	 * Creates the job and derivative tables if they do not exist.
+	 *
+	 * @return true if the schema is in place
+	 */
+	public static boolean installSchema() {
+		try (Connection conn = DatabaseUtility.getConnection(); Statement stmt = conn.createStatement()) {
+			for (String ddl : SCHEMA_DDL) {
+				stmt.execute(ddl);
+			}
+			return true;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error installing document derivation schema", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Builds the statement that queues documents, for use as a data-modifying
+	 * WITH query after the write that stored them.
+	 *
+	 * @param rows a FROM clause yielding documents rows, such as a WITH query
+	 *             over {@code RETURNING *}
+	 */
+	static String enqueueSql(String rows) {
+		return "INSERT INTO document_derivation_jobs (document_id, file_format) SELECT id, file_format FROM " + rows
+				+ " ON CONFLICT (document_id) DO NOTHING";
+	}
+
+	/**
+	 * Queues every stored document that has never been queued, for the first
+	 * installation.
+	 *
+	 * @return the number of documents queued, or -1 on error
+	 */
+	public static int enqueueMissing() {
+		try {
+			int queued = JdbcTemplate.update(enqueueSql("documents WHERE content_hash IS NOT NULL"), ps -> {
+			});
+			wake();
+			return queued;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error queueing documents for derivation", e);
+			return -1;
+		}
+	}
+
+	/**
+	 * Queues every job in a state again from its first attempt, such as the
+	 * UNSUPPORTED jobs of a format a deriver has since been registered for.
+	 *
+	 * @return the number of jobs queued, or -1 on error
+	 */
+	public static int requeue(DocumentPreviews.DerivationStatus status) {
+		try {
+			int queued = JdbcTemplate.update("UPDATE document_derivation_jobs SET status = 'QUEUED', attempts = 0,"
+					+ " run_after = CURRENT_TIMESTAMP, last_error = NULL, updated_at = CURRENT_TIMESTAMP WHERE status = ?",
+					ps -> ps.setString(1, status.name()));
+			wake();
+			return queued;
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error requeueing " + status + " document derivations", e);
+			return -1;
+		}
+	}
+
+	/**
+	 * Tells the poller that jobs may be due, so that a new upload does not
+	 * wait for the next poll.
+	 */
+	public static void wake() {
+		synchronized (MONITOR) {
+			signals++;
+			MONITOR.notifyAll();
+		}
+	}
+
+	/**
+	 * Starts the poller and the worker pool.
+	 */
+	public static synchronized void start() {
+		if (running) {
+			return;
+		}
+		running = true;
+		AtomicInteger workerCount = new AtomicInteger();
+		// The poller claims no more jobs than there are idle workers, so the queue never holds more than one round.
+		workers = new ThreadPoolExecutor(THREADS, THREADS, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(THREADS), r -> {
+			Thread thread = new Thread(r, "document-derivation-" + workerCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		Thread thread = new Thread(DocumentDerivationPipeline::poll, "document-derivation-poller");
+		thread.setDaemon(true);
+		thread.start();
+		poller = thread;
+	}
+
+	/**
+	 * Stops claiming jobs. Jobs already running finish; their leases cover
+	 * any that do not.
+	 */
+	public static synchronized void stop() {
+		running = false;
+		Thread thread = poller;
+		if (thread != null) {
+			thread.interrupt();
+			poller = null;
+		}
+		ThreadPoolExecutor pool = workers;
+		if (pool != null) {
+			pool.shutdown();
+			workers = null;
+		}
+	}
+
+	private static void poll() {
+		ThreadPoolExecutor pool = workers;
+		while (running) {
+			try {
+				int idle;
+				long seen;
+				List<String> saturated = new ArrayList<>();
+				synchronized (MONITOR) {
+					idle = THREADS - inFlight;
+					seen = signals;
+					for (Map.Entry<String, Integer> entry : IN_FLIGHT.entrySet()) {
+						if (entry.getValue() >= limit(entry.getKey())) {
+							saturated.add(entry.getKey());
+						}
+					}
+				}
+				int claimed = 0;
+				if (idle > 0) {
+					List<Job> jobs = claim(idle, saturated);
+					claimed = jobs.size();
+					for (Job job : jobs) {
+						dispatch(pool, job);
+					}
+				}
+				synchronized (MONITOR) {
+					// A full claim may have left more jobs due; otherwise wait for a worker or an upload.
+					if ((claimed < idle || inFlight >= THREADS) && signals == seen) {
+						MONITOR.wait(POLL_INTERVAL_MILLIS);
+					}
+				}
+			} catch (InterruptedException e) {
+				if (!running) {
+					break;
+				}
+			} catch (RuntimeException e) {
+				LOGGER.log(Level.SEVERE, "Document derivation poll failed", e);
+			}
+		}
+	}
+
+	/**
+	 * @param formats formats at their limit, whose jobs are left queued
+	 * @return the jobs claimed; empty on error
+	 */
+	private static List<Job> claim(int limit, List<String> formats) {
+		try {
+			return JdbcTemplate.query(CLAIM_SQL, ps -> {
+				ps.setLong(1, LEASE_MILLIS);
+				ps.setArray(2, ps.getConnection().createArrayOf("text", formats.toArray()));
+				ps.setInt(3, limit);
+			}, RowMappers.DERIVATION_JOBS);
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error claiming document derivation jobs", e);
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Runs a claimed job, or hands it back if its format reached its limit
+	 * within the claimed batch.
+	 */
+	private static void dispatch(ThreadPoolExecutor pool, Job job) {
+		String format = job.fileFormat == null ? "" : DocumentDerivers.normalize(job.fileFormat);
+		synchronized (MONITOR) {
+			Integer count = IN_FLIGHT.get(format);
+			if (count != null && count >= limit(format)) {
+				format = null;
+			} else {
+				IN_FLIGHT.put(format, count == null ? 1 : count + 1);
+				inFlight++;
+			}
+		}
+		if (format == null) {
+			release(job);
+			return;
+		}
+		String key = format;
+		try {
+			pool.execute(() -> {
+				try {
+					process(job);
+				} finally {
+					finished(key);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Stopped meanwhile.
+			finished(key);
+			release(job);
+		}
+	}
+
+	private static void finished(String format) {
+		synchronized (MONITOR) {
+			int count = IN_FLIGHT.get(format) - 1;
+			if (count == 0) {
+				IN_FLIGHT.remove(format);
+			} else {
+				IN_FLIGHT.put(format, count);
+			}
+			inFlight--;
+			signals++;
+			MONITOR.notifyAll();
+		}
+	}
+
+	private static void process(Job job) {
+		try {
+			Documents document = JdbcTemplate.queryForObject("SELECT * FROM documents WHERE id = ?",
+					ps -> ps.setLong(1, job.documentId), RowMappers.DOCUMENTS);
+			if (document == null) {
+				// Deleted meanwhile, and its job with it.
+				return;
+			}
+			if (job.attempts > MAX_ATTEMPTS) {
+				// Leases ran out this often, so its worker keeps dying on it.
+				complete(job, DocumentPreviews.DerivationStatus.FAILED, "Abandoned after " + MAX_ATTEMPTS + " attempts");
+				return;
+			}
+			DocumentDerivers.Deriver deriver = DocumentDerivers.forFormat(document.getFileFormat());
+			if (deriver == null || document.getContentHash() == null) {
+				complete(job, DocumentPreviews.DerivationStatus.UNSUPPORTED,
+						deriver == null ? "No deriver for format " + document.getFileFormat() : "No stored content");
+				return;
+			}
+			DocumentDerivers.Derivative derivative;
+			try (InputStream content = AttachmentStore.BLOBS.open(document.getContentHash())) {
+				derivative = deriver.derive(content, document.getFileFormat());
+			}
+			JdbcTemplate.queryForObject(SAVE_SQL, ps -> {
+				ps.setString(1, derivative.getText());
+				ps.setBoolean(2, derivative.isTextTruncated());
+				ps.setBytes(3, derivative.getPreview());
+				ps.setString(4, derivative.getPreviewFormat());
+				ps.setLong(5, job.documentId);
+				ps.setLong(6, job.documentId);
+				ps.setInt(7, job.attempts);
+			}, RowMappers.IDS);
+		} catch (IOException | SQLException | RuntimeException e) {
+			LOGGER.log(Level.WARNING, "Derivation of document " + job.documentId + " failed on attempt " + job.attempts, e);
+			fail(job, e);
+		}
+	}
+
+	private static void complete(Job job, DocumentPreviews.DerivationStatus status, String reason) throws SQLException {
+		JdbcTemplate.update("UPDATE document_derivation_jobs SET status = ?, last_error = ?, updated_at = CURRENT_TIMESTAMP"
+				+ " WHERE document_id = ? AND attempts = ?", ps -> {
+					ps.setString(1, status.name());
+					ps.setString(2, reason);
+					ps.setLong(3, job.documentId);
+					ps.setInt(4, job.attempts);
+				});
+	}
+
+	private static void fail(Job job, Exception cause) {
+		try {
+			JdbcTemplate.update(FAIL_SQL, ps -> {
+				ps.setInt(1, MAX_ATTEMPTS);
+				ps.setLong(2, RETRY_DELAY_MILLIS);
+				ps.setString(3, String.valueOf(cause));
+				ps.setLong(4, job.documentId);
+				ps.setInt(5, job.attempts);
+			});
+		} catch (SQLException e) {
+			// The lease runs out and the job is claimed again.
+			LOGGER.log(Level.SEVERE, "Error recording failed derivation of document " + job.documentId, e);
+		}
+	}
+
+	/**
+	 * Returns a claimed job to the queue without counting the attempt.
+	 */
+	private static void release(Job job) {
+		try {
+			JdbcTemplate.update("UPDATE document_derivation_jobs SET status = 'QUEUED', attempts = attempts - 1,"
+					+ " run_after = CURRENT_TIMESTAMP WHERE document_id = ? AND attempts = ?", ps -> {
+						ps.setLong(1, job.documentId);
+						ps.setInt(2, job.attempts);
+					});
+		} catch (SQLException e) {
+			LOGGER.log(Level.SEVERE, "Error releasing derivation of document " + job.documentId, e);
+		}
+	}
+
+	private static int limit(String format) {
+		Integer limit = FORMAT_LIMITS.get(format);
+		return limit == null ? MAX_PER_FORMAT : limit;
+	}
+
+	private static Map<String, Integer> formatLimits(String configured) {
+		Map<String, Integer> limits = new HashMap<>();
+		for (String entry : configured.split(",")) {
+			int colon = entry.indexOf(':');
+			if (colon > 0) {
+				limits.put(DocumentDerivers.normalize(entry.substring(0, colon)), Integer.parseInt(entry.substring(colon + 1).trim()));
+			}
+		}
+		return limits;
+	}
+}
@@ -0,0 +1,85 @@
+package dao;
+
+import model.*;
+import utils.JdbcTemplate;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the previews and text {@link DocumentDerivationPipeline} derives from
+ * documents, so that the review screen can show what each of a complaint's
+ * documents is without downloading it.
+ *
+ * <p>
+ * {@link #fetchForComplaint} lists a complaint's documents with an excerpt of
+ * their text in one query; the preview images and full text are fetched one
+ * document at a time, when a reviewer looks at them.
+ * </p>
+ */
+public class DocumentPreviewsDAO {
+
+	private static final Logger LOGGER = Logger.getLogger(DocumentPreviewsDAO.class.getName());
+
+	public static final int DEFAULT_EXCERPT_CHARS = 500;
+
+	private static final String FOR_COMPLAINT_SQL =
+	        "SELECT d.id, d.document_name, d.document_type, d.file_format, d.file_size, d.upload_time,"
+	        + " j.status AS derivation_status, left(v.extracted_text, ?) AS excerpt, length(v.extracted_text) AS text_length,"
+	        + " v.text_truncated, v.preview_format, v.derived_at"
+	        + " FROM documents d LEFT JOIN document_derivation_jobs j ON j.document_id = d.id"
+	        + " LEFT JOIN document_derivatives v ON v.id = d.id"
+	        + " WHERE d.fk_complaint_id = ? ORDER BY d.upload_time, d.id";
+
+	/**
+	 * Lists a complaint's documents for review, with what has been derived
+	 * from them so far.
+	 * @param complaintId The complaint whose documents are listed.
+	 * @param excerptChars The number of characters of text to include for each document.
+	 * @return The documents, oldest first; empty if none or on error.
+	 */
+	public List<DocumentPreviews> fetchForComplaint(long complaintId, int excerptChars) {
+	    try {
+	        return JdbcTemplate.query(FOR_COMPLAINT_SQL, ps -> {
+	            ps.setInt(1, Math.max(0, excerptChars));
+	            ps.setLong(2, complaintId);
+	        }, RowMappers.DOCUMENT_PREVIEWS);
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error fetching document previews for complaint " + complaintId, e);
+	        return new ArrayList<>();
+	    }
+	}
+
+	/**
+	 * Fetches a document's first-page preview image, whose media type
+	 * {@link DocumentPreviews#getPreviewFormat()} gives.
+	 * @param documentId The document's id.
+	 * @return The encoded image, or null if there is none or on error.
+	 */
+	public byte[] fetchPreview(long documentId) {
+	    try {
+	        return JdbcTemplate.queryForObject("SELECT preview FROM document_derivatives WHERE id = ?",
+	                ps -> ps.setLong(1, documentId), RowMappers.scalar(byte[].class));
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error fetching preview of document " + documentId, e);
+	        return null;
+	    }
+	}
+
+	/**
+	 * Fetches all the text extracted from a document, up to {@code derivation.maxTextChars}.
+	 * @param documentId The document's id.
+	 * @return The text, or null if there is none or on error.
+	 */
+	public String fetchText(long documentId) {
+	    try {
+	        return JdbcTemplate.queryForObject("SELECT extracted_text FROM document_derivatives WHERE id = ?",
+	                ps -> ps.setLong(1, documentId), RowMappers.scalar(String.class));
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error fetching text of document " + documentId, e);
+	        return null;
+	    }
+	}
+}
@@ -3,57 +3,320 @@ package dao;
 
 import model.*;
 import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import utils.KeysetCursor;
+import utils.KeysetPage;
 import java.sql.*;
 import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 
+/**
+ * Reads and maintains the documents table.
+ *
+ * <p>
+ * Browsing goes through {@link DocumentQuery}: an optional document type and
+ * complaint filter, one of the {@link DocumentSort} orders and a keyset
+ * continuation token. Every combination maps to one of a fixed set of
+ * parameterized SQL texts, so the driver's per-connection statement cache
+ * keeps each shape prepared on the server instead of planning a new statement
+ * per filter value, and each shape is served by a range scan of the
+ * {@link DocumentIndex} {@link DocumentQuery#getIndex()} names.
+ * </p>
+ */
 public class DocumentsDAO {
 
-	
+	/** Upper bound on the page size accepted by {@link #fetchDocumentsPage}. */
+	public static final int MAX_PAGE_SIZE = 200;
+
+	/**
+	 * The indexes document browsing relies on, over the {@link DocumentSort}
+	 * sort keys. Filtering by complaint uses the complaint index whatever the
+	 * order, since a complaint has few documents to sort.
+	 */
+	public enum DocumentIndex {
+		PRIMARY_KEY("documents_pkey", null),
+		UPLOAD_TIME_ID("idx_documents_upload_key_id", "((COALESCE(upload_time, 'infinity')), id)"),
+		NAME_ID("idx_documents_name_key_id", "((COALESCE(document_name, '')), id)"),
+		TYPE_ID("idx_documents_type_id", "(document_type, id)"),
+		TYPE_UPLOAD_TIME_ID("idx_documents_type_upload_key_id", "(document_type, (COALESCE(upload_time, 'infinity')), id)"),
+		TYPE_NAME_ID("idx_documents_type_name_key_id", "(document_type, (COALESCE(document_name, '')), id)"),
+		COMPLAINT_UPLOAD_TIME_ID("idx_documents_complaint_upload_key_id", "(fk_complaint_id, (COALESCE(upload_time, 'infinity')), id)");
+
+		private final String indexName;
+		private final String columns;
+
+		DocumentIndex(String indexName, String columns) {
+			this.indexName = indexName;
+			this.columns = columns;
+		}
+
+		public String getIndexName() {
+			return indexName;
+		}
+
+		/**
+		 * @return the DDL of the index, or null for the primary key
+		 */
+		public String getIndexDefinition() {
+			return columns == null ? null : "CREATE INDEX IF NOT EXISTS " + indexName + " ON documents " + columns;
+		}
+	}
+
+	/**
+	 * Sort orders supported by {@link DocumentQuery}, with the index serving
+	 * each one alone and with a document type filter. upload_time and
+	 * document_name are nullable and a NULL in a row comparison matches
+	 * nothing, so pages are ordered and sought by a sort key that maps NULL
+	 * to a value: 'infinity' for upload times, which keeps undated documents
+	 * last when ascending, and the empty string for names, which puts unnamed
+	 * documents first.
+	 */
+	public enum DocumentSort {
+		UPLOAD_TIME("upload_time", "COALESCE(upload_time, 'infinity')", DocumentIndex.UPLOAD_TIME_ID, DocumentIndex.TYPE_UPLOAD_TIME_ID),
+		DOCUMENT_NAME("document_name", "COALESCE(document_name, '')", DocumentIndex.NAME_ID, DocumentIndex.TYPE_NAME_ID),
+		ID("id", "id", DocumentIndex.PRIMARY_KEY, DocumentIndex.TYPE_ID);
+
+		private final String column;
+		private final String sortKey;
+		private final DocumentIndex index;
+		private final DocumentIndex typeIndex;
+
+		DocumentSort(String column, String sortKey, DocumentIndex index, DocumentIndex typeIndex) {
+			this.column = column;
+			this.sortKey = sortKey;
+			this.index = index;
+			this.typeIndex = typeIndex;
+		}
+
+		public String getColumn() {
+			return column;
+		}
+
+		/**
+		 * @return the never-null expression pages are ordered and sought by
+		 */
+		public String getSortKey() {
+			return sortKey;
+		}
+
+		/**
+		 * @return the sort order on the given column, or null if there is none
+		 */
+		public static DocumentSort forColumn(String column) {
+			for (DocumentSort sort : values()) {
+				if (sort.column.equalsIgnoreCase(column)) {
+					return sort;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A page request for documents. Not thread-safe; build one per request.
+	 */
+	public static final class DocumentQuery {
+		private Documents.DocumentTypes documentType;
+		private Long complaintId;
+		private DocumentSort sort = DocumentSort.UPLOAD_TIME;
+		private boolean ascending = false;
+		private int pageSize = 50;
+		private String continuationToken;
+
+		/**
+		 * Keeps only documents of a type.
+		 */
+		public DocumentQuery ofType(Documents.DocumentTypes documentType) {
+			this.documentType = documentType;
+			return this;
+		}
+
+		/**
+		 * Keeps only the documents of a complaint.
+		 */
+		public DocumentQuery forComplaint(long complaintId) {
+			this.complaintId = complaintId;
+			return this;
+		}
+
+		/**
+		 * Orders by a column, then by id in the same direction. Newest upload
+		 * first by default.
+		 */
+		public DocumentQuery sortBy(DocumentSort sort, boolean ascending) {
+			this.sort = sort;
+			this.ascending = ascending;
+			return this;
+		}
+
+		/**
+		 * @param pageSize capped at {@link #MAX_PAGE_SIZE}
+		 */
+		public DocumentQuery pageSize(int pageSize) {
+			this.pageSize = Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+			return this;
+		}
+
+		/**
+		 * Continues after the page that returned this token.
+		 */
+		public DocumentQuery after(String continuationToken) {
+			this.continuationToken = continuationToken;
+			return this;
+		}
+
+		/**
+		 * @return the index this query's shape is served by
+		 */
+		public DocumentIndex getIndex() {
+			if (complaintId != null) {
+				return DocumentIndex.COMPLAINT_UPLOAD_TIME_ID;
+			}
+			return documentType != null ? sort.typeIndex : sort.index;
+		}
+
+		/**
+		 * Identifies the filters and order, so that a token cannot be replayed
+		 * against another query.
+		 */
+		String fingerprint() {
+			return "documents:" + documentType + ":" + complaintId + ":" + sort.name() + ":" + (ascending ? "asc" : "desc");
+		}
+
+		/**
+		 * Builds the SQL for one page. The text depends only on which filters
+		 * are set, the order and whether a cursor is present, never on their
+		 * values.
+		 */
+		String sql(boolean afterCursor) {
+			String direction = ascending ? "ASC" : "DESC";
+			String comparison = ascending ? ">" : "<";
+			StringBuilder sql = new StringBuilder("SELECT *, ").append(sort.sortKey).append(" AS sort_key FROM documents WHERE TRUE");
+			if (documentType != null) {
+				sql.append(" AND document_type = ?");
+			}
+			if (complaintId != null) {
+				sql.append(" AND fk_complaint_id = ?");
+			}
+			if (sort == DocumentSort.ID) {
+				if (afterCursor) {
+					sql.append(" AND id ").append(comparison).append(" ?");
+				}
+				sql.append(" ORDER BY id ").append(direction);
+			} else {
+				if (afterCursor) {
+					sql.append(" AND (").append(sort.sortKey).append(", id) ").append(comparison).append(" (?, ?)");
+				}
+				sql.append(" ORDER BY ").append(sort.sortKey).append(' ').append(direction).append(", id ").append(direction);
+			}
+			return sql.append(" LIMIT ?").toString();
+		}
+
+		/**
+		 * Binds the filters and, after a cursor, its position.
+		 *
+		 * @return the index of the next parameter
+		 */
+		int bind(PreparedStatement ps, KeysetCursor cursor) throws SQLException {
+			int i = 1;
+			if (documentType != null) {
+				ps.setObject(i++, documentType.name(), Types.OTHER);
+			}
+			if (complaintId != null) {
+				ps.setLong(i++, complaintId);
+			}
+			if (cursor != null) {
+				if (sort != DocumentSort.ID) {
+					ps.setObject(i++, cursor.getLastSortKey(), Types.OTHER);
+				}
+				ps.setLong(i++, cursor.getLastId());
+			}
+			return i;
+		}
+	}
+
+	/**
+	 * Creates the indexes of {@link DocumentIndex} that do not exist.
+	 *
+	 * @return true if they are in place
+	 */
+	public static boolean installIndexes() {
+	    try (Connection conn = DatabaseUtility.getConnection(); Statement stmt = conn.createStatement()) {
+	        for (DocumentIndex index : DocumentIndex.values()) {
+	            if (index.getIndexDefinition() != null) {
+	                stmt.execute(index.getIndexDefinition());
+	            }
+	        }
+	        return true;
+	    } catch (SQLException e) {
+	        Logger.getLogger(DocumentsDAO.class.getName()).log(Level.SEVERE, "Error creating document indexes", e);
+	        return false;
+	    }
+	}
+
+	/**
+	 * Fetches one page of documents with keyset pagination, so that the cost of a page does not grow
+	 * with its depth and documents uploaded meanwhile do not shift later pages.
+	 * @param query The filters, order, page size and continuation token.
+	 * @return The page and the token for the next one; an empty page on error.
+	 * @throws IllegalArgumentException if the token is malformed or was issued for another query.
+	 */
+	public KeysetPage<Documents> fetchDocumentsPage(DocumentQuery query) {
+	    String fingerprint = query.fingerprint();
+	    KeysetCursor cursor = KeysetCursor.decode(query.continuationToken, fingerprint);
+	    try {
+	        return JdbcTemplate.queryPage(query.sql(cursor != null), ps -> {
+	            int i = query.bind(ps, cursor);
+	            ps.setInt(i, query.pageSize + 1);
+	        }, RowMappers.DOCUMENTS, "sort_key", fingerprint, query.pageSize);
+	    } catch (SQLException e) {
+	        Logger.getLogger(DocumentsDAO.class.getName()).log(Level.SEVERE, "Error fetching documents using " + query.getIndex().getIndexName(), e);
+	    }
+	    return new KeysetPage<>(new ArrayList<Documents>(), null);
+	}
+
 	/**
 	 * Fetches a list of documents based on the provided filters and pagination options.
-	 * @param documentTypeFilter Specifies the type of documents to filter by.
-	 * @param complaintIdFilter The complaint ID to filter documents by.
-	 * @param sortBy Specifies the column name to sort by.
+	 * @param documentTypeFilter Specifies the type of documents to filter by, or an empty string for all.
+	 * @param complaintIdFilter The complaint ID to filter documents by, or 0 for all.
+	 * @param sortBy The column to sort by, optionally followed by ASC or DESC; one of the {@link DocumentSort} columns.
 	 * @param limit Defines the maximum number of documents to return.
 	 * @param offset Specifies the offset from where to start fetching documents.
-	 * @return A list of Documents matching the criteria.
+	 * @return A list of Documents matching the criteria; empty for an unknown type or sort column.
+	 * @deprecated Use {@link #fetchDocumentsPage(DocumentQuery)}, whose pages do not get slower with depth.
 	 */
+	@Deprecated
 	public List<Documents> fetchDocuments(String documentTypeFilter, int complaintIdFilter, String sortBy, int limit, int offset) {
-	    List<Documents> documents = new ArrayList<>();
-	    Connection conn = null;
+	    DocumentQuery query = new DocumentQuery().pageSize(limit);
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String query = "SELECT * FROM documents WHERE 1=1 ";
 	        if (!documentTypeFilter.isEmpty()) {
-	            query += "AND document_type = '" + documentTypeFilter + "' ";
+	            query.ofType(Documents.DocumentTypes.valueOf(documentTypeFilter));
 	        }
 	        if (complaintIdFilter != 0) {
-	            query += "AND fk_complaint_id = " + complaintIdFilter + " ";
+	            query.forComplaint(complaintIdFilter);
 	        }
-	        if (!sortBy.isEmpty()) {
-	            query += "ORDER BY " + sortBy + " ";
-	        }
-	        query += "LIMIT " + limit + " OFFSET " + offset + ";";
-	        Statement stmt = conn.createStatement();
-	        ResultSet rs = stmt.executeQuery(query);
-	        while (rs.next()) {
-	            Documents document = new Documents();
-	            document.setId(rs.getLong("id"));
-	            document.setDocumentName(rs.getString("document_name"));
-	            document.setUploadTime(rs.getTimestamp("upload_time"));
-	            document.setFileSize(rs.getBigDecimal("file_size"));
-	            document.setFileFormat(rs.getString("file_format"));
-	            document.setContentHash(rs.getString("content_hash"));
-	            documents.add(document);
+	        String[] order = sortBy.trim().split("\\s+");
+	        DocumentSort sort = sortBy.trim().isEmpty() ? DocumentSort.ID : DocumentSort.forColumn(order[0]);
+	        if (sort == null || (order.length > 1 && !order[1].matches("(?i)asc|desc")) || order.length > 2) {
+	            throw new IllegalArgumentException("Unsupported document sort: " + sortBy);
 	        }
+	        query.sortBy(sort, order.length < 2 || order[1].equalsIgnoreCase("asc"));
+	    } catch (IllegalArgumentException e) {
+	        Logger.getLogger(DocumentsDAO.class.getName()).log(Level.SEVERE, null, e);
+	        return new ArrayList<>();
+	    }
+	    try {
+	        return JdbcTemplate.query(query.sql(false) + " OFFSET ?", ps -> {
+	            int i = query.bind(ps, null);
+	            ps.setInt(i++, limit);
+	            ps.setInt(i, offset);
+	        }, RowMappers.DOCUMENTS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(DocumentsDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return documents;
+	    return new ArrayList<>();
 	}
 	
 	/**
@@ -63,36 +326,19 @@ public class DocumentsDAO {
 	 * @return boolean indicating success or failure of the update operation.
 	 */
 	public boolean updateDocumentPermissions(int documentId, Map<String, Boolean> permissions) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    try {
-	        conn = DatabaseUtility.connect();
-	        // Dummy SQL for demonstration. This should be replaced with actual SQL query to update document permissions.
-	        String sql = "UPDATE document_permissions SET access = ? WHERE document_id = ? AND user_role = ?;";
-	        pstmt = conn.prepareStatement(sql);
+	    // Dummy SQL for demonstration. This should be replaced with actual SQL query to update document permissions.
+	    String sql = "UPDATE document_permissions SET access = ? WHERE document_id = ? AND user_role = ?;";
+	    try (Connection conn = DatabaseUtility.getConnection()) {
 	        for (Map.Entry<String, Boolean> entry : permissions.entrySet()) {
-	            pstmt.setBoolean(1, entry.getValue());
-	            pstmt.setInt(2, documentId);
-	            pstmt.setString(3, entry.getKey());
-	            pstmt.executeUpdate();
+	            JdbcTemplate.update(conn, sql, JdbcTemplate.params(entry.getValue(), documentId, entry.getKey()));
 	        }
 	        return true;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error updating document permissions", e);
 	        return false;
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        if (pstmt != null) {
-	            try {
-	                pstmt.close();
-	            } catch (SQLException e) {
-	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error closing PreparedStatement", e);
-	            }
-	        }
 	    }
 	}
-	
-	
+
 	/**
 	 * Retrieves detailed information about a single document based on its ID.
 	 * Utilized in the 'Document Management Table' and 'Document Review Link' sections.
@@ -100,70 +346,28 @@ public class DocumentsDAO {
 	 * @return A Documents object containing detailed information about the document, or null if not found.
 	 */
 	public Documents fetchDocumentById(int documentId) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    ResultSet rs = null;
-	    Documents document = null;
+	    String query = "SELECT * FROM documents WHERE id = ?;";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String query = "SELECT * FROM documents WHERE id = ?;";
-	        pstmt = conn.prepareStatement(query);
-	        pstmt.setInt(1, documentId);
-	
-	        rs = pstmt.executeQuery();
-	        if (rs.next()) {
-	            document = new Documents();
-	            document.setId(rs.getLong("id"));
-	            document.setDocumentName(rs.getString("document_name"));
-	            document.setUploadTime(rs.getTimestamp("upload_time"));
-	            document.setDocumentType(Documents.DocumentTypes.valueOf(rs.getString("document_type")));
-	            document.setFileSize(rs.getBigDecimal("file_size"));
-	            document.setFileFormat(rs.getString("file_format"));
-	            document.setContentHash(rs.getString("content_hash"));
-	            // Assuming Complaints ID is being fetched properly from another part of the system
-	            // document.setFkComplaintId(...);
-	        }
+	        return JdbcTemplate.queryForObject(query, pstmt -> pstmt.setInt(1, documentId), RowMappers.DOCUMENTS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(DocumentsDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        if (pstmt != null) { try { pstmt.close(); } catch (SQLException e) { /* Ignored */ } }
-	        if (rs != null) { try { rs.close(); } catch (SQLException e) { /* Ignored */ } }
 	    }
-	    return document;
+	    return null;
 	}
-	
+
 	/**
-	 * Deletes a specific document from the repository.
+	 * Deletes a specific document from the repository, along with its extracted text in the search index.
 	 * @param documentId The unique identifier for the document to be deleted.
 	 * @return true if the document is successfully deleted, false otherwise.
 	 */
 	public boolean deleteDocument(int documentId) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean result = false;
+	    String sql = "WITH deleted AS (DELETE FROM documents WHERE id = ? RETURNING id), unindexed AS ("
+	            + ComplaintSearchDAO.unindexSql(ComplaintSearchDAO.Source.DOCUMENT, "deleted") + ") SELECT id FROM deleted";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "DELETE FROM documents WHERE id = ?;";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setInt(1, documentId);
-	
-	        int affectedRows = pstmt.executeUpdate();
-	        if (affectedRows > 0) {
-	            result = true;
-	        }
+	        return JdbcTemplate.queryForObject(sql, pstmt -> pstmt.setInt(1, documentId), RowMappers.IDS) != null;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        if (pstmt != null) {
-	            try {
-	                pstmt.close();
-	            } catch (SQLException e) {
-	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	            }
-	        }
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return result;
+	    return false;
 	}
 }
@@ -0,0 +1,402 @@
+package dao;
+
+import model.*;
+import utils.ApplicationProperties;
+import utils.BlobStore;
+import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Chunked, resumable uploads of evidence documents, for site users on slow
+ * links whose large lab reports would otherwise restart from zero after every
+ * dropped connection.
+ *
+ * <p>
+ * {@link #beginUpload} records the document's metadata and size in
+ * evidence_uploads and tells the client the chunk size. The client then sends
+ * each chunk with its byte offset and SHA-256 to {@link #putChunk}, in any
+ * order and as often as needed. A chunk is streamed to a temporary file in the
+ * staging directory, checked against its length and checksum, and only then
+ * renamed into place as {@code <upload>/<index>.part} and recorded in
+ * evidence_upload_chunks, so a chunk is either wholly received or not at all.
+ * After an interruption {@link #fetchUpload} lists the chunks still missing.
+ * </p>
+ *
+ * <p>
+ * {@link #commitUpload} locks the upload, joins the parts, moves the file
+ * into the {@link AttachmentStore} blob store and inserts the evidence_documents
+ * row with the content hash in one transaction; committing twice returns the
+ * same document. The staging directory should be on the same file system as
+ * the blob store so that the final move is a rename. Uploads idle for longer
+ * than {@code uploads.expiryHours} are removed by {@link #purgeExpiredUploads()}.
+ * </p>
+ */
+public class EvidenceUploadsDAO {
+
+	private static final Logger LOGGER = Logger.getLogger(EvidenceUploadsDAO.class.getName());
+
+	public static final int CHUNK_SIZE = ApplicationProperties.getInt("uploads.chunkSize", 4 * 1024 * 1024);
+	public static final long MAX_SIZE = ApplicationProperties.getLong("uploads.maxSize", 4L * 1024 * 1024 * 1024);
+	private static final int EXPIRY_HOURS = ApplicationProperties.getInt("uploads.expiryHours", 72);
+	private static final Path STAGING_DIRECTORY = Paths.get(ApplicationProperties.getString("uploads.stagingDirectory",
+			AttachmentStore.BLOBS.getRoot().resolve("staging").toString()));
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** The upload and chunk tables. Idempotent. */
+	public static final String[] SCHEMA_DDL = {
+			"CREATE TABLE IF NOT EXISTS evidence_uploads (id text PRIMARY KEY, document_name text NOT NULL,"
+					+ " document_type text NOT NULL, file_format text, total_size bigint NOT NULL, chunk_size integer NOT NULL,"
+					+ " fk_complaint_id integer NOT NULL, fk_investigation_record_id integer NOT NULL, evidence_document_id integer,"
+					+ " created_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP, updated_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP)",
+			"CREATE TABLE IF NOT EXISTS evidence_upload_chunks (upload_id text NOT NULL REFERENCES evidence_uploads (id) ON DELETE CASCADE,"
+					+ " chunk_index integer NOT NULL, checksum text NOT NULL, received_at timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+					+ " PRIMARY KEY (upload_id, chunk_index))",
+			"CREATE INDEX IF NOT EXISTS idx_evidence_uploads_updated_at ON evidence_uploads (updated_at)" };
+
+	private static final String SELECT_UPLOAD =
+			"SELECT u.*, (SELECT array_agg(c.chunk_index ORDER BY c.chunk_index) FROM evidence_upload_chunks c WHERE c.upload_id = u.id)"
+			+ " AS received_chunks FROM evidence_uploads u WHERE u.id = ?";
+
+	/** What became of a chunk sent to {@link #putChunk}. */
+	public enum ChunkResult {
+		/** Stored; sending it again is harmless. */
+		ACCEPTED,
+		/** No such upload, or it has expired or been aborted. */
+		UNKNOWN_UPLOAD,
+		/** The upload is already committed. */
+		ALREADY_COMMITTED,
+		/** The offset is not a multiple of the chunk size within the document. */
+		BAD_OFFSET,
+		/** The chunk is shorter or longer than the chunk size, or the rest of the document for the last one. */
+		BAD_LENGTH,
+		/** The bytes received do not have the checksum sent; send the chunk again. */
+		CHECKSUM_MISMATCH,
+		/** A database or disk error; send the chunk again later. */
+		FAILED
+	}
+
+	/**
+	 * Creates the upload tables if they do not exist.
+	 *
+	 * @return true if the schema is in place
+	 */
+	public static boolean installSchema() {
+	    try (Connection conn = DatabaseUtility.getConnection(); Statement stmt = conn.createStatement()) {
+	        for (String ddl : SCHEMA_DDL) {
+	            stmt.execute(ddl);
+	        }
+	        return true;
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error installing evidence upload schema", e);
+	        return false;
+	    }
+	}
+
+	/**
+	 * Starts an upload.
+	 * @param documentName Name of the document being uploaded.
+	 * @param documentType The type of the document.
+	 * @param fileFormat The format of the document (e.g., PDF, JPG, PNG).
+	 * @param totalSize The size of the whole document in bytes, at most {@link #MAX_SIZE}.
+	 * @param complaintId The complaint the document is evidence for.
+	 * @param investigationRecordId The investigation record the document belongs to.
+	 * @return The new upload, whose id and chunk size the client uses for every chunk, or null on error.
+	 */
+	public EvidenceUploads beginUpload(String documentName, Documents.DocumentTypes documentType, String fileFormat, long totalSize, int complaintId, int investigationRecordId) {
+	    if (totalSize < 0 || totalSize > MAX_SIZE) {
+	        LOGGER.log(Level.WARNING, "Rejected upload of {0}: {1} bytes is outside 0..{2}", new Object[] { documentName, totalSize, MAX_SIZE });
+	        return null;
+	    }
+	    String sql = "INSERT INTO evidence_uploads (id, document_name, document_type, file_format, total_size, chunk_size, fk_complaint_id, fk_investigation_record_id)"
+	            + " VALUES (?, ?, ?, ?, ?, ?, ?, ?) RETURNING *";
+	    try {
+	        return JdbcTemplate.queryForObject(sql, JdbcTemplate.params(UUID.randomUUID().toString(), documentName, documentType, fileFormat,
+	                totalSize, CHUNK_SIZE, complaintId, investigationRecordId), RowMappers.EVIDENCE_UPLOADS);
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error starting upload of " + documentName, e);
+	        return null;
+	    }
+	}
+
+	/**
+	 * Fetches an upload with the chunks received so far, for resuming it.
+	 * @param uploadId The upload's id.
+	 * @return The upload, or null if it does not exist or on error.
+	 */
+	public EvidenceUploads fetchUpload(String uploadId) {
+	    try {
+	        return JdbcTemplate.queryForObject(SELECT_UPLOAD, ps -> ps.setString(1, uploadId), RowMappers.EVIDENCE_UPLOADS);
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error fetching upload " + uploadId, e);
+	        return null;
+	    }
+	}
+
+	/**
+	 * Receives one chunk of an upload.
+	 * @param uploadId The upload's id.
+	 * @param offset The chunk's first byte within the document; a multiple of the upload's chunk size.
+	 * @param data The chunk's bytes; read up to one byte past the expected length, not closed.
+	 * @param sha256 The hex SHA-256 of the chunk's bytes as the client computed it.
+	 * @return What became of the chunk.
+	 */
+	public ChunkResult putChunk(String uploadId, long offset, InputStream data, String sha256) {
+	    EvidenceUploads upload = fetchUpload(uploadId);
+	    if (upload == null) {
+	        return ChunkResult.UNKNOWN_UPLOAD;
+	    }
+	    if (upload.isCommitted()) {
+	        return ChunkResult.ALREADY_COMMITTED;
+	    }
+	    if (offset < 0 || offset % upload.getChunkSize() != 0 || offset / upload.getChunkSize() >= upload.getChunkCount()) {
+	        return ChunkResult.BAD_OFFSET;
+	    }
+	    int index = (int) (offset / upload.getChunkSize());
+	    long expected = Math.min(upload.getChunkSize(), upload.getTotalSize() - offset);
+	    Path temp = null;
+	    try {
+	        Path directory = STAGING_DIRECTORY.resolve(uploadId);
+	        Files.createDirectories(directory);
+	        temp = Files.createTempFile(directory, index + "-", ".tmp");
+	        MessageDigest digest = BlobStore.sha256();
+	        long received = receive(data, temp, expected + 1, digest);
+	        if (received != expected) {
+	            return ChunkResult.BAD_LENGTH;
+	        }
+	        if (sha256 == null || !BlobStore.hex(digest.digest()).equalsIgnoreCase(sha256.trim())) {
+	            return ChunkResult.CHECKSUM_MISMATCH;
+	        }
+	        return record(uploadId, index, temp, directory.resolve(index + ".part"), sha256.trim().toLowerCase());
+	    } catch (IOException | SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error receiving chunk " + index + " of upload " + uploadId, e);
+	        return ChunkResult.FAILED;
+	    } finally {
+	        deleteQuietly(temp);
+	    }
+	}
+
+	/**
+	 * Completes an upload: stores the document's content and creates its evidence_documents row.
+	 * @param uploadId The upload's id.
+	 * @param sha256 The hex SHA-256 of the whole document, or null to rely on the chunk checksums.
+	 * @return The upload; committed, with its evidence document id, if every chunk was received,
+	 *         otherwise unchanged with the chunks still missing. Null if the upload does not exist,
+	 *         the document does not match {@code sha256} or on error.
+	 */
+	public EvidenceUploads commitUpload(String uploadId, String sha256) {
+	    try (Connection conn = DatabaseUtility.getConnection()) {
+	        conn.setAutoCommit(false);
+	        try {
+	            // Waits for chunks being recorded and keeps new ones out while the parts are joined.
+	            EvidenceUploads upload = JdbcTemplate.queryForObject(conn, SELECT_UPLOAD + " FOR UPDATE OF u", ps -> ps.setString(1, uploadId),
+	                    RowMappers.EVIDENCE_UPLOADS);
+	            if (upload == null || upload.isCommitted() || !upload.getMissingChunks().isEmpty()) {
+	                conn.rollback();
+	                return upload;
+	            }
+	            Path directory = STAGING_DIRECTORY.resolve(uploadId);
+	            Path assembled = assemble(upload, directory);
+	            BlobStore.StoredBlob blob = AttachmentStore.BLOBS.putFile(assembled,
+	                    AttachmentStore.isCompressible(upload.getFileFormat()));
+	            if (sha256 != null && !blob.getHash().equalsIgnoreCase(sha256.trim())) {
+	                // Left to garbage collection, since another document may share the blob.
+	                conn.rollback();
+	                LOGGER.log(Level.WARNING, "Upload {0} does not match its checksum and was not committed", uploadId);
+	                return null;
+	            }
+	            Integer documentId = JdbcTemplate.queryForObject(conn,
+	                    "INSERT INTO evidence_documents (document_name, document_type, upload_date, file_size, file_format, fk_complaint_id, fk_investigation_record_id, content_hash)"
+	                    + " VALUES (?, ?, CURRENT_DATE, ?, ?, ?, ?, ?) RETURNING id",
+	                    JdbcTemplate.params(upload.getDocumentName(), upload.getDocumentType(), (double) blob.getSize(), upload.getFileFormat(),
+	                            upload.getFkComplaintId(), upload.getFkInvestigationRecordId(), blob.getHash()),
+	                    RowMappers.IDS).intValue();
+	            JdbcTemplate.update(conn, "UPDATE evidence_uploads SET evidence_document_id = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?",
+	                    JdbcTemplate.params(documentId, uploadId));
+	            JdbcTemplate.update(conn, "DELETE FROM evidence_upload_chunks WHERE upload_id = ?", ps -> ps.setString(1, uploadId));
+	            conn.commit();
+	            upload.setEvidenceDocumentId(documentId);
+	            deleteDirectory(directory);
+	            return upload;
+	        } catch (SQLException | IOException e) {
+	            conn.rollback();
+	            throw e;
+	        } finally {
+	            conn.setAutoCommit(true);
+	        }
+	    } catch (SQLException | IOException e) {
+	        LOGGER.log(Level.SEVERE, "Error committing upload " + uploadId, e);
+	        return null;
+	    }
+	}
+
+	/**
+	 * Abandons an upload that has not been committed and discards its chunks.
+	 * @param uploadId The upload's id.
+	 * @return true if the upload was abandoned.
+	 */
+	public boolean abortUpload(String uploadId) {
+	    try {
+	        int deleted = JdbcTemplate.update("DELETE FROM evidence_uploads WHERE id = ? AND evidence_document_id IS NULL",
+	                ps -> ps.setString(1, uploadId));
+	        if (deleted > 0) {
+	            deleteDirectory(STAGING_DIRECTORY.resolve(uploadId));
+	        }
+	        return deleted > 0;
+	    } catch (SQLException | IOException e) {
+	        LOGGER.log(Level.SEVERE, "Error aborting upload " + uploadId, e);
+	        return false;
+	    }
+	}
+
+	/**
+	 * Removes uploads untouched for {@code uploads.expiryHours}, committed or not, with their staged chunks.
+	 * @return The number of uploads removed, or -1 on error.
+	 */
+	public int purgeExpiredUploads() {
+	    String sql = "DELETE FROM evidence_uploads WHERE updated_at < CURRENT_TIMESTAMP - CAST(? AS interval) RETURNING id";
+	    try {
+	        List<String> expired = JdbcTemplate.query(sql, ps -> ps.setString(1, EXPIRY_HOURS + " hours"), RowMappers.scalar(String.class));
+	        for (String uploadId : expired) {
+	            deleteDirectory(STAGING_DIRECTORY.resolve(uploadId));
+	        }
+	        return expired.size();
+	    } catch (SQLException | IOException e) {
+	        LOGGER.log(Level.SEVERE, "Error purging expired uploads", e);
+	        return -1;
+	    }
+	}
+
+	/**
+	 * Copies at most {@code limit} bytes to a file, hashing them.
+	 *
+	 * @return the number of bytes copied; {@code limit} if the stream had at least that many
+	 */
+	private static long receive(InputStream data, Path file, long limit, MessageDigest digest) throws IOException {
+	    ReadableByteChannel in = Channels.newChannel(data);
+	    long received = 0;
+	    try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+	        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	        while (received < limit) {
+	            buffer.limit((int) Math.min(buffer.capacity(), limit - received));
+	            if (in.read(buffer) < 0) {
+	                break;
+	            }
+	            buffer.flip();
+	            digest.update(buffer.duplicate());
+	            while (buffer.hasRemaining()) {
+	                received += out.write(buffer);
+	            }
+	            buffer.clear();
+	        }
+	        out.force(false);
+	    }
+	    return received;
+	}
+
+	/**
+	 * Moves a verified chunk into place and records it, unless the upload was committed or removed meanwhile.
+	 */
+	private ChunkResult record(String uploadId, int index, Path temp, Path part, String checksum) throws SQLException, IOException {
+	    try (Connection conn = DatabaseUtility.getConnection()) {
+	        conn.setAutoCommit(false);
+	        try {
+	            // Shares the lock with other chunks; a commit in progress holds it exclusively.
+	            Integer documentId;
+	            try (PreparedStatement ps = conn.prepareStatement("SELECT evidence_document_id FROM evidence_uploads WHERE id = ? FOR SHARE")) {
+	                ps.setString(1, uploadId);
+	                try (ResultSet rs = ps.executeQuery()) {
+	                    if (!rs.next()) {
+	                        conn.rollback();
+	                        return ChunkResult.UNKNOWN_UPLOAD;
+	                    }
+	                    documentId = (Integer) rs.getObject(1);
+	                }
+	            }
+	            if (documentId != null) {
+	                conn.rollback();
+	                return ChunkResult.ALREADY_COMMITTED;
+	            }
+	            Files.move(temp, part, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	            JdbcTemplate.update(conn, "INSERT INTO evidence_upload_chunks (upload_id, chunk_index, checksum) VALUES (?, ?, ?)"
+	                    + " ON CONFLICT (upload_id, chunk_index) DO UPDATE SET checksum = EXCLUDED.checksum, received_at = EXCLUDED.received_at",
+	                    JdbcTemplate.params(uploadId, index, checksum));
+	            JdbcTemplate.update(conn, "UPDATE evidence_uploads SET updated_at = CURRENT_TIMESTAMP WHERE id = ?", ps -> ps.setString(1, uploadId));
+	            conn.commit();
+	            return ChunkResult.ACCEPTED;
+	        } catch (SQLException | IOException e) {
+	            conn.rollback();
+	            throw e;
+	        } finally {
+	            conn.setAutoCommit(true);
+	        }
+	    }
+	}
+
+	/**
+	 * Joins an upload's parts into one file in its staging directory.
+	 */
+	private static Path assemble(EvidenceUploads upload, Path directory) throws IOException {
+	    Path assembled = directory.resolve("assembled");
+	    try (FileChannel out = FileChannel.open(assembled, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+	            StandardOpenOption.WRITE)) {
+	        for (int index = 0; index < upload.getChunkCount(); index++) {
+	            try (FileChannel in = FileChannel.open(directory.resolve(index + ".part"), StandardOpenOption.READ)) {
+	                long position = 0;
+	                long size = in.size();
+	                while (position < size) {
+	                    position += in.transferTo(position, size - position, out);
+	                }
+	            }
+	        }
+	        if (out.size() != upload.getTotalSize()) {
+	            throw new IOException("Upload " + upload.getId() + " assembled to " + out.size() + " bytes, expected " + upload.getTotalSize());
+	        }
+	    }
+	    return assembled;
+	}
+
+	private static void deleteDirectory(Path directory) throws IOException {
+	    if (!Files.isDirectory(directory)) {
+	        return;
+	    }
+	    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+	        for (Path file : files) {
+	            Files.deleteIfExists(file);
+	        }
+	    }
+	    Files.deleteIfExists(directory);
+	}
+
+	private static void deleteQuietly(Path file) {
+	    if (file == null) {
+	        return;
+	    }
+	    try {
+	        Files.deleteIfExists(file);
+	    } catch (IOException e) {
+	        LOGGER.log(Level.WARNING, "Could not delete " + file, e);
+	    }
+	}
+}
@@ -2,7 +2,8 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import utils.StatementBinder;
 import java.sql.*;
 import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
@@ -21,25 +22,20 @@ public class ImprovementInitiativesDAO {
 	 * @param assignedToIds A delimited text field storing IDs of staff members assigned to the initiative.
 	 * @return boolean true if the operation was successful, false otherwise.
 	 */
-	public boolean createImprovementInitiative(String title, TargetedComplaintCategory category, Date startDate, Date endDate, String outcome, String assignedToIds) {
-	    Connection conn = DatabaseUtility.connect();
+	public boolean createImprovementInitiative(String title, ImprovementInitiatives.TargetedComplaintCategory category, Date startDate, Date endDate, String outcome, String assignedToIds) {
 	    String sql = "INSERT INTO improvement_initiatives (initiative_title, targeted_complaint_category, start_date, end_date, expected_outcomes, assigned_to_ids) VALUES (?, ?, ?, ?, ?, ?)";
-	
-	    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setString(1, title);
-	        pstmt.setString(2, category.name());
-	        pstmt.setDate(3, new java.sql.Date(startDate.getTime()));
-	        pstmt.setDate(4, new java.sql.Date(endDate.getTime()));
-	        pstmt.setString(5, outcome);
-	        pstmt.setString(6, assignedToIds);
-	
-	        int affectedRows = pstmt.executeUpdate();
-	        return affectedRows > 0;
+	    try {
+	        return JdbcTemplate.update(sql, pstmt -> {
+	            pstmt.setString(1, title);
+	            pstmt.setString(2, category.name());
+	            pstmt.setDate(3, new java.sql.Date(startDate.getTime()));
+	            pstmt.setDate(4, new java.sql.Date(endDate.getTime()));
+	            pstmt.setString(5, outcome);
+	            pstmt.setString(6, assignedToIds);
+	        }) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	        return false;
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
 	}
 	
@@ -48,31 +44,15 @@ public class ImprovementInitiativesDAO {
 	 * @return A list of all improvement initiatives.
 	 */
 	public List<ImprovementInitiatives> fetchAllImprovementInitiatives() {
-	    List<ImprovementInitiatives> initiatives = new ArrayList<>();
 	    String query = "SELECT * FROM improvement_initiatives";
-	    try (Connection conn = DatabaseUtility.connect();
-	         Statement stmt = conn.createStatement();
-	         ResultSet rs = stmt.executeQuery(query)) {
-	        while (rs.next()) {
-	            ImprovementInitiatives initiative = new ImprovementInitiatives();
-	            initiative.setId(rs.getLong("id"));
-	            initiative.setInitiativeTitle(rs.getString("initiative_title"));
-	            initiative.setTargetedComplaintCategory(ImprovementInitiatives.TargetedComplaintCategory.valueOf(rs.getString("targeted_complaint_category")));
-	            initiative.setStartDate(rs.getDate("start_date"));
-	            initiative.setEndDate(rs.getDate("end_date"));
-	            initiative.setExpectedOutcomes(rs.getString("expected_outcomes"));
-	            initiative.setAssignedToIds(rs.getString("assigned_to_ids"));
-	            initiatives.add(initiative);
-	        }
+	    try {
+	        return JdbcTemplate.query(query, StatementBinder.NONE, RowMappers.IMPROVEMENT_INITIATIVES);
 	    } catch (SQLException e) {
 	        Logger.getLogger(ImprovementInitiativesDAO.class.getName()).log(Level.SEVERE, "Error fetching improvement initiatives", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return initiatives;
+	    return new ArrayList<>();
 	}
-	
-	
+
 	/**
 	 * Updates the details of an existing improvement initiative.
 	 * @param initiativeId The unique ID of the improvement initiative to be updated.
@@ -80,34 +60,21 @@ public class ImprovementInitiativesDAO {
 	 * @return boolean True if the update was successful, otherwise false.
 	 */
 	public boolean updateImprovementInitiative(long initiativeId, ImprovementInitiatives updatedDetails) {
-	  Connection conn = null;
-	  PreparedStatement pstmt = null;
-	  boolean updateStatus = false;
-	
+	  String sql = "UPDATE improvement_initiatives SET initiative_title = ?, targeted_complaint_category = ?, start_date = ?, end_date = ?, expected_outcomes = ?, assigned_to_ids = ? WHERE id = ?";
 	  try {
-	    conn = DatabaseUtility.connect();
-	    String sql = "UPDATE improvement_initiatives SET initiative_title = ?, targeted_complaint_category = ?, start_date = ?, end_date = ?, expected_outcomes = ?, assigned_to_ids = ? WHERE id = ?";
-	
-	    pstmt = conn.prepareStatement(sql);
-	    pstmt.setString(1, updatedDetails.getInitiativeTitle());
-	    pstmt.setString(2, updatedDetails.getTargetedComplaintCategory().name());
-	    pstmt.setDate(3, new java.sql.Date(updatedDetails.getStartDate().getTime()));
-	    pstmt.setDate(4, new java.sql.Date(updatedDetails.getEndDate().getTime()));
-	    pstmt.setString(5, updatedDetails.getExpectedOutcomes());
-	    pstmt.setString(6, updatedDetails.getAssignedToIds());
-	    pstmt.setLong(7, initiativeId);
-	
-	    int rowAffected = pstmt.executeUpdate();
-	    if(rowAffected == 1) {
-	      updateStatus = true;
-	    }
+	    return JdbcTemplate.update(sql, pstmt -> {
+	      pstmt.setString(1, updatedDetails.getInitiativeTitle());
+	      pstmt.setString(2, updatedDetails.getTargetedComplaintCategory().name());
+	      pstmt.setDate(3, new java.sql.Date(updatedDetails.getStartDate().getTime()));
+	      pstmt.setDate(4, new java.sql.Date(updatedDetails.getEndDate().getTime()));
+	      pstmt.setString(5, updatedDetails.getExpectedOutcomes());
+	      pstmt.setString(6, updatedDetails.getAssignedToIds());
+	      pstmt.setLong(7, initiativeId);
+	    }) == 1;
 	  } catch (SQLException e) {
 	    Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error updating improvement initiative", e);
-	  } finally {
-	    DatabaseUtility.disconnect(conn);
-	    try { if (pstmt != null) pstmt.close(); } catch (SQLException ex) { Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex); }
 	  }
-	  return updateStatus;
+	  return false;
 	}
 	
 	/**
@@ -115,26 +82,15 @@ public class ImprovementInitiativesDAO {
 	 * @param initiativeId Unique ID of the improvement initiative to be deleted.
 	 */
 	public boolean deleteImprovementInitiative(long initiativeId) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean isSuccess = false;
 	    String sql = "DELETE FROM improvement_initiatives WHERE id = ?;";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setLong(1, initiativeId);
-	
-	        int rowsAffected = pstmt.executeUpdate();
-	        if (rowsAffected > 0) {
-	            isSuccess = true;
+	        if (JdbcTemplate.update(sql, pstmt -> pstmt.setLong(1, initiativeId)) > 0) {
 	            Logger.getLogger(this.getClass().getName()).info("Improvement initiative deleted successfully.");
+	            return true;
 	        }
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error deleting improvement initiative", e);
-	    } finally {
-	        DatabaseUtility.closePreparedStatement(pstmt);
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return isSuccess;
+	    return false;
 	}
 }
@@ -2,7 +2,7 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
 import java.sql.*;
 import java.util.logging.*;import java.util.Optional;
 import java.io.File;
@@ -23,30 +23,13 @@ public class InvestigationRecordsDAO {
 	 * @return boolean true if the record was successfully created, false otherwise.
 	 */
 	public boolean createInvestigationRecord(String investigationSummary, String investigatorNotes, ComplaintStatus conclusion, Optional<File> evidenceDocumentation, Complaints fkComplaint) {
-	  Connection conn = DatabaseUtility.connect();
-	  PreparedStatement pstmt = null;
+	  String sql = "WITH saved AS (INSERT INTO investigation_records (investigation_summary, investigator_notes, investigation_conclusion, fk_complaint_id) VALUES (?, ?, ?, ?) RETURNING *) "
+	      + ComplaintSearchDAO.indexSql(ComplaintSearchDAO.Source.INVESTIGATION, "saved");
 	  try {
-	    String sql = "INSERT INTO investigation_records (investigation_summary, investigator_notes, investigation_conclusion, fk_complaint_id) VALUES (?, ?, ?, ?)";
-	    pstmt = conn.prepareStatement(sql);
-	    pstmt.setString(1, investigationSummary);
-	    pstmt.setString(2, investigatorNotes);
-	    pstmt.setString(3, conclusion.toString());
-	    pstmt.setLong(4, fkComplaint.getId());
-	
-	    int affectedRows = pstmt.executeUpdate();
-	    return affectedRows > 0;
+	    return JdbcTemplate.update(sql, JdbcTemplate.params(investigationSummary, investigatorNotes, conclusion, fkComplaint.getId())) > 0;
 	  } catch (SQLException e) {
 	    Logger.getLogger(InvestigationRecordsDAO.class.getName()).log(Level.SEVERE, null, e);
 	    return false;
-	  } finally {
-	    DatabaseUtility.disconnect(conn);
-	    if (pstmt != null) {
-	      try {
-	        pstmt.close();
-	      } catch (SQLException e) {
-	        Logger.getLogger(InvestigationRecordsDAO.class.getName()).log(Level.SEVERE, null, e);
-	      }
-	    }
 	  }
 	}
 	
@@ -58,36 +41,13 @@ public class InvestigationRecordsDAO {
 	 * @return List<InvestigationRecords> A list of filtered investigation records.
 	 */
 	public List<InvestigationRecords> fetchInvestigationsByStatus(String status, int limit, int offset) {
-	    List<InvestigationRecords> records = new ArrayList<>();
-	    Connection conn = DatabaseUtility.connect();
+	    String sql = "SELECT * FROM investigation_records WHERE investigation_conclusion = ? ORDER BY investigation_date DESC LIMIT ? OFFSET ?;";
 	    try {
-	        String sql = "SELECT * FROM investigation_records WHERE investigation_conclusion = ? ORDER BY investigation_date DESC LIMIT ? OFFSET ?;";
-	        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
-	            stmt.setString(1, status);
-	            stmt.setInt(2, limit);
-	            stmt.setInt(3, offset);
-	            try (ResultSet rs = stmt.executeQuery()) {
-	                while (rs.next()) {
-	                    InvestigationRecords record = new InvestigationRecords();
-	                    record.setId(rs.getLong("id"));
-	                    record.setInvestigationSummary(rs.getString("investigation_summary"));
-	                    record.setInvestigatorNotes(rs.getString("investigator_notes"));
-	                    record.setInvestigationConclusion(ComplaintStatus.valueOf(rs.getString("investigation_conclusion")));
-	                    record.setInvestigationDate(rs.getDate("investigation_date"));
-	                    record.setConclusionRemarks(rs.getString("conclusion_remarks"));
-	                    record.setInvestigationDuration(rs.getInt("investigation_duration"));
-	                    record.setResolvedBy(rs.getString("resolved_by"));
-	                    // Assuming the foreign key relationship is handled within the setter.
-	                    records.add(record);
-	                }
-	            }
-	        }
+	        return JdbcTemplate.query(sql, JdbcTemplate.params(status, limit, offset), RowMappers.INVESTIGATION_RECORDS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(InvestigationRecordsDAO.class.getName()).log(Level.SEVERE, "Error fetching investigation records by status", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return records;
+	    return new ArrayList<>();
 	}
 	
 	/**
@@ -96,36 +56,13 @@ public class InvestigationRecordsDAO {
 	 * @return an InvestigationRecords object containing the investigation details.
 	 */
 	public InvestigationRecords findInvestigationDetailsById(Long id) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    ResultSet rs = null;
-	    InvestigationRecords investigationRecord = null;
+	    String sql = "SELECT * FROM investigation_records WHERE id = ?;";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "SELECT * FROM investigation_records WHERE id = ?;";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setLong(1, id);
-	        rs = pstmt.executeQuery();
-	        if (rs.next()) {
-	            investigationRecord = new InvestigationRecords();
-	            investigationRecord.setId(rs.getLong("id"));
-	            investigationRecord.setInvestigationSummary(rs.getString("investigation_summary"));
-	            investigationRecord.setInvestigatorNotes(rs.getString("investigator_notes"));
-	            investigationRecord.setInvestigationConclusion(ComplaintStatus.valueOf(rs.getString("investigation_conclusion")));
-	            investigationRecord.setInvestigationDate(rs.getDate("investigation_date"));
-	            investigationRecord.setConclusionRemarks(rs.getString("conclusion_remarks"));
-	            investigationRecord.setInvestigationDuration(rs.getInt("investigation_duration"));
-	            investigationRecord.setResolvedBy(rs.getString("resolved_by"));
-	            // Assuming fk_complaint_id column exists with complaint details to be set similarly
-	        }
+	        return JdbcTemplate.queryForObject(sql, pstmt -> pstmt.setLong(1, id), RowMappers.INVESTIGATION_RECORDS);
 	    } catch (SQLException e) {
 	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error finding investigation details by ID", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        try { if (rs != null) rs.close(); } catch (SQLException e) { e.printStackTrace(); }
-	        try { if (pstmt != null) pstmt.close(); } catch (SQLException e) { e.printStackTrace(); }
 	    }
-	    return investigationRecord;
+	    return null;
 	}
 	
 	/*
@@ -137,23 +74,13 @@ public class InvestigationRecordsDAO {
 	 @param evidenceDocumentation Updated file(s) containing evidence collected during the investigation.
 	*/
 	public boolean updateInvestigationRecord(Long id, String investigationSummary, String investigatorNotes, ComplaintStatus conclusion, Optional<File> evidenceDocumentation) {
-	    Connection conn = null;
+	    String sql = "WITH saved AS (UPDATE investigation_records SET investigation_summary=?, investigator_notes=?, investigation_conclusion=? WHERE id=? RETURNING *) "
+	            + ComplaintSearchDAO.indexSql(ComplaintSearchDAO.Source.INVESTIGATION, "saved");
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "UPDATE investigation_records SET investigation_summary=?, investigator_notes=?, investigation_conclusion=?, WHERE id=?";
-	        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	            pstmt.setString(1, investigationSummary);
-	            pstmt.setString(2, investigatorNotes);
-	            pstmt.setString(3, conclusion.name());
-	            // No file upload implementation in SQL, evidenceDocumentation might be handled separately
-	            pstmt.setLong(4, id);
-	            int affectedRows = pstmt.executeUpdate();
-	            return affectedRows > 0;
-	        }
+	        // No file upload implementation in SQL, evidenceDocumentation might be handled separately
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(investigationSummary, investigatorNotes, conclusion, id)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error updating investigation record", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
 	    return false;
 	}
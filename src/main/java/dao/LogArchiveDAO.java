@@ -0,0 +1,317 @@
+package dao;
+
+
+import model.DocumentAccessLogs;
+import model.Documents;
+import model.StaffMembers;
+import utils.ApplicationProperties;
+import utils.ColumnarFile;
+import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Moves cold log partitions out of Postgres into {@link ColumnarFile}s and
+ * reads them back for inspections.
+ *
+ * <p>
+ * Partitions that {@link LogPartitionsDAO#archiveExpiredPartitions} detached
+ * into the archive schema are exported month by month to
+ * {@code <audit.archive.directory>/<table>/<yyyyMM>/<partition>.cla}, checked
+ * against the partition's row count and then dropped, which takes their
+ * storage and vacuum work out of the database. Exports are idempotent: a
+ * partition that fails half way stays in the archive schema and is exported
+ * again, overwriting its files, on the next run.
+ * </p>
+ */
+public class LogArchiveDAO {
+
+	private static final Logger LOGGER = Logger.getLogger(LogArchiveDAO.class.getName());
+
+	public static final Path ARCHIVE_DIRECTORY = Paths.get(ApplicationProperties.getString("audit.archive.directory", "audit-archive"));
+	/** When false, exported partitions are kept in the archive schema. */
+	public static final boolean DROP_AFTER_EXPORT = ApplicationProperties.getBoolean("audit.archive.dropAfterExport", true);
+
+	private static final String FILE_SUFFIX = ".cla";
+	private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+	private static final Comparator<DocumentAccessLogs> ACCESS_ORDER = Comparator
+			.comparing(DocumentAccessLogs::getAccessTime).thenComparingLong(DocumentAccessLogs::getId);
+
+	/**
+	 * Exports and drops every partition of the given table that is waiting in
+	 * the archive schema.
+	 *
+	 * @param logTable The log table whose archived partitions to export.
+	 * @return The names of the partitions exported.
+	 */
+	public List<String> exportArchivedPartitions(LogPartitionsDAO.LogTable logTable) {
+	    List<String> exported = new ArrayList<>();
+	    List<String> partitions;
+	    try {
+	        partitions = archivedPartitions(logTable);
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error listing archived partitions of " + logTable.getTable(), e);
+	        return exported;
+	    }
+	    for (String partition : partitions) {
+	        if (exportPartition(logTable, partition) >= 0) {
+	            exported.add(partition);
+	        }
+	    }
+	    return exported;
+	}
+
+	/**
+	 * Lists the partitions of the given table in the archive schema, exported
+	 * or not: with {@link #DROP_AFTER_EXPORT} off, exported partitions stay.
+	 */
+	static List<String> archivedPartitions(LogPartitionsDAO.LogTable logTable) throws SQLException {
+	    String sql = "SELECT tablename FROM pg_tables WHERE schemaname = ? AND (tablename LIKE ? OR tablename = ?) ORDER BY tablename";
+	    return JdbcTemplate.query(sql, ps -> {
+	        ps.setString(1, LogPartitionsDAO.ARCHIVE_SCHEMA);
+	        ps.setString(2, logTable.getTable() + "\\_p%");
+	        ps.setString(3, logTable.getTable() + "_legacy");
+	    }, RowMappers.scalar(String.class));
+	}
+
+	/**
+	 * Exports one detached partition to a columnar file per month, verifies the
+	 * row count and drops the partition.
+	 *
+	 * @param logTable The log table the partition belonged to.
+	 * @param partition The partition's name in the archive schema.
+	 * @return The number of rows exported, or -1 on error.
+	 */
+	public long exportPartition(LogPartitionsDAO.LogTable logTable, String partition) {
+	    String qualified = LogPartitionsDAO.ARCHIVE_SCHEMA + "." + partition;
+	    String column = logTable.getPartitionColumn();
+	    Path tableDirectory = ARCHIVE_DIRECTORY.resolve(logTable.getTable());
+	    try (Connection conn = DatabaseUtility.getConnection()) {
+	        conn.setAutoCommit(false);
+	        try {
+	            long expected;
+	            List<YearMonth> months = new ArrayList<>();
+	            try (Statement stmt = conn.createStatement();
+	                 ResultSet rs = stmt.executeQuery("SELECT count(*) FROM " + qualified)) {
+	                rs.next();
+	                expected = rs.getLong(1);
+	            }
+	            try (Statement stmt = conn.createStatement();
+	                 ResultSet rs = stmt.executeQuery("SELECT DISTINCT CAST(date_trunc('month', " + column + ") AS date) FROM "
+	                         + qualified + " WHERE " + column + " IS NOT NULL ORDER BY 1")) {
+	                while (rs.next()) {
+	                    months.add(YearMonth.from(rs.getDate(1).toLocalDate()));
+	                }
+	            }
+	            long written = 0;
+	            for (YearMonth month : months) {
+	                written += exportMonth(conn, qualified, column, month,
+	                        tableDirectory.resolve(month.format(MONTH)).resolve(partition + FILE_SUFFIX));
+	            }
+	            if (written != expected) {
+	                // Rows with no timestamp have no month to go to; keep the partition for a person to look at.
+	                throw new IOException(qualified + " has " + expected + " rows but " + written + " were exported");
+	            }
+	            if (DROP_AFTER_EXPORT) {
+	                try (Statement stmt = conn.createStatement()) {
+	                    stmt.execute("DROP TABLE " + qualified);
+	                }
+	            }
+	            conn.commit();
+	            LOGGER.log(Level.INFO, "Exported {0} rows of {1} to {2}", new Object[] { written, qualified, tableDirectory });
+	            return written;
+	        } catch (SQLException | IOException e) {
+	            conn.rollback();
+	            throw e;
+	        } finally {
+	            conn.setAutoCommit(true);
+	        }
+	    } catch (SQLException | IOException e) {
+	        LOGGER.log(Level.SEVERE, "Error exporting " + qualified, e);
+	        return -1;
+	    }
+	}
+
+	/**
+	 * Reads archived document access logs matching the filters in
+	 * (access_time, id) order. Only the month directories the range spans are
+	 * opened.
+	 *
+	 * @param startDateTime The start of the range, inclusive.
+	 * @param endDateTime The end of the range, inclusive.
+	 * @param userId The staff member to filter by, or 0 for any.
+	 * @param documentId The document to filter by, or 0 for any.
+	 * @param afterTime Together with afterId, the position to continue after; null to start at the beginning.
+	 * @param afterId The id of the last row already returned.
+	 * @param limit The maximum number of rows to return.
+	 * @return The matching rows; empty if the archive could not be read.
+	 */
+	public List<DocumentAccessLogs> fetchArchivedDocumentAccessLogs(Timestamp startDateTime, Timestamp endDateTime, long userId, long documentId,
+	        Timestamp afterTime, long afterId, int limit) {
+	    return fetchArchivedDocumentAccessLogs(startDateTime, endDateTime, userId, documentId, afterTime, afterId, limit,
+	            Collections.<String>emptySet());
+	}
+
+	/**
+	 * As {@link #fetchArchivedDocumentAccessLogs(Timestamp, Timestamp, long, long, Timestamp, long, int)},
+	 * leaving out the files of the given partitions. Callers reading partitions
+	 * that are still in the archive schema pass them here, so that a partition
+	 * whose export was kept or failed half way is read once, from the database.
+	 */
+	List<DocumentAccessLogs> fetchArchivedDocumentAccessLogs(Timestamp startDateTime, Timestamp endDateTime, long userId, long documentId,
+	        Timestamp afterTime, long afterId, int limit, Set<String> skippedPartitions) {
+	    List<DocumentAccessLogs> logs = new ArrayList<>();
+	    Path tableDirectory = ARCHIVE_DIRECTORY.resolve(LogPartitionsDAO.LogTable.DOCUMENT_ACCESS_LOGS.getTable());
+	    YearMonth month = YearMonth.from(startDateTime.toLocalDateTime());
+	    YearMonth last = YearMonth.from(endDateTime.toLocalDateTime());
+	    if (afterTime != null && YearMonth.from(afterTime.toLocalDateTime()).isAfter(month)) {
+	        month = YearMonth.from(afterTime.toLocalDateTime());
+	    }
+	    try {
+	        for (; !month.isAfter(last) && logs.size() < limit; month = month.plusMonths(1)) {
+	            Path monthDirectory = tableDirectory.resolve(month.format(MONTH));
+	            if (!Files.isDirectory(monthDirectory)) {
+	                continue;
+	            }
+	            List<DocumentAccessLogs> monthLogs = new ArrayList<>();
+	            try (DirectoryStream<Path> files = Files.newDirectoryStream(monthDirectory, "*" + FILE_SUFFIX)) {
+	                for (Path file : files) {
+	                    String fileName = file.getFileName().toString();
+	                    if (skippedPartitions.contains(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()))) {
+	                        continue;
+	                    }
+	                    readAccessLogs(file, startDateTime, endDateTime, userId, documentId, afterTime, afterId, monthLogs);
+	                }
+	            }
+	            monthLogs.sort(ACCESS_ORDER);
+	            logs.addAll(monthLogs.subList(0, Math.min(monthLogs.size(), limit - logs.size())));
+	        }
+	    } catch (IOException e) {
+	        LOGGER.log(Level.SEVERE, "Error reading archived document access logs", e);
+	        return new ArrayList<>();
+	    }
+	    return logs;
+	}
+
+	private static long exportMonth(Connection conn, String qualified, String column, YearMonth month, Path target)
+	        throws SQLException, IOException {
+	    LocalDate from = month.atDay(1);
+	    String sql = "SELECT * FROM " + qualified + " WHERE " + column + " >= ? AND " + column + " < ? ORDER BY " + column + ", id";
+	    try (PreparedStatement ps = conn.prepareStatement(sql)) {
+	        ps.setFetchSize(JdbcTemplate.STREAMING_FETCH_SIZE);
+	        ps.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+	        ps.setTimestamp(2, Timestamp.valueOf(from.plusMonths(1).atStartOfDay()));
+	        try (ResultSet rs = ps.executeQuery()) {
+	            ResultSetMetaData meta = rs.getMetaData();
+	            List<ColumnarFile.Column> columns = new ArrayList<>();
+	            for (int c = 1; c <= meta.getColumnCount(); c++) {
+	                columns.add(new ColumnarFile.Column(meta.getColumnName(c), columnType(meta.getColumnType(c))));
+	            }
+	            ColumnarFile.Writer writer = new ColumnarFile.Writer(target, columns);
+	            try {
+	                Object[] row = new Object[columns.size()];
+	                while (rs.next()) {
+	                    for (int c = 0; c < row.length; c++) {
+	                        switch (columns.get(c).getType()) {
+	                        case TIMESTAMP:
+	                            row[c] = rs.getTimestamp(c + 1);
+	                            break;
+	                        case LONG:
+	                            long value = rs.getLong(c + 1);
+	                            row[c] = rs.wasNull() ? null : value;
+	                            break;
+	                        default:
+	                            row[c] = rs.getString(c + 1);
+	                        }
+	                    }
+	                    writer.addRow(row);
+	                }
+	            } catch (SQLException | IOException | RuntimeException e) {
+	                writer.abort();
+	                throw e;
+	            }
+	            writer.close();
+	            return writer.getRowCount();
+	        }
+	    }
+	}
+
+	private static ColumnarFile.ColumnType columnType(int sqlType) {
+	    switch (sqlType) {
+	    case Types.TIMESTAMP:
+	    case Types.TIMESTAMP_WITH_TIMEZONE:
+	    case Types.DATE:
+	        return ColumnarFile.ColumnType.TIMESTAMP;
+	    case Types.SMALLINT:
+	    case Types.INTEGER:
+	    case Types.BIGINT:
+	        return ColumnarFile.ColumnType.LONG;
+	    default:
+	        return ColumnarFile.ColumnType.TEXT;
+	    }
+	}
+
+	private static void readAccessLogs(Path file, Timestamp startDateTime, Timestamp endDateTime, long userId, long documentId,
+	        Timestamp afterTime, long afterId, List<DocumentAccessLogs> out) throws IOException {
+	    try (ColumnarFile.Reader reader = new ColumnarFile.Reader(file)) {
+	        int id = reader.indexOf("id");
+	        int accessTime = reader.indexOf("access_time");
+	        int actionType = reader.indexOf("action_type");
+	        int staffMemberId = reader.indexOf("fk_user_id");
+	        int docId = reader.indexOf("fk_document_id");
+	        Object[] row;
+	        while ((row = reader.next()) != null) {
+	            Timestamp time = (Timestamp) row[accessTime];
+	            if (time == null || time.before(startDateTime) || time.after(endDateTime)) {
+	                continue;
+	            }
+	            long rowId = row[id] != null ? (Long) row[id] : 0L;
+	            long rowUser = row[staffMemberId] != null ? (Long) row[staffMemberId] : 0L;
+	            long rowDocument = row[docId] != null ? (Long) row[docId] : 0L;
+	            if ((userId != 0 && rowUser != userId) || (documentId != 0 && rowDocument != documentId)) {
+	                continue;
+	            }
+	            if (afterTime != null) {
+	                int cmp = time.compareTo(afterTime);
+	                if (cmp < 0 || (cmp == 0 && rowId <= afterId)) {
+	                    continue;
+	                }
+	            }
+	            DocumentAccessLogs log = new DocumentAccessLogs();
+	            log.setId(rowId);
+	            log.setAccessTime(time);
+	            log.setActionType(RowMappers.ACCESS_ACTION_TYPE.lookup((String) row[actionType]));
+	            StaffMembers staffMember = new StaffMembers();
+	            staffMember.setId((int) rowUser);
+	            log.setStaffMember(staffMember);
+	            Documents document = new Documents();
+	            document.setId(rowDocument);
+	            log.setDocument(document);
+	            out.add(log);
+	        }
+	    }
+	}
+}
@@ -0,0 +1,273 @@
+package dao;
+
+
+import utils.ApplicationProperties;
+import utils.DatabaseUtility;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Maintains audit_logs and document_access_logs as tables range-partitioned
+ * by month on their timestamp column.
+ *
+ * <p>
+ * Queries with a time range only touch the partitions for that range, and
+ * retention becomes a metadata operation: an expired month is detached and
+ * moved to the archive schema ({@code audit.partitions.archiveSchema}) where
+ * it stays queryable, instead of being deleted row by row. Partitions are
+ * named {@code <table>_pYYYYMM}; rows older than the conversion stay in a
+ * single {@code <table>_legacy} partition and every table has a default
+ * partition so that no audit insert fails for want of a partition.
+ * </p>
+ *
+ * <p>
+ * {@link #maintainAll()} is meant to run daily from a scheduled job.
+ * </p>
+ */
+public class LogPartitionsDAO {
+
+	private static final Logger LOGGER = Logger.getLogger(LogPartitionsDAO.class.getName());
+
+	/** How many months ahead of the current one {@link #maintainAll()} creates. */
+	public static final int MONTHS_AHEAD = ApplicationProperties.getInt("audit.partitions.monthsAhead", 3);
+	/** How many whole months before the current one {@link #maintainAll()} keeps attached. */
+	public static final int RETENTION_MONTHS = ApplicationProperties.getInt("audit.partitions.retentionMonths", 24);
+	public static final String ARCHIVE_SCHEMA = ApplicationProperties.getString("audit.partitions.archiveSchema", "audit_archive");
+
+	private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+	/** SQLSTATE raised when a new partition's range overlaps an existing one. */
+	private static final String INVALID_OBJECT_DEFINITION = "42P17";
+	private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('(\\d{4}-\\d{2}-\\d{2})");
+
+	/**
+	 * The partitioned log tables, with the indexes their queries need. Indexes
+	 * are created on the parent and cascade to every partition.
+	 */
+	public enum LogTable {
+		AUDIT_LOGS("audit_logs", "action_time",
+				"CREATE INDEX IF NOT EXISTS idx_audit_logs_time_id ON audit_logs (action_time, id)",
+				"CREATE INDEX IF NOT EXISTS idx_audit_logs_user_time ON audit_logs (user_id, action_time)",
+				"CREATE UNIQUE INDEX IF NOT EXISTS idx_audit_logs_event_id_time ON audit_logs (event_id, action_time)"),
+		DOCUMENT_ACCESS_LOGS("document_access_logs", "access_time",
+				"CREATE INDEX IF NOT EXISTS idx_document_access_logs_time_id ON document_access_logs (access_time, id)",
+				"CREATE INDEX IF NOT EXISTS idx_document_access_logs_user_time_id ON document_access_logs (fk_user_id, access_time, id)",
+				"CREATE INDEX IF NOT EXISTS idx_document_access_logs_document_time_id ON document_access_logs (fk_document_id, access_time, id)",
+				"CREATE UNIQUE INDEX IF NOT EXISTS idx_document_access_logs_event_id_time ON document_access_logs (event_id, access_time)");
+
+		private final String table;
+		private final String partitionColumn;
+		private final String[] indexDefinitions;
+
+		LogTable(String table, String partitionColumn, String... indexDefinitions) {
+			this.table = table;
+			this.partitionColumn = partitionColumn;
+			this.indexDefinitions = indexDefinitions;
+		}
+
+		public String getTable() {
+			return table;
+		}
+
+		public String getPartitionColumn() {
+			return partitionColumn;
+		}
+
+		public String[] getIndexDefinitions() {
+			return indexDefinitions.clone();
+		}
+
+		String partitionName(LocalDate month) {
+			return table + "_p" + month.format(SUFFIX);
+		}
+
+		/**
+		 * @return the month a {@code _pYYYYMM} partition holds, or null for the
+		 *         legacy and default partitions
+		 */
+		YearMonth partitionMonth(String partition) {
+			String prefix = table + "_p";
+			if (!partition.startsWith(prefix)) {
+				return null;
+			}
+			try {
+				return YearMonth.parse(partition.substring(prefix.length()), SUFFIX);
+			} catch (DateTimeParseException e) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Converts an existing unpartitioned log table in place, in one
+	 * transaction. The current table becomes the {@code _legacy} partition
+	 * holding everything before next month, so no rows are copied; new months
+	 * get their own partitions from {@link #createPartitions}. The primary key
+	 * is not carried over because a partitioned table's unique constraints must
+	 * include the partition column; the event id index is recreated with it.
+	 *
+	 * @param logTable The table to convert.
+	 * @return true if the table was converted, false on error.
+	 */
+	public boolean convertToPartitioned(LogTable logTable) {
+	    String table = logTable.getTable();
+	    String legacy = table + "_legacy";
+	    LocalDate nextMonth = LocalDate.now().withDayOfMonth(1).plusMonths(1);
+	    try (Connection conn = DatabaseUtility.getConnection()) {
+	        conn.setAutoCommit(false);
+	        try (Statement stmt = conn.createStatement()) {
+	            stmt.execute("ALTER TABLE " + table + " RENAME TO " + legacy);
+	            stmt.execute("CREATE TABLE " + table + " (LIKE " + legacy + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)"
+	                    + " PARTITION BY RANGE (" + logTable.getPartitionColumn() + ")");
+	            stmt.execute("ALTER TABLE " + table + " ATTACH PARTITION " + legacy
+	                    + " FOR VALUES FROM (MINVALUE) TO ('" + nextMonth + "')");
+	            stmt.execute("CREATE TABLE " + table + "_default PARTITION OF " + table + " DEFAULT");
+	            for (String index : logTable.getIndexDefinitions()) {
+	                stmt.execute(index);
+	            }
+	            conn.commit();
+	            return true;
+	        } catch (SQLException e) {
+	            conn.rollback();
+	            throw e;
+	        } finally {
+	            conn.setAutoCommit(true);
+	        }
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error partitioning " + table, e);
+	        return false;
+	    }
+	}
+
+	/**
+	 * Creates the monthly partitions from the current month up to
+	 * {@code monthsAhead} months ahead, skipping those that exist.
+	 *
+	 * @param logTable The partitioned table.
+	 * @param monthsAhead How many months after the current one to create.
+	 * @return The names of the partitions created; empty on error.
+	 */
+	public List<String> createPartitions(LogTable logTable, int monthsAhead) {
+	    List<String> created = new ArrayList<>();
+	    LocalDate month = LocalDate.now().withDayOfMonth(1);
+	    try (Connection conn = DatabaseUtility.getConnection();
+	         Statement stmt = conn.createStatement()) {
+	        for (int i = 0; i <= monthsAhead; i++, month = month.plusMonths(1)) {
+	            String partition = logTable.partitionName(month);
+	            if (partitionExists(conn, partition)) {
+	                continue;
+	            }
+	            try {
+	                stmt.execute("CREATE TABLE " + partition + " PARTITION OF " + logTable.getTable()
+	                        + " FOR VALUES FROM ('" + month + "') TO ('" + month.plusMonths(1) + "')");
+	                created.add(partition);
+	            } catch (SQLException e) {
+	                if (INVALID_OBJECT_DEFINITION.equals(e.getSQLState())) {
+	                    // The month is still covered by the legacy partition.
+	                    LOGGER.log(Level.FINE, "Partition {0} overlaps an existing one", partition);
+	                } else {
+	                    // Typically rows for this month already landed in the default partition.
+	                    LOGGER.log(Level.WARNING, "Could not create partition " + partition, e);
+	                }
+	            }
+	        }
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error creating partitions for " + logTable.getTable(), e);
+	        return new ArrayList<>();
+	    }
+	    return created;
+	}
+
+	/**
+	 * Detaches every partition whose range ends on or before the first day of
+	 * the month {@code retentionMonths} before the current one and moves it to
+	 * {@link #ARCHIVE_SCHEMA}. Each partition is archived in its own
+	 * transaction.
+	 *
+	 * @param logTable The partitioned table.
+	 * @param retentionMonths How many whole months to keep attached.
+	 * @return The names of the partitions archived; empty on error.
+	 */
+	public List<String> archiveExpiredPartitions(LogTable logTable, int retentionMonths) {
+	    LocalDate cutoff = LocalDate.now().withDayOfMonth(1).minusMonths(retentionMonths);
+	    String sql = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid"
+	            + " WHERE i.inhparent = CAST(? AS regclass) ORDER BY c.relname";
+	    List<String> archived = new ArrayList<>();
+	    try (Connection conn = DatabaseUtility.getConnection()) {
+	        List<String> expired = new ArrayList<>();
+	        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+	            ps.setString(1, logTable.getTable());
+	            try (ResultSet rs = ps.executeQuery()) {
+	                while (rs.next()) {
+	                    Matcher bound = UPPER_BOUND.matcher(rs.getString(2));
+	                    if (bound.find() && !LocalDate.parse(bound.group(1)).isAfter(cutoff)) {
+	                        expired.add(rs.getString(1));
+	                    }
+	                }
+	            }
+	        }
+	        if (expired.isEmpty()) {
+	            return archived;
+	        }
+	        try (Statement stmt = conn.createStatement()) {
+	            stmt.execute("CREATE SCHEMA IF NOT EXISTS " + ARCHIVE_SCHEMA);
+	            conn.setAutoCommit(false);
+	            try {
+	                for (String partition : expired) {
+	                    stmt.execute("ALTER TABLE " + logTable.getTable() + " DETACH PARTITION " + partition);
+	                    stmt.execute("ALTER TABLE " + partition + " SET SCHEMA " + ARCHIVE_SCHEMA);
+	                    conn.commit();
+	                    archived.add(partition);
+	                }
+	            } catch (SQLException e) {
+	                conn.rollback();
+	                throw e;
+	            } finally {
+	                conn.setAutoCommit(true);
+	            }
+	        }
+	    } catch (SQLException e) {
+	        LOGGER.log(Level.SEVERE, "Error archiving partitions of " + logTable.getTable(), e);
+	    }
+	    return archived;
+	}
+
+	/**
+	 * Creates upcoming partitions and archives expired ones for every log
+	 * table, using the configured {@link #MONTHS_AHEAD} and
+	 * {@link #RETENTION_MONTHS}, then exports archived partitions to columnar
+	 * files with {@link LogArchiveDAO}.
+	 */
+	public void maintainAll() {
+	    LogArchiveDAO archive = new LogArchiveDAO();
+	    for (LogTable logTable : LogTable.values()) {
+	        List<String> created = createPartitions(logTable, MONTHS_AHEAD);
+	        List<String> archived = archiveExpiredPartitions(logTable, RETENTION_MONTHS);
+	        List<String> exported = archive.exportArchivedPartitions(logTable);
+	        LOGGER.log(Level.INFO, "{0}: created {1}, archived {2}, exported {3}",
+	                new Object[] { logTable.getTable(), created, archived, exported });
+	    }
+	}
+
+	private static boolean partitionExists(Connection conn, String partition) throws SQLException {
+	    try (PreparedStatement ps = conn.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+	        ps.setString(1, partition);
+	        try (ResultSet rs = ps.executeQuery()) {
+	            return rs.next() && rs.getBoolean(1);
+	        }
+	    }
+	}
+}
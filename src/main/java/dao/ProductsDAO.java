@@ -3,13 +3,11 @@ package dao;
 
 import model.Products;
 import utils.DatabaseUtility;
+import utils.JdbcTemplate;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.sql.ResultSet;
-import java.sql.Statement;
 
 
 public class ProductsDAO {
@@ -21,32 +19,15 @@ public class ProductsDAO {
 	 * @return A Products object if found, null otherwise.
 	 */
 	public Products fetchProductBySerialNumber(String serialNumber) {
-	    Connection conn = null;
-	    Products product = null;
+	    String query = "SELECT * FROM products WHERE serial_number = ?";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String query = "SELECT * FROM products WHERE serial_number = ?";
-	        try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-	            pstmt.setString(1, serialNumber);
-	            try (ResultSet rs = pstmt.executeQuery()) {
-	                if (rs.next()) {
-	                    product = new Products();
-	                    product.setId(rs.getInt("id"));
-	                    product.setProductName(rs.getString("product_name"));
-	                    product.setModel(rs.getString("model"));
-	                    product.setSerialNumber(rs.getString("serial_number"));
-	                }
-	            }
-	        }
+	        return JdbcTemplate.queryForObject(query, pstmt -> pstmt.setString(1, serialNumber), RowMappers.PRODUCTS);
 	    } catch (SQLException ex) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "SQL exception in fetchProductBySerialNumber", ex);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return product;
+	    return null;
 	}
-	
-	
+
 	/**
 	 * Creates a new product entry or updates an existing one based on serial number.
 	 *
@@ -56,33 +37,16 @@ public class ProductsDAO {
 	 * @return boolean indicating the success of the operation.
 	 */
 	public boolean createOrUpdateProduct(String productName, String model, String serialNumber) {
-	    Connection conn = DatabaseUtility.connect();
-	    try {
-	        String queryCheck = "SELECT id FROM products WHERE serial_number = ?";
-	        PreparedStatement psCheck = conn.prepareStatement(queryCheck);
-	        psCheck.setString(1, serialNumber);
-	        ResultSet rs = psCheck.executeQuery();
-	        if (rs.next()) {
-	            String updateQuery = "UPDATE products SET product_name = ?, model = ? WHERE serial_number = ?";
-	            PreparedStatement psUpdate = conn.prepareStatement(updateQuery);
-	            psUpdate.setString(1, productName);
-	            psUpdate.setString(2, model);
-	            psUpdate.setString(3, serialNumber);
-	            psUpdate.executeUpdate();
-	        } else {
-	            String insertQuery = "INSERT INTO products (product_name, model, serial_number) VALUES (?, ?, ?)";
-	            PreparedStatement psInsert = conn.prepareStatement(insertQuery);
-	            psInsert.setString(1, productName);
-	            psInsert.setString(2, model);
-	            psInsert.setString(3, serialNumber);
-	            psInsert.executeUpdate();
-	        }
+	    String queryCheck = "SELECT id FROM products WHERE serial_number = ?";
+	    String updateQuery = "UPDATE products SET product_name = ?, model = ? WHERE serial_number = ?";
+	    String insertQuery = "INSERT INTO products (product_name, model, serial_number) VALUES (?, ?, ?)";
+	    try (Connection conn = DatabaseUtility.getConnection()) {
+	        boolean exists = JdbcTemplate.queryForObject(conn, queryCheck, pstmt -> pstmt.setString(1, serialNumber), RowMappers.IDS) != null;
+	        JdbcTemplate.update(conn, exists ? updateQuery : insertQuery, JdbcTemplate.params(productName, model, serialNumber));
 	        return true;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	        return false;
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
 	}
 	
@@ -92,31 +56,12 @@ public class ProductsDAO {
 	 @return boolean indicating if the deletion was successful.
 	*/
 	public boolean deleteProduct(int id) {
-	  Connection conn = null;
-	  PreparedStatement pstmt = null;
-	  boolean isDeleted = false;
 	  String SQL = "DELETE FROM products WHERE id = ?;";
-	
 	  try {
-	    conn = DatabaseUtility.connect();
-	    pstmt = conn.prepareStatement(SQL);
-	    pstmt.setInt(1, id);
-	    int rowsAffected = pstmt.executeUpdate();
-	    if (rowsAffected > 0) {
-	      isDeleted = true;
-	    }
+	    return JdbcTemplate.update(SQL, pstmt -> pstmt.setInt(1, id)) > 0;
 	  } catch (SQLException e) {
 	    Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	  } finally {
-	    if (pstmt != null) {
-	      try {
-	        pstmt.close();
-	      } catch (SQLException e) {
-	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	      }
-	    }
-	    DatabaseUtility.disconnect(conn);
 	  }
-	  return isDeleted;
+	  return false;
 	}
 }
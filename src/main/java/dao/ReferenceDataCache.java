@@ -0,0 +1,215 @@
+package dao;
+
+import model.CommunicationTemplates;
+import model.ComplaintCategories;
+import model.ComplaintSubcategories;
+import model.RegulatoryBodies;
+import model.StaffMembers;
+import utils.ApplicationProperties;
+import utils.CacheInvalidationBus;
+import utils.CacheStats;
+import utils.ReadThroughCache;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Process-wide caches for reference data that is read on almost every screen
+ * but changes rarely: the complaint category tree, communication templates,
+ * regulatory bodies and staff members.
+ *
+ * <p>
+ * Bounds are read from {@code cache.referenceData.maxEntries} and
+ * {@code cache.referenceData.ttlSeconds}. Each cache is registered with the
+ * {@link CacheInvalidationBus} under the table it mirrors. The DAOs that write
+ * those tables call the {@code ...Changed} methods after a successful write,
+ * which evicts the entries on this node at once and on every other node as
+ * soon as the notification arrives; the TTL only matters if a notification is
+ * lost.
+ * </p>
+ *
+ * <p>
+ * The model classes are mutable, so every lookup returns a fresh copy of the
+ * cached objects and lists; callers may modify what they get.
+ * </p>
+ */
+public final class ReferenceDataCache {
+
+	static final String ALL = "all";
+
+	static final String TOPIC_CATEGORIES = "complaint_categories";
+	static final String TOPIC_SUBCATEGORIES = "complaint_subcategories";
+	static final String TOPIC_COMMUNICATION_TEMPLATES = "communication_templates";
+	static final String TOPIC_REGULATORY_BODIES = "regulatory_bodies";
+	static final String TOPIC_STAFF_MEMBERS = "staff_members";
+
+	private static final int MAX_ENTRIES = ApplicationProperties.getInt("cache.referenceData.maxEntries", 512);
+	private static final long TTL_SECONDS = ApplicationProperties.getLong("cache.referenceData.ttlSeconds", 600);
+
+	/** All complaint categories, under the single key {@link #ALL}. */
+	static final ReadThroughCache<String, List<ComplaintCategories>> CATEGORIES =
+			new ReadThroughCache<>("complaintCategories", 1, TTL_SECONDS, listCopier(ReferenceDataCache::copy));
+
+	/** Subcategories keyed by their parent category id. */
+	static final ReadThroughCache<Integer, List<ComplaintSubcategories>> SUBCATEGORIES =
+			new ReadThroughCache<>("complaintSubcategories", MAX_ENTRIES, TTL_SECONDS, listCopier(ReferenceDataCache::copy));
+
+	/** All communication templates, under the single key {@link #ALL}. */
+	static final ReadThroughCache<String, List<CommunicationTemplates>> COMMUNICATION_TEMPLATES =
+			new ReadThroughCache<>("communicationTemplates", 1, TTL_SECONDS, listCopier(ReferenceDataCache::copy));
+
+	/** Communication templates keyed by id. */
+	static final ReadThroughCache<Integer, CommunicationTemplates> COMMUNICATION_TEMPLATES_BY_ID =
+			new ReadThroughCache<>("communicationTemplatesById", MAX_ENTRIES, TTL_SECONDS, ReferenceDataCache::copy);
+
+	/** All regulatory bodies, under the single key {@link #ALL}. */
+	static final ReadThroughCache<String, List<RegulatoryBodies>> REGULATORY_BODIES =
+			new ReadThroughCache<>("regulatoryBodies", 1, TTL_SECONDS, listCopier(ReferenceDataCache::copy));
+
+	/** Regulatory bodies keyed by id. */
+	static final ReadThroughCache<Integer, RegulatoryBodies> REGULATORY_BODIES_BY_ID =
+			new ReadThroughCache<>("regulatoryBodiesById", MAX_ENTRIES, TTL_SECONDS, ReferenceDataCache::copy);
+
+	/** Active staff members, under the single key {@link #ALL}. */
+	static final ReadThroughCache<String, List<StaffMembers>> ACTIVE_STAFF_MEMBERS =
+			new ReadThroughCache<>("activeStaffMembers", 1, TTL_SECONDS, listCopier(ReferenceDataCache::copy));
+
+	/** Staff members keyed by email address. */
+	static final ReadThroughCache<String, StaffMembers> STAFF_MEMBERS_BY_EMAIL =
+			new ReadThroughCache<>("staffMembersByEmail", MAX_ENTRIES, TTL_SECONDS, ReferenceDataCache::copy);
+
+	static {
+		CacheInvalidationBus.register(TOPIC_CATEGORIES, CATEGORIES);
+		// Deleting a category removes its children as well.
+		CacheInvalidationBus.register(TOPIC_CATEGORIES, SUBCATEGORIES);
+		CacheInvalidationBus.register(TOPIC_SUBCATEGORIES, SUBCATEGORIES, Integer::valueOf);
+		CacheInvalidationBus.register(TOPIC_COMMUNICATION_TEMPLATES, COMMUNICATION_TEMPLATES);
+		CacheInvalidationBus.register(TOPIC_COMMUNICATION_TEMPLATES, COMMUNICATION_TEMPLATES_BY_ID);
+		CacheInvalidationBus.register(TOPIC_REGULATORY_BODIES, REGULATORY_BODIES);
+		CacheInvalidationBus.register(TOPIC_REGULATORY_BODIES, REGULATORY_BODIES_BY_ID);
+		CacheInvalidationBus.register(TOPIC_STAFF_MEMBERS, ACTIVE_STAFF_MEMBERS);
+		CacheInvalidationBus.register(TOPIC_STAFF_MEMBERS, STAFF_MEMBERS_BY_EMAIL);
+	}
+
+	private ReferenceDataCache() {
+	}
+
+	/**
+	 * Invalidates everything derived from complaint_categories, including all
+	 * subcategory lists.
+	 */
+	static void categoriesChanged() {
+		CacheInvalidationBus.publish(TOPIC_CATEGORIES);
+	}
+
+	/**
+	 * Invalidates the cached subcategories of one category.
+	 */
+	static void subcategoriesChanged(int categoryId) {
+		CacheInvalidationBus.publish(TOPIC_SUBCATEGORIES, String.valueOf(categoryId));
+	}
+
+	/**
+	 * Invalidates the cached subcategories of every category, for writes where
+	 * the parent category is not known.
+	 */
+	static void allSubcategoriesChanged() {
+		CacheInvalidationBus.publish(TOPIC_SUBCATEGORIES);
+	}
+
+	static void communicationTemplatesChanged() {
+		CacheInvalidationBus.publish(TOPIC_COMMUNICATION_TEMPLATES);
+	}
+
+	static void regulatoryBodiesChanged() {
+		CacheInvalidationBus.publish(TOPIC_REGULATORY_BODIES);
+	}
+
+	static void staffMembersChanged() {
+		CacheInvalidationBus.publish(TOPIC_STAFF_MEMBERS);
+	}
+
+	/**
+	 * @return hit, miss and eviction counters for each reference data cache
+	 */
+	public static List<CacheStats> getStats() {
+		List<CacheStats> stats = new ArrayList<>();
+		stats.add(CATEGORIES.getStats());
+		stats.add(SUBCATEGORIES.getStats());
+		stats.add(COMMUNICATION_TEMPLATES.getStats());
+		stats.add(COMMUNICATION_TEMPLATES_BY_ID.getStats());
+		stats.add(REGULATORY_BODIES.getStats());
+		stats.add(REGULATORY_BODIES_BY_ID.getStats());
+		stats.add(ACTIVE_STAFF_MEMBERS.getStats());
+		stats.add(STAFF_MEMBERS_BY_EMAIL.getStats());
+		return stats;
+	}
+
+	private static <T> UnaryOperator<List<T>> listCopier(UnaryOperator<T> elementCopier) {
+		return list -> {
+			List<T> copy = new ArrayList<>(list.size());
+			for (T element : list) {
+				copy.add(elementCopier.apply(element));
+			}
+			return copy;
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <D extends Date> D copy(D date) {
+		return date == null ? null : (D) date.clone();
+	}
+
+	private static ComplaintCategories copy(ComplaintCategories category) {
+		if (category == null) {
+			return null;
+		}
+		return new ComplaintCategories(category.getId(), category.getCategoryName(), category.getDescription(),
+				copy(category.getCreatedAt()), copy(category.getUpdatedAt()));
+	}
+
+	private static ComplaintSubcategories copy(ComplaintSubcategories subcategory) {
+		ComplaintSubcategories copy = new ComplaintSubcategories();
+		copy.setId(subcategory.getId());
+		copy.setSubCategoryName(subcategory.getSubCategoryName());
+		copy.setDescription(subcategory.getDescription());
+		copy.setCreationDate(copy(subcategory.getCreationDate()));
+		copy.setLastUpdated(copy(subcategory.getLastUpdated()));
+		copy.setFkCategory(copy(subcategory.getFkCategory()));
+		return copy;
+	}
+
+	private static CommunicationTemplates copy(CommunicationTemplates template) {
+		CommunicationTemplates copy = new CommunicationTemplates();
+		copy.setId(template.getId());
+		copy.setTemplateName(template.getTemplateName());
+		copy.setTemplateContent(template.getTemplateContent());
+		copy.setTemplateType(template.getTemplateType());
+		copy.setCreationDate(copy(template.getCreationDate()));
+		copy.setLastModifiedDate(copy(template.getLastModifiedDate()));
+		return copy;
+	}
+
+	private static RegulatoryBodies copy(RegulatoryBodies body) {
+		RegulatoryBodies copy = new RegulatoryBodies();
+		copy.setId(body.getId());
+		copy.setName(body.getName());
+		copy.setContactInformation(body.getContactInformation());
+		copy.setSubmissionGuidelines(body.getSubmissionGuidelines());
+		return copy;
+	}
+
+	private static StaffMembers copy(StaffMembers member) {
+		// fkStaffMemberId is never loaded by RowMappers.STAFF_MEMBERS.
+		StaffMembers copy = new StaffMembers();
+		copy.setId(member.getId());
+		copy.setName(member.getName());
+		copy.setRole(member.getRole());
+		copy.setEmail(member.getEmail());
+		copy.setContactNumber(member.getContactNumber());
+		copy.setJoinDate(copy(member.getJoinDate()));
+		copy.setActiveStatus(member.isActiveStatus());
+		return copy;
+	}
+}
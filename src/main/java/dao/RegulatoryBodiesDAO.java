@@ -2,7 +2,8 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import utils.StatementBinder;
 import java.sql.*;
 import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
@@ -15,72 +16,36 @@ public class RegulatoryBodiesDAO {
 	 * Retrieves a list of all regulatory bodies from the database to populate dropdown selections in the 'Report Generation Form'
 	 * and 'Report Submission Modal' sections on the 'Regulatory Reporting Management' page.
 	 * It is used to allow users to select the appropriate regulatory body to which a report will be submitted.
+	 * Results are copied from {@link ReferenceDataCache}.
 	 * @return A list of RegulatoryBodies objects representing all regulatory bodies in the database.
 	 */
 	public List<RegulatoryBodies> fetchAllRegulatoryBodies() {
-	    List<RegulatoryBodies> regulatoryBodiesList = new ArrayList<>();
 	    String query = "SELECT * FROM regulatory_bodies";
-	    Connection conn = null;
-	    Statement stmt = null;
-	    ResultSet rs = null;
 	    try {
-	        conn = DatabaseUtility.connect();
-	        stmt = conn.createStatement();
-	        rs = stmt.executeQuery(query);
-	        while (rs.next()) {
-	            RegulatoryBodies regulatoryBody = new RegulatoryBodies();
-	            regulatoryBody.setId(rs.getInt("id"));
-	            regulatoryBody.setName(rs.getString("name"));
-	            regulatoryBody.setContactInformation(rs.getString("contact_information"));
-	            regulatoryBody.setSubmissionGuidelines(rs.getString("submission_guidelines"));
-	            regulatoryBodiesList.add(regulatoryBody);
-	        }
+	        return ReferenceDataCache.REGULATORY_BODIES.get(ReferenceDataCache.ALL,
+	                () -> JdbcTemplate.query(query, StatementBinder.NONE, RowMappers.REGULATORY_BODIES));
 	    } catch (SQLException e) {
 	        Logger.getLogger(RegulatoryBodiesDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        try {
-	            if (rs != null) {
-	                rs.close();
-	            }
-	            if (stmt != null) {
-	                stmt.close();
-	            }
-	        } catch (SQLException e) {
-	            Logger.getLogger(RegulatoryBodiesDAO.class.getName()).log(Level.SEVERE, null, e);
-	        }
 	    }
-	    return regulatoryBodiesList;
+	    return new ArrayList<>();
 	}
-	
+
 	/**
 	 * Retrieves details of a specific regulatory body based on its ID to provide detailed information on the 'Report Submission Modal' of the 'Regulatory Reporting Management' page.
 	 * @param id The unique identifier of the regulatory body.
 	 * @return a RegulatoryBodies object containing the details of the regulatory body.
 	 */
 	public RegulatoryBodies getRegulatoryBodyById(int id) {
-	    Connection conn = DatabaseUtility.connect();
 	    String query = "SELECT * FROM regulatory_bodies WHERE id = ?";
-	    RegulatoryBodies regulatoryBody = null;
-	    try (PreparedStatement pstmt = conn.prepareStatement(query)) {
-	        pstmt.setInt(1, id);
-	        ResultSet rs = pstmt.executeQuery();
-	        if (rs.next()) {
-	            regulatoryBody = new RegulatoryBodies();
-	            regulatoryBody.setId(rs.getInt("id"));
-	            regulatoryBody.setName(rs.getString("name"));
-	            regulatoryBody.setContactInformation(rs.getString("contact_information"));
-	            regulatoryBody.setSubmissionGuidelines(rs.getString("submission_guidelines"));
-	        }
+	    try {
+	        return ReferenceDataCache.REGULATORY_BODIES_BY_ID.get(id,
+	                () -> JdbcTemplate.queryForObject(query, pstmt -> pstmt.setInt(1, id), RowMappers.REGULATORY_BODIES));
 	    } catch (SQLException e) {
 	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error retrieving regulatory body by ID", e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return regulatoryBody;
+	    return null;
 	}
-	
-	
+
 	/**
 	 * Adds a new regulatory body to the database.
 	 * @param name Name of the regulatory body.
@@ -89,35 +54,18 @@ public class RegulatoryBodiesDAO {
 	 * @return boolean indicating whether the operation was successful.
 	 */
 	public boolean addRegulatoryBody(String name, String contactInformation, String submissionGuidelines) {
-	    Connection conn = DatabaseUtility.connect();
-	    PreparedStatement pstmt = null;
 	    String insertQuery = "INSERT INTO regulatory_bodies (name, contact_information, submission_guidelines) VALUES (?, ?, ?)";
 	    try {
-	        pstmt = conn.prepareStatement(insertQuery);
-	        pstmt.setString(1, name);
-	        pstmt.setString(2, contactInformation);
-	        pstmt.setString(3, submissionGuidelines);
-	
-	        int affectedRows = pstmt.executeUpdate();
-	        if (affectedRows > 0) {
+	        if (JdbcTemplate.update(insertQuery, JdbcTemplate.params(name, contactInformation, submissionGuidelines)) > 0) {
+	            ReferenceDataCache.regulatoryBodiesChanged();
 	            return true;
 	        }
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        if (pstmt != null) {
-	            try {
-	                pstmt.close();
-	            } catch (SQLException e) {
-	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	            }
-	        }
-	        DatabaseUtility.disconnect(conn);
 	    }
 	    return false;
 	}
-	
-	
+
 	/**
 	* Updates information for an existing regulatory body in the database.
 	*
@@ -128,31 +76,15 @@ public class RegulatoryBodiesDAO {
 	* @return Boolean indicating if the update was successful.
 	*/
 	public boolean updateRegulatoryBody(int id, String name, String contactInformation, String submissionGuidelines) {
-	  Connection conn = null;
-	  PreparedStatement pstmt = null;
-	  boolean updateSuccess = false;
-	
+	  String sql = "UPDATE regulatory_bodies SET name = ?, contact_information = ?, submission_guidelines = ? WHERE id = ?";
 	  try {
-	      conn = DatabaseUtility.connect();
-	      String sql = "UPDATE regulatory_bodies SET name = ?, contact_information = ?, submission_guidelines = ? WHERE id = ?";
-	      pstmt = conn.prepareStatement(sql);
-	      pstmt.setString(1, name);
-	      pstmt.setString(2, contactInformation);
-	      pstmt.setString(3, submissionGuidelines);
-	      pstmt.setInt(4, id);
-	
-	      int rowsAffected = pstmt.executeUpdate();
-	      updateSuccess = rowsAffected > 0;
+	      if (JdbcTemplate.update(sql, JdbcTemplate.params(name, contactInformation, submissionGuidelines, id)) > 0) {
+	          ReferenceDataCache.regulatoryBodiesChanged();
+	          return true;
+	      }
 	  } catch (SQLException e) {
 	      Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error updating regulatory body", e);
-	  } finally {
-	      try {
-	          if (pstmt != null) pstmt.close();
-	          DatabaseUtility.disconnect(conn);
-	      } catch (SQLException e) {
-	          Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error closing resources", e);
-	      }
 	  }
-	  return updateSuccess;
+	  return false;
 	}
 }
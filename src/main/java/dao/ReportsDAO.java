@@ -2,10 +2,13 @@ package dao;
 
 
 import model.*;
-import utils.DatabaseUtility;
+import utils.JdbcTemplate;
+import utils.StatementBinder;
 import java.sql.*;
 import java.util.logging.*;import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
 public class ReportsDAO {
@@ -17,30 +20,46 @@ public class ReportsDAO {
 	 * @return List<Reports> A list of all reports in the database.
 	 */
 	public List<Reports> fetchAllReports() {
-	    List<Reports> reportsList = new ArrayList<>();
 	    String query = "SELECT * FROM reports";
-	    try (Connection conn = DatabaseUtility.connect();
-	         PreparedStatement stmt = conn.prepareStatement(query);) {
-	        ResultSet rs = stmt.executeQuery();
-	        while (rs.next()) {
-	            Reports report = new Reports();
-	            report.setId(rs.getInt("id"));
-	            report.setReportType(Reports.DocumentTypes.valueOf(rs.getString("report_type"))); // Assuming you have a method to map string to Enum
-	            report.setStartDate(rs.getDate("start_date"));
-	            report.setEndDate(rs.getDate("end_date"));
-	            report.setSummaryOfFindings(rs.getString("summary_of_findings"));
-	            // Assuming Complaints class has a method to fetch by ID
-	            report.setFkComplaintId(new Complaints(rs.getInt("fk_complaint_id")));
-	            reportsList.add(report);
-	        }
+	    try {
+	        return JdbcTemplate.query(query, StatementBinder.NONE, RowMappers.REPORTS);
 	    } catch (SQLException ex) {
 	        Logger.getLogger(ReportsDAO.class.getName()).log(Level.SEVERE, null, ex);
-	    } finally {
-	        DatabaseUtility.disconnect();
 	    }
-	    return reportsList;
+	    return new ArrayList<>();
+	}
+
+	/**
+	 * Streams all reports through a server-side cursor. Intended for full pulls
+	 * requested by regulators, where fetchAllReports would materialise the whole
+	 * table in memory. The returned stream keeps a database connection open and
+	 * must be closed, preferably with try-with-resources.
+	 * @return A lazily populated stream of reports; an empty stream if the query could not be started.
+	 */
+	public Stream<Reports> streamAllReports() {
+	    try {
+	        return JdbcTemplate.stream("SELECT * FROM reports ORDER BY id", StatementBinder.NONE, RowMappers.REPORTS);
+	    } catch (SQLException ex) {
+	        Logger.getLogger(ReportsDAO.class.getName()).log(Level.SEVERE, null, ex);
+	    }
+	    return Stream.empty();
 	}
 	
+	/**
+	 * Passes every report to the given callback as it is read from a server-side
+	 * cursor. The connection is released before this method returns.
+	 * @param action Receives each report in id order.
+	 * @return The number of reports processed, or -1 if the export failed.
+	 */
+	public long forEachReport(Consumer<Reports> action) {
+	    try {
+	        return JdbcTemplate.forEach("SELECT * FROM reports ORDER BY id", StatementBinder.NONE, RowMappers.REPORTS, action);
+	    } catch (SQLException ex) {
+	        Logger.getLogger(ReportsDAO.class.getName()).log(Level.SEVERE, null, ex);
+	    }
+	    return -1;
+	}
+
 	/**
 	 * Updates the status of a specific report identified by its reportId.
 	 * This method is utilized in the Regulatory Reporting Management page,
@@ -52,55 +71,32 @@ public class ReportsDAO {
 	 * @return boolean indicating the success or failure of the operation.
 	 */
 	public boolean updateReportStatus(int reportId, String newStatus) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean updateSuccess = false;
+	    String sql = "UPDATE reports SET report_type = ? WHERE id = ?";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "UPDATE reports SET report_type = ? WHERE id = ?";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setString(1, newStatus);
-	        pstmt.setInt(2, reportId);
-	
-	        int rowsAffected = pstmt.executeUpdate();
-	        if (rowsAffected > 0) {
-	            updateSuccess = true;
-	        }
+	        return JdbcTemplate.update(sql, JdbcTemplate.params(newStatus, reportId)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(ReportsDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        try {
-	            if (pstmt != null) {
-	                pstmt.close();
-	            }
-	        } catch (SQLException e) {
-	            Logger.getLogger(ReportsDAO.class.getName()).log(Level.SEVERE, null, e);
-	        }
 	    }
-	    return updateSuccess;
+	    return false;
 	}
 	
 	/*
 	 * Generates a new report based on the provided details such as report type, start and end dates, linked complaint ID, and summary of findings.
 	 * Used in the Report Generation Form section of the Regulatory Reporting Management page for document preparation and submission.
 	 */
-	public Reports generateReport(DocumentTypes reportType, Date startDate, Date endDate, Complaints fkComplaintId, String summaryOfFindings) {
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
+	public Reports generateReport(Reports.DocumentTypes reportType, Date startDate, Date endDate, Complaints fkComplaintId, String summaryOfFindings) {
+	    String sql = "INSERT INTO reports (report_type, start_date, end_date, complaint_id, summary_of_findings) VALUES (?, ?, ?, ?, ?) RETURNING id;";
 	    try {
-	        conn = DatabaseUtility.connect();
-	        String sql = "INSERT INTO reports (report_type, start_date, end_date, complaint_id, summary_of_findings) VALUES (?, ?, ?, ?, ?) RETURNING id;";
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setString(1, reportType.name());
-	        pstmt.setDate(2, startDate);
-	        pstmt.setDate(3, endDate);
-	        pstmt.setInt(4, fkComplaintId != null ? fkComplaintId.getId() : null);
-	        pstmt.setString(5, summaryOfFindings);
-	        ResultSet rs = pstmt.executeQuery();
-	        if (rs.next()) {
+	        Long id = JdbcTemplate.queryForObject(sql, pstmt -> {
+	            pstmt.setString(1, reportType.name());
+	            pstmt.setDate(2, startDate);
+	            pstmt.setDate(3, endDate);
+	            JdbcTemplate.bindValue(pstmt, 4, fkComplaintId != null ? fkComplaintId.getId() : null);
+	            pstmt.setString(5, summaryOfFindings);
+	        }, RowMappers.IDS);
+	        if (id != null) {
 	            Reports report = new Reports();
-	            report.setId(rs.getInt("id"));
+	            report.setId(id.intValue());
 	            report.setReportType(reportType);
 	            report.setStartDate(startDate);
 	            report.setEndDate(endDate);
@@ -110,15 +106,6 @@ public class ReportsDAO {
 	        }
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
-	        if (pstmt != null) {
-	            try {
-	                pstmt.close();
-	            } catch (SQLException e) {
-	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	            }
-	        }
 	    }
 	    return null;
 	}
@@ -133,24 +120,12 @@ public class ReportsDAO {
 	 */
 	public boolean deleteReport(int reportId) {
 	    String sql = "DELETE FROM reports WHERE id = ?;";
-	    Connection conn = null;
-	    PreparedStatement pstmt = null;
-	    boolean result = false;
 	    try {
-	        conn = DatabaseUtility.connect();
-	        pstmt = conn.prepareStatement(sql);
-	        pstmt.setInt(1, reportId);
-	        int affectedRows = pstmt.executeUpdate();
-	        if (affectedRows > 0) {
-	            result = true;
-	        }
+	        return JdbcTemplate.update(sql, pstmt -> pstmt.setInt(1, reportId)) > 0;
 	    } catch (SQLException e) {
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        if (pstmt != null) try { pstmt.close(); } catch (SQLException e) { Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e); }
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return result;
+	    return false;
 	}
 	
 	/**
@@ -163,28 +138,15 @@ public class ReportsDAO {
 	 * @return A Reports object containing detailed information of the report.
 	 */
 	public Reports fetchReportDetails(int reportId) {
-	    Connection conn = DatabaseUtility.connect();
-	    Reports report = new Reports();
 	    String sql = "SELECT * FROM reports WHERE id = ?";
-	    try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-	        pstmt.setInt(1, reportId);
-	        ResultSet rs = pstmt.executeQuery();
-	        if (rs.next()) {
-	            report.setId(rs.getInt("id"));
-	            report.setReportType(Reports.DocumentTypes.valueOf(rs.getString("report_type")));
-	            report.setStartDate(rs.getDate("start_date"));
-	            report.setEndDate(rs.getDate("end_date"));
-	            report.setSummaryOfFindings(rs.getString("summary_of_findings"));
-	            // Assumes Complaints class has similar structure
-	            Complaints complaint = new Complaints();
-	            complaint.setId(rs.getInt("fk_complaint_id"));
-	            report.setFkComplaintId(complaint);
+	    try {
+	        Reports report = JdbcTemplate.queryForObject(sql, pstmt -> pstmt.setInt(1, reportId), RowMappers.REPORTS);
+	        if (report != null) {
+	            return report;
 	        }
 	    } catch (SQLException e) {
 	        Logger.getLogger(ReportsDAO.class.getName()).log(Level.SEVERE, null, e);
-	    } finally {
-	        DatabaseUtility.disconnect(conn);
 	    }
-	    return report;
+	    return new Reports();
 	}
 }
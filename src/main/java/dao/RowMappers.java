@@ -0,0 +1,967 @@
+package dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import model.*;
+import utils.EnumLookup;
+import utils.HyperLogLog;
+import utils.KllSketch;
+import utils.RowMapper;
+
+/**
+ * Shared {@link RowMapper} singletons for the entities read by the DAO layer.
+ *
+ * <p>
+ * Each mapper reads every column its entity knows about; columns absent from a
+ * particular projection are simply left unset, so the same mapper serves
+ * {@code SELECT *} and narrower queries alike.
+ * </p>
+ */
+public final class RowMappers {
+
+	static final EnumLookup<Complaints.ComplaintStatus> COMPLAINT_STATUS = new EnumLookup<>(
+			Complaints.ComplaintStatus.class);
+	static final EnumLookup<Complaints.ComplaintPriority> COMPLAINT_PRIORITY = new EnumLookup<>(
+			Complaints.ComplaintPriority.class);
+	static final EnumLookup<ComplaintTrends.ComplaintStatus> TREND_STATUS = new EnumLookup<>(
+			ComplaintTrends.ComplaintStatus.class);
+	static final EnumLookup<ComplaintTrends.ComplaintPriorities> TREND_PRIORITY = new EnumLookup<>(
+			ComplaintTrends.ComplaintPriorities.class);
+	static final EnumLookup<Documents.DocumentTypes> DOCUMENT_TYPE = new EnumLookup<>(
+			Documents.DocumentTypes.class);
+	static final EnumLookup<Reports.DocumentTypes> REPORT_TYPE = new EnumLookup<>(Reports.DocumentTypes.class);
+	static final EnumLookup<ComplaintStatusUpdates.ComplaintStatus> STATUS_UPDATE_STATUS = new EnumLookup<>(
+			ComplaintStatusUpdates.ComplaintStatus.class);
+	static final EnumLookup<DocumentAccessLogs.ActionType> ACCESS_ACTION_TYPE = new EnumLookup<>(
+			DocumentAccessLogs.ActionType.class);
+	static final EnumLookup<DocumentPreviews.DerivationStatus> DERIVATION_STATUS = new EnumLookup<>(
+			DocumentPreviews.DerivationStatus.class);
+	static final EnumLookup<Capas.CapaStatuses> CAPA_STATUS = new EnumLookup<>(Capas.CapaStatuses.class);
+	static final EnumLookup<CommunicationLogs.CommunicationStatus> COMMUNICATION_STATUS = new EnumLookup<>(
+			CommunicationLogs.CommunicationStatus.class);
+	/** Complaint status of complaint actions and investigation conclusions. */
+	static final EnumLookup<ComplaintStatus> ACTION_STATUS = new EnumLookup<>(ComplaintStatus.class);
+	static final EnumLookup<ComplaintFeedbackRequests.CommunicationStatus> FEEDBACK_STATUS = new EnumLookup<>(
+			ComplaintFeedbackRequests.CommunicationStatus.class);
+	static final EnumLookup<ComplaintInformationRequests.CommunicationStatus> INFORMATION_REQUEST_STATUS = new EnumLookup<>(
+			ComplaintInformationRequests.CommunicationStatus.class);
+	static final EnumLookup<EvidenceDocuments.DocumentTypes> EVIDENCE_DOCUMENT_TYPE = new EnumLookup<>(
+			EvidenceDocuments.DocumentTypes.class);
+	static final EnumLookup<ImprovementInitiatives.TargetedComplaintCategory> TARGETED_CATEGORY = new EnumLookup<>(
+			ImprovementInitiatives.TargetedComplaintCategory.class);
+	static final EnumLookup<ReportSubmissions.SubmissionMethods> SUBMISSION_METHOD = new EnumLookup<>(
+			ReportSubmissions.SubmissionMethods.class);
+	static final EnumLookup<ReportSubmissions.CommunicationStatus> SUBMISSION_STATUS = new EnumLookup<>(
+			ReportSubmissions.CommunicationStatus.class);
+	static final EnumLookup<ComplaintAttachments.DocumentTypes> ATTACHMENT_TYPE = new EnumLookup<>(
+			ComplaintAttachments.DocumentTypes.class);
+
+	public static final RowMapper<Complaints> COMPLAINTS = new ComplaintsMapper();
+	public static final RowMapper<Documents> DOCUMENTS = new DocumentsMapper();
+	public static final RowMapper<ComplaintTrends> COMPLAINT_TRENDS = new ComplaintTrendsMapper();
+	public static final RowMapper<ComplaintCategories> COMPLAINT_CATEGORIES = new ComplaintCategoriesMapper();
+	public static final RowMapper<ComplaintSubcategories> COMPLAINT_SUBCATEGORIES = new ComplaintSubcategoriesMapper();
+	public static final RowMapper<CommunicationTemplates> COMMUNICATION_TEMPLATES = new CommunicationTemplatesMapper();
+	public static final RowMapper<RegulatoryBodies> REGULATORY_BODIES = new RegulatoryBodiesMapper();
+	public static final RowMapper<StaffMembers> STAFF_MEMBERS = new StaffMembersMapper();
+	public static final RowMapper<Customers> CUSTOMERS = new CustomersMapper();
+	public static final RowMapper<Products> PRODUCTS = new ProductsMapper();
+	public static final RowMapper<ComplaintNotes> COMPLAINT_NOTES = new ComplaintNotesMapper();
+	public static final RowMapper<ComplaintStatusUpdates> COMPLAINT_STATUS_UPDATES = new ComplaintStatusUpdatesMapper();
+	public static final RowMapper<Reports> REPORTS = new ReportsMapper();
+	public static final RowMapper<DocumentAccessLogs> DOCUMENT_ACCESS_LOGS = new DocumentAccessLogsMapper();
+	public static final RowMapper<Capas> CAPAS = new CapasMapper();
+	public static final RowMapper<CommunicationLogs> COMMUNICATION_LOGS = new CommunicationLogsMapper();
+	public static final RowMapper<ComplaintActions> COMPLAINT_ACTIONS = new ComplaintActionsMapper();
+	public static final RowMapper<ComplaintAssignments> COMPLAINT_ASSIGNMENTS = new ComplaintAssignmentsMapper();
+	public static final RowMapper<ComplaintAttachments> COMPLAINT_ATTACHMENTS = new ComplaintAttachmentsMapper();
+	public static final RowMapper<ComplaintFeedbackRequests> COMPLAINT_FEEDBACK_REQUESTS = new ComplaintFeedbackRequestsMapper();
+	public static final RowMapper<ComplaintInformationRequests> COMPLAINT_INFORMATION_REQUESTS = new ComplaintInformationRequestsMapper();
+	public static final RowMapper<ComplaintReviewStatuses> COMPLAINT_REVIEW_STATUSES = new ComplaintReviewStatusesMapper();
+	public static final RowMapper<DocumentReviewChecklists> DOCUMENT_REVIEW_CHECKLISTS = new DocumentReviewChecklistsMapper();
+	public static final RowMapper<EvidenceDocuments> EVIDENCE_DOCUMENTS = new EvidenceDocumentsMapper();
+	public static final RowMapper<ImprovementInitiatives> IMPROVEMENT_INITIATIVES = new ImprovementInitiativesMapper();
+	public static final RowMapper<InvestigationRecords> INVESTIGATION_RECORDS = new InvestigationRecordsMapper();
+	public static final RowMapper<ReportSubmissions> REPORT_SUBMISSIONS = new ReportSubmissionsMapper();
+	/** Reads the {@code id} column alone, for statements returning affected keys. */
+	public static final RowMapper<Long> IDS = new IdMapper();
+	/** Reads complaint_trend_contributions rows for {@link ComplaintTrendCube}. */
+	static final RowMapper<ComplaintTrendCube.Contribution> TREND_CONTRIBUTIONS = new TrendContributionMapper();
+	/** Reads complaint_trend_sketches rows for {@link ComplaintTrendSketches}. */
+	static final RowMapper<ComplaintTrendSketches.Sketch> TREND_SKETCHES = new TrendSketchMapper();
+	public static final RowMapper<ComplaintSearchHit> COMPLAINT_SEARCH_HITS = new ComplaintSearchHitMapper();
+	/** Reads evidence_uploads rows, with their chunk indexes aggregated as {@code received_chunks}. */
+	static final RowMapper<EvidenceUploads> EVIDENCE_UPLOADS = new EvidenceUploadsMapper();
+	/** Reads claimed document_derivation_jobs rows for {@link DocumentDerivationPipeline}. */
+	static final RowMapper<DocumentDerivationPipeline.Job> DERIVATION_JOBS = new DerivationJobMapper();
+	public static final RowMapper<DocumentPreviews> DOCUMENT_PREVIEWS = new DocumentPreviewsMapper();
+
+	private RowMappers() {
+	}
+
+	/**
+	 * Builds a placeholder complaint carrying only its id, used for foreign keys.
+	 */
+	static Complaints complaintRef(int id) {
+		Complaints complaint = new Complaints();
+		complaint.setId(id);
+		return complaint;
+	}
+
+	/**
+	 * Builds a placeholder staff member carrying only its id, used for foreign keys.
+	 */
+	static StaffMembers staffMemberRef(int id) {
+		StaffMembers staffMember = new StaffMembers();
+		staffMember.setId(id);
+		return staffMember;
+	}
+
+	/**
+	 * Builds a placeholder communication template carrying only its id, used for foreign keys.
+	 */
+	static CommunicationTemplates templateRef(int id) {
+		CommunicationTemplates template = new CommunicationTemplates();
+		template.setId(id);
+		return template;
+	}
+
+	/**
+	 * Builds a placeholder investigation record carrying only its id, used for foreign keys.
+	 */
+	static InvestigationRecords investigationRecordRef(long id) {
+		InvestigationRecords record = new InvestigationRecords();
+		record.setId(id);
+		return record;
+	}
+
+	/**
+	 * Returns a mapper that reads the first column of each row as the given
+	 * type, whatever its label, for single-column queries. {@code byte[]}
+	 * reads binary columns.
+	 */
+	public static <T> RowMapper<T> scalar(Class<T> type) {
+		return new ScalarMapper<>(type);
+	}
+
+	private static final class ComplaintsMapper extends RowMapper<Complaints> {
+		private final int id = column("id");
+		private final int description = column("complaint_description");
+		private final int date = column("complaint_date");
+		private final int status = column("complaint_status");
+		private final int priority = column("complaint_priority");
+		private final int feedback = column("customer_feedback");
+		private final int resolutionDate = column("resolution_date");
+		private final int productName = column("product_name");
+		private final int model = column("model");
+		private final int serialNumber = column("serial_number");
+
+		@Override
+		public Complaints mapRow(ResultSet rs, int[] at) throws SQLException {
+			Complaints complaint = new Complaints();
+			complaint.setId(getInt(rs, at, id));
+			complaint.setComplaintDescription(getString(rs, at, description));
+			complaint.setComplaintDate(getDate(rs, at, date));
+			complaint.setComplaintStatus(getEnum(rs, at, status, COMPLAINT_STATUS));
+			complaint.setComplaintPriority(getEnum(rs, at, priority, COMPLAINT_PRIORITY));
+			complaint.setCustomerFeedback(getString(rs, at, feedback));
+			complaint.setResolutionDate(getDate(rs, at, resolutionDate));
+			complaint.setProductName(getString(rs, at, productName));
+			complaint.setModel(getString(rs, at, model));
+			complaint.setSerialNumber(getString(rs, at, serialNumber));
+			return complaint;
+		}
+	}
+
+	private static final class DocumentsMapper extends RowMapper<Documents> {
+		private final int id = column("id");
+		private final int name = column("document_name");
+		private final int uploadTime = column("upload_time");
+		private final int type = column("document_type");
+		private final int fileSize = column("file_size");
+		private final int fileFormat = column("file_format");
+		private final int contentHash = column("content_hash");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public Documents mapRow(ResultSet rs, int[] at) throws SQLException {
+			Documents document = new Documents();
+			document.setId(getLong(rs, at, id));
+			document.setDocumentName(getString(rs, at, name));
+			document.setUploadTime(getTimestamp(rs, at, uploadTime));
+			document.setDocumentType(getEnum(rs, at, type, DOCUMENT_TYPE));
+			document.setFileSize(getBigDecimal(rs, at, fileSize));
+			document.setFileFormat(getString(rs, at, fileFormat));
+			document.setContentHash(getString(rs, at, contentHash));
+			if (has(at, complaintId)) {
+				document.setFkComplaintId(complaintRef(getInt(rs, at, complaintId)));
+			}
+			return document;
+		}
+	}
+
+	private static final class ComplaintTrendsMapper extends RowMapper<ComplaintTrends> {
+		private final int id = column("id");
+		private final int timeFrame = column("time_frame");
+		private final int count = column("complaint_count");
+		private final int type = column("complaint_type");
+		private final int averageResolutionTime = column("average_resolution_time");
+		private final int satisfactionScore = column("customer_satisfaction_score");
+		private final int status = column("complaint_status");
+		private final int priority = column("complaint_priority");
+
+		@Override
+		public ComplaintTrends mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintTrends trend = new ComplaintTrends();
+			trend.setId(getInt(rs, at, id));
+			trend.setTimeFrame(getString(rs, at, timeFrame));
+			trend.setComplaintCount(getInt(rs, at, count));
+			trend.setComplaintType(getString(rs, at, type));
+			trend.setAverageResolutionTime(getDouble(rs, at, averageResolutionTime));
+			trend.setCustomerSatisfactionScore(getDouble(rs, at, satisfactionScore));
+			trend.setComplaintStatus(getEnum(rs, at, status, TREND_STATUS));
+			trend.setComplaintPriority(getEnum(rs, at, priority, TREND_PRIORITY));
+			return trend;
+		}
+	}
+
+	private static final class ComplaintCategoriesMapper extends RowMapper<ComplaintCategories> {
+		private final int id = column("id");
+		private final int name = column("category_name");
+		private final int description = column("description");
+		private final int createdAt = column("created_at");
+		private final int updatedAt = column("updated_at");
+
+		@Override
+		public ComplaintCategories mapRow(ResultSet rs, int[] at) throws SQLException {
+			return new ComplaintCategories(getInt(rs, at, id), getString(rs, at, name),
+					getString(rs, at, description), getTimestamp(rs, at, createdAt), getTimestamp(rs, at, updatedAt));
+		}
+	}
+
+	private static final class ComplaintSubcategoriesMapper extends RowMapper<ComplaintSubcategories> {
+		private final int id = column("id");
+		private final int name = column("sub_category_name");
+		private final int description = column("description");
+		private final int creationDate = column("creation_date");
+		private final int lastUpdated = column("last_updated");
+		private final int categoryId = column("fk_category_id");
+
+		@Override
+		public ComplaintSubcategories mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintSubcategories subcategory = new ComplaintSubcategories();
+			subcategory.setId(getInt(rs, at, id));
+			subcategory.setSubCategoryName(getString(rs, at, name));
+			subcategory.setDescription(getString(rs, at, description));
+			subcategory.setCreationDate(getDate(rs, at, creationDate));
+			subcategory.setLastUpdated(getTimestamp(rs, at, lastUpdated));
+			if (has(at, categoryId)) {
+				ComplaintCategories category = new ComplaintCategories();
+				category.setId(getInt(rs, at, categoryId));
+				subcategory.setFkCategory(category);
+			}
+			return subcategory;
+		}
+	}
+
+	private static final class CommunicationTemplatesMapper extends RowMapper<CommunicationTemplates> {
+		private final int id = column("id");
+		private final int name = column("template_name");
+		private final int content = column("template_content");
+		private final int type = column("template_type");
+		private final int creationDate = column("creation_date");
+		private final int lastModifiedDate = column("last_modified_date");
+
+		@Override
+		public CommunicationTemplates mapRow(ResultSet rs, int[] at) throws SQLException {
+			CommunicationTemplates template = new CommunicationTemplates();
+			template.setId(getInt(rs, at, id));
+			template.setTemplateName(getString(rs, at, name));
+			template.setTemplateContent(getString(rs, at, content));
+			template.setTemplateType(getString(rs, at, type));
+			template.setCreationDate(getDate(rs, at, creationDate));
+			template.setLastModifiedDate(getTimestamp(rs, at, lastModifiedDate));
+			return template;
+		}
+	}
+
+	private static final class RegulatoryBodiesMapper extends RowMapper<RegulatoryBodies> {
+		private final int id = column("id");
+		private final int name = column("name");
+		private final int contactInformation = column("contact_information");
+		private final int submissionGuidelines = column("submission_guidelines");
+
+		@Override
+		public RegulatoryBodies mapRow(ResultSet rs, int[] at) throws SQLException {
+			RegulatoryBodies regulatoryBody = new RegulatoryBodies();
+			regulatoryBody.setId(getInt(rs, at, id));
+			regulatoryBody.setName(getString(rs, at, name));
+			regulatoryBody.setContactInformation(getString(rs, at, contactInformation));
+			regulatoryBody.setSubmissionGuidelines(getString(rs, at, submissionGuidelines));
+			return regulatoryBody;
+		}
+	}
+
+	private static final class StaffMembersMapper extends RowMapper<StaffMembers> {
+		private final int id = column("id");
+		private final int name = column("name");
+		private final int role = column("role");
+		private final int email = column("email");
+		private final int contactNumber = column("contact_number");
+		private final int joinDate = column("join_date");
+		private final int activeStatus = column("active_status");
+
+		@Override
+		public StaffMembers mapRow(ResultSet rs, int[] at) throws SQLException {
+			StaffMembers member = new StaffMembers();
+			member.setId(getInt(rs, at, id));
+			member.setName(getString(rs, at, name));
+			member.setRole(getString(rs, at, role));
+			member.setEmail(getString(rs, at, email));
+			member.setContactNumber(getString(rs, at, contactNumber));
+			member.setJoinDate(getDate(rs, at, joinDate));
+			member.setActiveStatus(getBoolean(rs, at, activeStatus));
+			return member;
+		}
+	}
+
+	private static final class CustomersMapper extends RowMapper<Customers> {
+		private final int id = column("id");
+		private final int firstName = column("first_name");
+		private final int lastName = column("last_name");
+		private final int emailAddress = column("email_address");
+		private final int phoneNumber = column("phone_number");
+		private final int registerDate = column("register_date");
+
+		@Override
+		public Customers mapRow(ResultSet rs, int[] at) throws SQLException {
+			Customers customer = new Customers();
+			customer.setId(getInt(rs, at, id));
+			customer.setFirstName(getString(rs, at, firstName));
+			customer.setLastName(getString(rs, at, lastName));
+			customer.setEmailAddress(getString(rs, at, emailAddress));
+			customer.setPhoneNumber(getString(rs, at, phoneNumber));
+			customer.setRegisterDate(getDate(rs, at, registerDate));
+			return customer;
+		}
+	}
+
+	private static final class ProductsMapper extends RowMapper<Products> {
+		private final int id = column("id");
+		private final int productName = column("product_name");
+		private final int model = column("model");
+		private final int serialNumber = column("serial_number");
+
+		@Override
+		public Products mapRow(ResultSet rs, int[] at) throws SQLException {
+			Products product = new Products();
+			product.setId(getLong(rs, at, id));
+			product.setProductName(getString(rs, at, productName));
+			product.setModel(getString(rs, at, model));
+			product.setSerialNumber(getString(rs, at, serialNumber));
+			return product;
+		}
+	}
+
+	private static final class ComplaintNotesMapper extends RowMapper<ComplaintNotes> {
+		private final int id = column("id");
+		private final int content = column("note_content");
+		private final int createdAt = column("created_at");
+		private final int updatedAt = column("updated_at");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public ComplaintNotes mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintNotes note = new ComplaintNotes();
+			note.setId(getInt(rs, at, id));
+			note.setNoteContent(getString(rs, at, content));
+			note.setCreatedAt(getTimestamp(rs, at, createdAt));
+			note.setUpdatedAt(getTimestamp(rs, at, updatedAt));
+			note.setFkComplaint(complaintRef(getInt(rs, at, complaintId)));
+			return note;
+		}
+	}
+
+	private static final class ComplaintStatusUpdatesMapper extends RowMapper<ComplaintStatusUpdates> {
+		private final int id = column("id");
+		private final int timestamp = column("update_timestamp");
+		private final int status = column("complaint_status");
+		private final int reason = column("reason_for_change");
+		private final int changedByRole = column("changed_by_role");
+
+		@Override
+		public ComplaintStatusUpdates mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintStatusUpdates update = new ComplaintStatusUpdates();
+			update.setId(getLong(rs, at, id));
+			update.setUpdateTimestamp(getTimestamp(rs, at, timestamp));
+			update.setComplaintStatus(getEnum(rs, at, status, STATUS_UPDATE_STATUS));
+			update.setReasonForChange(getString(rs, at, reason));
+			update.setChangedByRole(getString(rs, at, changedByRole));
+			return update;
+		}
+	}
+
+	private static final class ReportsMapper extends RowMapper<Reports> {
+		private final int id = column("id");
+		private final int type = column("report_type");
+		private final int startDate = column("start_date");
+		private final int endDate = column("end_date");
+		private final int summary = column("summary_of_findings");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public Reports mapRow(ResultSet rs, int[] at) throws SQLException {
+			Reports report = new Reports();
+			report.setId(getInt(rs, at, id));
+			report.setReportType(getEnum(rs, at, type, REPORT_TYPE));
+			report.setStartDate(getDate(rs, at, startDate));
+			report.setEndDate(getDate(rs, at, endDate));
+			report.setSummaryOfFindings(getString(rs, at, summary));
+			report.setFkComplaintId(complaintRef(getInt(rs, at, complaintId)));
+			return report;
+		}
+	}
+
+	private static final class DocumentAccessLogsMapper extends RowMapper<DocumentAccessLogs> {
+		private final int id = column("id");
+		private final int accessTime = column("access_time");
+		private final int actionType = column("action_type");
+		private final int userId = column("fk_user_id");
+		private final int documentId = column("fk_document_id");
+
+		@Override
+		public DocumentAccessLogs mapRow(ResultSet rs, int[] at) throws SQLException {
+			DocumentAccessLogs log = new DocumentAccessLogs();
+			log.setId(getLong(rs, at, id));
+			log.setAccessTime(getTimestamp(rs, at, accessTime));
+			log.setActionType(getEnum(rs, at, actionType, ACCESS_ACTION_TYPE));
+			StaffMembers staffMember = new StaffMembers();
+			staffMember.setId(getInt(rs, at, userId));
+			log.setStaffMember(staffMember);
+			Documents document = new Documents();
+			document.setId(getLong(rs, at, documentId));
+			log.setDocument(document);
+			return log;
+		}
+	}
+
+	private static final class CapasMapper extends RowMapper<Capas> {
+		private final int id = column("id");
+		private final int actionDescription = column("action_description");
+		private final int dueDate = column("due_date");
+		private final int status = column("capa_status");
+		private final int staffMemberId = column("fk_staff_member_id");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public Capas mapRow(ResultSet rs, int[] at) throws SQLException {
+			Capas capa = new Capas();
+			capa.setId(getInt(rs, at, id));
+			capa.setActionDescription(getString(rs, at, actionDescription));
+			capa.setDueDate(getDate(rs, at, dueDate));
+			capa.setCapaStatus(getEnum(rs, at, status, CAPA_STATUS));
+			if (has(at, staffMemberId)) {
+				capa.setStaffMember(staffMemberRef(getInt(rs, at, staffMemberId)));
+			}
+			if (has(at, complaintId)) {
+				capa.setComplaint(complaintRef(getInt(rs, at, complaintId)));
+			}
+			return capa;
+		}
+	}
+
+	private static final class CommunicationLogsMapper extends RowMapper<CommunicationLogs> {
+		private final int id = column("id");
+		private final int sentTime = column("sent_time");
+		private final int status = column("communication_status");
+		private final int templateUsed = column("template_used");
+		private final int linkToMessage = column("link_to_message");
+		private final int complaintId = column("fk_complaint_id");
+		private final int templateId = column("fk_template_id");
+
+		@Override
+		public CommunicationLogs mapRow(ResultSet rs, int[] at) throws SQLException {
+			CommunicationLogs log = new CommunicationLogs();
+			log.setId(getLong(rs, at, id));
+			log.setSentTime(getTimestamp(rs, at, sentTime));
+			log.setCommunicationStatus(getEnum(rs, at, status, COMMUNICATION_STATUS));
+			log.setTemplateUsed(getString(rs, at, templateUsed));
+			log.setLinkToMessage(getString(rs, at, linkToMessage));
+			if (has(at, complaintId)) {
+				log.setFkComplaintId(complaintRef(getInt(rs, at, complaintId)));
+			}
+			if (has(at, templateId)) {
+				log.setFkTemplateId(templateRef(getInt(rs, at, templateId)));
+			}
+			return log;
+		}
+	}
+
+	private static final class ComplaintActionsMapper extends RowMapper<ComplaintActions> {
+		private final int id = column("id");
+		private final int actionType = column("action_type");
+		private final int actionDate = column("action_date");
+		private final int actionDescription = column("action_description");
+		private final int status = column("complaint_status");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public ComplaintActions mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintActions action = new ComplaintActions();
+			action.setId(getInt(rs, at, id));
+			action.setActionType(getString(rs, at, actionType));
+			action.setActionDate(getTimestamp(rs, at, actionDate));
+			action.setActionDescription(getString(rs, at, actionDescription));
+			action.setComplaintStatus(getEnum(rs, at, status, ACTION_STATUS));
+			if (has(at, complaintId)) {
+				action.setFkComplaint(complaintRef(getInt(rs, at, complaintId)));
+			}
+			return action;
+		}
+	}
+
+	private static final class ComplaintAssignmentsMapper extends RowMapper<ComplaintAssignments> {
+		private final int id = column("id");
+		private final int assignmentDate = column("assignment_date");
+		private final int assignmentStatus = column("assignment_status");
+		private final int completionDate = column("completion_date");
+		private final int complaintId = column("fk_complaint_id");
+		private final int staffMemberId = column("fk_staff_member_id");
+
+		@Override
+		public ComplaintAssignments mapRow(ResultSet rs, int[] at) throws SQLException {
+			// complaint_priority is not mapped: the model's ComplaintPriorities type is not defined.
+			ComplaintAssignments assignment = new ComplaintAssignments();
+			assignment.setId(getInt(rs, at, id));
+			assignment.setAssignmentDate(getDate(rs, at, assignmentDate));
+			assignment.setAssignmentStatus(getString(rs, at, assignmentStatus));
+			assignment.setCompletionDate(getDate(rs, at, completionDate));
+			if (has(at, complaintId)) {
+				assignment.setFkComplaint(complaintRef(getInt(rs, at, complaintId)));
+			}
+			if (has(at, staffMemberId)) {
+				assignment.setFkStaffMember(staffMemberRef(getInt(rs, at, staffMemberId)));
+			}
+			return assignment;
+		}
+	}
+
+	private static final class ComplaintAttachmentsMapper extends RowMapper<ComplaintAttachments> {
+		private final int id = column("id");
+		private final int attachmentName = column("attachment_name");
+		private final int fileType = column("file_type");
+		private final int uploadDate = column("upload_date");
+		private final int fileSize = column("file_size");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public ComplaintAttachments mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintAttachments attachment = new ComplaintAttachments();
+			attachment.setId(getInt(rs, at, id));
+			attachment.setAttachmentName(getString(rs, at, attachmentName));
+			attachment.setFileType(getEnum(rs, at, fileType, ATTACHMENT_TYPE));
+			attachment.setUploadDate(getDate(rs, at, uploadDate));
+			attachment.setFileSize(getDouble(rs, at, fileSize));
+			if (has(at, complaintId)) {
+				attachment.setFkComplaintId(complaintRef(getInt(rs, at, complaintId)));
+			}
+			return attachment;
+		}
+	}
+
+	private static final class ComplaintFeedbackRequestsMapper extends RowMapper<ComplaintFeedbackRequests> {
+		private final int id = column("id");
+		private final int complaintId = column("complaint_id");
+		private final int contactInfo = column("complainant_contact_info");
+		private final int templateId = column("message_template_id");
+		private final int customMessage = column("custom_message");
+		private final int status = column("communication_status");
+		private final int sentTime = column("sent_time");
+
+		@Override
+		public ComplaintFeedbackRequests mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintFeedbackRequests request = new ComplaintFeedbackRequests();
+			request.setId(getInt(rs, at, id));
+			if (has(at, complaintId)) {
+				request.setComplaint(complaintRef(getInt(rs, at, complaintId)));
+			}
+			request.setComplainantContactInfo(getString(rs, at, contactInfo));
+			if (has(at, templateId)) {
+				request.setMessageTemplate(templateRef(getInt(rs, at, templateId)));
+			}
+			request.setCustomMessage(getString(rs, at, customMessage));
+			request.setCommunicationStatus(getEnum(rs, at, status, FEEDBACK_STATUS));
+			request.setSentTime(getTimestamp(rs, at, sentTime));
+			return request;
+		}
+	}
+
+	private static final class ComplaintInformationRequestsMapper extends RowMapper<ComplaintInformationRequests> {
+		private final int id = column("id");
+		private final int requestDate = column("request_date");
+		private final int requestStatus = column("request_status");
+		private final int requestType = column("request_type");
+		private final int responseDueDate = column("response_due_date");
+		private final int followUpCount = column("follow_up_count");
+		private final int customMessage = column("custom_message");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public ComplaintInformationRequests mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintInformationRequests request = new ComplaintInformationRequests();
+			request.setId(getInt(rs, at, id));
+			request.setRequestDate(getTimestamp(rs, at, requestDate));
+			request.setRequestStatus(getEnum(rs, at, requestStatus, INFORMATION_REQUEST_STATUS));
+			request.setRequestType(getString(rs, at, requestType));
+			request.setResponseDueDate(getDate(rs, at, responseDueDate));
+			request.setFollowUpCount(getInt(rs, at, followUpCount));
+			request.setCustomMessage(getString(rs, at, customMessage));
+			if (has(at, complaintId)) {
+				request.setFkComplaintId(complaintRef(getInt(rs, at, complaintId)));
+			}
+			return request;
+		}
+	}
+
+	private static final class ComplaintReviewStatusesMapper extends RowMapper<ComplaintReviewStatuses> {
+		private final int id = column("id");
+		private final int reviewStatus = column("review_status");
+		private final int reviewNotes = column("review_notes");
+		private final int reviewDate = column("review_date");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public ComplaintReviewStatuses mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintReviewStatuses status = new ComplaintReviewStatuses();
+			status.setId(getInt(rs, at, id));
+			status.setReviewStatus(getBoolean(rs, at, reviewStatus));
+			status.setReviewNotes(getString(rs, at, reviewNotes));
+			status.setReviewDate(getDate(rs, at, reviewDate));
+			if (has(at, complaintId)) {
+				status.setFkComplaintId(complaintRef(getInt(rs, at, complaintId)));
+			}
+			return status;
+		}
+	}
+
+	private static final class DocumentReviewChecklistsMapper extends RowMapper<DocumentReviewChecklists> {
+		private final int id = column("id");
+		private final int investigationReport = column("investigation_report_verified");
+		private final int actionPlan = column("action_plan_verified");
+		private final int communicationLog = column("communication_log_verified");
+		private final int correctiveAction = column("corrective_action_verified");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public DocumentReviewChecklists mapRow(ResultSet rs, int[] at) throws SQLException {
+			DocumentReviewChecklists checklist = new DocumentReviewChecklists();
+			checklist.setId(getLong(rs, at, id));
+			checklist.setInvestigationReportVerified(getBoolean(rs, at, investigationReport));
+			checklist.setActionPlanVerified(getBoolean(rs, at, actionPlan));
+			checklist.setCommunicationLogVerified(getBoolean(rs, at, communicationLog));
+			checklist.setCorrectiveActionVerified(getBoolean(rs, at, correctiveAction));
+			if (has(at, complaintId)) {
+				checklist.setFkComplaintId(complaintRef(getInt(rs, at, complaintId)));
+			}
+			return checklist;
+		}
+	}
+
+	private static final class EvidenceDocumentsMapper extends RowMapper<EvidenceDocuments> {
+		private final int id = column("id");
+		private final int name = column("document_name");
+		private final int type = column("document_type");
+		private final int uploadDate = column("upload_date");
+		private final int fileSize = column("file_size");
+		private final int fileFormat = column("file_format");
+		private final int contentHash = column("content_hash");
+		private final int complaintId = column("fk_complaint_id");
+		private final int investigationRecordId = column("fk_investigation_record_id");
+
+		@Override
+		public EvidenceDocuments mapRow(ResultSet rs, int[] at) throws SQLException {
+			EvidenceDocuments document = new EvidenceDocuments();
+			document.setId(getInt(rs, at, id));
+			document.setDocumentName(getString(rs, at, name));
+			document.setDocumentType(getEnum(rs, at, type, EVIDENCE_DOCUMENT_TYPE));
+			document.setUploadDate(getDate(rs, at, uploadDate));
+			document.setFileSize(getDouble(rs, at, fileSize));
+			document.setFileFormat(getString(rs, at, fileFormat));
+			document.setContentHash(getString(rs, at, contentHash));
+			if (has(at, complaintId)) {
+				document.setFkComplaintId(complaintRef(getInt(rs, at, complaintId)));
+			}
+			if (has(at, investigationRecordId)) {
+				document.setFkInvestigationRecordId(investigationRecordRef(getLong(rs, at, investigationRecordId)));
+			}
+			return document;
+		}
+	}
+
+	private static final class ImprovementInitiativesMapper extends RowMapper<ImprovementInitiatives> {
+		private final int id = column("id");
+		private final int title = column("initiative_title");
+		private final int category = column("targeted_complaint_category");
+		private final int startDate = column("start_date");
+		private final int endDate = column("end_date");
+		private final int expectedOutcomes = column("expected_outcomes");
+		private final int assignedToIds = column("assigned_to_ids");
+
+		@Override
+		public ImprovementInitiatives mapRow(ResultSet rs, int[] at) throws SQLException {
+			ImprovementInitiatives initiative = new ImprovementInitiatives();
+			initiative.setId(getLong(rs, at, id));
+			initiative.setInitiativeTitle(getString(rs, at, title));
+			initiative.setTargetedComplaintCategory(getEnum(rs, at, category, TARGETED_CATEGORY));
+			initiative.setStartDate(getDate(rs, at, startDate));
+			initiative.setEndDate(getDate(rs, at, endDate));
+			initiative.setExpectedOutcomes(getString(rs, at, expectedOutcomes));
+			initiative.setAssignedToIds(getString(rs, at, assignedToIds));
+			return initiative;
+		}
+	}
+
+	private static final class InvestigationRecordsMapper extends RowMapper<InvestigationRecords> {
+		private final int id = column("id");
+		private final int summary = column("investigation_summary");
+		private final int investigatorNotes = column("investigator_notes");
+		private final int conclusion = column("investigation_conclusion");
+		private final int investigationDate = column("investigation_date");
+		private final int conclusionRemarks = column("conclusion_remarks");
+		private final int duration = column("investigation_duration");
+		private final int resolvedBy = column("resolved_by");
+		private final int complaintId = column("fk_complaint_id");
+
+		@Override
+		public InvestigationRecords mapRow(ResultSet rs, int[] at) throws SQLException {
+			InvestigationRecords record = new InvestigationRecords();
+			record.setId(getLong(rs, at, id));
+			record.setInvestigationSummary(getString(rs, at, summary));
+			record.setInvestigatorNotes(getString(rs, at, investigatorNotes));
+			record.setInvestigationConclusion(getEnum(rs, at, conclusion, ACTION_STATUS));
+			record.setInvestigationDate(getDate(rs, at, investigationDate));
+			record.setConclusionRemarks(getString(rs, at, conclusionRemarks));
+			record.setInvestigationDuration(getInt(rs, at, duration));
+			record.setResolvedBy(getString(rs, at, resolvedBy));
+			if (has(at, complaintId)) {
+				record.setFkComplaint(complaintRef(getInt(rs, at, complaintId)));
+			}
+			return record;
+		}
+	}
+
+	private static final class ReportSubmissionsMapper extends RowMapper<ReportSubmissions> {
+		private final int id = column("id");
+		private final int submissionDate = column("submission_date");
+		private final int method = column("submission_method");
+		private final int status = column("submission_status");
+		private final int reportId = column("fk_report_id");
+		private final int regulatoryBodyId = column("fk_regulatory_body_id");
+
+		@Override
+		public ReportSubmissions mapRow(ResultSet rs, int[] at) throws SQLException {
+			ReportSubmissions submission = new ReportSubmissions();
+			submission.setId(getInt(rs, at, id));
+			submission.setSubmissionDate(getTimestamp(rs, at, submissionDate));
+			submission.setSubmissionMethod(getEnum(rs, at, method, SUBMISSION_METHOD));
+			submission.setSubmissionStatus(getEnum(rs, at, status, SUBMISSION_STATUS));
+			if (has(at, reportId)) {
+				Reports report = new Reports();
+				report.setId(getInt(rs, at, reportId));
+				submission.setFkReport(report);
+			}
+			if (has(at, regulatoryBodyId)) {
+				RegulatoryBodies regulatoryBody = new RegulatoryBodies();
+				regulatoryBody.setId(getInt(rs, at, regulatoryBodyId));
+				submission.setFkRegulatoryBody(regulatoryBody);
+			}
+			return submission;
+		}
+	}
+
+	private static final class IdMapper extends RowMapper<Long> {
+		private final int id = column("id");
+
+		@Override
+		public Long mapRow(ResultSet rs, int[] at) throws SQLException {
+			return getLong(rs, at, id);
+		}
+	}
+
+	private static final class ScalarMapper<T> extends RowMapper<T> {
+		private final Class<T> type;
+
+		ScalarMapper(Class<T> type) {
+			this.type = type;
+		}
+
+		@Override
+		public T mapRow(ResultSet rs, int[] at) throws SQLException {
+			// getObject(int, Class) need not support byte[]; bytea is read directly.
+			return type == byte[].class ? type.cast(rs.getBytes(1)) : rs.getObject(1, type);
+		}
+	}
+
+	private static final class TrendContributionMapper extends RowMapper<ComplaintTrendCube.Contribution> {
+		private final int complaintId = column("complaint_id");
+		private final int complaintDate = column("complaint_date");
+		private final int type = column("complaint_type");
+		private final int subcategory = column("sub_category");
+		private final int status = column("complaint_status");
+		private final int priority = column("complaint_priority");
+		private final int product = column("product_name");
+		private final int resolutionDays = column("resolution_days");
+		private final int changeSeq = column("change_seq");
+
+		@Override
+		public ComplaintTrendCube.Contribution mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintTrendCube.Contribution contribution = new ComplaintTrendCube.Contribution();
+			contribution.complaintId = getLong(rs, at, complaintId);
+			// Dates read as text are already in the cube's yyyy-MM-dd form.
+			contribution.day = getString(rs, at, complaintDate);
+			contribution.category = getString(rs, at, type);
+			contribution.subcategory = getString(rs, at, subcategory);
+			contribution.status = getString(rs, at, status);
+			contribution.priority = getString(rs, at, priority);
+			contribution.product = getString(rs, at, product);
+			double days = getDouble(rs, at, resolutionDays);
+			contribution.resolutionDays = has(at, resolutionDays) && !rs.wasNull() ? days : Double.NaN;
+			contribution.changeSeq = getLong(rs, at, changeSeq);
+			return contribution;
+		}
+	}
+
+	private static final class TrendSketchMapper extends RowMapper<ComplaintTrendSketches.Sketch> {
+		private final int count = column("complaint_count");
+		private final int serialNumbers = column("serial_numbers");
+		private final int resolutionDays = column("resolution_days");
+
+		@Override
+		public ComplaintTrendSketches.Sketch mapRow(ResultSet rs, int[] at) throws SQLException {
+			ComplaintTrendSketches.Sketch sketch = new ComplaintTrendSketches.Sketch();
+			sketch.complaintCount = getLong(rs, at, count);
+			sketch.serialNumbers = HyperLogLog.fromBytes(getBytes(rs, at, serialNumbers));
+			sketch.resolutionDays = KllSketch.fromBytes(getBytes(rs, at, resolutionDays));
+			return sketch;
+		}
+	}
+
+	private static final class ComplaintSearchHitMapper extends RowMapper<ComplaintSearchHit> {
+		private final int id = column("id");
+		private final int description = column("complaint_description");
+		private final int date = column("complaint_date");
+		private final int status = column("complaint_status");
+		private final int productName = column("product_name");
+		private final int rank = column("rank");
+		private final int headline = column("headline");
+		private final int matchedIn = column("matched_in");
+
+		@Override
+		public ComplaintSearchHit mapRow(ResultSet rs, int[] at) throws SQLException {
+			Complaints complaint = new Complaints();
+			complaint.setId(getInt(rs, at, id));
+			complaint.setComplaintDescription(getString(rs, at, description));
+			complaint.setComplaintDate(getDate(rs, at, date));
+			complaint.setComplaintStatus(getEnum(rs, at, status, COMPLAINT_STATUS));
+			complaint.setProductName(getString(rs, at, productName));
+			ComplaintSearchHit hit = new ComplaintSearchHit();
+			hit.setComplaint(complaint);
+			hit.setRank(getDouble(rs, at, rank));
+			hit.setHeadline(getString(rs, at, headline));
+			String sources = getString(rs, at, matchedIn);
+			hit.setMatchedIn(sources == null ? new ArrayList<String>() : Arrays.asList(sources.split(",")));
+			return hit;
+		}
+	}
+
+	private static final class EvidenceUploadsMapper extends RowMapper<EvidenceUploads> {
+		private final int id = column("id");
+		private final int documentName = column("document_name");
+		private final int documentType = column("document_type");
+		private final int fileFormat = column("file_format");
+		private final int totalSize = column("total_size");
+		private final int chunkSize = column("chunk_size");
+		private final int complaintId = column("fk_complaint_id");
+		private final int investigationRecordId = column("fk_investigation_record_id");
+		private final int evidenceDocumentId = column("evidence_document_id");
+		private final int createdAt = column("created_at");
+		private final int updatedAt = column("updated_at");
+		private final int receivedChunks = column("received_chunks");
+
+		@Override
+		public EvidenceUploads mapRow(ResultSet rs, int[] at) throws SQLException {
+			EvidenceUploads upload = new EvidenceUploads();
+			upload.setId(getString(rs, at, id));
+			upload.setDocumentName(getString(rs, at, documentName));
+			upload.setDocumentType(getEnum(rs, at, documentType, DOCUMENT_TYPE));
+			upload.setFileFormat(getString(rs, at, fileFormat));
+			upload.setTotalSize(getLong(rs, at, totalSize));
+			upload.setChunkSize(getInt(rs, at, chunkSize));
+			upload.setFkComplaintId(getInt(rs, at, complaintId));
+			upload.setFkInvestigationRecordId(getInt(rs, at, investigationRecordId));
+			int documentId = getInt(rs, at, evidenceDocumentId);
+			// Serial ids start at 1, so 0 is SQL NULL.
+			upload.setEvidenceDocumentId(documentId == 0 ? null : documentId);
+			upload.setCreatedAt(getTimestamp(rs, at, createdAt));
+			upload.setUpdatedAt(getTimestamp(rs, at, updatedAt));
+			if (has(at, receivedChunks)) {
+				java.sql.Array chunks = rs.getArray(at[receivedChunks]);
+				if (chunks != null) {
+					upload.setReceivedChunks(new ArrayList<>(Arrays.asList((Integer[]) chunks.getArray())));
+				}
+			}
+			return upload;
+		}
+	}
+
+	private static final class DerivationJobMapper extends RowMapper<DocumentDerivationPipeline.Job> {
+		private final int documentId = column("document_id");
+		private final int fileFormat = column("file_format");
+		private final int attempts = column("attempts");
+
+		@Override
+		public DocumentDerivationPipeline.Job mapRow(ResultSet rs, int[] at) throws SQLException {
+			DocumentDerivationPipeline.Job job = new DocumentDerivationPipeline.Job();
+			job.documentId = getLong(rs, at, documentId);
+			job.fileFormat = getString(rs, at, fileFormat);
+			job.attempts = getInt(rs, at, attempts);
+			return job;
+		}
+	}
+
+	private static final class DocumentPreviewsMapper extends RowMapper<DocumentPreviews> {
+		private final int id = column("id");
+		private final int documentName = column("document_name");
+		private final int documentType = column("document_type");
+		private final int fileFormat = column("file_format");
+		private final int fileSize = column("file_size");
+		private final int uploadTime = column("upload_time");
+		private final int derivationStatus = column("derivation_status");
+		private final int excerpt = column("excerpt");
+		private final int textLength = column("text_length");
+		private final int textTruncated = column("text_truncated");
+		private final int previewFormat = column("preview_format");
+		private final int derivedAt = column("derived_at");
+
+		@Override
+		public DocumentPreviews mapRow(ResultSet rs, int[] at) throws SQLException {
+			DocumentPreviews preview = new DocumentPreviews();
+			preview.setDocumentId(getLong(rs, at, id));
+			preview.setDocumentName(getString(rs, at, documentName));
+			preview.setDocumentType(getEnum(rs, at, documentType, DOCUMENT_TYPE));
+			preview.setFileFormat(getString(rs, at, fileFormat));
+			preview.setFileSize(getBigDecimal(rs, at, fileSize));
+			preview.setUploadTime(getTimestamp(rs, at, uploadTime));
+			preview.setDerivationStatus(getEnum(rs, at, derivationStatus, DERIVATION_STATUS));
+			preview.setExcerpt(getString(rs, at, excerpt));
+			preview.setTextLength(getInt(rs, at, textLength));
+			preview.setTextTruncated(getBoolean(rs, at, textTruncated));
+			preview.setPreviewFormat(getString(rs, at, previewFormat));
+			preview.setDerivedAt(getTimestamp(rs, at, derivedAt));
+			return preview;
+		}
+	}
+}
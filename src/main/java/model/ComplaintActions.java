@@ -96,7 +96,3 @@ public class ComplaintActions {
                 '}';
     }
 }
-
-enum ComplaintStatus {
-    NEW, IN_PROGRESS, RESOLVED, CLOSED
-}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package model;
+
+import java.util.List;
+
+/**
+ * A complaint found by a full-text search, with its relevance and a
+ * highlighted excerpt of its description.
+ */
+public class ComplaintSearchHit {
+    private Complaints complaint;
+    private double rank;
+    private String headline;
+    private List<String> matchedIn;
+
+    public ComplaintSearchHit() {
+        // Default constructor
+    }
+
+    // Getters and setters
+
+    /**
+     * @return the complaint, with its id, description, date, status and product set
+     */
+    public Complaints getComplaint() {
+        return complaint;
+    }
+
+    public void setComplaint(Complaints complaint) {
+        this.complaint = complaint;
+    }
+
+    /**
+     * @return the relevance; higher is better, comparable only within one search
+     */
+    public double getRank() {
+        return rank;
+    }
+
+    public void setRank(double rank) {
+        this.rank = rank;
+    }
+
+    /**
+     * @return an excerpt of the description with matching words in {@code <b>} tags
+     */
+    public String getHeadline() {
+        return headline;
+    }
+
+    public void setHeadline(String headline) {
+        this.headline = headline;
+    }
+
+    /**
+     * @return where the terms matched: complaint, note and/or investigation
+     */
+    public List<String> getMatchedIn() {
+        return matchedIn;
+    }
+
+    public void setMatchedIn(List<String> matchedIn) {
+        this.matchedIn = matchedIn;
+    }
+
+    @Override
+    public String toString() {
+        return "ComplaintSearchHit{" +
+                "complaint=" + (complaint == null ? null : complaint.getId()) +
+                ", rank=" + rank +
+                ", headline='" + headline + '\'' +
+                ", matchedIn=" + matchedIn +
+                '}';
+    }
+}
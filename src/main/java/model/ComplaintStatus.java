@@ -0,0 +1,8 @@
+package model;
+
+/**
+ * Status of a complaint as recorded on complaint actions and as the conclusion of investigation records.
+ */
+public enum ComplaintStatus {
+    NEW, IN_PROGRESS, RESOLVED, CLOSED
+}
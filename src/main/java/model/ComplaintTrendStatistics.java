@@ -0,0 +1,118 @@
+package model;
+
+/**
+ * Approximate statistics for complaints in a time frame, optionally narrowed
+ * to one complaint type and product: the number of distinct serial numbers
+ * complained about and resolution time percentiles. Percentiles are NaN when
+ * no complaint in the selection has been resolved.
+ */
+public class ComplaintTrendStatistics {
+    private String timeFrame;
+    private String complaintType;
+    private String productName;
+    private long complaintCount;
+    private long distinctSerialNumbers;
+    private long resolvedCount;
+    private double medianResolutionTime;
+    private double p90ResolutionTime;
+    private double p99ResolutionTime;
+
+    public ComplaintTrendStatistics() {
+        // Default constructor
+    }
+
+    // Getters and setters
+
+    public String getTimeFrame() {
+        return timeFrame;
+    }
+
+    public void setTimeFrame(String timeFrame) {
+        this.timeFrame = timeFrame;
+    }
+
+    /**
+     * @return the complaint type, or null if the statistics cover all types
+     */
+    public String getComplaintType() {
+        return complaintType;
+    }
+
+    public void setComplaintType(String complaintType) {
+        this.complaintType = complaintType;
+    }
+
+    /**
+     * @return the product name, or null if the statistics cover all products
+     */
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public long getComplaintCount() {
+        return complaintCount;
+    }
+
+    public void setComplaintCount(long complaintCount) {
+        this.complaintCount = complaintCount;
+    }
+
+    public long getDistinctSerialNumbers() {
+        return distinctSerialNumbers;
+    }
+
+    public void setDistinctSerialNumbers(long distinctSerialNumbers) {
+        this.distinctSerialNumbers = distinctSerialNumbers;
+    }
+
+    public long getResolvedCount() {
+        return resolvedCount;
+    }
+
+    public void setResolvedCount(long resolvedCount) {
+        this.resolvedCount = resolvedCount;
+    }
+
+    public double getMedianResolutionTime() {
+        return medianResolutionTime;
+    }
+
+    public void setMedianResolutionTime(double medianResolutionTime) {
+        this.medianResolutionTime = medianResolutionTime;
+    }
+
+    public double getP90ResolutionTime() {
+        return p90ResolutionTime;
+    }
+
+    public void setP90ResolutionTime(double p90ResolutionTime) {
+        this.p90ResolutionTime = p90ResolutionTime;
+    }
+
+    public double getP99ResolutionTime() {
+        return p99ResolutionTime;
+    }
+
+    public void setP99ResolutionTime(double p99ResolutionTime) {
+        this.p99ResolutionTime = p99ResolutionTime;
+    }
+
+    @Override
+    public String toString() {
+        return "ComplaintTrendStatistics{" +
+                "timeFrame='" + timeFrame + '\'' +
+                ", complaintType='" + complaintType + '\'' +
+                ", productName='" + productName + '\'' +
+                ", complaintCount=" + complaintCount +
+                ", distinctSerialNumbers=" + distinctSerialNumbers +
+                ", resolvedCount=" + resolvedCount +
+                ", medianResolutionTime=" + medianResolutionTime +
+                ", p90ResolutionTime=" + p90ResolutionTime +
+                ", p99ResolutionTime=" + p99ResolutionTime +
+                '}';
+    }
+}
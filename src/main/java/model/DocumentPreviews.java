@@ -0,0 +1,165 @@
+package model;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * What the review screen shows about a document instead of opening it: its
+ * metadata, the start of its extracted text and whether a first-page preview
+ * image is available.
+ */
+public class DocumentPreviews {
+
+    /**
+     * The state of a document's derivation job.
+     */
+    public enum DerivationStatus {
+        QUEUED, RUNNING, DONE, FAILED, UNSUPPORTED
+    }
+
+    private Long documentId;
+    private String documentName;
+    private Documents.DocumentTypes documentType;
+    private String fileFormat;
+    private BigDecimal fileSize;
+    private Timestamp uploadTime;
+    private DerivationStatus derivationStatus;
+    private String excerpt;
+    private int textLength;
+    private boolean textTruncated;
+    private String previewFormat;
+    private Timestamp derivedAt;
+
+    public DocumentPreviews() {
+        // Default constructor
+    }
+
+    // Getters and setters
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getDocumentName() {
+        return documentName;
+    }
+
+    public void setDocumentName(String documentName) {
+        this.documentName = documentName;
+    }
+
+    public Documents.DocumentTypes getDocumentType() {
+        return documentType;
+    }
+
+    public void setDocumentType(Documents.DocumentTypes documentType) {
+        this.documentType = documentType;
+    }
+
+    public String getFileFormat() {
+        return fileFormat;
+    }
+
+    public void setFileFormat(String fileFormat) {
+        this.fileFormat = fileFormat;
+    }
+
+    public BigDecimal getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(BigDecimal fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public Timestamp getUploadTime() {
+        return uploadTime;
+    }
+
+    public void setUploadTime(Timestamp uploadTime) {
+        this.uploadTime = uploadTime;
+    }
+
+    /**
+     * @return the state of the document's derivation, or null if it was never queued
+     */
+    public DerivationStatus getDerivationStatus() {
+        return derivationStatus;
+    }
+
+    public void setDerivationStatus(DerivationStatus derivationStatus) {
+        this.derivationStatus = derivationStatus;
+    }
+
+    /**
+     * @return the start of the extracted text, or null if there is none yet
+     */
+    public String getExcerpt() {
+        return excerpt;
+    }
+
+    public void setExcerpt(String excerpt) {
+        this.excerpt = excerpt;
+    }
+
+    /**
+     * @return the length of the whole extracted text in characters
+     */
+    public int getTextLength() {
+        return textLength;
+    }
+
+    public void setTextLength(int textLength) {
+        this.textLength = textLength;
+    }
+
+    /**
+     * @return true if the extracted text stops before the end of the document
+     */
+    public boolean isTextTruncated() {
+        return textTruncated;
+    }
+
+    public void setTextTruncated(boolean textTruncated) {
+        this.textTruncated = textTruncated;
+    }
+
+    /**
+     * @return the preview image's media type, or null if there is no preview
+     */
+    public String getPreviewFormat() {
+        return previewFormat;
+    }
+
+    public void setPreviewFormat(String previewFormat) {
+        this.previewFormat = previewFormat;
+    }
+
+    public boolean hasPreview() {
+        return previewFormat != null;
+    }
+
+    public Timestamp getDerivedAt() {
+        return derivedAt;
+    }
+
+    public void setDerivedAt(Timestamp derivedAt) {
+        this.derivedAt = derivedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentPreviews{" +
+                "documentId=" + documentId +
+                ", documentName='" + documentName + '\'' +
+                ", fileFormat='" + fileFormat + '\'' +
+                ", derivationStatus=" + derivationStatus +
+                ", textLength=" + textLength +
+                ", previewFormat='" + previewFormat + '\'' +
+                '}';
+    }
+}
@@ -12,6 +12,7 @@ public class EvidenceDocuments {
     private Date uploadDate;
     private double fileSize;
     private String fileFormat;
+    private String contentHash;
     private Complaints fkComplaintId;
     private InvestigationRecords fkInvestigationRecordId;
 
@@ -106,6 +107,22 @@ public class EvidenceDocuments {
         this.fileFormat = fileFormat;
     }
 
+    /**
+     * Gets the SHA-256 of the document's stored content.
+     * @return the content hash, or null if the content was not uploaded through the system.
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Sets the SHA-256 of the document's stored content.
+     * @param contentHash the content hash to set.
+     */
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     /**
      * Gets the complaint associated with this document.
      * @return the associated complaint.
@@ -147,15 +164,16 @@ public class EvidenceDocuments {
                 ", uploadDate=" + uploadDate +
                 ", fileSize=" + fileSize +
                 ", fileFormat='" + fileFormat + '\'' +
+                ", contentHash='" + contentHash + '\'' +
                 ", fkComplaintId=" + fkComplaintId +
                 ", fkInvestigationRecordId=" + fkInvestigationRecordId +
                 '}';
     }
-}
 
-/**
- * Enum representing possible types of documents.
- */
-enum DocumentTypes {
-    INVESTIGATION_REPORT, RESOLUTION_DOCUMENTATION, COMPLAINT_FORM, ACTION_PLAN, CORRECTIVE_ACTION_DOCUMENTATION, COMMUNICATION_LOG
+    /**
+     * Enum representing possible types of documents.
+     */
+    public enum DocumentTypes {
+        INVESTIGATION_REPORT, RESOLUTION_DOCUMENTATION, COMPLAINT_FORM, ACTION_PLAN, CORRECTIVE_ACTION_DOCUMENTATION, COMMUNICATION_LOG
+    }
 }
\ No newline at end of file
@@ -0,0 +1,187 @@
+package model;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A chunked upload of an evidence document: the document's metadata, the
+ * fixed chunk size the client must send, and the chunks received so far, so
+ * that an interrupted upload can resume with the chunks still missing.
+ */
+public class EvidenceUploads {
+    private String id;
+    private String documentName;
+    private Documents.DocumentTypes documentType;
+    private String fileFormat;
+    private long totalSize;
+    private int chunkSize;
+    private int fkComplaintId;
+    private int fkInvestigationRecordId;
+    private List<Integer> receivedChunks = new ArrayList<>();
+    private Integer evidenceDocumentId;
+    private Timestamp createdAt;
+    private Timestamp updatedAt;
+
+    public EvidenceUploads() {
+        // Default constructor
+    }
+
+    // Getters and setters
+
+    /**
+     * @return the upload token the client sends with every chunk
+     */
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getDocumentName() {
+        return documentName;
+    }
+
+    public void setDocumentName(String documentName) {
+        this.documentName = documentName;
+    }
+
+    public Documents.DocumentTypes getDocumentType() {
+        return documentType;
+    }
+
+    public void setDocumentType(Documents.DocumentTypes documentType) {
+        this.documentType = documentType;
+    }
+
+    public String getFileFormat() {
+        return fileFormat;
+    }
+
+    public void setFileFormat(String fileFormat) {
+        this.fileFormat = fileFormat;
+    }
+
+    /**
+     * @return the size of the whole document in bytes
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    /**
+     * @return the size in bytes of every chunk but the last, which holds the rest
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getFkComplaintId() {
+        return fkComplaintId;
+    }
+
+    public void setFkComplaintId(int fkComplaintId) {
+        this.fkComplaintId = fkComplaintId;
+    }
+
+    public int getFkInvestigationRecordId() {
+        return fkInvestigationRecordId;
+    }
+
+    public void setFkInvestigationRecordId(int fkInvestigationRecordId) {
+        this.fkInvestigationRecordId = fkInvestigationRecordId;
+    }
+
+    /**
+     * @return the indexes of the chunks received and verified, in order
+     */
+    public List<Integer> getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(List<Integer> receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+
+    /**
+     * @return the evidence_documents row created on commit, or null before
+     */
+    public Integer getEvidenceDocumentId() {
+        return evidenceDocumentId;
+    }
+
+    public void setEvidenceDocumentId(Integer evidenceDocumentId) {
+        this.evidenceDocumentId = evidenceDocumentId;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Timestamp createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Timestamp getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Timestamp updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * @return the number of chunks the document is split into; an empty
+     *         document is one empty chunk
+     */
+    public int getChunkCount() {
+        if (chunkSize <= 0 || totalSize == 0) {
+            return 1;
+        }
+        return (int) ((totalSize + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * @return the indexes of the chunks still to send, in order
+     */
+    public List<Integer> getMissingChunks() {
+        List<Integer> missing = new ArrayList<>();
+        int next = 0;
+        for (int received : receivedChunks) {
+            while (next < received) {
+                missing.add(next++);
+            }
+            next = received + 1;
+        }
+        while (next < getChunkCount()) {
+            missing.add(next++);
+        }
+        return missing;
+    }
+
+    public boolean isCommitted() {
+        return evidenceDocumentId != null;
+    }
+
+    @Override
+    public String toString() {
+        return "EvidenceUploads{" +
+                "id='" + id + '\'' +
+                ", documentName='" + documentName + '\'' +
+                ", totalSize=" + totalSize +
+                ", chunkSize=" + chunkSize +
+                ", receivedChunks=" + receivedChunks.size() + "/" + getChunkCount() +
+                ", evidenceDocumentId=" + evidenceDocumentId +
+                '}';
+    }
+}
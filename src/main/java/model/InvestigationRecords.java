@@ -2,13 +2,6 @@ package model;
 
 import java.util.Date;
 
-/**
- * Enumeration for representing investigation conclusion statuses.
- */
-enum ComplaintStatus { 
-    NEW, IN_PROGRESS, RESOLVED, CLOSED
-}
-
 /**
  * The InvestigationRecords class models the investigation_records entity, encapsulating details of investigation records.
  */
@@ -0,0 +1,126 @@
+package utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@code ApplicationProperties} class loads {@code application.properties}
+ * from the classpath once and exposes typed accessors for its entries.
+ *
+ * <p>
+ * Every accessor takes a default value which is returned when the key is
+ * missing or cannot be parsed, so callers never have to deal with a partially
+ * configured file.
+ * </p>
+ */
+public final class ApplicationProperties {
+
+	private static final Logger LOGGER = Logger.getLogger(ApplicationProperties.class.getName());
+	private static final Properties PROPERTIES = new Properties();
+
+	static {
+		try (InputStream input = ApplicationProperties.class.getClassLoader()
+				.getResourceAsStream("application.properties")) {
+			if (input == null) {
+				LOGGER.log(Level.SEVERE, "Unable to find application.properties");
+			} else {
+				PROPERTIES.load(input);
+			}
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE, "Error loading application.properties", e);
+		}
+	}
+
+	private ApplicationProperties() {
+	}
+
+	/**
+	 * Returns the raw value of a property.
+	 *
+	 * @param key          the property key
+	 * @param defaultValue the value returned when the key is not present
+	 * @return the trimmed property value or {@code defaultValue}
+	 */
+	public static String getString(String key, String defaultValue) {
+		String value = PROPERTIES.getProperty(key);
+		return value != null ? value.trim() : defaultValue;
+	}
+
+	/**
+	 * Returns a property parsed as an {@code int}.
+	 *
+	 * @param key          the property key
+	 * @param defaultValue the value returned when the key is missing or invalid
+	 * @return the parsed value or {@code defaultValue}
+	 */
+	public static int getInt(String key, int defaultValue) {
+		String value = getString(key, null);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			LOGGER.log(Level.WARNING, "Invalid integer for property " + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Returns a property parsed as a {@code long}.
+	 *
+	 * @param key          the property key
+	 * @param defaultValue the value returned when the key is missing or invalid
+	 * @return the parsed value or {@code defaultValue}
+	 */
+	public static long getLong(String key, long defaultValue) {
+		String value = getString(key, null);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			LOGGER.log(Level.WARNING, "Invalid long for property " + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Returns a property parsed as a {@code double}.
+	 *
+	 * @param key          the property key
+	 * @param defaultValue the value returned when the key is missing or invalid
+	 * @return the parsed value or {@code defaultValue}
+	 */
+	public static double getDouble(String key, double defaultValue) {
+		String value = getString(key, null);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			LOGGER.log(Level.WARNING, "Invalid double for property " + key + ": " + value);
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Returns a property parsed as a {@code boolean}.
+	 *
+	 * @param key          the property key
+	 * @param defaultValue the value returned when the key is missing
+	 * @return the parsed value or {@code defaultValue}
+	 */
+	public static boolean getBoolean(String key, boolean defaultValue) {
+		String value = getString(key, null);
+		if (value == null || value.isEmpty()) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value);
+	}
+}
@@ -0,0 +1,393 @@
+package utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind pipeline which takes events from request threads and writes
+ * them to a {@link BatchSink} in batches on a single background thread.
+ *
+ * <p>
+ * Events are held in a bounded, array-backed ring buffer. The writer thread
+ * collects up to {@code maxBatchSize} events, waiting at most
+ * {@code lingerMillis} for a batch to fill, and hands them to the sink in
+ * submission order. Callers choose how they want to be treated when the
+ * buffer is full or the sink is failing through a {@link Mode}. A batch the
+ * sink rejects goes to the optional {@link SpillStore} instead of being lost;
+ * once the sink is healthy again, spilled events are replayed while the
+ * writer is otherwise idle.
+ * </p>
+ *
+ * @param <E> the event type
+ */
+public class AsyncBatchWriter<E> {
+
+	private static final Logger LOGGER = Logger.getLogger(AsyncBatchWriter.class.getName());
+
+	private static final long FAILURE_BACKOFF_MILLIS = 1000;
+
+	/**
+	 * How a submission deals with backpressure and durability.
+	 */
+	public enum Mode {
+		/**
+		 * Returns immediately. If the buffer is full the event is dropped and
+		 * counted.
+		 */
+		FIRE_AND_FORGET,
+		/**
+		 * Blocks while the buffer is full, then waits until the batch containing
+		 * the event has been written by the sink, up to the flush timeout.
+		 */
+		WAIT_FOR_FLUSH,
+		/**
+		 * Returns immediately. If the buffer is full, or the sink is failing, the
+		 * event is appended to the spill store on the caller's thread and
+		 * replayed later.
+		 */
+		SPILL,
+		/**
+		 * Appends the event to the spill store on the caller's thread and
+		 * returns once the store has accepted it. The writer replays the store
+		 * in order, so events reach the sink in submission order even across
+		 * sink outages. Requires a spill store.
+		 */
+		DURABLE
+	}
+
+	/**
+	 * Writes one batch, all or nothing.
+	 */
+	@FunctionalInterface
+	public interface BatchSink<E> {
+		void write(List<E> batch) throws Exception;
+	}
+
+	/**
+	 * Local overflow storage for events the sink could not take, and the
+	 * primary path for {@link Mode#DURABLE} events. Implementations must be
+	 * thread-safe.
+	 */
+	public interface SpillStore<E> {
+
+		void append(List<E> events) throws IOException;
+
+		/**
+		 * Sends every spilled event to the sink in spill order and removes those
+		 * written successfully. A store should set aside, rather than retry,
+		 * events the sink can never take, as replay cannot get past them.
+		 *
+		 * @return the number of events replayed, excluding any set aside
+		 * @throws Exception if the sink fails; unreplayed events stay spilled
+		 */
+		long replay(BatchSink<E> sink, int batchSize) throws Exception;
+
+		boolean isEmpty();
+	}
+
+	private static final class Pending<E> {
+		final E event;
+		final CompletableFuture<Void> flushed;
+
+		Pending(E event, CompletableFuture<Void> flushed) {
+			this.event = event;
+			this.flushed = flushed;
+		}
+	}
+
+	private final String name;
+	private final BatchSink<E> sink;
+	private final SpillStore<E> spill;
+	private final ArrayBlockingQueue<Pending<E>> buffer;
+	private final int maxBatchSize;
+	private final long lingerMillis;
+	private final long flushTimeoutMillis;
+	private final Thread writer;
+	private volatile boolean running = true;
+	private volatile boolean sinkHealthy = true;
+
+	private final AtomicLong submitted = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong spilled = new AtomicLong();
+	private final AtomicLong replayed = new AtomicLong();
+	private final AtomicLong failedBatches = new AtomicLong();
+	private final LatencyHistogram batchLatency = new LatencyHistogram();
+
+	/**
+	 * Creates the pipeline and starts its writer thread.
+	 *
+	 * @param name               names the writer thread and log messages
+	 * @param sink               writes batches
+	 * @param spill              receives events the sink could not take, or
+	 *                           null to drop them
+	 * @param capacity           the ring buffer size
+	 * @param maxBatchSize       the largest batch handed to the sink
+	 * @param lingerMillis       how long to wait for a batch to fill
+	 * @param flushTimeoutMillis how long {@link Mode#WAIT_FOR_FLUSH} waits
+	 */
+	public AsyncBatchWriter(String name, BatchSink<E> sink, SpillStore<E> spill, int capacity, int maxBatchSize,
+			long lingerMillis, long flushTimeoutMillis) {
+		this.name = name;
+		this.sink = sink;
+		this.spill = spill;
+		this.buffer = new ArrayBlockingQueue<>(capacity);
+		this.maxBatchSize = maxBatchSize;
+		this.lingerMillis = lingerMillis;
+		this.flushTimeoutMillis = flushTimeoutMillis;
+		this.writer = new Thread(this::run, name + "-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Submits an event.
+	 *
+	 * @return true if the event was accepted, or for
+	 *         {@link Mode#WAIT_FOR_FLUSH} if it was written by the sink, or for
+	 *         {@link Mode#DURABLE} if it was stored; false if it was dropped,
+	 *         could not be spilled, or was not flushed in time
+	 */
+	public boolean submit(E event, Mode mode) {
+		submitted.incrementAndGet();
+		switch (mode) {
+		case WAIT_FOR_FLUSH:
+			return submitAndWait(event);
+		case DURABLE:
+			return spill(event);
+		case SPILL:
+			if (spill != null && !sinkHealthy) {
+				return spill(event);
+			}
+			if (running && buffer.offer(new Pending<>(event, null))) {
+				return true;
+			}
+			return spill(event);
+		case FIRE_AND_FORGET:
+		default:
+			if (running && buffer.offer(new Pending<>(event, null))) {
+				return true;
+			}
+			dropped.incrementAndGet();
+			LOGGER.log(Level.WARNING, "{0}: buffer full, event dropped", name);
+			return false;
+		}
+	}
+
+	/**
+	 * Stops accepting events, writes what is buffered and stops the writer
+	 * thread. Events still buffered after the timeout are spilled.
+	 */
+	public void shutdown(long timeoutMillis) {
+		running = false;
+		try {
+			writer.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (writer.isAlive()) {
+			writer.interrupt();
+		}
+		List<Pending<E>> remaining = new ArrayList<>();
+		buffer.drainTo(remaining);
+		if (!remaining.isEmpty()) {
+			handleFailure(remaining, new IllegalStateException("Shut down before the batch was written"));
+		}
+	}
+
+	public int getBufferedCount() {
+		return buffer.size();
+	}
+
+	public long getSubmittedCount() {
+		return submitted.get();
+	}
+
+	public long getWrittenCount() {
+		return written.get();
+	}
+
+	public long getDroppedCount() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return events written to the spill store, including every
+	 *         {@link Mode#DURABLE} submission
+	 */
+	public long getSpilledCount() {
+		return spilled.get();
+	}
+
+	public long getReplayedCount() {
+		return replayed.get();
+	}
+
+	public long getFailedBatchCount() {
+		return failedBatches.get();
+	}
+
+	public boolean isSinkHealthy() {
+		return sinkHealthy;
+	}
+
+	/**
+	 * @return the distribution of sink write times per batch
+	 */
+	public LatencyHistogram getBatchLatency() {
+		return batchLatency;
+	}
+
+	@Override
+	public String toString() {
+		return name + "{buffered=" + getBufferedCount() + ", submitted=" + submitted + ", written=" + written
+				+ ", dropped=" + dropped + ", spilled=" + spilled + ", replayed=" + replayed + ", failedBatches="
+				+ failedBatches + ", batchP99Millis=" + batchLatency.getPercentileMillis(99) + "}";
+	}
+
+	private boolean submitAndWait(E event) {
+		Pending<E> pending = new Pending<>(event, new CompletableFuture<>());
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushTimeoutMillis);
+		try {
+			if (!running || !buffer.offer(pending, flushTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				dropped.incrementAndGet();
+				return false;
+			}
+			pending.flushed.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} catch (ExecutionException | TimeoutException e) {
+			return false;
+		}
+	}
+
+	private boolean spill(E event) {
+		if (spill == null) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		try {
+			List<E> single = new ArrayList<>(1);
+			single.add(event);
+			spill.append(single);
+			spilled.incrementAndGet();
+			return true;
+		} catch (IOException e) {
+			dropped.incrementAndGet();
+			LOGGER.log(Level.SEVERE, name + ": failed to spill event", e);
+			return false;
+		}
+	}
+
+	private void run() {
+		List<Pending<E>> batch = new ArrayList<>(maxBatchSize);
+		while (running || !buffer.isEmpty()) {
+			try {
+				batch.clear();
+				Pending<E> first = buffer.poll(lingerMillis, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					replaySpill();
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+				while (batch.size() < maxBatchSize) {
+					buffer.drainTo(batch, maxBatchSize - batch.size());
+					long remaining = deadline - System.nanoTime();
+					if (batch.size() >= maxBatchSize || remaining <= 0) {
+						break;
+					}
+					Pending<E> next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				writeBatch(batch);
+			} catch (InterruptedException e) {
+				if (!running) {
+					break;
+				}
+			}
+		}
+	}
+
+	private void writeBatch(List<Pending<E>> batch) throws InterruptedException {
+		List<E> events = new ArrayList<>(batch.size());
+		for (Pending<E> pending : batch) {
+			events.add(pending.event);
+		}
+		long started = System.nanoTime();
+		try {
+			sink.write(events);
+			batchLatency.record((System.nanoTime() - started) / 1000000L);
+			written.addAndGet(events.size());
+			sinkHealthy = true;
+			for (Pending<E> pending : batch) {
+				if (pending.flushed != null) {
+					pending.flushed.complete(null);
+				}
+			}
+		} catch (Exception e) {
+			failedBatches.incrementAndGet();
+			sinkHealthy = false;
+			LOGGER.log(Level.WARNING, name + ": batch of " + events.size() + " events failed", e);
+			handleFailure(batch, e);
+			if (running) {
+				Thread.sleep(FAILURE_BACKOFF_MILLIS);
+			}
+		}
+	}
+
+	private void handleFailure(List<Pending<E>> batch, Exception cause) {
+		List<E> events = new ArrayList<>(batch.size());
+		for (Pending<E> pending : batch) {
+			events.add(pending.event);
+			if (pending.flushed != null) {
+				pending.flushed.completeExceptionally(cause);
+			}
+		}
+		if (spill == null) {
+			dropped.addAndGet(events.size());
+			return;
+		}
+		try {
+			spill.append(events);
+			spilled.addAndGet(events.size());
+		} catch (IOException e) {
+			dropped.addAndGet(events.size());
+			LOGGER.log(Level.SEVERE, name + ": failed to spill " + events.size() + " events", e);
+		}
+	}
+
+	private void replaySpill() throws InterruptedException {
+		if (spill == null || spill.isEmpty()) {
+			return;
+		}
+		try {
+			long count = spill.replay(sink, maxBatchSize);
+			if (count > 0) {
+				replayed.addAndGet(count);
+				sinkHealthy = true;
+				LOGGER.log(Level.INFO, "{0}: replayed {1} spilled events", new Object[] { name, count });
+			}
+		} catch (Exception e) {
+			sinkHealthy = false;
+			LOGGER.log(Level.WARNING, name + ": spill replay failed", e);
+			if (running) {
+				Thread.sleep(FAILURE_BACKOFF_MILLIS);
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Outcome of a batched insert, reported per input row.
+ *
+ * <p>
+ * Rows are identified by their position in the input. A row either has a
+ * generated id or a failure reason, never both.
+ * </p>
+ */
+public class BatchResult {
+
+	private final Long[] generatedIds;
+	private final Map<Integer, String> failures = new TreeMap<>();
+
+	public BatchResult(int size) {
+		this.generatedIds = new Long[size];
+	}
+
+	/**
+	 * Builds a result in which every row failed for the same reason, for
+	 * example because the transaction could not be committed.
+	 */
+	public static BatchResult allFailed(int size, String reason) {
+		BatchResult result = new BatchResult(size);
+		for (int i = 0; i < size; i++) {
+			result.recordFailure(i, reason);
+		}
+		return result;
+	}
+
+	public void recordSuccess(int position, long generatedId) {
+		generatedIds[position] = generatedId;
+		failures.remove(position);
+	}
+
+	public void recordFailure(int position, String reason) {
+		generatedIds[position] = null;
+		failures.put(position, reason);
+	}
+
+	/**
+	 * @return the generated ids in input order, with null for rows that failed
+	 */
+	public List<Long> getGeneratedIds() {
+		return Collections.unmodifiableList(Arrays.asList(generatedIds));
+	}
+
+	/**
+	 * @return the failure reason of each failed row, keyed by input position
+	 */
+	public Map<Integer, String> getFailures() {
+		return Collections.unmodifiableMap(failures);
+	}
+
+	/**
+	 * @return the input positions of the rows that were inserted
+	 */
+	public List<Integer> getSucceededPositions() {
+		List<Integer> positions = new ArrayList<>();
+		for (int i = 0; i < generatedIds.length; i++) {
+			if (generatedIds[i] != null) {
+				positions.add(i);
+			}
+		}
+		return positions;
+	}
+
+	public int getSucceededCount() {
+		int count = 0;
+		for (Long id : generatedIds) {
+			if (id != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getFailedCount() {
+		return failures.size();
+	}
+
+	public boolean isFullySuccessful() {
+		return failures.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult{" +
+				"rows=" + generatedIds.length +
+				", succeeded=" + getSucceededCount() +
+				", failed=" + getFailedCount() +
+				'}';
+	}
+}
@@ -0,0 +1,1050 @@
+package utils;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-addressed file store: every blob is kept once, under the hex
+ * SHA-256 of its bytes, however many times it is stored.
+ *
+ * <p>
+ * {@link #put(InputStream, boolean)} copies the stream into a temporary file
+ * while hashing it, forces the file to disk and then renames it to
+ * {@code root/ab/cd/abcd...}, so memory use does not depend on the blob's size
+ * and a blob that exists is always complete. A blob that is already stored is
+ * not written again. The address is always the hash of the original bytes,
+ * however the blob is kept.
+ * </p>
+ *
+ * <p>
+ * Blobs are kept in one of three forms, looked up in this order:
+ * </p>
+ * <ul>
+ * <li>plain in the hot tier, sent by {@link #transferTo} with
+ * {@link FileChannel#transferTo}, which the operating system can serve
+ * without copying the bytes through the heap;</li>
+ * <li>deflated in the hot tier as {@code <hash>.z}, when the caller asked for
+ * compression because the format compresses well;</li>
+ * <li>in the cold tier, a directory on slower storage that
+ * {@link #moveToCold(long)} moves blobs untouched for a while to, deflating
+ * them where that saves at least {@link #MIN_COLD_SAVING} of their size.</li>
+ * </ul>
+ * <p>
+ * Deflated blobs start with a header holding the original length, and reads
+ * inflate them through a stream; a range read of one inflates from the start.
+ * Which blobs are cold is held in a compact index, 33 bytes per blob in one
+ * sorted array, persisted in the hot tier as {@code cold.index}, so that
+ * lookups never touch the cold tier and a read from it costs only the read.
+ * Reading a hot blob marks it as used at most once per
+ * {@link #TOUCH_INTERVAL_MILLIS}.
+ * </p>
+ *
+ * <p>
+ * Blobs are immutable and shared, so the store does not know who uses them;
+ * deleting one is up to the caller once nothing refers to its hash.
+ * </p>
+ */
+public class BlobStore {
+
+	/** The least fraction of its size deflating must save for a cold blob to be kept deflated. */
+	public static final double MIN_COLD_SAVING = 0.05;
+	public static final long TOUCH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final String DEFLATED_SUFFIX = ".z";
+	/** Marks a hot blob set aside while deletion checks it was not stored again. */
+	private static final String DELETING_SUFFIX = ".gc";
+	/** Outcomes of {@link #deleteUntouched}. */
+	private static final int NOT_STORED = 0;
+	private static final int DELETED = 1;
+	private static final int KEPT = 2;
+	private static final int DEFLATED_MAGIC = 0x424C5A31; // "BLZ1"
+	private static final int DEFLATED_HEADER_SIZE = 12;
+	private static final int COLD_BATCH_SIZE = 1000;
+
+	private final Path root;
+	private final Path coldRoot;
+	private final ColdIndex coldIndex;
+
+	/** A stored blob's address and length. */
+	public static final class StoredBlob {
+		private final String hash;
+		private final long size;
+		private final boolean created;
+
+		StoredBlob(String hash, long size, boolean created) {
+			this.hash = hash;
+			this.size = size;
+			this.created = created;
+		}
+
+		/**
+		 * @return the lower-case hex SHA-256 of the content
+		 */
+		public String getHash() {
+			return hash;
+		}
+
+		/**
+		 * @return the length of the original content
+		 */
+		public long getSize() {
+			return size;
+		}
+
+		/**
+		 * @return false if the content was already stored
+		 */
+		public boolean isCreated() {
+			return created;
+		}
+	}
+
+	/**
+	 * A byte range of a blob, as asked for by an HTTP {@code Range} header.
+	 */
+	public static final class Range {
+		private static final Pattern BYTES = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+		private final long start;
+		private final long end;
+		private final long total;
+		private final boolean partial;
+
+		private Range(long start, long end, long total, boolean partial) {
+			this.start = start;
+			this.end = end;
+			this.total = total;
+			this.partial = partial;
+		}
+
+		/**
+		 * @return the whole of a blob of {@code total} bytes
+		 */
+		public static Range full(long total) {
+			return new Range(0, total - 1, total, false);
+		}
+
+		/**
+		 * Resolves a {@code Range} header against a blob's size. Only a single
+		 * byte range is served: a missing, malformed or multi-range header
+		 * gives the whole blob, which HTTP allows a server to answer with.
+		 *
+		 * @param header the header value, such as {@code bytes=0-1023},
+		 *               {@code bytes=1024-} or {@code bytes=-500}; may be null
+		 * @return the range, or null if it lies wholly past the end of the
+		 *         blob (a 416 response)
+		 */
+		public static Range parse(String header, long total) {
+			if (header == null) {
+				return full(total);
+			}
+			Matcher m = BYTES.matcher(header.trim());
+			if (!m.matches() || (m.group(1).isEmpty() && m.group(2).isEmpty())) {
+				return full(total);
+			}
+			try {
+				long start;
+				long end;
+				if (m.group(1).isEmpty()) {
+					// A suffix range: the last n bytes.
+					long suffix = Long.parseLong(m.group(2));
+					if (suffix == 0) {
+						return null;
+					}
+					start = Math.max(0, total - suffix);
+					end = total - 1;
+				} else {
+					start = Long.parseLong(m.group(1));
+					end = m.group(2).isEmpty() ? total - 1 : Math.min(Long.parseLong(m.group(2)), total - 1);
+					if (m.group(2).length() > 0 && Long.parseLong(m.group(2)) < start) {
+						return full(total);
+					}
+				}
+				if (start >= total) {
+					return null;
+				}
+				return new Range(start, end, total, true);
+			} catch (NumberFormatException e) {
+				return full(total);
+			}
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		/**
+		 * @return the last byte, inclusive
+		 */
+		public long getEnd() {
+			return end;
+		}
+
+		public long getLength() {
+			return end - start + 1;
+		}
+
+		/**
+		 * @return true if the range came from the header, so the response is
+		 *         206 Partial Content rather than 200
+		 */
+		public boolean isPartial() {
+			return partial;
+		}
+
+		/**
+		 * @return the {@code Content-Range} header value, such as
+		 *         {@code bytes 0-1023/4096}
+		 */
+		public String contentRange() {
+			return "bytes " + start + "-" + end + "/" + total;
+		}
+	}
+
+	/** Where one blob is kept. */
+	private static final class Location {
+		final Path path;
+		final boolean deflated;
+		final boolean cold;
+
+		Location(Path path, boolean deflated, boolean cold) {
+			this.path = path;
+			this.deflated = deflated;
+			this.cold = cold;
+		}
+	}
+
+	/**
+	 * @param root the directory blobs are kept under; created on first use
+	 */
+	public BlobStore(Path root) {
+		this(root, null);
+	}
+
+	/**
+	 * @param root     the hot tier, on fast local storage; created on first use
+	 * @param coldRoot the cold tier, or null for none
+	 */
+	public BlobStore(Path root, Path coldRoot) {
+		this.root = root;
+		this.coldRoot = coldRoot;
+		this.coldIndex = coldRoot == null ? null : new ColdIndex(root.resolve("cold.index"));
+	}
+
+	public Path getRoot() {
+		return root;
+	}
+
+	/**
+	 * Stores the content of a stream, which is read to the end but not closed.
+	 *
+	 * @param deflate true to keep the blob deflated, for formats that compress
+	 *                well such as text and spreadsheets
+	 * @throws IOException if the stream or the disk fails; nothing is stored
+	 */
+	public StoredBlob put(InputStream content, boolean deflate) throws IOException {
+		Files.createDirectories(root);
+		Path temp = Files.createTempFile(root, "upload-", ".tmp");
+		try {
+			MessageDigest digest = sha256();
+			long size;
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				size = deflate ? writeDeflated(content, out, digest) : writePlain(content, out, digest);
+				out.force(false);
+			}
+			return adopt(temp, hex(digest.digest()), size, deflate);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Stores a complete file by moving it into the store, or deleting it if
+	 * its content is already stored. The file should be on the same file
+	 * system as the store, or the move is a copy.
+	 *
+	 * @param deflate true to keep the blob deflated; the file is then
+	 *                deflated into a copy and deleted
+	 * @throws IOException if the file cannot be read or moved; it is then left
+	 *                     in place
+	 */
+	public StoredBlob putFile(Path file, boolean deflate) throws IOException {
+		if (deflate) {
+			StoredBlob blob;
+			try (InputStream in = Files.newInputStream(file)) {
+				blob = put(in, true);
+			}
+			Files.deleteIfExists(file);
+			return blob;
+		}
+		MessageDigest digest = sha256();
+		long size = 0;
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				buffer.flip();
+				digest.update(buffer);
+				size += read;
+				buffer.clear();
+			}
+			in.force(false);
+		}
+		StoredBlob blob = adopt(file, hex(digest.digest()), size, false);
+		Files.deleteIfExists(file);
+		return blob;
+	}
+
+	/**
+	 * @return true if a blob with this hash is stored
+	 */
+	public boolean exists(String hash) throws IOException {
+		return locate(hash) != null;
+	}
+
+	/**
+	 * @return the length of the blob's original content
+	 * @throws IOException if it is not stored
+	 */
+	public long size(String hash) throws IOException {
+		Location location = require(hash);
+		if (!location.deflated) {
+			return Files.size(location.path);
+		}
+		try (DataInputStream in = new DataInputStream(Files.newInputStream(location.path))) {
+			return readHeader(in, location.path);
+		}
+	}
+
+	/**
+	 * Writes a range of a blob to a channel, such as a socket or a servlet
+	 * response's output wrapped with {@link Channels#newChannel}.
+	 *
+	 * @return the number of bytes written
+	 * @throws IOException if the blob is missing or the channel fails
+	 */
+	public long transferTo(String hash, Range range, WritableByteChannel target) throws IOException {
+		Location location = require(hash);
+		try {
+			return transferTo(hash, location, range, target);
+		} catch (NoSuchFileException e) {
+			// Moved to the cold tier between the lookup and the read.
+			return transferTo(hash, require(hash), range, target);
+		}
+	}
+
+	/**
+	 * Opens a blob for reading, inflating it if it is kept deflated.
+	 */
+	public InputStream open(String hash) throws IOException {
+		Location location = require(hash);
+		try {
+			return open(location);
+		} catch (NoSuchFileException e) {
+			return open(require(hash));
+		}
+	}
+
+	/**
+	 * @return true if the blob was stored
+	 */
+	public boolean delete(String hash) throws IOException {
+		return deleteAll(Arrays.asList(hash)) > 0;
+	}
+
+	/**
+	 * Deletes blobs from both tiers, updating the cold index once.
+	 *
+	 * @return the number of blobs that were stored
+	 */
+	public int deleteAll(Collection<String> hashes) throws IOException {
+		return deleteAll(hashes, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Deletes blobs from both tiers unless they were stored or read again at
+	 * or after a time, for garbage collection of the hashes
+	 * {@link #listOlderThan} found once nothing refers to them. Each hot copy
+	 * is renamed aside before its time is checked, so content stored again
+	 * meanwhile is either seen as fresh and kept or, arriving after the
+	 * rename, stored anew.
+	 *
+	 * @return the number of blobs deleted
+	 */
+	public int deleteAll(Collection<String> hashes, long untouchedSinceMillis) throws IOException {
+		int deleted = 0;
+		List<String> cold = new ArrayList<>();
+		for (String hash : hashes) {
+			int plain = deleteUntouched(path(hash), untouchedSinceMillis);
+			int deflated = deleteUntouched(deflatedPath(hash), untouchedSinceMillis);
+			if (plain == KEPT || deflated == KEPT) {
+				continue;
+			}
+			boolean found = plain == DELETED || deflated == DELETED;
+			// A cold copy is never adopted by a new upload, so once the hot
+			// tier holds no fresh copy it can go.
+			if (coldIndex != null && coldIndex.find(hash) != ColdIndex.ABSENT && !Files.exists(path(hash))
+					&& !Files.exists(deflatedPath(hash))) {
+				cold.add(hash);
+				found = true;
+			}
+			if (found) {
+				deleted++;
+			}
+		}
+		if (!cold.isEmpty()) {
+			// The index goes first, so a crash can leave an unlisted file but never a listed one that is gone.
+			coldIndex.remove(cold);
+			for (String hash : cold) {
+				Files.deleteIfExists(coldPath(hash, false));
+				Files.deleteIfExists(coldPath(hash, true));
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Lists the hashes of all stored blobs last stored or read before a time,
+	 * for garbage collection against the hashes still referenced. Storing
+	 * content that is already kept counts as storing it again; cold blobs
+	 * count as old unless they are also in the hot tier.
+	 */
+	public List<String> listOlderThan(long millis) throws IOException {
+		List<String> hashes = new ArrayList<>();
+		Set<String> recent = new HashSet<>();
+		for (Path blob : hotBlobs()) {
+			String hash = hashOf(blob);
+			if (Files.getLastModifiedTime(blob).toMillis() < millis) {
+				hashes.add(hash);
+			} else {
+				recent.add(hash);
+			}
+		}
+		hashes.removeAll(recent);
+		if (coldIndex != null) {
+			Set<String> listed = new HashSet<>(hashes);
+			for (String hash : coldIndex.hashes()) {
+				if (!recent.contains(hash) && !listed.contains(hash)) {
+					hashes.add(hash);
+				}
+			}
+		}
+		return hashes;
+	}
+
+	/**
+	 * Moves hot blobs last stored or read before a time to the cold tier. Each
+	 * blob is copied and forced to disk, listed in the cold index and only then
+	 * removed from the hot tier, so a failure leaves it readable from one of
+	 * them.
+	 *
+	 * @return the number of blobs moved
+	 * @throws IllegalStateException if the store has no cold tier
+	 */
+	public int moveToCold(long untouchedSinceMillis) throws IOException {
+		if (coldIndex == null) {
+			throw new IllegalStateException("No cold tier configured for " + root);
+		}
+		int moved = 0;
+		List<Path> batch = new ArrayList<>();
+		List<byte[]> entries = new ArrayList<>();
+		for (Path blob : hotBlobs()) {
+			if (Files.getLastModifiedTime(blob).toMillis() >= untouchedSinceMillis) {
+				continue;
+			}
+			String hash = hashOf(blob);
+			if (coldIndex.find(hash) == ColdIndex.ABSENT) {
+				entries.add(ColdIndex.entry(hash, copyToCold(hash, blob)));
+			}
+			batch.add(blob);
+			if (batch.size() >= COLD_BATCH_SIZE) {
+				moved += finishColdBatch(batch, entries, untouchedSinceMillis);
+			}
+		}
+		return moved + finishColdBatch(batch, entries, untouchedSinceMillis);
+	}
+
+	/**
+	 * Reads the cold index again from the cold tier itself, for a lost or
+	 * damaged {@code cold.index}.
+	 *
+	 * @return the number of cold blobs found
+	 */
+	public int rebuildColdIndex() throws IOException {
+		if (coldIndex == null) {
+			throw new IllegalStateException("No cold tier configured for " + root);
+		}
+		List<byte[]> entries = new ArrayList<>();
+		for (Path blob : blobsUnder(coldRoot)) {
+			entries.add(ColdIndex.entry(hashOf(blob), blob.getFileName().toString().endsWith(DEFLATED_SUFFIX)));
+		}
+		coldIndex.replace(entries);
+		return entries.size();
+	}
+
+	private int finishColdBatch(List<Path> batch, List<byte[]> entries, long untouchedSinceMillis) throws IOException {
+		coldIndex.add(entries);
+		for (Path blob : batch) {
+			// A blob stored again meanwhile stays hot, so it is fresh for
+			// garbage collection; the next move drops the hot copy.
+			try {
+				if (Files.getLastModifiedTime(blob).toMillis() < untouchedSinceMillis) {
+					Files.delete(blob);
+				}
+			} catch (NoSuchFileException e) {
+				// Deleted by garbage collection meanwhile.
+			}
+		}
+		int moved = batch.size();
+		batch.clear();
+		entries.clear();
+		return moved;
+	}
+
+	/**
+	 * @return true if the cold copy is deflated
+	 */
+	private boolean copyToCold(String hash, Path blob) throws IOException {
+		boolean deflated = blob.getFileName().toString().endsWith(DEFLATED_SUFFIX);
+		Files.createDirectories(coldPath(hash, false).getParent());
+		Path temp = Files.createTempFile(coldPath(hash, false).getParent(), "cold-", ".tmp");
+		try {
+			if (deflated) {
+				Files.copy(blob, temp, StandardCopyOption.REPLACE_EXISTING);
+			} else {
+				try (InputStream in = Files.newInputStream(blob);
+						FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+					writeDeflated(in, out, sha256());
+				}
+				if (Files.size(temp) > Files.size(blob) * (1 - MIN_COLD_SAVING)) {
+					Files.copy(blob, temp, StandardCopyOption.REPLACE_EXISTING);
+				} else {
+					deflated = true;
+				}
+			}
+			try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+				out.force(false);
+			}
+			move(temp, coldPath(hash, deflated));
+			return deflated;
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	private long transferTo(String hash, Location location, Range range, WritableByteChannel target) throws IOException {
+		if (!location.deflated) {
+			try (FileChannel in = FileChannel.open(location.path, StandardOpenOption.READ)) {
+				markUsed(location);
+				long position = range.getStart();
+				long remaining = range.getLength();
+				while (remaining > 0) {
+					long sent = in.transferTo(position, remaining, target);
+					if (sent <= 0 && position >= in.size()) {
+						throw new IOException("Blob " + hash + " ends before byte " + position);
+					}
+					position += sent;
+					remaining -= sent;
+				}
+				return range.getLength();
+			}
+		}
+		try (InputStream in = open(location)) {
+			skipFully(in, range.getStart(), hash);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long remaining = range.getLength();
+			while (remaining > 0) {
+				int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (read < 0) {
+					throw new IOException("Blob " + hash + " ends " + remaining + " bytes early");
+				}
+				ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+				while (chunk.hasRemaining()) {
+					target.write(chunk);
+				}
+				remaining -= read;
+			}
+			return range.getLength();
+		}
+	}
+
+	private InputStream open(Location location) throws IOException {
+		InputStream in = Files.newInputStream(location.path);
+		markUsed(location);
+		if (!location.deflated) {
+			return in;
+		}
+		DataInputStream header = new DataInputStream(in);
+		try {
+			readHeader(header, location.path);
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		}
+		return new InflaterInputStream(in, new Inflater(), BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					// A supplied inflater is not ended by the stream itself.
+					inf.end();
+				}
+			}
+		};
+	}
+
+	private Location locate(String hash) throws IOException {
+		Path plain = path(hash);
+		if (Files.isRegularFile(plain)) {
+			return new Location(plain, false, false);
+		}
+		Path deflated = deflatedPath(hash);
+		if (Files.isRegularFile(deflated)) {
+			return new Location(deflated, true, false);
+		}
+		if (coldIndex != null) {
+			int found = coldIndex.find(hash);
+			if (found != ColdIndex.ABSENT) {
+				boolean coldDeflated = found == ColdIndex.DEFLATED;
+				return new Location(coldPath(hash, coldDeflated), coldDeflated, true);
+			}
+		}
+		return null;
+	}
+
+	private Location require(String hash) throws IOException {
+		Location location = locate(hash);
+		if (location == null) {
+			throw new NoSuchFileException("Blob " + hash + " is not stored");
+		}
+		return location;
+	}
+
+	/**
+	 * Marks a hot blob as used, so that it is not moved to the cold tier.
+	 */
+	private static void markUsed(Location location) throws IOException {
+		if (location.cold) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if (Files.getLastModifiedTime(location.path).toMillis() < now - TOUCH_INTERVAL_MILLIS) {
+			Files.setLastModifiedTime(location.path, FileTime.fromMillis(now));
+		}
+	}
+
+	/**
+	 * Deletes a hot blob last stored or read before a time. {@link #adopt}
+	 * touching the blob before the rename is seen here; touching it after
+	 * fails, so the upload stores its own copy.
+	 *
+	 * @return {@link #NOT_STORED}, {@link #DELETED} or {@link #KEPT}
+	 */
+	private static int deleteUntouched(Path blob, long untouchedSinceMillis) throws IOException {
+		Path aside = blob.resolveSibling(blob.getFileName() + DELETING_SUFFIX);
+		try {
+			move(blob, aside);
+		} catch (NoSuchFileException e) {
+			return NOT_STORED;
+		}
+		if (Files.getLastModifiedTime(aside).toMillis() < untouchedSinceMillis) {
+			Files.delete(aside);
+			return DELETED;
+		}
+		try {
+			move(aside, blob);
+		} catch (FileAlreadyExistsException e) {
+			// Stored again while set aside; the new copy has the same content.
+			Files.delete(aside);
+		}
+		return KEPT;
+	}
+
+	private StoredBlob adopt(Path file, String hash, long size, boolean deflated) throws IOException {
+		// A cold copy does not count: the content is stored hot again so that
+		// it is fresh for garbage collection, and the next move finds it cold.
+		if (touch(path(hash)) || touch(deflatedPath(hash))) {
+			return new StoredBlob(hash, size, false);
+		}
+		Path target = deflated ? deflatedPath(hash) : path(hash);
+		Files.createDirectories(target.getParent());
+		try {
+			move(file, target);
+		} catch (FileAlreadyExistsException e) {
+			// Stored concurrently by another upload of the same content.
+			return new StoredBlob(hash, size, false);
+		}
+		return new StoredBlob(hash, size, true);
+	}
+
+	private List<Path> hotBlobs() throws IOException {
+		return blobsUnder(root);
+	}
+
+	/**
+	 * @return the blob files under a tier's {@code ab/cd/} directories,
+	 *         skipping temporary files and anything else kept alongside
+	 */
+	private static List<Path> blobsUnder(Path tier) throws IOException {
+		List<Path> blobs = new ArrayList<>();
+		if (!Files.isDirectory(tier)) {
+			return blobs;
+		}
+		try (DirectoryStream<Path> first = Files.newDirectoryStream(tier, Files::isDirectory)) {
+			for (Path a : first) {
+				try (DirectoryStream<Path> second = Files.newDirectoryStream(a, Files::isDirectory)) {
+					for (Path b : second) {
+						try (DirectoryStream<Path> files = Files.newDirectoryStream(b)) {
+							for (Path blob : files) {
+								String name = blob.getFileName().toString();
+								if (HASH.matcher(hashOf(blob)).matches()
+										&& (name.length() == 64 || name.endsWith(DEFLATED_SUFFIX))) {
+									blobs.add(blob);
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+		return blobs;
+	}
+
+	private static String hashOf(Path blob) {
+		String name = blob.getFileName().toString();
+		return name.length() >= 64 ? name.substring(0, 64) : name;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the hash is not 64 lower-case hex
+	 *                                  digits, which also keeps it from
+	 *                                  naming a path outside the store
+	 */
+	private Path path(String hash) {
+		return shard(root, hash).resolve(hash);
+	}
+
+	private Path deflatedPath(String hash) {
+		return shard(root, hash).resolve(hash + DEFLATED_SUFFIX);
+	}
+
+	private Path coldPath(String hash, boolean deflated) {
+		return shard(coldRoot, hash).resolve(deflated ? hash + DEFLATED_SUFFIX : hash);
+	}
+
+	private static Path shard(Path tier, String hash) {
+		if (hash == null || !HASH.matcher(hash).matches()) {
+			throw new IllegalArgumentException("Not a SHA-256 hash: " + hash);
+		}
+		return tier.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4));
+	}
+
+	private static long writePlain(InputStream content, FileChannel out, MessageDigest digest) throws IOException {
+		ReadableByteChannel in = Channels.newChannel(content);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		long size = 0;
+		while (in.read(buffer) >= 0) {
+			buffer.flip();
+			// The digest reads the buffer without consuming it for the write.
+			digest.update(buffer.duplicate());
+			while (buffer.hasRemaining()) {
+				size += out.write(buffer);
+			}
+			buffer.clear();
+		}
+		return size;
+	}
+
+	/**
+	 * Writes the header, then the deflated content, then fills in the length.
+	 */
+	private static long writeDeflated(InputStream content, FileChannel out, MessageDigest digest) throws IOException {
+		out.write(header(0));
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		try {
+			// Not closed, since that would close the channel.
+			DeflaterOutputStream deflated = new DeflaterOutputStream(Channels.newOutputStream(out), deflater, BUFFER_SIZE);
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long size = 0;
+			int read;
+			while ((read = content.read(buffer)) >= 0) {
+				digest.update(buffer, 0, read);
+				deflated.write(buffer, 0, read);
+				size += read;
+			}
+			deflated.finish();
+			deflated.flush();
+			out.write(header(size), 0);
+			return size;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static ByteBuffer header(long size) {
+		ByteBuffer header = ByteBuffer.allocate(DEFLATED_HEADER_SIZE);
+		header.putInt(DEFLATED_MAGIC).putLong(size).flip();
+		return header;
+	}
+
+	private static long readHeader(DataInputStream in, Path path) throws IOException {
+		try {
+			if (in.readInt() != DEFLATED_MAGIC) {
+				throw new IOException("Not a deflated blob: " + path);
+			}
+			return in.readLong();
+		} catch (EOFException e) {
+			throw new IOException("Truncated deflated blob: " + path, e);
+		}
+	}
+
+	private static void skipFully(InputStream in, long bytes, String hash) throws IOException {
+		long remaining = bytes;
+		while (remaining > 0) {
+			long skipped = in.skip(remaining);
+			if (skipped <= 0) {
+				if (in.read() < 0) {
+					throw new IOException("Blob " + hash + " ends before byte " + bytes);
+				}
+				skipped = 1;
+			}
+			remaining -= skipped;
+		}
+	}
+
+	/**
+	 * Marks an existing blob as just stored, so that garbage collection with a
+	 * grace period leaves it alone until the new reference is committed.
+	 *
+	 * @return false if the blob does not exist
+	 */
+	private static boolean touch(Path blob) throws IOException {
+		try {
+			Files.setLastModifiedTime(blob, FileTime.fromMillis(System.currentTimeMillis()));
+			return true;
+		} catch (NoSuchFileException e) {
+			return false;
+		}
+	}
+
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target);
+		}
+	}
+
+	/**
+	 * @return a new SHA-256 digest, as used for blob addresses
+	 */
+	public static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			// Every Java platform is required to provide SHA-256.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the bytes as lower-case hex, as in blob addresses
+	 */
+	public static String hex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * The hashes of the cold blobs as one sorted array of 33-byte entries:
+	 * the 32 hash bytes, then 1 if the blob is deflated. Loaded on first use
+	 * and rewritten whole, through a temporary file, on every change; changes
+	 * come in batches from {@link #moveToCold(long)} and garbage collection.
+	 */
+	private static final class ColdIndex {
+		private static final int ENTRY_SIZE = 33;
+		private static final int MAGIC = 0x424C4349; // "BLCI"
+		static final int ABSENT = -1;
+		static final int PLAIN = 0;
+		static final int DEFLATED = 1;
+
+		private final Path file;
+		private byte[] entries;
+		private int count;
+
+		ColdIndex(Path file) {
+			this.file = file;
+		}
+
+		static byte[] entry(String hash, boolean deflated) {
+			byte[] entry = new byte[ENTRY_SIZE];
+			for (int i = 0; i < 32; i++) {
+				entry[i] = (byte) Integer.parseInt(hash.substring(i * 2, i * 2 + 2), 16);
+			}
+			entry[32] = (byte) (deflated ? 1 : 0);
+			return entry;
+		}
+
+		/**
+		 * @return {@link #ABSENT}, {@link #PLAIN} or {@link #DEFLATED}
+		 */
+		synchronized int find(String hash) throws IOException {
+			load();
+			byte[] key = entry(hash, false);
+			int low = 0;
+			int high = count - 1;
+			while (low <= high) {
+				int mid = (low + high) >>> 1;
+				int cmp = compare(entries, mid * ENTRY_SIZE, key, 0);
+				if (cmp < 0) {
+					low = mid + 1;
+				} else if (cmp > 0) {
+					high = mid - 1;
+				} else {
+					return entries[mid * ENTRY_SIZE + 32] == 1 ? DEFLATED : PLAIN;
+				}
+			}
+			return ABSENT;
+		}
+
+		synchronized List<String> hashes() throws IOException {
+			load();
+			List<String> hashes = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				hashes.add(hex(Arrays.copyOfRange(entries, i * ENTRY_SIZE, i * ENTRY_SIZE + 32)));
+			}
+			return hashes;
+		}
+
+		synchronized void add(List<byte[]> added) throws IOException {
+			if (added.isEmpty()) {
+				return;
+			}
+			load();
+			List<byte[]> all = new ArrayList<>(count + added.size());
+			for (int i = 0; i < count; i++) {
+				all.add(Arrays.copyOfRange(entries, i * ENTRY_SIZE, (i + 1) * ENTRY_SIZE));
+			}
+			all.addAll(added);
+			replace(all);
+		}
+
+		synchronized void remove(List<String> removed) throws IOException {
+			load();
+			Set<String> gone = new HashSet<>(removed);
+			List<byte[]> kept = new ArrayList<>(count);
+			for (int i = 0; i < count; i++) {
+				byte[] entry = Arrays.copyOfRange(entries, i * ENTRY_SIZE, (i + 1) * ENTRY_SIZE);
+				if (!gone.contains(hex(Arrays.copyOf(entry, 32)))) {
+					kept.add(entry);
+				}
+			}
+			replace(kept);
+		}
+
+		synchronized void replace(List<byte[]> list) throws IOException {
+			list.sort((a, b) -> compare(a, 0, b, 0));
+			byte[] sorted = new byte[list.size() * ENTRY_SIZE];
+			int n = 0;
+			for (byte[] entry : list) {
+				if (n > 0 && compare(sorted, (n - 1) * ENTRY_SIZE, entry, 0) == 0) {
+					continue;
+				}
+				System.arraycopy(entry, 0, sorted, n * ENTRY_SIZE, ENTRY_SIZE);
+				n++;
+			}
+			Files.createDirectories(file.getParent());
+			Path temp = Files.createTempFile(file.getParent(), "cold-index-", ".tmp");
+			try {
+				try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+					ByteBuffer header = ByteBuffer.allocate(8);
+					header.putInt(MAGIC).putInt(n).flip();
+					out.write(header);
+					ByteBuffer body = ByteBuffer.wrap(sorted, 0, n * ENTRY_SIZE);
+					while (body.hasRemaining()) {
+						out.write(body);
+					}
+					out.force(false);
+				}
+				move(temp, file);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+			entries = sorted;
+			count = n;
+		}
+
+		private void load() throws IOException {
+			if (entries != null) {
+				return;
+			}
+			if (!Files.exists(file)) {
+				entries = new byte[0];
+				count = 0;
+				return;
+			}
+			try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+				if (in.readInt() != MAGIC) {
+					throw new IOException("Not a cold blob index: " + file);
+				}
+				int n = in.readInt();
+				byte[] loaded = new byte[n * ENTRY_SIZE];
+				in.readFully(loaded);
+				entries = loaded;
+				count = n;
+			} catch (EOFException e) {
+				throw new IOException("Truncated cold blob index: " + file, e);
+			}
+		}
+
+		/** Compares the 32 hash bytes of two entries as unsigned bytes. */
+		private static int compare(byte[] a, int aOffset, byte[] b, int bOffset) {
+			for (int i = 0; i < 32; i++) {
+				int cmp = (a[aOffset + i] & 0xff) - (b[bOffset + i] & 0xff);
+				if (cmp != 0) {
+					return cmp;
+				}
+			}
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-table counters and throughput of a bulk load.
+ *
+ * <p>
+ * For each table the report counts records read from the input, records
+ * rejected before they reached the database, rows streamed through COPY,
+ * rows finally inserted, and rows dropped because their parent was not part
+ * of the load. Only the first {@link #MAX_REJECTIONS} rejection messages are
+ * kept.
+ * </p>
+ */
+public class BulkLoadReport {
+
+	public static final int MAX_REJECTIONS = 100;
+
+	/**
+	 * Counters for one target table.
+	 */
+	public static class TableStats {
+		private long read;
+		private long rejected;
+		private long copied;
+		private long inserted;
+		private long orphaned;
+
+		public long getRead() {
+			return read;
+		}
+
+		public long getRejected() {
+			return rejected;
+		}
+
+		public long getCopied() {
+			return copied;
+		}
+
+		public long getInserted() {
+			return inserted;
+		}
+
+		public long getOrphaned() {
+			return orphaned;
+		}
+
+		@Override
+		public String toString() {
+			return "read=" + read + ", rejected=" + rejected + ", copied=" + copied + ", inserted=" + inserted
+					+ ", orphaned=" + orphaned;
+		}
+	}
+
+	private final Map<String, TableStats> tables = new LinkedHashMap<>();
+	private final List<String> rejections = new ArrayList<>();
+	private final long startNanos = System.nanoTime();
+	private long elapsedNanos = -1;
+
+	public TableStats table(String name) {
+		return tables.computeIfAbsent(name, n -> new TableStats());
+	}
+
+	public void recordRead(String table) {
+		table(table).read++;
+	}
+
+	public void recordRejected(String table, long line, String reason) {
+		table(table).rejected++;
+		if (rejections.size() < MAX_REJECTIONS) {
+			rejections.add(table + " line " + line + ": " + reason);
+		}
+	}
+
+	public void recordCopied(String table, long rows) {
+		table(table).copied = rows;
+	}
+
+	public void recordInserted(String table, long rows) {
+		TableStats stats = table(table);
+		stats.inserted = rows;
+		stats.orphaned = Math.max(0, stats.copied - rows);
+	}
+
+	/**
+	 * Stops the clock; later calls have no effect.
+	 */
+	public void finish() {
+		if (elapsedNanos < 0) {
+			elapsedNanos = System.nanoTime() - startNanos;
+		}
+	}
+
+	public Map<String, TableStats> getTables() {
+		return Collections.unmodifiableMap(tables);
+	}
+
+	public List<String> getRejections() {
+		return Collections.unmodifiableList(rejections);
+	}
+
+	public long getElapsedMillis() {
+		long nanos = elapsedNanos < 0 ? System.nanoTime() - startNanos : elapsedNanos;
+		return nanos / 1000000L;
+	}
+
+	public long getTotalInserted() {
+		long total = 0;
+		for (TableStats stats : tables.values()) {
+			total += stats.inserted;
+		}
+		return total;
+	}
+
+	public long getTotalRead() {
+		long total = 0;
+		for (TableStats stats : tables.values()) {
+			total += stats.read;
+		}
+		return total;
+	}
+
+	/**
+	 * @return input records processed per second of wall-clock time
+	 */
+	public double getRowsPerSecond() {
+		long millis = Math.max(1, getElapsedMillis());
+		return getTotalRead() * 1000.0 / millis;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder("BulkLoadReport{elapsedMillis=").append(getElapsedMillis())
+				.append(", rowsPerSecond=").append(String.format("%.0f", getRowsPerSecond()));
+		for (Map.Entry<String, TableStats> entry : tables.entrySet()) {
+			sb.append(", ").append(entry.getKey()).append("={").append(entry.getValue()).append('}');
+		}
+		return sb.append('}').toString();
+	}
+}
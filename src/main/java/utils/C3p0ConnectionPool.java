@@ -0,0 +1,94 @@
+package utils;
+
+import java.beans.PropertyVetoException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+
+/**
+ * {@link ConnectionPool} backed by a C3P0 {@link ComboPooledDataSource}. This
+ * is the default provider and keeps the application's original pooling
+ * behaviour, with all sizing now taken from {@link PoolSettings}.
+ */
+public class C3p0ConnectionPool extends InstrumentedConnectionPool {
+
+	private static final Logger LOGGER = Logger.getLogger(C3p0ConnectionPool.class.getName());
+
+	private final ComboPooledDataSource dataSource;
+
+	public C3p0ConnectionPool(PoolSettings settings) throws PropertyVetoException {
+		super(settings);
+		dataSource = new ComboPooledDataSource();
+		dataSource.setDriverClass("org.postgresql.Driver");
+		dataSource.setJdbcUrl(settings.getJdbcUrl());
+		dataSource.setUser(settings.getUsername());
+		dataSource.setPassword(settings.getPassword());
+
+		dataSource.setMinPoolSize(settings.getMinSize());
+		dataSource.setInitialPoolSize(settings.getInitialSize());
+		dataSource.setAcquireIncrement(settings.getAcquireIncrement());
+		dataSource.setMaxPoolSize(settings.getMaxSize());
+		dataSource.setCheckoutTimeout((int) Math.min(Integer.MAX_VALUE, settings.getAcquireTimeoutMillis()));
+		dataSource.setMaxIdleTime(settings.getIdleTimeoutSeconds());
+		dataSource.setMaxConnectionAge(settings.getMaxLifetimeSeconds());
+		dataSource.setMaxStatements(settings.getStatementCacheSize());
+	}
+
+	@Override
+	protected Connection acquire() throws SQLException {
+		return dataSource.getConnection();
+	}
+
+	@Override
+	protected int getTotalConnections() {
+		try {
+			return dataSource.getNumConnectionsDefaultUser();
+		} catch (SQLException e) {
+			LOGGER.log(Level.FINE, "Unable to read C3P0 connection count", e);
+			return -1;
+		}
+	}
+
+	@Override
+	protected int getActiveConnections() {
+		try {
+			return dataSource.getNumBusyConnectionsDefaultUser();
+		} catch (SQLException e) {
+			LOGGER.log(Level.FINE, "Unable to read C3P0 busy connection count", e);
+			return -1;
+		}
+	}
+
+	@Override
+	protected int getIdleConnections() {
+		try {
+			return dataSource.getNumIdleConnectionsDefaultUser();
+		} catch (SQLException e) {
+			LOGGER.log(Level.FINE, "Unable to read C3P0 idle connection count", e);
+			return -1;
+		}
+	}
+
+	@Override
+	protected int getPendingAcquires() {
+		try {
+			return dataSource.getNumThreadsAwaitingCheckoutDefaultUser();
+		} catch (SQLException e) {
+			LOGGER.log(Level.FINE, "Unable to read C3P0 pending checkout count", e);
+			return -1;
+		}
+	}
+
+	@Override
+	public String getProviderName() {
+		return PoolSettings.PROVIDER_C3P0;
+	}
+
+	@Override
+	public void close() {
+		dataSource.close();
+	}
+}
@@ -0,0 +1,239 @@
+package utils;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cross-node invalidation of {@link ReadThroughCache}s over PostgreSQL
+ * {@code LISTEN/NOTIFY}.
+ *
+ * <p>
+ * Caches are registered under a topic, usually the name of the table they
+ * mirror. A write calls {@link #publish(String)} or
+ * {@link #publish(String, String)} after it succeeds: the local caches are
+ * invalidated immediately and a notification is sent on
+ * {@code cache.invalidation.channel}. Every other node holds one pooled
+ * connection in {@code LISTEN} on that channel and evicts the matching entries
+ * as soon as the notification arrives, typically within a few milliseconds of
+ * the writer's commit.
+ * </p>
+ *
+ * <p>
+ * Notifications are not durable. Whenever the listener (re)connects it
+ * invalidates every registered cache, since events may have been missed while
+ * it was disconnected, and the caches' TTL remains the upper bound on
+ * staleness if a notification is lost. The listener connection is taken from
+ * {@link DatabaseUtility}'s pool and held for the life of the process, so it
+ * appears among the pool's long-held connections.
+ * </p>
+ *
+ * <p>
+ * Payloads have the form {@code origin|topic|key}, where {@code origin}
+ * identifies the publishing node so that it can skip its own events and an
+ * empty {@code key} invalidates the whole topic.
+ * </p>
+ */
+public final class CacheInvalidationBus {
+
+	private static final Logger LOGGER = Logger.getLogger(CacheInvalidationBus.class.getName());
+
+	private static final boolean ENABLED = ApplicationProperties.getBoolean("cache.invalidation.enabled", true);
+	private static final String CHANNEL = ApplicationProperties.getString("cache.invalidation.channel",
+			"cache_invalidation");
+	private static final int POLL_TIMEOUT_MILLIS = ApplicationProperties.getInt("cache.invalidation.pollTimeoutMillis",
+			500);
+	private static final long MAX_RECONNECT_DELAY_MILLIS = 30000;
+
+	private static final String NODE_ID = UUID.randomUUID().toString();
+
+	private static final Map<String, List<Registration<?>>> TOPICS = new ConcurrentHashMap<>();
+
+	private static volatile Thread listener;
+	private static volatile boolean running;
+
+	private CacheInvalidationBus() {
+	}
+
+	private static final class Registration<K> {
+		final ReadThroughCache<K, ?> cache;
+		final Function<String, K> keyParser;
+
+		Registration(ReadThroughCache<K, ?> cache, Function<String, K> keyParser) {
+			this.cache = cache;
+			this.keyParser = keyParser;
+		}
+
+		void invalidate(String key) {
+			if (key == null || keyParser == null) {
+				cache.invalidateAll();
+			} else {
+				cache.invalidate(keyParser.apply(key));
+			}
+		}
+	}
+
+	/**
+	 * Registers a cache which is cleared entirely on every event of the topic.
+	 */
+	public static void register(String topic, ReadThroughCache<?, ?> cache) {
+		register(topic, cache, null);
+	}
+
+	/**
+	 * Registers a cache whose entries are invalidated individually. Events
+	 * carrying a key evict only {@code keyParser.apply(key)}; events without a
+	 * key clear the cache.
+	 */
+	public static <K> void register(String topic, ReadThroughCache<K, ?> cache, Function<String, K> keyParser) {
+		TOPICS.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(new Registration<>(cache, keyParser));
+		start();
+	}
+
+	/**
+	 * Invalidates every entry of the topic on this node and on all others.
+	 */
+	public static void publish(String topic) {
+		publish(topic, null);
+	}
+
+	/**
+	 * Invalidates one key of the topic on this node and on all others.
+	 *
+	 * @param key the key in the textual form understood by the registered key
+	 *            parsers, or null for the whole topic
+	 */
+	public static void publish(String topic, String key) {
+		dispatch(topic, key);
+		if (!ENABLED) {
+			return;
+		}
+		String payload = NODE_ID + '|' + topic + '|' + (key == null ? "" : key);
+		try (Connection conn = DatabaseUtility.getConnection();
+				PreparedStatement ps = conn.prepareStatement("SELECT pg_notify(?, ?)")) {
+			ps.setString(1, CHANNEL);
+			ps.setString(2, payload);
+			ps.execute();
+		} catch (SQLException e) {
+			// Other nodes fall back to the cache TTL.
+			LOGGER.log(Level.WARNING, "Failed to publish cache invalidation for " + topic, e);
+		}
+	}
+
+	/**
+	 * Starts the listener thread if it is enabled and not already running.
+	 */
+	public static synchronized void start() {
+		if (!ENABLED || running) {
+			return;
+		}
+		running = true;
+		Thread thread = new Thread(CacheInvalidationBus::listen, "cache-invalidation-listener");
+		thread.setDaemon(true);
+		thread.start();
+		listener = thread;
+	}
+
+	/**
+	 * Stops the listener thread and releases its connection.
+	 */
+	public static synchronized void stop() {
+		running = false;
+		Thread thread = listener;
+		if (thread != null) {
+			thread.interrupt();
+			listener = null;
+		}
+	}
+
+	private static void dispatch(String topic, String key) {
+		List<Registration<?>> registrations = TOPICS.get(topic);
+		if (registrations == null) {
+			return;
+		}
+		for (Registration<?> registration : registrations) {
+			try {
+				registration.invalidate(key);
+			} catch (RuntimeException e) {
+				// An unparsable key must not leave stale data behind.
+				LOGGER.log(Level.WARNING, "Invalid cache key '" + key + "' for " + topic, e);
+				registration.cache.invalidateAll();
+			}
+		}
+	}
+
+	private static void dispatchAll() {
+		for (String topic : TOPICS.keySet()) {
+			dispatch(topic, null);
+		}
+	}
+
+	private static void listen() {
+		long delay = 1000;
+		while (running) {
+			try (Connection conn = DatabaseUtility.getConnection()) {
+				PGConnection pgConn = conn.unwrap(PGConnection.class);
+				try (Statement stmt = conn.createStatement()) {
+					stmt.execute("LISTEN \"" + CHANNEL.replace("\"", "\"\"") + "\"");
+				}
+				try {
+					dispatchAll();
+					delay = 1000;
+					LOGGER.log(Level.INFO, "Listening for cache invalidations on channel {0}", CHANNEL);
+					while (running) {
+						PGNotification[] notifications = pgConn.getNotifications(POLL_TIMEOUT_MILLIS);
+						if (notifications == null) {
+							continue;
+						}
+						for (PGNotification notification : notifications) {
+							handle(notification.getParameter());
+						}
+					}
+				} finally {
+					// The connection goes back to the pool; stop queueing events on it.
+					try (Statement stmt = conn.createStatement()) {
+						stmt.execute("UNLISTEN *");
+					} catch (SQLException e) {
+						LOGGER.log(Level.FINE, "UNLISTEN failed", e);
+					}
+				}
+			} catch (SQLException | RuntimeException e) {
+				if (!running) {
+					break;
+				}
+				LOGGER.log(Level.WARNING, "Cache invalidation listener failed, reconnecting in " + delay + " ms", e);
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+			}
+		}
+	}
+
+	private static void handle(String payload) {
+		String[] parts = payload.split("\\|", 3);
+		if (parts.length != 3) {
+			LOGGER.log(Level.WARNING, "Ignoring malformed cache invalidation payload: {0}", payload);
+			return;
+		}
+		if (NODE_ID.equals(parts[0])) {
+			return;
+		}
+		dispatch(parts[1], parts[2].isEmpty() ? null : parts[2]);
+	}
+}
@@ -0,0 +1,83 @@
+package utils;
+
+/**
+ * Immutable point-in-time snapshot of a {@link ReadThroughCache}'s counters.
+ */
+public class CacheStats {
+
+	private final String name;
+	private final long hits;
+	private final long misses;
+	private final long loadFailures;
+	private final long evictions;
+	private final long invalidations;
+	private final int size;
+	private final int maxEntries;
+
+	public CacheStats(String name, long hits, long misses, long loadFailures, long evictions, long invalidations,
+			int size, int maxEntries) {
+		this.name = name;
+		this.hits = hits;
+		this.misses = misses;
+		this.loadFailures = loadFailures;
+		this.evictions = evictions;
+		this.invalidations = invalidations;
+		this.size = size;
+		this.maxEntries = maxEntries;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getLoadFailures() {
+		return loadFailures;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @return the fraction of lookups served from the cache, or 0 before the
+	 *         first lookup
+	 */
+	public double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0.0 : (double) hits / lookups;
+	}
+
+	@Override
+	public String toString() {
+		return "CacheStats{" +
+				"name='" + name + '\'' +
+				", hits=" + hits +
+				", misses=" + misses +
+				", hitRate=" + String.format("%.3f", getHitRate()) +
+				", loadFailures=" + loadFailures +
+				", evictions=" + evictions +
+				", invalidations=" + invalidations +
+				", size=" + size + "/" + maxEntries +
+				'}';
+	}
+}
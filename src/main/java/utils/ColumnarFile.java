@@ -0,0 +1,457 @@
+package utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Immutable, compressed, column-oriented file for cold row data.
+ *
+ * <p>
+ * Rows are buffered into row groups of up to {@link #ROW_GROUP_SIZE} rows and
+ * each group is written one column after the other, so that similar values
+ * sit next to each other before the whole file is deflated:
+ * </p>
+ * <ul>
+ * <li>{@link ColumnType#TIMESTAMP} columns hold microseconds since the epoch,
+ * delta-encoded against the previous row as zigzag varints; sorted
+ * timestamps shrink to a byte or two each.</li>
+ * <li>{@link ColumnType#LONG} columns are delta-encoded the same way.</li>
+ * <li>{@link ColumnType#TEXT} columns are dictionary-encoded when a group has
+ * few distinct values, such as action types, and stored as plain UTF-8
+ * otherwise.</li>
+ * </ul>
+ * <p>
+ * Each column block starts with a null bitmap. A {@link Writer} writes to a
+ * temporary file and only moves it into place, read-only, on
+ * {@link Writer#close()}, so a file that exists is always complete.
+ * </p>
+ */
+public final class ColumnarFile {
+
+	public static final int ROW_GROUP_SIZE = 65536;
+
+	private static final int MAGIC = 0x434C4131; // "CLA1"
+	private static final int PLAIN = 0;
+	private static final int DICTIONARY = 1;
+
+	public enum ColumnType {
+		TIMESTAMP, LONG, TEXT
+	}
+
+	/**
+	 * A named, typed column.
+	 */
+	public static final class Column {
+		private final String name;
+		private final ColumnType type;
+
+		public Column(String name, ColumnType type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public ColumnType getType() {
+			return type;
+		}
+
+		@Override
+		public String toString() {
+			return name + " " + type;
+		}
+	}
+
+	private ColumnarFile() {
+	}
+
+	/**
+	 * Writes one file. Values are {@link Timestamp}, {@link Number} and
+	 * {@link String} (any object for TEXT, via {@code toString()}) according to
+	 * the column type, or null.
+	 */
+	public static final class Writer implements Closeable {
+
+		private final Path target;
+		private final Path temp;
+		private final List<Column> columns;
+		private final FileOutputStream file;
+		private final Deflater deflater;
+		private final DeflaterOutputStream compressed;
+		private final DataOutputStream out;
+		private final Object[][] group;
+		private int groupRows;
+		private long rows;
+		private boolean closed;
+
+		public Writer(Path target, List<Column> columns) throws IOException {
+			this.target = target;
+			this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+			this.columns = new ArrayList<>(columns);
+			Files.createDirectories(target.toAbsolutePath().getParent());
+			this.file = new FileOutputStream(temp.toFile());
+			DataOutputStream header = new DataOutputStream(file);
+			header.writeInt(MAGIC);
+			header.flush();
+			// A stream given its own Deflater does not end it on close; close() and abort() do.
+			this.deflater = new Deflater(Deflater.BEST_COMPRESSION);
+			this.compressed = new DeflaterOutputStream(file, deflater, 65536);
+			this.out = new DataOutputStream(new BufferedOutputStream(compressed, 65536));
+			writeVarLong(out, columns.size());
+			for (Column column : columns) {
+				out.writeUTF(column.getName());
+				out.writeByte(column.getType().ordinal());
+			}
+			this.group = new Object[columns.size()][ROW_GROUP_SIZE];
+		}
+
+		public void addRow(Object... values) throws IOException {
+			if (values.length != columns.size()) {
+				throw new IllegalArgumentException("Expected " + columns.size() + " values, got " + values.length);
+			}
+			for (int c = 0; c < values.length; c++) {
+				group[c][groupRows] = values[c];
+			}
+			rows++;
+			if (++groupRows == ROW_GROUP_SIZE) {
+				flushGroup();
+			}
+		}
+
+		public long getRowCount() {
+			return rows;
+		}
+
+		/**
+		 * Finishes the file, forces it to disk and moves it into place as
+		 * read-only.
+		 */
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			try {
+				flushGroup();
+				writeVarLong(out, 0);
+				out.flush();
+				compressed.finish();
+				file.getFD().sync();
+			} finally {
+				try {
+					out.close();
+				} finally {
+					deflater.end();
+				}
+			}
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			target.toFile().setReadOnly();
+		}
+
+		/**
+		 * Discards the partially written file.
+		 */
+		public void abort() {
+			closed = true;
+			try {
+				out.close();
+			} catch (IOException e) {
+				// discarding anyway
+			} finally {
+				deflater.end();
+			}
+			try {
+				Files.deleteIfExists(temp);
+			} catch (IOException e) {
+				// best effort
+			}
+		}
+
+		private void flushGroup() throws IOException {
+			if (groupRows == 0) {
+				return;
+			}
+			writeVarLong(out, groupRows);
+			for (int c = 0; c < columns.size(); c++) {
+				writeColumn(columns.get(c).getType(), group[c], groupRows);
+				Arrays.fill(group[c], 0, groupRows, null);
+			}
+			groupRows = 0;
+		}
+
+		private void writeColumn(ColumnType type, Object[] values, int count) throws IOException {
+			byte[] nulls = new byte[(count + 7) / 8];
+			int nullCount = 0;
+			for (int i = 0; i < count; i++) {
+				if (values[i] == null) {
+					nulls[i >> 3] |= 1 << (i & 7);
+					nullCount++;
+				}
+			}
+			writeVarLong(out, nullCount);
+			if (nullCount > 0) {
+				out.write(nulls);
+			}
+			switch (type) {
+			case TIMESTAMP:
+			case LONG:
+				long previous = 0;
+				for (int i = 0; i < count; i++) {
+					if (values[i] != null) {
+						long value = type == ColumnType.TIMESTAMP ? toMicros((Timestamp) values[i])
+								: ((Number) values[i]).longValue();
+						writeVarLong(out, zigzag(value - previous));
+						previous = value;
+					}
+				}
+				break;
+			case TEXT:
+			default:
+				Map<String, Integer> dictionary = new HashMap<>();
+				int distinctLimit = Math.max(16, (count - nullCount) / 4);
+				for (int i = 0; i < count && dictionary.size() <= distinctLimit; i++) {
+					if (values[i] != null) {
+						dictionary.putIfAbsent(values[i].toString(), dictionary.size());
+					}
+				}
+				if (dictionary.size() <= distinctLimit) {
+					out.writeByte(DICTIONARY);
+					String[] entries = new String[dictionary.size()];
+					for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+						entries[entry.getValue()] = entry.getKey();
+					}
+					writeVarLong(out, entries.length);
+					for (String entry : entries) {
+						writeString(out, entry);
+					}
+					for (int i = 0; i < count; i++) {
+						if (values[i] != null) {
+							writeVarLong(out, dictionary.get(values[i].toString()));
+						}
+					}
+				} else {
+					out.writeByte(PLAIN);
+					for (int i = 0; i < count; i++) {
+						if (values[i] != null) {
+							writeString(out, values[i].toString());
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a file row by row, decoding one row group at a time. TIMESTAMP
+	 * values come back as {@link Timestamp}, LONG as {@link Long} and TEXT as
+	 * {@link String}.
+	 */
+	public static final class Reader implements Closeable {
+
+		private final DataInputStream in;
+		private final List<Column> columns;
+		private Object[][] group;
+		private int groupRows;
+		private int next;
+		private boolean finished;
+
+		public Reader(Path path) throws IOException {
+			InputStream file = Files.newInputStream(path);
+			try {
+				DataInputStream header = new DataInputStream(file);
+				if (header.readInt() != MAGIC) {
+					throw new IOException(path + " is not a columnar file");
+				}
+				this.in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(file), 65536));
+				int count = (int) readVarLong(in);
+				List<Column> read = new ArrayList<>(count);
+				for (int c = 0; c < count; c++) {
+					read.add(new Column(in.readUTF(), ColumnType.values()[in.readUnsignedByte()]));
+				}
+				this.columns = Collections.unmodifiableList(read);
+			} catch (IOException | RuntimeException e) {
+				file.close();
+				throw e;
+			}
+		}
+
+		public List<Column> getColumns() {
+			return columns;
+		}
+
+		/**
+		 * @return the index of the named column
+		 * @throws IllegalArgumentException if the file has no such column
+		 */
+		public int indexOf(String name) {
+			for (int c = 0; c < columns.size(); c++) {
+				if (columns.get(c).getName().equals(name)) {
+					return c;
+				}
+			}
+			throw new IllegalArgumentException("No column " + name);
+		}
+
+		/**
+		 * @return the next row's values in column order, or null at the end of
+		 *         the file
+		 */
+		public Object[] next() throws IOException {
+			if (next == groupRows && !readGroup()) {
+				return null;
+			}
+			Object[] row = new Object[columns.size()];
+			for (int c = 0; c < row.length; c++) {
+				row[c] = group[c][next];
+			}
+			next++;
+			return row;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+
+		private boolean readGroup() throws IOException {
+			if (finished) {
+				return false;
+			}
+			int count = (int) readVarLong(in);
+			if (count == 0) {
+				finished = true;
+				return false;
+			}
+			if (group == null || group[0].length < count) {
+				group = new Object[columns.size()][count];
+			}
+			for (int c = 0; c < columns.size(); c++) {
+				readColumn(columns.get(c).getType(), group[c], count);
+			}
+			groupRows = count;
+			next = 0;
+			return true;
+		}
+
+		private void readColumn(ColumnType type, Object[] values, int count) throws IOException {
+			int nullCount = (int) readVarLong(in);
+			byte[] nulls = null;
+			if (nullCount > 0) {
+				nulls = new byte[(count + 7) / 8];
+				in.readFully(nulls);
+			}
+			switch (type) {
+			case TIMESTAMP:
+			case LONG:
+				long previous = 0;
+				for (int i = 0; i < count; i++) {
+					if (isNull(nulls, i)) {
+						values[i] = null;
+						continue;
+					}
+					previous += unzigzag(readVarLong(in));
+					values[i] = type == ColumnType.TIMESTAMP ? fromMicros(previous) : Long.valueOf(previous);
+				}
+				break;
+			case TEXT:
+			default:
+				int encoding = in.readUnsignedByte();
+				String[] dictionary = null;
+				if (encoding == DICTIONARY) {
+					dictionary = new String[(int) readVarLong(in)];
+					for (int d = 0; d < dictionary.length; d++) {
+						dictionary[d] = readString(in);
+					}
+				}
+				for (int i = 0; i < count; i++) {
+					if (isNull(nulls, i)) {
+						values[i] = null;
+					} else {
+						values[i] = dictionary != null ? dictionary[(int) readVarLong(in)] : readString(in);
+					}
+				}
+			}
+		}
+
+		private static boolean isNull(byte[] nulls, int i) {
+			return nulls != null && (nulls[i >> 3] & (1 << (i & 7))) != 0;
+		}
+	}
+
+	static long toMicros(Timestamp timestamp) {
+		return Math.floorDiv(timestamp.getTime(), 1000L) * 1000000L + timestamp.getNanos() / 1000;
+	}
+
+	static Timestamp fromMicros(long micros) {
+		Timestamp timestamp = new Timestamp(Math.floorDiv(micros, 1000000L) * 1000L);
+		timestamp.setNanos((int) Math.floorMod(micros, 1000000L) * 1000);
+		return timestamp;
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new EOFException("Truncated columnar file");
+			}
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint in columnar file");
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[(int) readVarLong(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
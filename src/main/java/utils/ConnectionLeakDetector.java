@@ -0,0 +1,374 @@
+package utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Diagnostic wrapper for connections handed out by {@link DatabaseUtility}.
+ *
+ * <p>
+ * When {@code database.diagnostics.leakDetection} is enabled every connection
+ * is wrapped in a proxy which records the DAO method that acquired it, the full
+ * acquisition stack, and every {@link Statement} and {@link ResultSet} created
+ * through it. Closing the connection while statements or result sets are still
+ * open is reported as a cursor leak against the acquiring call site, and
+ * connections left open longer than
+ * {@code database.diagnostics.leakThresholdMillis} are reported as suspected
+ * connection leaks together with the stack that acquired them.
+ * </p>
+ *
+ * <p>
+ * Hold times are aggregated per call site so that {@link #getReport()} can show
+ * hold-time percentiles for each DAO method. Capturing a stack trace on every
+ * acquisition is expensive, so this mode is meant for diagnosis rather than
+ * normal operation.
+ * </p>
+ */
+public class ConnectionLeakDetector {
+
+	private static final Logger LOGGER = Logger.getLogger(ConnectionLeakDetector.class.getName());
+
+	private final long leakThresholdMillis;
+	private final Map<String, CallSiteStats> callSites = new ConcurrentHashMap<>();
+	private final Set<TrackedConnection> openConnections = ConcurrentHashMap.newKeySet();
+
+	public ConnectionLeakDetector(long leakThresholdMillis) {
+		this.leakThresholdMillis = leakThresholdMillis;
+	}
+
+	/**
+	 * Wraps a connection so its statements, result sets and hold time are
+	 * tracked against the calling DAO method.
+	 *
+	 * @param connection the pooled connection
+	 * @return a tracking proxy for the connection
+	 */
+	public Connection track(Connection connection) {
+		StackTraceElement[] stack = new Throwable().getStackTrace();
+		String callSite = resolveCallSite(stack);
+		CallSiteStats stats = callSites.computeIfAbsent(callSite, CallSiteStats::new);
+		stats.acquisitions.incrementAndGet();
+		TrackedConnection tracked = new TrackedConnection(connection, stats, stack);
+		openConnections.add(tracked);
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, tracked);
+	}
+
+	/**
+	 * Returns per-call-site statistics, sorted by descending leak count and then
+	 * by descending 99th percentile hold time. Reports are computed one at a
+	 * time, so concurrent calls do not add to each other's leak counts.
+	 *
+	 * @return the call site statistics
+	 */
+	public synchronized List<CallSiteStats> getReport() {
+		long now = System.nanoTime();
+		for (CallSiteStats stats : callSites.values()) {
+			stats.suspectedConnectionLeaks.set(0);
+		}
+		for (TrackedConnection tracked : openConnections) {
+			if (TimeUnit.NANOSECONDS.toMillis(now - tracked.acquiredAt) > leakThresholdMillis) {
+				tracked.stats.suspectedConnectionLeaks.incrementAndGet();
+			}
+		}
+		List<CallSiteStats> report = new ArrayList<>(callSites.values());
+		Collections.sort(report, (a, b) -> {
+			int byLeaks = Long.compare(b.getTotalLeaks(), a.getTotalLeaks());
+			return byLeaks != 0 ? byLeaks : Long.compare(b.getHoldTimeP99Millis(), a.getHoldTimeP99Millis());
+		});
+		return report;
+	}
+
+	/**
+	 * Describes every connection currently open for longer than the leak
+	 * threshold, including the stack that acquired it.
+	 *
+	 * @return one multi-line description per suspected leak
+	 */
+	public List<String> getSuspectedLeaks() {
+		long now = System.nanoTime();
+		List<String> leaks = new ArrayList<>();
+		for (TrackedConnection tracked : openConnections) {
+			long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - tracked.acquiredAt);
+			if (heldMillis > leakThresholdMillis) {
+				StringBuilder description = new StringBuilder();
+				description.append(tracked.stats.callSite).append(" on ").append(tracked.threadName)
+						.append(" held for ").append(heldMillis).append(" ms with ")
+						.append(tracked.openStatements.size()).append(" open statements and ")
+						.append(tracked.openResultSets.size()).append(" open result sets");
+				for (StackTraceElement element : tracked.stack) {
+					description.append("\n\tat ").append(element);
+				}
+				leaks.add(description.toString());
+			}
+		}
+		return leaks;
+	}
+
+	/**
+	 * Writes the call site report and any suspected connection leaks to the log.
+	 */
+	public void logReport() {
+		StringBuilder report = new StringBuilder("Connection usage by call site:");
+		for (CallSiteStats stats : getReport()) {
+			report.append("\n  ").append(stats);
+		}
+		LOGGER.log(Level.INFO, report.toString());
+		for (String leak : getSuspectedLeaks()) {
+			LOGGER.log(Level.WARNING, "Suspected connection leak: " + leak);
+		}
+	}
+
+	/**
+	 * Finds the first stack frame outside of the utilities package, the JDK and
+	 * generated proxies, which is the DAO method asking for the connection.
+	 */
+	private static String resolveCallSite(StackTraceElement[] stack) {
+		for (StackTraceElement element : stack) {
+			String className = element.getClassName();
+			if (className.startsWith("utils.") || className.startsWith("java.") || className.startsWith("javax.")
+					|| className.startsWith("jdk.") || className.startsWith("sun.")
+					|| className.startsWith("com.sun.proxy.") || className.contains("$Proxy")) {
+				continue;
+			}
+			return className + "." + element.getMethodName();
+		}
+		return "unknown";
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static boolean isClose(Method method, Object[] args) {
+		return "close".equals(method.getName()) && (args == null || args.length == 0);
+	}
+
+	/**
+	 * Aggregated usage of connections acquired from a single DAO method.
+	 */
+	public static class CallSiteStats {
+
+		private final String callSite;
+		private final AtomicLong acquisitions = new AtomicLong();
+		private final AtomicLong leakedStatements = new AtomicLong();
+		private final AtomicLong leakedResultSets = new AtomicLong();
+		private final LatencyHistogram holdTimes = new LatencyHistogram();
+		private final AtomicLong suspectedConnectionLeaks = new AtomicLong();
+
+		CallSiteStats(String callSite) {
+			this.callSite = callSite;
+		}
+
+		public String getCallSite() {
+			return callSite;
+		}
+
+		public long getAcquisitions() {
+			return acquisitions.get();
+		}
+
+		/**
+		 * @return statements still open when their connection was closed
+		 */
+		public long getLeakedStatements() {
+			return leakedStatements.get();
+		}
+
+		/**
+		 * @return result sets still open when their connection was closed
+		 */
+		public long getLeakedResultSets() {
+			return leakedResultSets.get();
+		}
+
+		/**
+		 * @return connections from this call site currently open past the leak
+		 *         threshold, as of the last {@link ConnectionLeakDetector#getReport()}
+		 */
+		public long getSuspectedConnectionLeaks() {
+			return suspectedConnectionLeaks.get();
+		}
+
+		public long getTotalLeaks() {
+			return getLeakedStatements() + getLeakedResultSets() + getSuspectedConnectionLeaks();
+		}
+
+		public long getHoldTimeP50Millis() {
+			return holdTimes.getPercentileMillis(50);
+		}
+
+		public long getHoldTimeP90Millis() {
+			return holdTimes.getPercentileMillis(90);
+		}
+
+		public long getHoldTimeP99Millis() {
+			return holdTimes.getPercentileMillis(99);
+		}
+
+		@Override
+		public String toString() {
+			return callSite + "{" +
+					"acquisitions=" + getAcquisitions() +
+					", leakedStatements=" + getLeakedStatements() +
+					", leakedResultSets=" + getLeakedResultSets() +
+					", suspectedConnectionLeaks=" + getSuspectedConnectionLeaks() +
+					", holdP50=" + getHoldTimeP50Millis() +
+					", holdP90=" + getHoldTimeP90Millis() +
+					", holdP99=" + getHoldTimeP99Millis() +
+					'}';
+		}
+	}
+
+	private final class TrackedConnection implements InvocationHandler {
+
+		private final Connection delegate;
+		private final CallSiteStats stats;
+		private final StackTraceElement[] stack;
+		private final String threadName = Thread.currentThread().getName();
+		private final long acquiredAt = System.nanoTime();
+		private final Set<TrackedStatement> openStatements = ConcurrentHashMap.newKeySet();
+		private final Set<TrackedResultSet> openResultSets = ConcurrentHashMap.newKeySet();
+		private volatile boolean closed;
+
+		TrackedConnection(Connection delegate, CallSiteStats stats, StackTraceElement[] stack) {
+			this.delegate = delegate;
+			this.stats = stats;
+			this.stack = stack;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("equals".equals(name) && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(name) && (args == null || args.length == 0)) {
+				return System.identityHashCode(proxy);
+			}
+			if (isClose(method, args)) {
+				if (!closed) {
+					closed = true;
+					onClose();
+				}
+				return invoke(delegate, method, args);
+			}
+			Object result = invoke(delegate, method, args);
+			if (result instanceof Statement) {
+				return wrapStatement((Statement) result, method.getReturnType());
+			}
+			return result;
+		}
+
+		private Object wrapStatement(Statement statement, Class<?> returnType) {
+			Class<?> type = CallableStatement.class.isAssignableFrom(returnType) ? CallableStatement.class
+					: PreparedStatement.class.isAssignableFrom(returnType) ? PreparedStatement.class : Statement.class;
+			TrackedStatement tracked = new TrackedStatement(this, statement);
+			openStatements.add(tracked);
+			return Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type }, tracked);
+		}
+
+		private void onClose() {
+			openConnections.remove(this);
+			long heldMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - acquiredAt);
+			stats.holdTimes.record(heldMillis);
+			int leakedStatements = openStatements.size();
+			int leakedResultSets = openResultSets.size();
+			if (leakedStatements > 0 || leakedResultSets > 0) {
+				stats.leakedStatements.addAndGet(leakedStatements);
+				stats.leakedResultSets.addAndGet(leakedResultSets);
+				LOGGER.log(Level.WARNING, "Connection from " + stats.callSite + " closed with " + leakedStatements
+						+ " open statements and " + leakedResultSets + " open result sets");
+			}
+		}
+	}
+
+	private static final class TrackedStatement implements InvocationHandler {
+
+		private final TrackedConnection connection;
+		private final Statement delegate;
+		private final Set<TrackedResultSet> resultSets = ConcurrentHashMap.newKeySet();
+
+		TrackedStatement(TrackedConnection connection, Statement delegate) {
+			this.connection = connection;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("equals".equals(name) && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(name) && (args == null || args.length == 0)) {
+				return System.identityHashCode(proxy);
+			}
+			if (isClose(method, args)) {
+				connection.openStatements.remove(this);
+				// Closing a statement also closes its current result set.
+				for (TrackedResultSet resultSet : resultSets) {
+					connection.openResultSets.remove(resultSet);
+				}
+				resultSets.clear();
+				return invoke(delegate, method, args);
+			}
+			Object result = invoke(delegate, method, args);
+			if (result instanceof ResultSet) {
+				TrackedResultSet tracked = new TrackedResultSet(this, (ResultSet) result);
+				resultSets.add(tracked);
+				connection.openResultSets.add(tracked);
+				return Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class },
+						tracked);
+			}
+			return result;
+		}
+	}
+
+	private static final class TrackedResultSet implements InvocationHandler {
+
+		private final TrackedStatement statement;
+		private final ResultSet delegate;
+
+		TrackedResultSet(TrackedStatement statement, ResultSet delegate) {
+			this.statement = statement;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("equals".equals(name) && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(name) && (args == null || args.length == 0)) {
+				return System.identityHashCode(proxy);
+			}
+			if (isClose(method, args)) {
+				statement.resultSets.remove(this);
+				statement.connection.openResultSets.remove(this);
+			}
+			return invoke(delegate, method, args);
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Abstraction over the JDBC connection pool used by {@link DatabaseUtility}.
+ *
+ * <p>
+ * Implementations wrap a concrete pooling library and are selected through the
+ * {@code database.pool.provider} property. All sizing, timeout and statement
+ * cache settings come from {@link PoolSettings}.
+ * </p>
+ */
+public interface ConnectionPool extends AutoCloseable {
+
+	/**
+	 * Borrows a connection from the pool. Closing the returned connection
+	 * returns it to the pool.
+	 *
+	 * @return a pooled connection
+	 * @throws SQLException if no connection could be acquired within the
+	 *                      configured acquire timeout
+	 */
+	Connection getConnection() throws SQLException;
+
+	/**
+	 * @return a point-in-time snapshot of the pool's live metrics
+	 */
+	PoolMetrics getMetrics();
+
+	/**
+	 * @return a short name identifying the pooling library in use
+	 */
+	String getProviderName();
+
+	/**
+	 * Shuts the pool down and closes all physical connections.
+	 */
+	@Override
+	void close();
+}
@@ -0,0 +1,147 @@
+package utils;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Streams rows into a {@code COPY ... FROM STDIN} operation in PostgreSQL's
+ * text format.
+ *
+ * <p>
+ * Rows are encoded into a fixed-size buffer which is handed to the driver
+ * whenever it fills, so memory use does not depend on the number of rows.
+ * Values are escaped as the text format requires and null is written as
+ * {@code \N}. The connection must not be used for anything else until
+ * {@link #finish()} or {@link #cancel()} has been called.
+ * </p>
+ */
+public class CopyInWriter implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final CopyIn copyIn;
+	private final int columns;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private final StringBuilder row = new StringBuilder(256);
+	private int length;
+	private long rows;
+	private boolean done;
+
+	/**
+	 * Starts a COPY on the given connection.
+	 *
+	 * @param conn    the connection, possibly wrapped by the pool
+	 * @param copySql a {@code COPY table (columns) FROM STDIN} statement using the
+	 *                default text format
+	 * @param columns the number of columns each row must supply
+	 * @throws SQLException if the COPY cannot be started
+	 */
+	public CopyInWriter(Connection conn, String copySql, int columns) throws SQLException {
+		this.copyIn = conn.unwrap(PGConnection.class).getCopyAPI().copyIn(copySql);
+		this.columns = columns;
+	}
+
+	/**
+	 * Appends one row.
+	 *
+	 * @param values the column values in COPY column order; null for SQL NULL
+	 */
+	public void writeRow(Object... values) throws SQLException {
+		if (values.length != columns) {
+			throw new IllegalArgumentException("Expected " + columns + " values but got " + values.length);
+		}
+		row.setLength(0);
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				row.append('\t');
+			}
+			appendValue(values[i]);
+		}
+		row.append('\n');
+		byte[] bytes = row.toString().getBytes(StandardCharsets.UTF_8);
+		if (length + bytes.length > buffer.length) {
+			flush();
+		}
+		if (bytes.length > buffer.length) {
+			copyIn.writeToCopy(bytes, 0, bytes.length);
+		} else {
+			System.arraycopy(bytes, 0, buffer, length, bytes.length);
+			length += bytes.length;
+		}
+		rows++;
+	}
+
+	/**
+	 * Completes the COPY.
+	 *
+	 * @return the number of rows the server reports as copied
+	 */
+	public long finish() throws SQLException {
+		flush();
+		done = true;
+		return copyIn.endCopy();
+	}
+
+	/**
+	 * Aborts the COPY; the server discards every row written so far.
+	 */
+	public void cancel() throws SQLException {
+		if (!done && copyIn.isActive()) {
+			done = true;
+			copyIn.cancelCopy();
+		}
+	}
+
+	/**
+	 * @return the number of rows written so far
+	 */
+	public long getRowCount() {
+		return rows;
+	}
+
+	/**
+	 * Cancels the COPY unless it was finished.
+	 */
+	@Override
+	public void close() throws SQLException {
+		cancel();
+	}
+
+	private void flush() throws SQLException {
+		if (length > 0) {
+			copyIn.writeToCopy(buffer, 0, length);
+			length = 0;
+		}
+	}
+
+	private void appendValue(Object value) {
+		if (value == null) {
+			row.append("\\N");
+			return;
+		}
+		String text = value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			switch (c) {
+			case '\\':
+				row.append("\\\\");
+				break;
+			case '\t':
+				row.append("\\t");
+				break;
+			case '\n':
+				row.append("\\n");
+				break;
+			case '\r':
+				row.append("\\r");
+				break;
+			default:
+				row.append(c);
+			}
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link RecordReader} for RFC 4180 CSV. The first row names the fields.
+ * Quoted fields may contain commas, doubled quotes and line breaks. An empty
+ * unquoted field is read as null, a quoted empty field as an empty string.
+ */
+public class CsvRecordReader implements RecordReader {
+
+	private final BufferedReader in;
+	private final String[] header;
+	private long line = 1;
+	private long recordLine;
+	private boolean eof;
+
+	public CsvRecordReader(Reader source) throws IOException {
+		this.in = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+		List<String> names = readRow();
+		if (names == null) {
+			throw new IOException("CSV input has no header row");
+		}
+		this.header = new String[names.size()];
+		for (int i = 0; i < header.length; i++) {
+			String name = names.get(i);
+			header[i] = name == null ? "" : name.trim();
+		}
+	}
+
+	@Override
+	public Map<String, String> next() throws IOException {
+		List<String> values;
+		do {
+			values = readRow();
+			if (values == null) {
+				return null;
+			}
+			// Skip blank lines.
+		} while (values.size() == 1 && values.get(0) == null);
+		if (values.size() != header.length) {
+			throw new IOException("Line " + recordLine + ": expected " + header.length + " fields but found "
+					+ values.size());
+		}
+		Map<String, String> record = new HashMap<>(header.length * 2);
+		for (int i = 0; i < header.length; i++) {
+			record.put(header[i], values.get(i));
+		}
+		return record;
+	}
+
+	@Override
+	public long getLineNumber() {
+		return recordLine;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private List<String> readRow() throws IOException {
+		if (eof) {
+			return null;
+		}
+		recordLine = line;
+		List<String> values = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		boolean inQuotes = false;
+		boolean any = false;
+		while (true) {
+			int c = in.read();
+			if (c == -1) {
+				eof = true;
+				if (inQuotes) {
+					throw new IOException("Line " + recordLine + ": unterminated quoted field");
+				}
+				if (!any) {
+					return null;
+				}
+				values.add(value(field, quoted));
+				return values;
+			}
+			any = true;
+			if (inQuotes) {
+				if (c == '"') {
+					in.mark(1);
+					int next = in.read();
+					if (next == '"') {
+						field.append('"');
+					} else {
+						inQuotes = false;
+						if (next != -1) {
+							in.reset();
+						}
+					}
+				} else {
+					if (c == '\n') {
+						line++;
+					}
+					field.append((char) c);
+				}
+			} else if (c == '"' && field.length() == 0 && !quoted) {
+				inQuotes = true;
+				quoted = true;
+			} else if (c == ',') {
+				values.add(value(field, quoted));
+				field.setLength(0);
+				quoted = false;
+			} else if (c == '\n' || c == '\r') {
+				if (c == '\r') {
+					in.mark(1);
+					if (in.read() != '\n') {
+						in.reset();
+					}
+				}
+				line++;
+				values.add(value(field, quoted));
+				return values;
+			} else {
+				field.append((char) c);
+			}
+		}
+	}
+
+	private static String value(StringBuilder field, boolean quoted) {
+		if (!quoted && field.length() == 0) {
+			return null;
+		}
+		return field.toString();
+	}
+}
@@ -1,20 +1,17 @@
 package utils;
 
-import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Properties;
+import java.sql.Statement;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.mchange.v2.c3p0.ComboPooledDataSource;
-
 /**
  * The {@code DatabaseUtility} class is designed to manage database connections
- * efficiently through a connection pooling mechanism provided by the C3P0
- * library. This class is responsible for initializing and configuring the
+ * efficiently through a pluggable {@link ConnectionPool}, backed either by the
+ * C3P0 library or by HikariCP. This class is responsible for initializing and configuring the
  * connection pool, obtaining connections, and properly releasing database
  * resources.
  * 
@@ -29,15 +26,18 @@ import com.mchange.v2.c3p0.ComboPooledDataSource;
  * <p>
  * The configuration parameters for the database connection and the pool are
  * read from the {@code application.properties} file. This allows for easy
- * adjustments to settings such as database URL, username, password, and various
- * pooling parameters like minimum and maximum pool sizes.
+ * adjustments to settings such as database URL, username, password, the pool
+ * provider, and various pooling parameters like minimum and maximum pool sizes,
+ * acquire timeouts and the statement cache size (see {@link PoolSettings}).
  * </p>
  *
  * <p>
  * The class provides utility methods to:
  * </p>
  * <ul>
- * <li>Establish a connection to the database ({@code connect})</li>
+ * <li>Establish a connection to the database ({@code connect} or
+ * {@code getConnection})</li>
+ * <li>Inspect the pool's live metrics ({@code getPoolMetrics})</li>
  * <li>Disconnect a single connection ({@code disconnect(Connection)})</li>
  * <li>Disconnect all associated resources like connections, prepared
  * statements, and result sets
@@ -60,69 +60,115 @@ import com.mchange.v2.c3p0.ComboPooledDataSource;
  *
  * <p>
  * This class uses the Singleton design pattern to manage the single instance of
- * the {@code ComboPooledDataSource} ensuring that only one pool exists
- * throughout the application's lifecycle.
+ * the {@code ConnectionPool} ensuring that only one pool exists throughout the
+ * application's lifecycle.
  * </p>
  */
 public class DatabaseUtility {
 
 	private static final Logger LOGGER = Logger.getLogger(DatabaseUtility.class.getName());
-	private static ComboPooledDataSource dataSource;
+	private static ConnectionPool pool;
+	private static ConnectionLeakDetector leakDetector;
 
 	static {
 		try {
-			if (dataSource == null) {
-				// Initialize the ComboPooledDataSource
-				dataSource = new ComboPooledDataSource();
-				Properties prop = new Properties();
-				InputStream input = DatabaseUtility.class.getClassLoader()
-						.getResourceAsStream("application.properties");
-
-				if (input == null) {
-					LOGGER.log(Level.SEVERE, "Unable to find application.properties");
-				}
-
-				prop.load(input);
-				String jdbcURL = prop.getProperty("database.url");
-				String jdbcUsername = prop.getProperty("database.username");
-				String jdbcPassword = prop.getProperty("database.password");
-
-				dataSource.setDriverClass("org.postgresql.Driver"); // JDBC Driver
-				dataSource.setJdbcUrl(jdbcURL);
-				dataSource.setUser(jdbcUsername);
-				dataSource.setPassword(jdbcPassword);
-
-				// Configure C3P0 connection pool properties
-				dataSource.setMinPoolSize(5);
-				dataSource.setInitialPoolSize(5); // Set it to 5 or a higher value
-
-				dataSource.setAcquireIncrement(5);
-				dataSource.setMaxPoolSize(20);
-				dataSource.setMaxStatements(100);
+			if (pool == null) {
+				PoolSettings settings = PoolSettings.fromApplicationProperties();
+				pool = createPool(settings);
+				LOGGER.log(Level.INFO, "Initialized " + pool.getProviderName() + " connection pool: " + settings);
+			}
+			if (ApplicationProperties.getBoolean("database.diagnostics.leakDetection", false)) {
+				leakDetector = new ConnectionLeakDetector(
+						ApplicationProperties.getLong("database.diagnostics.leakThresholdMillis", 60000L));
+				LOGGER.log(Level.WARNING, "Connection leak detection is enabled; this adds overhead to every connect()");
 			}
-
 		} catch (Exception e) {
-			LOGGER.log(Level.SEVERE, "Error initializing C3P0 DataSource", e);
+			LOGGER.log(Level.SEVERE, "Error initializing connection pool", e);
 		}
 	}
 
+	/**
+	 * Creates the pool implementation named by {@code database.pool.provider}.
+	 *
+	 * @param settings the pool settings
+	 * @return the configured connection pool
+	 * @throws Exception if the pooling library rejects the configuration
+	 */
+	private static ConnectionPool createPool(PoolSettings settings) throws Exception {
+		if (PoolSettings.PROVIDER_HIKARI.equals(settings.getProvider())) {
+			return new HikariConnectionPool(settings);
+		}
+		if (!PoolSettings.PROVIDER_C3P0.equals(settings.getProvider())) {
+			LOGGER.log(Level.WARNING, "Unknown pool provider '" + settings.getProvider() + "', falling back to C3P0");
+		}
+		return new C3p0ConnectionPool(settings);
+	}
+
 	/**
 	 * Establishes and returns a connection to the database using the configured
-	 * data source.
+	 * connection pool.
 	 * 
 	 * @return a Connection object or null if a connection cannot be established
-	 * @throws SQLException if a database access error occurs
 	 */
 	public static Connection connect() {
 		try {
-			return dataSource.getConnection();
+			return getConnection();
 		} catch (SQLException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			LOGGER.log(Level.SEVERE, "Unable to acquire a database connection", e);
 		}
 		return null;
 	}
 
+	/**
+	 * Establishes and returns a connection to the database, propagating the
+	 * failure instead of returning null. New code should prefer this method over
+	 * {@link #connect()}.
+	 * 
+	 * @return a pooled Connection object
+	 * @throws SQLException if the pool is not initialized or no connection could
+	 *                      be acquired within the configured acquire timeout
+	 */
+	public static Connection getConnection() throws SQLException {
+		if (pool == null) {
+			throw new SQLException("Connection pool is not initialized");
+		}
+		Connection connection = pool.getConnection();
+		return leakDetector != null ? leakDetector.track(connection) : connection;
+	}
+
+	/**
+	 * Returns the connection leak detector when diagnostic mode is enabled with
+	 * {@code database.diagnostics.leakDetection=true}. The detector reports
+	 * leaked statements, result sets and connections, and hold-time percentiles,
+	 * per acquiring DAO method.
+	 * 
+	 * @return the leak detector, or null if diagnostic mode is disabled
+	 */
+	public static ConnectionLeakDetector getLeakDetector() {
+		return leakDetector;
+	}
+
+	/**
+	 * Returns a snapshot of the connection pool's live metrics: active, idle and
+	 * pending connections, the acquire-wait histogram and connections held
+	 * longer than {@code database.pool.longHoldThresholdMillis}.
+	 * 
+	 * @return the pool metrics, or null if the pool failed to initialize
+	 */
+	public static PoolMetrics getPoolMetrics() {
+		return pool != null ? pool.getMetrics() : null;
+	}
+
+	/**
+	 * Shuts down the connection pool, closing all physical connections. Intended
+	 * to be called once when the application is undeployed.
+	 */
+	public static void shutdown() {
+		if (pool != null) {
+			pool.close();
+		}
+	}
+
 	/**
 	 * Closes the database connection if it is not null.
 	 * 
@@ -172,4 +218,47 @@ public class DatabaseUtility {
 			}
 		}
 	}
+
+	/**
+	 * Closes the result set, statement and connection in that order. Any of the
+	 * arguments may be null. Unlike the instance method
+	 * {@link #disconnect(Connection, PreparedStatement, ResultSet)} this accepts
+	 * any kind of {@link Statement}.
+	 *
+	 * @param connection the Connection to close
+	 * @param statement  the Statement to close
+	 * @param resultSet  the ResultSet to close
+	 */
+	public static void closeConnection(Connection connection, Statement statement, ResultSet resultSet) {
+		closeQuietly(resultSet);
+		closeStatement(statement);
+		disconnect(connection);
+	}
+
+	/**
+	 * Closes the statement if it is not null, logging rather than propagating
+	 * any failure.
+	 *
+	 * @param statement the Statement to close
+	 */
+	public static void closeStatement(Statement statement) {
+		closeQuietly(statement);
+	}
+
+	/**
+	 * Closes a JDBC resource if it is not null, logging rather than propagating
+	 * any failure. Statements and result sets must be closed before the
+	 * connection that created them.
+	 *
+	 * @param resource the resource to close
+	 */
+	public static void closeQuietly(AutoCloseable resource) {
+		if (resource != null) {
+			try {
+				resource.close();
+			} catch (Exception e) {
+				LOGGER.log(Level.WARNING, "Error closing " + resource.getClass().getSimpleName(), e);
+			}
+		}
+	}
 }
@@ -0,0 +1,285 @@
+package utils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Derives what a reviewer needs to recognise a document without opening it:
+ * the start of its plain text and a small image of its first page.
+ *
+ * <p>
+ * A {@link Deriver} is registered per file format. Text formats (plain text,
+ * CSV, logs, JSON, XML, HTML, e-mail and RTF) yield their text, with markup
+ * removed, up to {@code derivation.maxTextChars} characters. Every raster
+ * format the platform's ImageIO can read yields a PNG preview whose longer
+ * edge is {@code derivation.previewSize} pixels; large scans are subsampled
+ * while they are decoded, so a preview never needs the full image in memory.
+ * Formats that need a rendering library, such as PDF and office documents,
+ * have no built-in deriver; {@link #register} adds one.
+ * </p>
+ */
+public final class DocumentDerivers {
+
+	public static final int MAX_TEXT_CHARS = ApplicationProperties.getInt("derivation.maxTextChars", 200000);
+	public static final int PREVIEW_SIZE = ApplicationProperties.getInt("derivation.previewSize", 320);
+
+	private static final String[] TEXT_FORMATS = { "txt", "text", "csv", "tsv", "log", "json", "md", "eml" };
+	private static final String[] MARKUP_FORMATS = { "xml", "html", "htm", "xhtml" };
+
+	private static final Pattern SCRIPTS = Pattern.compile("(?is)<(script|style)\\b.*?</\\1\\s*>");
+	private static final Pattern TAGS = Pattern.compile("(?s)<[^>]*>");
+	/** Groups holding no document text: fonts, colours, styles, metadata, pictures and optional destinations. */
+	private static final Pattern RTF_SKIPPED_GROUP = Pattern.compile("\\\\(\\*|fonttbl|colortbl|stylesheet|info|pict)");
+	private static final Pattern RTF_CONTROL = Pattern.compile("(?s)\\\\(?:([a-z]+)-?\\d* ?|'([0-9a-f]{2})|(.))");
+	private static final Pattern BLANK_LINES = Pattern.compile("\\n[ \\t]*(\\n[ \\t]*)+");
+
+	private static final ConcurrentMap<String, Deriver> DERIVERS = new ConcurrentHashMap<>();
+
+	static {
+		for (String format : TEXT_FORMATS) {
+			register(format, (content, fileFormat) -> text(read(content)));
+		}
+		for (String format : MARKUP_FORMATS) {
+			register(format, (content, fileFormat) -> text(stripMarkup(read(content))));
+		}
+		register("rtf", (content, fileFormat) -> text(stripRtf(read(content))));
+		for (String format : ImageIO.getReaderFileSuffixes()) {
+			register(format, DocumentDerivers::preview);
+		}
+	}
+
+	/**
+	 * Derives a document's text and preview from its content.
+	 */
+	public interface Deriver {
+		/**
+		 * @param content    the document, to be read but not closed
+		 * @param fileFormat the format it is registered for
+		 * @throws IOException if the content cannot be read or decoded; the
+		 *                     derivation may be retried
+		 */
+		Derivative derive(InputStream content, String fileFormat) throws IOException;
+	}
+
+	/** What was derived from a document; either part may be missing. */
+	public static final class Derivative {
+		private final String text;
+		private final boolean textTruncated;
+		private final byte[] preview;
+		private final String previewFormat;
+
+		public Derivative(String text, boolean textTruncated, byte[] preview, String previewFormat) {
+			this.text = text;
+			this.textTruncated = textTruncated;
+			this.preview = preview;
+			this.previewFormat = previewFormat;
+		}
+
+		/**
+		 * @return the document's plain text, or null if it has none
+		 */
+		public String getText() {
+			return text;
+		}
+
+		/**
+		 * @return true if the text stops at {@code derivation.maxTextChars}
+		 */
+		public boolean isTextTruncated() {
+			return textTruncated;
+		}
+
+		/**
+		 * @return the encoded preview image, or null if there is none
+		 */
+		public byte[] getPreview() {
+			return preview;
+		}
+
+		/**
+		 * @return the preview's media type, such as {@code image/png}
+		 */
+		public String getPreviewFormat() {
+			return previewFormat;
+		}
+	}
+
+	private DocumentDerivers() {
+	}
+
+	/**
+	 * Registers the deriver for a format, replacing any built-in one.
+	 *
+	 * @param fileFormat the format as stored with documents, such as
+	 *                   {@code pdf}; case and a leading dot are ignored
+	 */
+	public static void register(String fileFormat, Deriver deriver) {
+		DERIVERS.put(normalize(fileFormat), deriver);
+	}
+
+	/**
+	 * @return the deriver for a format, or null if it has none
+	 */
+	public static Deriver forFormat(String fileFormat) {
+		return fileFormat == null ? null : DERIVERS.get(normalize(fileFormat));
+	}
+
+	/**
+	 * @return the format lower-cased without a leading dot, as used for
+	 *         registration and throttling
+	 */
+	public static String normalize(String fileFormat) {
+		String format = fileFormat.trim().toLowerCase(Locale.ROOT);
+		return format.startsWith(".") ? format.substring(1) : format;
+	}
+
+	/**
+	 * Reads up to one character more than {@code derivation.maxTextChars}, so
+	 * that truncation can be detected, as UTF-8 with malformed bytes replaced.
+	 */
+	private static String read(InputStream content) throws IOException {
+		Reader reader = new InputStreamReader(content, StandardCharsets.UTF_8.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE));
+		char[] buffer = new char[MAX_TEXT_CHARS + 1];
+		int length = 0;
+		int read;
+		while (length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) >= 0) {
+			length += read;
+		}
+		return new String(buffer, 0, length);
+	}
+
+	/**
+	 * Cleans text for storage and search: PostgreSQL text cannot hold NUL
+	 * characters, and line endings and blank runs are normalised.
+	 */
+	private static Derivative text(String raw) {
+		boolean truncated = raw.length() > MAX_TEXT_CHARS;
+		String text = truncated ? raw.substring(0, MAX_TEXT_CHARS) : raw;
+		text = text.replace("\u0000", "").replace("\r\n", "\n").replace('\r', '\n');
+		text = BLANK_LINES.matcher(text).replaceAll("\n\n").trim();
+		return new Derivative(text.isEmpty() ? null : text, truncated, null, null);
+	}
+
+	private static String stripMarkup(String markup) {
+		String text = SCRIPTS.matcher(markup).replaceAll(" ");
+		text = TAGS.matcher(text).replaceAll(" ");
+		return text.replace("&nbsp;", " ").replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+				.replace("&#39;", "'").replace("&apos;", "'").replace("&amp;", "&");
+	}
+
+	/**
+	 * Keeps the text of an RTF document: control words are dropped apart from
+	 * line breaks, tabs and escaped characters, and so are whole groups that
+	 * hold no text, such as the font table.
+	 */
+	private static String stripRtf(String rtf) {
+		StringBuilder text = new StringBuilder();
+		Matcher control = RTF_CONTROL.matcher(rtf);
+		Matcher skipped = RTF_SKIPPED_GROUP.matcher(rtf);
+		int i = 0;
+		while (i < rtf.length()) {
+			char c = rtf.charAt(i);
+			if (c == '{' && skipped.region(i + 1, rtf.length()).lookingAt()) {
+				i = skipGroup(rtf, i);
+			} else if (c == '\\' && control.region(i, rtf.length()).lookingAt()) {
+				String word = control.group(1);
+				if ("par".equals(word) || "line".equals(word)) {
+					text.append('\n');
+				} else if ("tab".equals(word)) {
+					text.append('\t');
+				} else if (control.group(2) != null) {
+					text.append((char) Integer.parseInt(control.group(2), 16));
+				} else if (control.group(3) != null && "\\{}".contains(control.group(3))) {
+					text.append(control.group(3));
+				}
+				i = control.end();
+			} else {
+				// Braces delimit groups and raw line breaks are not part of the text.
+				if (c != '{' && c != '}' && c != '\r' && c != '\n') {
+					text.append(c);
+				}
+				i++;
+			}
+		}
+		return text.toString();
+	}
+
+	/**
+	 * @return the index after the group opening at {@code start}
+	 */
+	private static int skipGroup(String rtf, int start) {
+		int depth = 0;
+		for (int i = start; i < rtf.length(); i++) {
+			char c = rtf.charAt(i);
+			if (c == '\\') {
+				i++;
+			} else if (c == '{') {
+				depth++;
+			} else if (c == '}' && --depth == 0) {
+				return i + 1;
+			}
+		}
+		return rtf.length();
+	}
+
+	/**
+	 * Decodes the first image, subsampled to about twice the preview size,
+	 * and scales it to the preview size on a white background.
+	 */
+	private static Derivative preview(InputStream content, String fileFormat) throws IOException {
+		try (ImageInputStream input = ImageIO.createImageInputStream(content)) {
+			Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+			if (readers == null || !readers.hasNext()) {
+				throw new IOException("No image reader for " + fileFormat + " content");
+			}
+			ImageReader reader = readers.next();
+			try {
+				reader.setInput(input, true, true);
+				int width = reader.getWidth(0);
+				int height = reader.getHeight(0);
+				ImageReadParam param = reader.getDefaultReadParam();
+				int subsampling = Math.max(1, Math.max(width, height) / (PREVIEW_SIZE * 2));
+				param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+				BufferedImage image = reader.read(0, param);
+				double scale = Math.min(1.0, (double) PREVIEW_SIZE / Math.max(image.getWidth(), image.getHeight()));
+				int previewWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+				int previewHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+				BufferedImage preview = new BufferedImage(previewWidth, previewHeight, BufferedImage.TYPE_INT_RGB);
+				Graphics2D g = preview.createGraphics();
+				try {
+					g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+					g.setColor(Color.WHITE);
+					g.fillRect(0, 0, previewWidth, previewHeight);
+					g.drawImage(image, 0, 0, previewWidth, previewHeight, null);
+				} finally {
+					g.dispose();
+				}
+				ByteArrayOutputStream png = new ByteArrayOutputStream();
+				ImageIO.write(preview, "png", png);
+				return new Derivative(null, false, png.toByteArray(), "image/png");
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+}
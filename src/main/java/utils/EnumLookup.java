@@ -0,0 +1,54 @@
+package utils;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Precomputed, case-tolerant lookup from database strings to enum constants.
+ *
+ * <p>
+ * Both the exact constant name and its lower-case form are indexed, so values
+ * stored as {@code 'in_progress'} or {@code 'IN_PROGRESS'} resolve to the same
+ * constant without allocating an upper-cased copy per row. Only other
+ * spellings, such as {@code 'In_Progress'}, are trimmed and upper-cased.
+ * Instances are immutable and meant to be held in static fields.
+ * </p>
+ *
+ * @param <E> the enum type
+ */
+public final class EnumLookup<E extends Enum<E>> {
+
+	private final Class<E> type;
+	private final Map<String, E> constants = new HashMap<>();
+
+	public EnumLookup(Class<E> type) {
+		this.type = type;
+		for (E constant : type.getEnumConstants()) {
+			constants.put(constant.name(), constant);
+			constants.put(constant.name().toLowerCase(Locale.ROOT), constant);
+		}
+	}
+
+	/**
+	 * Resolves a database value to its enum constant.
+	 *
+	 * @param value the stored value, may be null
+	 * @return the matching constant, or null if {@code value} is null
+	 * @throws IllegalArgumentException if the value matches no constant, as
+	 *                                  {@link Enum#valueOf(Class, String)} would
+	 */
+	public E lookup(String value) {
+		if (value == null) {
+			return null;
+		}
+		E constant = constants.get(value);
+		if (constant == null) {
+			constant = constants.get(value.trim().toUpperCase(Locale.ROOT));
+		}
+		if (constant == null) {
+			throw new IllegalArgumentException("No enum constant " + type.getName() + "." + value);
+		}
+		return constant;
+	}
+}
@@ -0,0 +1,80 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+/**
+ * {@link ConnectionPool} backed by HikariCP, a lower-overhead alternative to
+ * C3P0 selected with {@code database.pool.provider=hikari}.
+ *
+ * <p>
+ * HikariCP does not cache statements itself, so the configured statement cache
+ * size is handed to the PostgreSQL driver's per-connection prepared statement
+ * cache instead.
+ * </p>
+ */
+public class HikariConnectionPool extends InstrumentedConnectionPool {
+
+	private final HikariDataSource dataSource;
+
+	public HikariConnectionPool(PoolSettings settings) {
+		super(settings);
+		HikariConfig config = new HikariConfig();
+		config.setPoolName("pharma-pool");
+		config.setDriverClassName("org.postgresql.Driver");
+		config.setJdbcUrl(settings.getJdbcUrl());
+		config.setUsername(settings.getUsername());
+		config.setPassword(settings.getPassword());
+
+		config.setMinimumIdle(settings.getMinSize());
+		config.setMaximumPoolSize(settings.getMaxSize());
+		config.setConnectionTimeout(settings.getAcquireTimeoutMillis());
+		config.setIdleTimeout(settings.getIdleTimeoutSeconds() * 1000L);
+		config.setMaxLifetime(settings.getMaxLifetimeSeconds() * 1000L);
+		config.addDataSourceProperty("preparedStatementCacheQueries", settings.getStatementCacheSize());
+		dataSource = new HikariDataSource(config);
+	}
+
+	@Override
+	protected Connection acquire() throws SQLException {
+		return dataSource.getConnection();
+	}
+
+	@Override
+	protected int getTotalConnections() {
+		HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+		return pool != null ? pool.getTotalConnections() : 0;
+	}
+
+	@Override
+	protected int getActiveConnections() {
+		HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+		return pool != null ? pool.getActiveConnections() : 0;
+	}
+
+	@Override
+	protected int getIdleConnections() {
+		HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+		return pool != null ? pool.getIdleConnections() : 0;
+	}
+
+	@Override
+	protected int getPendingAcquires() {
+		HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+		return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+	}
+
+	@Override
+	public String getProviderName() {
+		return PoolSettings.PROVIDER_HIKARI;
+	}
+
+	@Override
+	public void close() {
+		dataSource.close();
+	}
+}
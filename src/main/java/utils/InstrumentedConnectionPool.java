@@ -0,0 +1,150 @@
+package utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base class for {@link ConnectionPool} implementations which records
+ * library-independent metrics.
+ *
+ * <p>
+ * Every call to {@link #getConnection()} is timed into an acquire-wait
+ * histogram, and every connection handed out is wrapped so the pool knows how
+ * long it has been checked out. Connections held longer than the configured
+ * threshold are listed in {@link PoolMetrics} while they are still open and
+ * logged once they are returned.
+ * </p>
+ */
+public abstract class InstrumentedConnectionPool implements ConnectionPool {
+
+	private static final Logger LOGGER = Logger.getLogger(InstrumentedConnectionPool.class.getName());
+
+	private final PoolSettings settings;
+	private final LatencyHistogram acquireWait = new LatencyHistogram();
+	private final LongAdder acquireFailures = new LongAdder();
+	private final Set<HeldConnection> heldConnections = ConcurrentHashMap.newKeySet();
+
+	protected InstrumentedConnectionPool(PoolSettings settings) {
+		this.settings = settings;
+	}
+
+	/**
+	 * Borrows a physical pooled connection from the underlying library.
+	 *
+	 * @return the library's pooled connection
+	 * @throws SQLException if acquisition fails or times out
+	 */
+	protected abstract Connection acquire() throws SQLException;
+
+	protected abstract int getTotalConnections();
+
+	protected abstract int getActiveConnections();
+
+	protected abstract int getIdleConnections();
+
+	protected abstract int getPendingAcquires();
+
+	protected PoolSettings getSettings() {
+		return settings;
+	}
+
+	@Override
+	public final Connection getConnection() throws SQLException {
+		long start = System.nanoTime();
+		Connection connection;
+		try {
+			connection = acquire();
+		} catch (SQLException e) {
+			acquireFailures.increment();
+			throw e;
+		} finally {
+			acquireWait.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+		}
+		HeldConnection held = new HeldConnection(connection);
+		heldConnections.add(held);
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, held);
+	}
+
+	@Override
+	public PoolMetrics getMetrics() {
+		long now = System.nanoTime();
+		long threshold = settings.getLongHoldThresholdMillis();
+		List<String> longHeld = new ArrayList<>();
+		for (HeldConnection held : heldConnections) {
+			long heldMillis = TimeUnit.NANOSECONDS.toMillis(now - held.acquiredAt);
+			if (heldMillis > threshold) {
+				longHeld.add(held.threadName + " held for " + heldMillis + " ms");
+			}
+		}
+		return new PoolMetrics(getProviderName(), getTotalConnections(), getActiveConnections(),
+				getIdleConnections(), getPendingAcquires(), settings.getMaxSize(), acquireFailures.sum(), acquireWait,
+				threshold, longHeld);
+	}
+
+	private void release(HeldConnection held) {
+		heldConnections.remove(held);
+		long heldMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - held.acquiredAt);
+		if (heldMillis > settings.getLongHoldThresholdMillis()) {
+			LOGGER.log(Level.WARNING, "Connection held by " + held.threadName + " for " + heldMillis
+					+ " ms (threshold " + settings.getLongHoldThresholdMillis() + " ms)");
+		}
+	}
+
+	/**
+	 * Tracks one checked-out connection and forwards every call to it. The
+	 * first {@code close()} returns the connection to the pool and stops the
+	 * hold-time clock.
+	 */
+	private final class HeldConnection implements InvocationHandler {
+
+		private final Connection delegate;
+		private final long acquiredAt = System.nanoTime();
+		private final String threadName = Thread.currentThread().getName();
+		private volatile boolean released;
+
+		HeldConnection(Connection delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if ("equals".equals(name) && args != null && args.length == 1) {
+				return proxy == args[0];
+			}
+			if ("hashCode".equals(name) && (args == null || args.length == 0)) {
+				return System.identityHashCode(proxy);
+			}
+			if ("close".equals(name) && (args == null || args.length == 0)) {
+				if (released) {
+					return null;
+				}
+				released = true;
+				try {
+					delegate.close();
+				} finally {
+					release(this);
+				}
+				return null;
+			}
+			try {
+				return method.invoke(delegate, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
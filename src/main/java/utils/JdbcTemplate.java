@@ -0,0 +1,518 @@
+package utils;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Shared JDBC execution core for the DAO layer.
+ *
+ * <p>
+ * Each method performs the connect / prepare / bind / execute / map / close
+ * sequence that DAOs previously wrote by hand, closing the result set, the
+ * statement and the connection in that order even when mapping fails. Rows are
+ * mapped through a reusable {@link RowMapper}, whose column indexes are
+ * resolved once per result-set shape rather than once per row.
+ * </p>
+ *
+ * <p>
+ * Only {@link PreparedStatement}s with constant SQL text are used, so repeated
+ * calls hit the pool's statement cache ({@code database.pool.statementCacheSize})
+ * and the server-side prepared statements it keeps. Methods accepting a
+ * {@link Connection} run on a caller-managed connection, which lets several
+ * statements share one connection or transaction; the caller then remains
+ * responsible for closing it.
+ * </p>
+ *
+ * <p>
+ * Errors are propagated as {@link SQLException}; DAOs keep their existing
+ * catch-and-log handling around these calls.
+ * </p>
+ */
+public final class JdbcTemplate {
+
+	private static final Logger LOGGER = Logger.getLogger(JdbcTemplate.class.getName());
+
+	/**
+	 * Rows fetched per round trip by the streaming methods, from
+	 * {@code database.streaming.fetchSize}.
+	 */
+	public static final int STREAMING_FETCH_SIZE = ApplicationProperties.getInt("database.streaming.fetchSize", 500);
+
+	/**
+	 * Rows sent per JDBC batch by {@link #batchInsert}, from
+	 * {@code database.batch.size}.
+	 */
+	public static final int BATCH_SIZE = ApplicationProperties.getInt("database.batch.size", 500);
+
+	private JdbcTemplate() {
+	}
+
+	/**
+	 * Runs a query and maps every row.
+	 *
+	 * @param sql    the SQL text
+	 * @param binder binds the statement parameters
+	 * @param mapper maps each row
+	 * @return the mapped rows, never null
+	 * @throws SQLException if the query fails
+	 */
+	public static <T> List<T> query(String sql, StatementBinder binder, RowMapper<T> mapper) throws SQLException {
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			return query(conn, sql, binder, mapper);
+		}
+	}
+
+	/**
+	 * Runs a query on a caller-managed connection and maps every row.
+	 */
+	public static <T> List<T> query(Connection conn, String sql, StatementBinder binder, RowMapper<T> mapper)
+			throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			binder.bind(ps);
+			try (ResultSet rs = ps.executeQuery()) {
+				List<T> rows = new ArrayList<>();
+				int[] indexes = mapper.resolveColumns(rs.getMetaData());
+				while (rs.next()) {
+					rows.add(mapper.mapRow(rs, indexes));
+				}
+				return rows;
+			}
+		}
+	}
+
+	/**
+	 * Runs a query expected to return at most one row.
+	 *
+	 * @return the first mapped row, or null if the query returned no rows
+	 * @throws SQLException if the query fails
+	 */
+	public static <T> T queryForObject(String sql, StatementBinder binder, RowMapper<T> mapper)
+			throws SQLException {
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			return queryForObject(conn, sql, binder, mapper);
+		}
+	}
+
+	/**
+	 * Runs a query expected to return at most one row on a caller-managed
+	 * connection.
+	 */
+	public static <T> T queryForObject(Connection conn, String sql, StatementBinder binder, RowMapper<T> mapper)
+			throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			binder.bind(ps);
+			ps.setMaxRows(1);
+			try (ResultSet rs = ps.executeQuery()) {
+				if (!rs.next()) {
+					return null;
+				}
+				return mapper.mapRow(rs, mapper.resolveColumns(rs.getMetaData()));
+			}
+		}
+	}
+
+	/**
+	 * Runs a keyset-paginated query and returns one page.
+	 *
+	 * <p>
+	 * The SQL must order by {@code sortColumn} then {@code id} and end with a
+	 * {@code LIMIT} which the binder sets to {@code pageSize + 1}; the extra row
+	 * only signals that another page exists and is not mapped. The continuation
+	 * token is built from the last mapped row.
+	 * </p>
+	 *
+	 * <p>
+	 * The sort column must never be NULL: a row comparison against a NULL key
+	 * matches no row, so paging would stop there. Select a nullable column
+	 * through {@code COALESCE} to a value that sorts where its NULLs should,
+	 * and order, seek and index by that expression.
+	 * </p>
+	 *
+	 * @param sql         the SQL text
+	 * @param binder      binds the statement parameters, including the limit
+	 * @param mapper      maps each row
+	 * @param sortColumn  the label of the leading sort column
+	 * @param fingerprint identifies the ordering, see {@link KeysetCursor}
+	 * @param pageSize    the maximum number of rows to return
+	 * @return the page, never null
+	 * @throws SQLException if the query fails
+	 * @throws IllegalStateException if the last row's sort column is NULL
+	 */
+	public static <T> KeysetPage<T> queryPage(String sql, StatementBinder binder, RowMapper<T> mapper,
+			String sortColumn, String fingerprint, int pageSize) throws SQLException {
+		try (Connection conn = DatabaseUtility.getConnection();
+				PreparedStatement ps = conn.prepareStatement(sql)) {
+			binder.bind(ps);
+			try (ResultSet rs = ps.executeQuery()) {
+				List<T> rows = new ArrayList<>();
+				int[] indexes = mapper.resolveColumns(rs.getMetaData());
+				int sortIndex = rs.findColumn(sortColumn);
+				int idIndex = rs.findColumn("id");
+				long lastId = 0;
+				String lastSortKey = null;
+				while (rows.size() < pageSize && rs.next()) {
+					rows.add(mapper.mapRow(rs, indexes));
+					lastId = rs.getLong(idIndex);
+					lastSortKey = rs.getString(sortIndex);
+				}
+				String nextToken = null;
+				if (!rows.isEmpty() && rs.next()) {
+					if (lastSortKey == null) {
+						throw new IllegalStateException("Keyset sort column " + sortColumn + " is NULL; select it through COALESCE");
+					}
+					nextToken = new KeysetCursor(fingerprint, lastId, lastSortKey).encode();
+				}
+				return new KeysetPage<>(rows, nextToken);
+			}
+		}
+	}
+
+	/**
+	 * Runs a query through a server-side cursor and returns its rows as a lazily
+	 * consumed stream.
+	 *
+	 * <p>
+	 * The PostgreSQL driver only honours the fetch size inside a transaction, so
+	 * the connection is switched out of autocommit for the lifetime of the
+	 * stream and rows are pulled {@link #STREAMING_FETCH_SIZE} at a time; heap
+	 * use stays bounded by one fetch regardless of the result size. The stream
+	 * holds a pooled connection until it is closed or fully consumed, so callers
+	 * must use it in a try-with-resources block:
+	 * </p>
+	 *
+	 * <pre>{@code
+	 * try (Stream<Reports> reports = JdbcTemplate.stream(sql, StatementBinder.NONE, RowMappers.REPORTS)) {
+	 * 	reports.forEach(writer::write);
+	 * }
+	 * }</pre>
+	 *
+	 * <p>
+	 * Errors raised while iterating are thrown as {@link UncheckedSQLException}.
+	 * </p>
+	 *
+	 * @param sql    the SQL text
+	 * @param binder binds the statement parameters
+	 * @param mapper maps each row
+	 * @return a sequential stream of the mapped rows
+	 * @throws SQLException if the query cannot be started
+	 */
+	public static <T> Stream<T> stream(String sql, StatementBinder binder, RowMapper<T> mapper) throws SQLException {
+		return stream(sql, binder, mapper, STREAMING_FETCH_SIZE);
+	}
+
+	/**
+	 * Runs a query through a server-side cursor with the given fetch size and
+	 * returns its rows as a lazily consumed stream.
+	 */
+	public static <T> Stream<T> stream(String sql, StatementBinder binder, RowMapper<T> mapper, int fetchSize)
+			throws SQLException {
+		StreamingCursor<T> cursor = new StreamingCursor<>(DatabaseUtility.getConnection(), sql, binder, mapper,
+				fetchSize);
+		return StreamSupport.stream(cursor, false).onClose(cursor::close);
+	}
+
+	/**
+	 * Runs a query through a server-side cursor and passes each mapped row to
+	 * the callback as it is read. The connection is released before returning.
+	 *
+	 * @param sql    the SQL text
+	 * @param binder binds the statement parameters
+	 * @param mapper maps each row
+	 * @param action receives each row in order
+	 * @return the number of rows processed
+	 * @throws SQLException if the query fails
+	 */
+	public static <T> long forEach(String sql, StatementBinder binder, RowMapper<T> mapper, Consumer<? super T> action)
+			throws SQLException {
+		StreamingCursor<T> cursor = new StreamingCursor<>(DatabaseUtility.getConnection(), sql, binder, mapper,
+				STREAMING_FETCH_SIZE);
+		try {
+			long rows = 0;
+			T row;
+			while ((row = cursor.next()) != null) {
+				action.accept(row);
+				rows++;
+			}
+			return rows;
+		} finally {
+			cursor.close();
+		}
+	}
+
+	/**
+	 * Runs an INSERT, UPDATE or DELETE statement.
+	 *
+	 * @return the number of affected rows
+	 * @throws SQLException if the statement fails
+	 */
+	public static int update(String sql, StatementBinder binder) throws SQLException {
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			return update(conn, sql, binder);
+		}
+	}
+
+	/**
+	 * Runs an INSERT, UPDATE or DELETE statement on a caller-managed connection.
+	 */
+	public static int update(Connection conn, String sql, StatementBinder binder) throws SQLException {
+		try (PreparedStatement ps = conn.prepareStatement(sql)) {
+			binder.bind(ps);
+			return ps.executeUpdate();
+		}
+	}
+
+	/**
+	 * Inserts many rows in one transaction using JDBC batching and returns the
+	 * generated id of each row.
+	 *
+	 * <p>
+	 * Rows are sent {@link #BATCH_SIZE} at a time, each batch under its own
+	 * savepoint. With the driver's {@code reWriteBatchedInserts=true} URL option
+	 * a batch travels as a single multi-row {@code INSERT}. If a batch fails it
+	 * is rolled back to its savepoint and replayed row by row, each row under its
+	 * own savepoint, so that only the offending rows are reported as failed and
+	 * the rest are still inserted. Rows the binder rejects with
+	 * {@link IllegalArgumentException} never reach the database.
+	 * </p>
+	 *
+	 * @param sql     an INSERT statement whose table has a generated {@code id}
+	 *                column
+	 * @param rows    the rows to insert
+	 * @param binder  binds one row
+	 * @return the per-row outcome
+	 * @throws SQLException if the connection fails or the transaction cannot be
+	 *                      committed, in which case nothing was inserted
+	 */
+	public static <T> BatchResult batchInsert(String sql, List<T> rows, RowBinder<T> binder) throws SQLException {
+		if (rows.isEmpty()) {
+			return new BatchResult(0);
+		}
+		try (Connection conn = DatabaseUtility.getConnection()) {
+			boolean autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+			try {
+				BatchResult result = batchInsert(conn, sql, rows, binder);
+				conn.commit();
+				return result;
+			} catch (SQLException | RuntimeException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(autoCommit);
+			}
+		}
+	}
+
+	/**
+	 * Inserts many rows as {@link #batchInsert(String, List, RowBinder)} does,
+	 * on a caller-managed connection that must have auto-commit off. Nothing
+	 * is committed, so the caller can write related rows in the same
+	 * transaction.
+	 */
+	public static <T> BatchResult batchInsert(Connection conn, String sql, List<T> rows, RowBinder<T> binder)
+			throws SQLException {
+		BatchResult result = new BatchResult(rows.size());
+		if (rows.isEmpty()) {
+			return result;
+		}
+		try (PreparedStatement ps = conn.prepareStatement(sql, new String[] { "id" })) {
+			List<Integer> pending = new ArrayList<>();
+			for (int start = 0; start < rows.size(); start += BATCH_SIZE) {
+				int end = Math.min(start + BATCH_SIZE, rows.size());
+				pending.clear();
+				for (int i = start; i < end; i++) {
+					try {
+						binder.bind(ps, rows.get(i));
+						ps.addBatch();
+						pending.add(i);
+					} catch (IllegalArgumentException e) {
+						ps.clearParameters();
+						result.recordFailure(i, e.getMessage());
+					}
+				}
+				if (!pending.isEmpty()) {
+					executeChunk(conn, ps, rows, binder, pending, result);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static <T> void executeChunk(Connection conn, PreparedStatement ps, List<T> rows, RowBinder<T> binder,
+			List<Integer> positions, BatchResult result) throws SQLException {
+		Savepoint chunk = conn.setSavepoint();
+		try {
+			ps.executeBatch();
+			try (ResultSet keys = ps.getGeneratedKeys()) {
+				for (int position : positions) {
+					if (!keys.next()) {
+						throw new SQLException("Driver returned fewer generated keys than inserted rows");
+					}
+					result.recordSuccess(position, keys.getLong(1));
+				}
+			}
+			conn.releaseSavepoint(chunk);
+			return;
+		} catch (SQLException e) {
+			conn.rollback(chunk);
+			ps.clearBatch();
+		}
+		for (int position : positions) {
+			Savepoint single = conn.setSavepoint();
+			try {
+				binder.bind(ps, rows.get(position));
+				ps.executeUpdate();
+				try (ResultSet keys = ps.getGeneratedKeys()) {
+					if (keys.next()) {
+						result.recordSuccess(position, keys.getLong(1));
+					} else {
+						result.recordFailure(position, "No generated key returned");
+					}
+				}
+				conn.releaseSavepoint(single);
+			} catch (SQLException e) {
+				conn.rollback(single);
+				result.recordFailure(position, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Returns a binder which sets the given values as positional parameters.
+	 * Enums are bound by name, {@link java.util.Date} values as timestamps and
+	 * nulls as untyped SQL NULL.
+	 *
+	 * @param values the parameter values in order
+	 * @return a binder for the values
+	 */
+	public static StatementBinder params(Object... values) {
+		return ps -> {
+			for (int i = 0; i < values.length; i++) {
+				bindValue(ps, i + 1, values[i]);
+			}
+		};
+	}
+
+	/**
+	 * Binds one value using the conversions described in {@link #params(Object...)}.
+	 */
+	public static void bindValue(PreparedStatement ps, int index, Object value) throws SQLException {
+		if (value == null) {
+			ps.setNull(index, Types.NULL);
+		} else if (value instanceof Enum) {
+			ps.setString(index, ((Enum<?>) value).name());
+		} else if (value instanceof java.util.Date && !(value instanceof java.sql.Date)
+				&& !(value instanceof java.sql.Time) && !(value instanceof Timestamp)) {
+			ps.setTimestamp(index, new Timestamp(((java.util.Date) value).getTime()));
+		} else {
+			ps.setObject(index, value);
+		}
+	}
+
+	/**
+	 * Forward-only cursor over a result set which owns its statement and
+	 * connection. Resources are released on {@link #close()} or as soon as the
+	 * last row has been read.
+	 */
+	private static final class StreamingCursor<T> extends Spliterators.AbstractSpliterator<T> {
+
+		private final Connection conn;
+		private final RowMapper<T> mapper;
+		private final boolean restoreAutoCommit;
+		private PreparedStatement ps;
+		private ResultSet rs;
+		private int[] indexes;
+		private boolean closed;
+
+		StreamingCursor(Connection conn, String sql, StatementBinder binder, RowMapper<T> mapper, int fetchSize)
+				throws SQLException {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+			this.conn = conn;
+			this.mapper = mapper;
+			boolean autoCommit;
+			try {
+				autoCommit = conn.getAutoCommit();
+				if (autoCommit) {
+					conn.setAutoCommit(false);
+				}
+			} catch (SQLException | RuntimeException e) {
+				DatabaseUtility.closeQuietly(conn);
+				throw e;
+			}
+			this.restoreAutoCommit = autoCommit;
+			try {
+				ps = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+				ps.setFetchSize(fetchSize);
+				binder.bind(ps);
+				rs = ps.executeQuery();
+				indexes = mapper.resolveColumns(rs.getMetaData());
+			} catch (SQLException | RuntimeException e) {
+				close();
+				throw e;
+			}
+		}
+
+		/**
+		 * @return the next mapped row, or null once the result set is exhausted
+		 */
+		T next() throws SQLException {
+			if (closed) {
+				return null;
+			}
+			if (!rs.next()) {
+				close();
+				return null;
+			}
+			return mapper.mapRow(rs, indexes);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			T row;
+			try {
+				row = next();
+			} catch (SQLException e) {
+				close();
+				throw new UncheckedSQLException(e);
+			}
+			if (row == null) {
+				return false;
+			}
+			action.accept(row);
+			return true;
+		}
+
+		void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			DatabaseUtility.closeQuietly(rs);
+			DatabaseUtility.closeQuietly(ps);
+			try {
+				// Read-only work; ending the transaction releases the portal.
+				conn.rollback();
+				if (restoreAutoCommit) {
+					conn.setAutoCommit(true);
+				}
+			} catch (SQLException e) {
+				LOGGER.log(Level.WARNING, "Failed to reset connection after streaming query", e);
+			}
+			DatabaseUtility.closeQuietly(conn);
+		}
+	}
+}
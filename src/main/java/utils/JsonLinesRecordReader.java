@@ -0,0 +1,184 @@
+package utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link RecordReader} for JSON Lines input: one flat JSON object per line,
+ * whose values are strings, numbers, booleans or null. Numbers and booleans
+ * are returned in their literal text form. Nested objects and arrays are
+ * rejected, and blank lines are skipped.
+ */
+public class JsonLinesRecordReader implements RecordReader {
+
+	private final BufferedReader in;
+	private long line;
+	private String text;
+	private int pos;
+
+	public JsonLinesRecordReader(Reader source) {
+		this.in = source instanceof BufferedReader ? (BufferedReader) source : new BufferedReader(source);
+	}
+
+	@Override
+	public Map<String, String> next() throws IOException {
+		String raw;
+		do {
+			raw = in.readLine();
+			if (raw == null) {
+				return null;
+			}
+			line++;
+		} while (raw.trim().isEmpty());
+		text = raw;
+		pos = 0;
+		return parseObject();
+	}
+
+	@Override
+	public long getLineNumber() {
+		return line;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private Map<String, String> parseObject() throws IOException {
+		Map<String, String> record = new HashMap<>();
+		skipWhitespace();
+		expect('{');
+		skipWhitespace();
+		if (peek() == '}') {
+			pos++;
+			return finish(record);
+		}
+		while (true) {
+			skipWhitespace();
+			String name = parseString();
+			skipWhitespace();
+			expect(':');
+			skipWhitespace();
+			record.put(name, parseValue());
+			skipWhitespace();
+			char c = take();
+			if (c == '}') {
+				return finish(record);
+			}
+			if (c != ',') {
+				throw error("expected ',' or '}'");
+			}
+		}
+	}
+
+	private Map<String, String> finish(Map<String, String> record) throws IOException {
+		skipWhitespace();
+		if (pos != text.length()) {
+			throw error("unexpected content after object");
+		}
+		return record;
+	}
+
+	private String parseValue() throws IOException {
+		char c = peek();
+		if (c == '"') {
+			return parseString();
+		}
+		if (c == '{' || c == '[') {
+			throw error("nested values are not supported");
+		}
+		int start = pos;
+		while (pos < text.length() && ",} \t".indexOf(text.charAt(pos)) < 0) {
+			pos++;
+		}
+		String literal = text.substring(start, pos);
+		if (literal.isEmpty()) {
+			throw error("missing value");
+		}
+		return "null".equals(literal) ? null : literal;
+	}
+
+	private String parseString() throws IOException {
+		expect('"');
+		StringBuilder value = new StringBuilder();
+		while (true) {
+			char c = take();
+			if (c == '"') {
+				return value.toString();
+			}
+			if (c != '\\') {
+				value.append(c);
+				continue;
+			}
+			char e = take();
+			switch (e) {
+			case '"':
+			case '\\':
+			case '/':
+				value.append(e);
+				break;
+			case 'b':
+				value.append('\b');
+				break;
+			case 'f':
+				value.append('\f');
+				break;
+			case 'n':
+				value.append('\n');
+				break;
+			case 'r':
+				value.append('\r');
+				break;
+			case 't':
+				value.append('\t');
+				break;
+			case 'u':
+				if (pos + 4 > text.length()) {
+					throw error("truncated unicode escape");
+				}
+				try {
+					value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+				} catch (NumberFormatException ex) {
+					throw error("invalid unicode escape");
+				}
+				pos += 4;
+				break;
+			default:
+				throw error("invalid escape '\\" + e + "'");
+			}
+		}
+	}
+
+	private void skipWhitespace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+			pos++;
+		}
+	}
+
+	private char peek() throws IOException {
+		if (pos >= text.length()) {
+			throw error("unexpected end of line");
+		}
+		return text.charAt(pos);
+	}
+
+	private char take() throws IOException {
+		char c = peek();
+		pos++;
+		return c;
+	}
+
+	private void expect(char expected) throws IOException {
+		if (take() != expected) {
+			throw error("expected '" + expected + "'");
+		}
+	}
+
+	private IOException error(String message) {
+		return new IOException("Line " + line + ", column " + (pos + 1) + ": " + message);
+	}
+}
@@ -0,0 +1,95 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset (seek) pagination.
+ *
+ * <p>
+ * A cursor records the sort key and id of the last row on a page, together
+ * with a fingerprint of the ordering that produced it. The next page is read
+ * with a {@code (sort_column, id) > (?, ?)} predicate instead of an
+ * {@code OFFSET}, so every page costs the same regardless of depth. The sort
+ * key is kept in its textual form and bound with {@link java.sql.Types#OTHER},
+ * letting PostgreSQL infer the column type.
+ * </p>
+ *
+ * <p>
+ * Tokens are Base64url-encoded and must be treated as opaque by clients. A
+ * token issued for one ordering is rejected when replayed against another.
+ * </p>
+ */
+public final class KeysetCursor {
+
+	private static final String VERSION = "v1";
+	private static final char SEPARATOR = '|';
+
+	private final String fingerprint;
+	private final long lastId;
+	private final String lastSortKey;
+
+	public KeysetCursor(String fingerprint, long lastId, String lastSortKey) {
+		this.fingerprint = fingerprint;
+		this.lastId = lastId;
+		this.lastSortKey = lastSortKey;
+	}
+
+	/**
+	 * Decodes a continuation token.
+	 *
+	 * @param token               the token returned with the previous page, or
+	 *                            null/empty for the first page
+	 * @param expectedFingerprint the fingerprint of the ordering being requested
+	 * @return the decoded cursor, or null for the first page
+	 * @throws IllegalArgumentException if the token is malformed or was issued
+	 *                                  for a different ordering
+	 */
+	public static KeysetCursor decode(String token, String expectedFingerprint) {
+		if (token == null || token.isEmpty()) {
+			return null;
+		}
+		String decoded;
+		try {
+			decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Malformed continuation token", e);
+		}
+		// The sort key is last so it may itself contain the separator.
+		String[] parts = decoded.split("\\|", 4);
+		if (parts.length != 4 || !VERSION.equals(parts[0])) {
+			throw new IllegalArgumentException("Malformed continuation token");
+		}
+		if (!parts[1].equals(expectedFingerprint)) {
+			throw new IllegalArgumentException("Continuation token was issued for a different sort order");
+		}
+		try {
+			return new KeysetCursor(parts[1], Long.parseLong(parts[2]), parts[3]);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Malformed continuation token", e);
+		}
+	}
+
+	/**
+	 * @return the Base64url token to hand back to the client
+	 */
+	public String encode() {
+		String raw = VERSION + SEPARATOR + fingerprint + SEPARATOR + lastId + SEPARATOR + lastSortKey;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	public long getLastId() {
+		return lastId;
+	}
+
+	/**
+	 * @return the textual value of the last row's sort column
+	 */
+	public String getLastSortKey() {
+		return lastSortKey;
+	}
+}
@@ -0,0 +1,44 @@
+package utils;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated query.
+ *
+ * @param <T> the row type
+ */
+public class KeysetPage<T> {
+
+	private final List<T> items;
+	private final String nextToken;
+
+	public KeysetPage(List<T> items, String nextToken) {
+		this.items = Collections.unmodifiableList(items);
+		this.nextToken = nextToken;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * @return the continuation token for the following page, or null if this is
+	 *         the last page
+	 */
+	public String getNextToken() {
+		return nextToken;
+	}
+
+	public boolean hasMore() {
+		return nextToken != null;
+	}
+
+	@Override
+	public String toString() {
+		return "KeysetPage{" +
+				"items=" + items.size() +
+				", nextToken='" + nextToken + '\'' +
+				'}';
+	}
+}
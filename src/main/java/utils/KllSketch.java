@@ -0,0 +1,266 @@
+package utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * KLL quantile sketch: answers rank and quantile queries over a stream of
+ * doubles from a few hundred retained values.
+ *
+ * <p>
+ * Values are kept in levels; a value at level {@code h} stands for
+ * {@code 2^h} inputs. When a level outgrows its capacity it is sorted and
+ * every other value, starting at a random offset, is promoted to the next
+ * level. Capacities shrink geometrically towards the lower levels, so the
+ * sketch retains about {@code 3k} values and the rank error is around
+ * {@code 1.7 / k}: under 1% at the default {@code k} of 200. Sketches merge
+ * level by level, and the merge has the same error bound as a sketch of all
+ * the inputs, so sketches kept per bucket can be combined into any coarser
+ * grouping. Values cannot be removed.
+ * </p>
+ */
+public class KllSketch {
+
+	public static final int DEFAULT_K = 200;
+
+	private static final byte VERSION = 1;
+	private static final int MIN_CAPACITY = 8;
+
+	private final int k;
+	private long count;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+	private double[][] levels = { new double[MIN_CAPACITY] };
+	private int[] sizes = { 0 };
+	private long random = 0x9E3779B97F4A7C15L;
+
+	public KllSketch() {
+		this(DEFAULT_K);
+	}
+
+	/**
+	 * @param k the accuracy parameter, at least 8
+	 */
+	public KllSketch(int k) {
+		if (k < MIN_CAPACITY) {
+			throw new IllegalArgumentException("k must be at least " + MIN_CAPACITY + ": " + k);
+		}
+		this.k = k;
+	}
+
+	public int getK() {
+		return k;
+	}
+
+	/**
+	 * @return the number of values added
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the smallest value added, or NaN if none
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the largest value added, or NaN if none
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * Adds a value; NaN is ignored.
+	 */
+	public void update(double value) {
+		if (Double.isNaN(value)) {
+			return;
+		}
+		append(0, value);
+		count++;
+		min = Double.isNaN(min) ? value : Math.min(min, value);
+		max = Double.isNaN(max) ? value : Math.max(max, value);
+		compress();
+	}
+
+	/**
+	 * Adds every value of another sketch to this one.
+	 */
+	public void merge(KllSketch other) {
+		if (other.count == 0) {
+			return;
+		}
+		for (int h = 0; h < other.sizes.length; h++) {
+			for (int i = 0; i < other.sizes[h]; i++) {
+				append(h, other.levels[h][i]);
+			}
+		}
+		count += other.count;
+		min = Double.isNaN(min) ? other.min : Math.min(min, other.min);
+		max = Double.isNaN(max) ? other.max : Math.max(max, other.max);
+		compress();
+	}
+
+	/**
+	 * @param fraction the rank, from 0 for the minimum to 1 for the maximum
+	 * @return the approximate value at that rank, or NaN if the sketch is empty
+	 */
+	public double quantile(double fraction) {
+		if (count == 0) {
+			return Double.NaN;
+		}
+		if (fraction <= 0) {
+			return min;
+		}
+		if (fraction >= 1) {
+			return max;
+		}
+		int retained = 0;
+		for (int size : sizes) {
+			retained += size;
+		}
+		// Each retained value stands for 2^h inputs, h being its level.
+		double[] values = new double[retained];
+		long[] weights = new long[retained];
+		Integer[] order = new Integer[retained];
+		int n = 0;
+		for (int h = 0; h < sizes.length; h++) {
+			for (int i = 0; i < sizes[h]; i++) {
+				values[n] = levels[h][i];
+				weights[n] = 1L << h;
+				order[n] = n;
+				n++;
+			}
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+		long total = 0;
+		for (long weight : weights) {
+			total += weight;
+		}
+		double target = fraction * total;
+		long cumulative = 0;
+		for (int i : order) {
+			cumulative += weights[i];
+			if (cumulative >= target) {
+				return values[i];
+			}
+		}
+		return max;
+	}
+
+	public byte[] toBytes() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(VERSION);
+			out.writeInt(k);
+			out.writeLong(count);
+			out.writeDouble(min);
+			out.writeDouble(max);
+			out.writeInt(sizes.length);
+			for (int h = 0; h < sizes.length; h++) {
+				out.writeInt(sizes[h]);
+				for (int i = 0; i < sizes[h]; i++) {
+					out.writeDouble(levels[h][i]);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the bytes are not a sketch written by
+	 *                                  {@link #toBytes()}
+	 */
+	public static KllSketch fromBytes(byte[] bytes) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+			if (in.readByte() != VERSION) {
+				throw new IllegalArgumentException("Not a KLL sketch");
+			}
+			KllSketch sketch = new KllSketch(in.readInt());
+			sketch.count = in.readLong();
+			sketch.min = in.readDouble();
+			sketch.max = in.readDouble();
+			int levelCount = in.readInt();
+			sketch.levels = new double[levelCount][];
+			sketch.sizes = new int[levelCount];
+			for (int h = 0; h < levelCount; h++) {
+				int size = in.readInt();
+				sketch.levels[h] = new double[Math.max(MIN_CAPACITY, size)];
+				sketch.sizes[h] = size;
+				for (int i = 0; i < size; i++) {
+					sketch.levels[h][i] = in.readDouble();
+				}
+			}
+			return sketch;
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Truncated KLL sketch", e);
+		}
+	}
+
+	private void append(int h, double value) {
+		while (h >= sizes.length) {
+			levels = Arrays.copyOf(levels, sizes.length + 1);
+			levels[sizes.length] = new double[MIN_CAPACITY];
+			sizes = Arrays.copyOf(sizes, sizes.length + 1);
+		}
+		if (sizes[h] == levels[h].length) {
+			levels[h] = Arrays.copyOf(levels[h], levels[h].length * 2);
+		}
+		levels[h][sizes[h]++] = value;
+	}
+
+	private int capacity(int h) {
+		int depth = sizes.length - 1 - h;
+		return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+	}
+
+	/** Compacts the lowest full level until the sketch is within capacity. */
+	private void compress() {
+		while (true) {
+			int retained = 0;
+			int capacity = 0;
+			int full = -1;
+			for (int h = 0; h < sizes.length; h++) {
+				retained += sizes[h];
+				capacity += capacity(h);
+				if (full < 0 && sizes[h] >= capacity(h)) {
+					full = h;
+				}
+			}
+			if (retained <= capacity || full < 0) {
+				return;
+			}
+			compact(full);
+		}
+	}
+
+	private void compact(int h) {
+		double[] level = levels[h];
+		int size = sizes[h];
+		Arrays.sort(level, 0, size);
+		// An odd value out stays behind so that weight is preserved exactly.
+		int kept = size % 2;
+		int offset = nextBit();
+		for (int i = kept + offset; i < size; i += 2) {
+			append(h + 1, level[i]);
+		}
+		sizes[h] = kept;
+	}
+
+	private int nextBit() {
+		random ^= random << 13;
+		random ^= random >>> 7;
+		random ^= random << 17;
+		return (int) (random >>> 63);
+	}
+}
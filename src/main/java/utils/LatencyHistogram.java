@@ -0,0 +1,125 @@
+package utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free, fixed-bucket histogram of durations in milliseconds.
+ *
+ * <p>
+ * Buckets are defined by ascending upper bounds; a final overflow bucket
+ * collects everything above the last bound. Recording is a single atomic
+ * increment, so the histogram can be updated from every request thread.
+ * Percentiles are estimated from the bucket upper bounds.
+ * </p>
+ */
+public class LatencyHistogram {
+
+	/**
+	 * Default bucket bounds in milliseconds, suitable for connection acquire
+	 * waits and hold times.
+	 */
+	public static final long[] DEFAULT_BOUNDS_MILLIS = { 1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000,
+			10000, 30000, 60000 };
+
+	private final long[] bounds;
+	private final AtomicLongArray counts;
+	private final LongAdder totalMillis = new LongAdder();
+	private final LongAdder samples = new LongAdder();
+
+	public LatencyHistogram() {
+		this(DEFAULT_BOUNDS_MILLIS);
+	}
+
+	public LatencyHistogram(long[] boundsMillis) {
+		this.bounds = boundsMillis.clone();
+		this.counts = new AtomicLongArray(bounds.length + 1);
+	}
+
+	/**
+	 * Records a single duration.
+	 *
+	 * @param millis the duration in milliseconds
+	 */
+	public void record(long millis) {
+		int index = 0;
+		while (index < bounds.length && millis > bounds[index]) {
+			index++;
+		}
+		counts.incrementAndGet(index);
+		totalMillis.add(millis);
+		samples.increment();
+	}
+
+	/**
+	 * @return the number of recorded samples
+	 */
+	public long getCount() {
+		return samples.sum();
+	}
+
+	/**
+	 * @return the mean of all recorded samples in milliseconds, or 0 if empty
+	 */
+	public double getMeanMillis() {
+		long n = samples.sum();
+		return n == 0 ? 0 : (double) totalMillis.sum() / n;
+	}
+
+	/**
+	 * Estimates a percentile as the upper bound of the bucket containing it.
+	 * Samples in the overflow bucket are reported as {@code Long.MAX_VALUE}.
+	 *
+	 * @param percentile a value between 0 and 100
+	 * @return the estimated percentile in milliseconds, or 0 if empty
+	 */
+	public long getPercentileMillis(double percentile) {
+		long[] snapshot = getBucketCounts();
+		long total = 0;
+		for (long count : snapshot) {
+			total += count;
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return i < bounds.length ? bounds[i] : Long.MAX_VALUE;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/**
+	 * @return a copy of the bucket upper bounds in milliseconds
+	 */
+	public long[] getBoundsMillis() {
+		return bounds.clone();
+	}
+
+	/**
+	 * @return a snapshot of the bucket counts; the last element is the overflow
+	 *         bucket
+	 */
+	public long[] getBucketCounts() {
+		long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++) {
+			snapshot[i] = counts.get(i);
+		}
+		return snapshot;
+	}
+
+	@Override
+	public String toString() {
+		return "LatencyHistogram{" +
+				"count=" + getCount() +
+				", meanMillis=" + String.format("%.2f", getMeanMillis()) +
+				", p50=" + getPercentileMillis(50) +
+				", p90=" + getPercentileMillis(90) +
+				", p99=" + getPercentileMillis(99) +
+				'}';
+	}
+}
@@ -0,0 +1,267 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Locality-sensitive hashing index over {@link MinHash} signatures, for
+ * finding the stored items most similar to a new one without comparing it to
+ * all of them.
+ *
+ * <p>
+ * A signature of {@code bands * rows} values is cut into {@code bands} bands
+ * of {@code rows} values, and an item is a candidate for a query when at least
+ * one whole band is equal. Items with Jaccard similarity {@code s} become
+ * candidates with probability {@code 1 - (1 - s^rows)^bands}, an S-curve that
+ * rises steeply around {@code (1 / bands)^(1 / rows)}; candidates are then
+ * checked against the full signature. More bands find less similar items at
+ * the cost of more candidates.
+ * </p>
+ *
+ * <p>
+ * Band entries are chained through primitive arrays hashed on the band's
+ * values, with one entry per item and band and no per-entry objects. A removed
+ * or replaced item keeps its entries, skipped by queries, until
+ * {@link #clear()}. Updates take a write lock and queries a read lock.
+ * </p>
+ */
+public class LshIndex {
+
+	private static final int INITIAL_ITEMS = 1024;
+
+	/** A stored item and its estimated similarity to the query. */
+	public static final class Match {
+		private final long id;
+		private final double similarity;
+
+		Match(long id, double similarity) {
+			this.id = id;
+			this.similarity = similarity;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		/**
+		 * @return the estimated Jaccard similarity, from 0 to 1
+		 */
+		public double getSimilarity() {
+			return similarity;
+		}
+
+		@Override
+		public String toString() {
+			return id + "=" + similarity;
+		}
+	}
+
+	private final int bands;
+	private final int rows;
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<Long, Integer> itemOf = new HashMap<>();
+
+	private int items;
+	private long[] ids;
+	/** Null for a removed item. */
+	private int[][] signatures;
+
+	private int entries;
+	private int[] entryKey;
+	private int[] entryItem;
+	/** The next entry in the chain, or -1. */
+	private int[] entryNext;
+	/** The first entry of each chain, or -1. */
+	private int[] heads;
+
+	/**
+	 * @param bands the number of bands, at least 1
+	 * @param rows  the signature values per band, at least 1
+	 */
+	public LshIndex(int bands, int rows) {
+		if (bands < 1 || rows < 1) {
+			throw new IllegalArgumentException("bands and rows must be at least 1: " + bands + " x " + rows);
+		}
+		this.bands = bands;
+		this.rows = rows;
+		clear();
+	}
+
+	/**
+	 * @return the signature length this index takes
+	 */
+	public int getSignatureLength() {
+		return bands * rows;
+	}
+
+	/**
+	 * @return the number of stored items
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return itemOf.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stores an item, replacing any earlier signature stored under its id.
+	 */
+	public void put(long id, int[] signature) {
+		checkLength(signature);
+		int[] copy = signature.clone();
+		lock.writeLock().lock();
+		try {
+			Integer previous = itemOf.get(id);
+			if (previous != null) {
+				signatures[previous] = null;
+			}
+			if (items == ids.length) {
+				ids = Arrays.copyOf(ids, items * 2);
+				signatures = Arrays.copyOf(signatures, items * 2);
+			}
+			int item = items++;
+			ids[item] = id;
+			signatures[item] = copy;
+			itemOf.put(id, item);
+			for (int band = 0; band < bands; band++) {
+				link(bandKey(copy, band), item);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return true if the item was stored
+	 */
+	public boolean remove(long id) {
+		lock.writeLock().lock();
+		try {
+			Integer item = itemOf.remove(id);
+			if (item == null) {
+				return false;
+			}
+			signatures[item] = null;
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds stored items sharing a band with the signature.
+	 *
+	 * @param minSimilarity the least estimated similarity to return
+	 * @param limit         the most matches to return
+	 * @return the matches, most similar first
+	 */
+	public List<Match> query(int[] signature, double minSimilarity, int limit) {
+		checkLength(signature);
+		List<Match> matches = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			BitSet seen = new BitSet();
+			int mask = heads.length - 1;
+			for (int band = 0; band < bands; band++) {
+				int key = bandKey(signature, band);
+				for (int e = heads[mix(key) & mask]; e >= 0; e = entryNext[e]) {
+					int item = entryItem[e];
+					if (entryKey[e] != key || seen.get(item) || signatures[item] == null
+							|| !bandEquals(signatures[item], signature, band)) {
+						continue;
+					}
+					seen.set(item);
+					double similarity = MinHash.similarity(signatures[item], signature);
+					if (similarity >= minSimilarity) {
+						matches.add(new Match(ids[item], similarity));
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		matches.sort((a, b) -> Double.compare(b.similarity, a.similarity));
+		return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+	}
+
+	/**
+	 * Removes every item and releases their entries.
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			itemOf.clear();
+			items = 0;
+			ids = new long[INITIAL_ITEMS];
+			signatures = new int[INITIAL_ITEMS][];
+			entries = 0;
+			entryKey = new int[INITIAL_ITEMS * bands];
+			entryItem = new int[INITIAL_ITEMS * bands];
+			entryNext = new int[INITIAL_ITEMS * bands];
+			heads = new int[Integer.highestOneBit(INITIAL_ITEMS * bands) * 2];
+			Arrays.fill(heads, -1);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void link(int key, int item) {
+		if (entries == entryKey.length) {
+			int capacity = entries * 2;
+			entryKey = Arrays.copyOf(entryKey, capacity);
+			entryItem = Arrays.copyOf(entryItem, capacity);
+			entryNext = Arrays.copyOf(entryNext, capacity);
+			// Keeps chains short: at least two heads per entry.
+			heads = new int[heads.length * 2];
+			Arrays.fill(heads, -1);
+			int mask = heads.length - 1;
+			for (int e = 0; e < entries; e++) {
+				int slot = mix(entryKey[e]) & mask;
+				entryNext[e] = heads[slot];
+				heads[slot] = e;
+			}
+		}
+		int e = entries++;
+		int slot = mix(key) & (heads.length - 1);
+		entryKey[e] = key;
+		entryItem[e] = item;
+		entryNext[e] = heads[slot];
+		heads[slot] = e;
+	}
+
+	private int bandKey(int[] signature, int band) {
+		int hash = band;
+		for (int i = band * rows; i < (band + 1) * rows; i++) {
+			hash = hash * 31 + signature[i];
+		}
+		return hash;
+	}
+
+	private boolean bandEquals(int[] a, int[] b, int band) {
+		for (int i = band * rows; i < (band + 1) * rows; i++) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void checkLength(int[] signature) {
+		if (signature.length != bands * rows) {
+			throw new IllegalArgumentException("Expected a signature of " + bands * rows + " values: " + signature.length);
+		}
+	}
+
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
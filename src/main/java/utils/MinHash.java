@@ -0,0 +1,136 @@
+package utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * MinHash signatures: fixed-size summaries of token sets whose agreement
+ * estimates the Jaccard similarity of the sets.
+ *
+ * <p>
+ * Every token is hashed once to 64 bits and then mapped through
+ * {@code numHashes} multiply-shift functions; the signature keeps the minimum
+ * of each. Two signatures agree at a position with probability equal to the
+ * Jaccard similarity of their sets, so the fraction of agreeing positions
+ * estimates it with a standard error of about {@code 1 / sqrt(numHashes)}.
+ * Instances with the same number of hashes and seed produce comparable
+ * signatures.
+ * </p>
+ */
+public class MinHash {
+
+	private final long[] multipliers;
+	private final long[] increments;
+
+	/**
+	 * @param numHashes the signature length, at least 1
+	 * @param seed      chooses the hash functions
+	 */
+	public MinHash(int numHashes, long seed) {
+		if (numHashes < 1) {
+			throw new IllegalArgumentException("numHashes must be at least 1: " + numHashes);
+		}
+		multipliers = new long[numHashes];
+		increments = new long[numHashes];
+		long state = seed;
+		for (int i = 0; i < numHashes; i++) {
+			state += 0x9E3779B97F4A7C15L;
+			multipliers[i] = fmix64(state) | 1L;
+			state += 0x9E3779B97F4A7C15L;
+			increments[i] = fmix64(state);
+		}
+	}
+
+	public int getNumHashes() {
+		return multipliers.length;
+	}
+
+	/**
+	 * @return the signature of the tokens; an empty set gives a signature that
+	 *         practically never agrees with a non-empty one
+	 */
+	public int[] signature(Collection<String> tokens) {
+		int[] signature = new int[multipliers.length];
+		Arrays.fill(signature, Integer.MAX_VALUE);
+		for (String token : tokens) {
+			long hash = hash64(token);
+			for (int i = 0; i < signature.length; i++) {
+				// The high half of the product is the well-mixed one.
+				int value = (int) ((hash * multipliers[i] + increments[i]) >>> 33);
+				if (value < signature[i]) {
+					signature[i] = value;
+				}
+			}
+		}
+		return signature;
+	}
+
+	/**
+	 * @return the estimated Jaccard similarity of the sets behind two
+	 *         signatures of equal length, from 0 to 1
+	 */
+	public static double similarity(int[] a, int[] b) {
+		if (a.length != b.length) {
+			throw new IllegalArgumentException("Signatures differ in length: " + a.length + " and " + b.length);
+		}
+		int agreeing = 0;
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] == b[i]) {
+				agreeing++;
+			}
+		}
+		return (double) agreeing / a.length;
+	}
+
+	/**
+	 * Splits text into overlapping character shingles after lower-casing it
+	 * and reducing every run of non-alphanumeric characters to one space, so
+	 * that punctuation, case and spacing do not matter and reworded text still
+	 * shares most of its shingles.
+	 *
+	 * @param length the shingle length in characters; text shorter than that
+	 *               is one shingle
+	 * @return the distinct shingles, empty for null or blank text
+	 */
+	public static Set<String> shingles(String text, int length) {
+		Set<String> shingles = new LinkedHashSet<>();
+		if (text == null) {
+			return shingles;
+		}
+		String normalized = text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+		if (normalized.isEmpty()) {
+			return shingles;
+		}
+		if (normalized.length() <= length) {
+			shingles.add(normalized);
+			return shingles;
+		}
+		for (int i = 0; i + length <= normalized.length(); i++) {
+			shingles.add(normalized.substring(i, i + length));
+		}
+		return shingles;
+	}
+
+	private static long hash64(String token) {
+		// FNV-1a over the UTF-8 bytes, finished with a full avalanche.
+		long hash = 0xcbf29ce484222325L;
+		for (byte b : token.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return fmix64(hash);
+	}
+
+	private static long fmix64(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb93fe34e7961L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
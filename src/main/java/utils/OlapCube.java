@@ -0,0 +1,524 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-process cube of additive measures over a fixed set of string dimensions,
+ * for dashboards that slice the same aggregates many times per second.
+ *
+ * <p>
+ * Every dimension has a dictionary that maps its members to small integer
+ * codes. A cell is one combination of codes; cells are stored in parallel
+ * primitive arrays (the codes of cell {@code c} at
+ * {@code keys[c * dimensions .. c * dimensions + dimensions - 1]}, measure
+ * {@code m} at {@code values[m][c]}) and found through an open-addressing
+ * hash table, so a cube of a few hundred thousand cells holds no per-cell
+ * objects. Cells are never removed; a cell whose measures have gone back to
+ * zero is skipped by queries.
+ * </p>
+ *
+ * <p>
+ * A {@link Query} filters members and groups by any subset of the dimensions.
+ * Grouping by fewer dimensions, or by a dimension through a roll-up function
+ * such as day to month, rolls up; adding a dimension or narrowing a filter
+ * drills down. Filters and roll-ups are evaluated once per dictionary member,
+ * not once per cell, so a query is a single pass over the cell arrays.
+ * </p>
+ *
+ * <p>
+ * Updates take a write lock and queries a read lock; the cube is safe to share
+ * between threads.
+ * </p>
+ */
+public class OlapCube {
+
+	/** The member recorded for a null dimension value. */
+	public static final String NONE = "(none)";
+
+	private static final int INITIAL_CELLS = 1024;
+
+	private final String[] dimensions;
+	private final String[] measures;
+	private final List<Map<String, Integer>> codes = new ArrayList<>();
+	private final List<List<String>> members = new ArrayList<>();
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private int cells;
+	private int capacity;
+	private int[] keys;
+	private double[][] values;
+	/** Cell index plus one per slot, 0 for an empty slot. */
+	private int[] table;
+
+	/**
+	 * @param dimensions the dimension names, in the order members are passed
+	 *                   to {@link #cell(String...)}
+	 * @param measures   the measure names, in the order values are passed to
+	 *                   {@link #add(int, double...)}
+	 */
+	public OlapCube(String[] dimensions, String[] measures) {
+		this.dimensions = dimensions.clone();
+		this.measures = measures.clone();
+		for (int d = 0; d < dimensions.length; d++) {
+			codes.add(new HashMap<>());
+			members.add(new ArrayList<>());
+		}
+		clear();
+	}
+
+	public List<String> getDimensions() {
+		return Collections.unmodifiableList(Arrays.asList(dimensions));
+	}
+
+	public List<String> getMeasures() {
+		return Collections.unmodifiableList(Arrays.asList(measures));
+	}
+
+	/**
+	 * @return the number of cells, including those whose measures are zero
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return cells;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return the members seen so far for a dimension, in first-seen order
+	 */
+	public List<String> members(String dimension) {
+		int d = dimensionIndex(dimension);
+		lock.readLock().lock();
+		try {
+			return new ArrayList<>(members.get(d));
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes every cell and member.
+	 */
+	public void clear() {
+		lock.writeLock().lock();
+		try {
+			for (int d = 0; d < dimensions.length; d++) {
+				codes.get(d).clear();
+				members.get(d).clear();
+			}
+			cells = 0;
+			capacity = INITIAL_CELLS;
+			keys = new int[INITIAL_CELLS * dimensions.length];
+			values = new double[measures.length][INITIAL_CELLS];
+			table = new int[INITIAL_CELLS * 2];
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds or creates the cell for a combination of members.
+	 *
+	 * @param cellMembers one member per dimension; null is recorded as
+	 *                    {@link #NONE}
+	 * @return the cell's index, to pass to {@link #add(int, double...)}
+	 */
+	public int cell(String... cellMembers) {
+		if (cellMembers.length != dimensions.length) {
+			throw new IllegalArgumentException("Expected " + dimensions.length + " members, got " + cellMembers.length);
+		}
+		lock.writeLock().lock();
+		try {
+			int[] key = new int[dimensions.length];
+			for (int d = 0; d < key.length; d++) {
+				key[d] = code(d, cellMembers[d] == null ? NONE : cellMembers[d]);
+			}
+			int mask = table.length - 1;
+			for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+				int entry = table[slot];
+				if (entry == 0) {
+					return insert(key, slot);
+				}
+				if (sameKey(entry - 1, key)) {
+					return entry - 1;
+				}
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds to the measures of a cell; pass negative deltas to subtract.
+	 *
+	 * @param cell   a cell index from {@link #cell(String...)}
+	 * @param deltas one delta per measure
+	 */
+	public void add(int cell, double... deltas) {
+		if (deltas.length != measures.length) {
+			throw new IllegalArgumentException("Expected " + measures.length + " measures, got " + deltas.length);
+		}
+		lock.writeLock().lock();
+		try {
+			for (int m = 0; m < deltas.length; m++) {
+				values[m][cell] += deltas[m];
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Moves a contribution between cells as one update: adds {@code removed}
+	 * to {@code fromCell} and {@code added} to the cell of {@code toMembers}
+	 * under a single write lock, so that no query sees one half without the
+	 * other. When both are the same cell, the net change is added once.
+	 *
+	 * @param fromCell  a cell index from {@link #cell(String...)}, or -1 if
+	 *                  nothing is removed
+	 * @param removed   one delta per measure, usually negative
+	 * @param toMembers the members of the cell added to, or null if nothing is
+	 *                  added
+	 * @param added     one delta per measure
+	 * @return the cell added to, or -1 without {@code toMembers}
+	 */
+	public int move(int fromCell, double[] removed, String[] toMembers, double[] added) {
+		lock.writeLock().lock();
+		try {
+			int toCell = toMembers == null ? -1 : cell(toMembers);
+			if (fromCell >= 0 && fromCell == toCell) {
+				double[] net = new double[measures.length];
+				for (int m = 0; m < net.length; m++) {
+					net[m] = removed[m] + added[m];
+				}
+				add(toCell, net);
+			} else {
+				if (fromCell >= 0) {
+					add(fromCell, removed);
+				}
+				if (toCell >= 0) {
+					add(toCell, added);
+				}
+			}
+			return toCell;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Starts a query over all cells, grouped by nothing.
+	 */
+	public Query query() {
+		return new Query();
+	}
+
+	/**
+	 * One group of a query result.
+	 */
+	public static final class Row {
+		private final String[] members;
+		private final double[] values;
+
+		Row(String[] members, double[] values) {
+			this.members = members;
+			this.values = values;
+		}
+
+		/**
+		 * @return the group's member of the i-th grouped dimension
+		 */
+		public String getMember(int i) {
+			return members[i];
+		}
+
+		/**
+		 * @return the group's total of the m-th measure
+		 */
+		public double getValue(int m) {
+			return values[m];
+		}
+
+		public List<String> getMembers() {
+			return Collections.unmodifiableList(Arrays.asList(members));
+		}
+
+		@Override
+		public String toString() {
+			return Arrays.toString(members) + "=" + Arrays.toString(values);
+		}
+	}
+
+	/**
+	 * A slice of the cube: member filters plus the dimensions to group by.
+	 * Not thread-safe; build one per request.
+	 */
+	public final class Query {
+		private final List<Integer> filterDimensions = new ArrayList<>();
+		private final List<Predicate<String>> filters = new ArrayList<>();
+		private final List<Integer> groupDimensions = new ArrayList<>();
+		private final List<Function<String, String>> rollUps = new ArrayList<>();
+
+		Query() {
+		}
+
+		/**
+		 * Keeps only cells whose member of the dimension is one of the given
+		 * members. Repeated filters on one dimension must all match.
+		 */
+		public Query where(String dimension, String... allowed) {
+			List<String> list = Arrays.asList(allowed);
+			return where(dimension, list::contains);
+		}
+
+		/**
+		 * Keeps only cells whose member of the dimension matches.
+		 */
+		public Query where(String dimension, Predicate<String> predicate) {
+			filterDimensions.add(dimensionIndex(dimension));
+			filters.add(predicate);
+			return this;
+		}
+
+		/**
+		 * Groups by the members of a dimension.
+		 */
+		public Query groupBy(String dimension) {
+			return groupBy(dimension, Function.identity());
+		}
+
+		/**
+		 * Groups by a coarser member derived from each member of a dimension,
+		 * for example the month of a day.
+		 */
+		public Query groupBy(String dimension, Function<String, String> rollUp) {
+			groupDimensions.add(dimensionIndex(dimension));
+			rollUps.add(rollUp);
+			return this;
+		}
+
+		/**
+		 * @return the measure totals of every group with a non-zero measure,
+		 *         ordered by members
+		 */
+		public List<Row> rows() {
+			lock.readLock().lock();
+			try {
+				return execute();
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		/**
+		 * @return the measure totals over all matching cells, ignoring any
+		 *         grouping
+		 */
+		public double[] totals() {
+			lock.readLock().lock();
+			try {
+				boolean[][] allowed = allowedCodes();
+				double[] totals = new double[measures.length];
+				for (int c = 0; c < cells; c++) {
+					if (matches(allowed, c)) {
+						for (int m = 0; m < totals.length; m++) {
+							totals[m] += values[m][c];
+						}
+					}
+				}
+				return totals;
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+
+		private List<Row> execute() {
+			boolean[][] allowed = allowedCodes();
+			int groups = groupDimensions.size();
+			// Member code -> group code per grouped dimension, with the group
+			// members, so that a cell's group key is plain integer arithmetic.
+			int[][] groupCodes = new int[groups][];
+			List<List<String>> groupMembers = new ArrayList<>();
+			long[] radix = new long[groups];
+			for (int g = 0; g < groups; g++) {
+				List<String> source = members.get(groupDimensions.get(g));
+				Function<String, String> rollUp = rollUps.get(g);
+				Map<String, Integer> seen = new HashMap<>();
+				List<String> rolled = new ArrayList<>();
+				groupCodes[g] = new int[source.size()];
+				for (int code = 0; code < source.size(); code++) {
+					String member = rollUp.apply(source.get(code));
+					Integer groupCode = seen.get(member);
+					if (groupCode == null) {
+						groupCode = rolled.size();
+						seen.put(member, groupCode);
+						rolled.add(member);
+					}
+					groupCodes[g][code] = groupCode;
+				}
+				groupMembers.add(rolled);
+				radix[g] = Math.max(1, rolled.size());
+			}
+
+			Map<Long, double[]> totals = new HashMap<>();
+			for (int c = 0; c < cells; c++) {
+				if (!matches(allowed, c)) {
+					continue;
+				}
+				long groupKey = 0;
+				for (int g = 0; g < groups; g++) {
+					groupKey = groupKey * radix[g] + groupCodes[g][keys[c * dimensions.length + groupDimensions.get(g)]];
+				}
+				double[] sums = totals.get(groupKey);
+				if (sums == null) {
+					sums = new double[measures.length];
+					totals.put(groupKey, sums);
+				}
+				for (int m = 0; m < sums.length; m++) {
+					sums[m] += values[m][c];
+				}
+			}
+
+			List<Row> rows = new ArrayList<>(totals.size());
+			for (Map.Entry<Long, double[]> group : totals.entrySet()) {
+				if (isZero(group.getValue())) {
+					continue;
+				}
+				String[] rowMembers = new String[groups];
+				long groupKey = group.getKey();
+				for (int g = groups - 1; g >= 0; g--) {
+					rowMembers[g] = groupMembers.get(g).get((int) (groupKey % radix[g]));
+					groupKey /= radix[g];
+				}
+				rows.add(new Row(rowMembers, group.getValue()));
+			}
+			rows.sort((a, b) -> {
+				for (int g = 0; g < groups; g++) {
+					int cmp = a.members[g].compareTo(b.members[g]);
+					if (cmp != 0) {
+						return cmp;
+					}
+				}
+				return 0;
+			});
+			return rows;
+		}
+
+		/** The codes each filter admits, or null for an unfiltered dimension. */
+		private boolean[][] allowedCodes() {
+			boolean[][] allowed = new boolean[dimensions.length][];
+			for (int f = 0; f < filters.size(); f++) {
+				int d = filterDimensions.get(f);
+				List<String> source = members.get(d);
+				boolean[] previous = allowed[d];
+				boolean[] admitted = new boolean[source.size()];
+				for (int code = 0; code < admitted.length; code++) {
+					admitted[code] = (previous == null || previous[code]) && filters.get(f).test(source.get(code));
+				}
+				allowed[d] = admitted;
+			}
+			return allowed;
+		}
+
+		private boolean matches(boolean[][] allowed, int c) {
+			for (int d = 0; d < allowed.length; d++) {
+				if (allowed[d] != null && !allowed[d][keys[c * dimensions.length + d]]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private int dimensionIndex(String dimension) {
+		for (int d = 0; d < dimensions.length; d++) {
+			if (dimensions[d].equals(dimension)) {
+				return d;
+			}
+		}
+		throw new IllegalArgumentException("Unknown dimension " + dimension);
+	}
+
+	private int code(int d, String member) {
+		Integer code = codes.get(d).get(member);
+		if (code == null) {
+			code = members.get(d).size();
+			codes.get(d).put(member, code);
+			members.get(d).add(member);
+		}
+		return code;
+	}
+
+	private int insert(int[] key, int slot) {
+		int c = cells;
+		if (c == capacity) {
+			capacity *= 2;
+			keys = Arrays.copyOf(keys, capacity * dimensions.length);
+			for (int m = 0; m < measures.length; m++) {
+				values[m] = Arrays.copyOf(values[m], capacity);
+			}
+		}
+		System.arraycopy(key, 0, keys, c * dimensions.length, key.length);
+		table[slot] = c + 1;
+		cells = c + 1;
+		if (cells * 2 > table.length) {
+			rehash();
+		}
+		return c;
+	}
+
+	private void rehash() {
+		int[] grown = new int[table.length * 2];
+		int mask = grown.length - 1;
+		int[] key = new int[dimensions.length];
+		for (int c = 0; c < cells; c++) {
+			System.arraycopy(keys, c * dimensions.length, key, 0, key.length);
+			int slot = hash(key) & mask;
+			while (grown[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			grown[slot] = c + 1;
+		}
+		table = grown;
+	}
+
+	private boolean sameKey(int c, int[] key) {
+		int offset = c * dimensions.length;
+		for (int d = 0; d < key.length; d++) {
+			if (keys[offset + d] != key[d]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(int[] key) {
+		int h = 0;
+		for (int code : key) {
+			h = h * 31 + code;
+		}
+		// Spread the low bits, which the table index is taken from.
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean isZero(double[] sums) {
+		for (double sum : sums) {
+			if (Math.abs(sum) > 1e-9) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,142 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable point-in-time snapshot of a {@link ConnectionPool}'s state.
+ *
+ * <p>
+ * Connection counts come straight from the pooling library. Acquire-wait
+ * statistics and long-held connections are recorded by
+ * {@link InstrumentedConnectionPool} independently of the library in use.
+ * </p>
+ */
+public class PoolMetrics {
+
+	private final String provider;
+	private final int totalConnections;
+	private final int activeConnections;
+	private final int idleConnections;
+	private final int pendingAcquires;
+	private final int maxPoolSize;
+	private final long acquireCount;
+	private final long acquireFailures;
+	private final long[] acquireWaitBoundsMillis;
+	private final long[] acquireWaitBucketCounts;
+	private final long acquireWaitP50Millis;
+	private final long acquireWaitP99Millis;
+	private final long longHoldThresholdMillis;
+	private final List<String> longHeldConnections;
+
+	public PoolMetrics(String provider, int totalConnections, int activeConnections, int idleConnections,
+			int pendingAcquires, int maxPoolSize, long acquireFailures, LatencyHistogram acquireWait,
+			long longHoldThresholdMillis, List<String> longHeldConnections) {
+		this.provider = provider;
+		this.totalConnections = totalConnections;
+		this.activeConnections = activeConnections;
+		this.idleConnections = idleConnections;
+		this.pendingAcquires = pendingAcquires;
+		this.maxPoolSize = maxPoolSize;
+		this.acquireCount = acquireWait.getCount();
+		this.acquireFailures = acquireFailures;
+		this.acquireWaitBoundsMillis = acquireWait.getBoundsMillis();
+		this.acquireWaitBucketCounts = acquireWait.getBucketCounts();
+		this.acquireWaitP50Millis = acquireWait.getPercentileMillis(50);
+		this.acquireWaitP99Millis = acquireWait.getPercentileMillis(99);
+		this.longHoldThresholdMillis = longHoldThresholdMillis;
+		this.longHeldConnections = Collections.unmodifiableList(longHeldConnections);
+	}
+
+	public String getProvider() {
+		return provider;
+	}
+
+	public int getTotalConnections() {
+		return totalConnections;
+	}
+
+	public int getActiveConnections() {
+		return activeConnections;
+	}
+
+	public int getIdleConnections() {
+		return idleConnections;
+	}
+
+	/**
+	 * @return the number of threads currently blocked waiting for a connection
+	 */
+	public int getPendingAcquires() {
+		return pendingAcquires;
+	}
+
+	public int getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	public long getAcquireCount() {
+		return acquireCount;
+	}
+
+	public long getAcquireFailures() {
+		return acquireFailures;
+	}
+
+	/**
+	 * @return the upper bounds, in milliseconds, of the acquire-wait histogram
+	 *         buckets
+	 */
+	public long[] getAcquireWaitBoundsMillis() {
+		return acquireWaitBoundsMillis.clone();
+	}
+
+	/**
+	 * @return acquire-wait counts per bucket; the last element counts waits above
+	 *         the highest bound
+	 */
+	public long[] getAcquireWaitBucketCounts() {
+		return acquireWaitBucketCounts.clone();
+	}
+
+	public long getAcquireWaitP50Millis() {
+		return acquireWaitP50Millis;
+	}
+
+	public long getAcquireWaitP99Millis() {
+		return acquireWaitP99Millis;
+	}
+
+	public long getLongHoldThresholdMillis() {
+		return longHoldThresholdMillis;
+	}
+
+	/**
+	 * @return descriptions of connections currently held longer than
+	 *         {@link #getLongHoldThresholdMillis()}, including the holding thread
+	 *         and the elapsed time
+	 */
+	public List<String> getLongHeldConnections() {
+		return longHeldConnections;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolMetrics{" +
+				"provider='" + provider + '\'' +
+				", total=" + totalConnections +
+				", active=" + activeConnections +
+				", idle=" + idleConnections +
+				", pending=" + pendingAcquires +
+				", max=" + maxPoolSize +
+				", acquireCount=" + acquireCount +
+				", acquireFailures=" + acquireFailures +
+				", acquireWaitBoundsMillis=" + Arrays.toString(acquireWaitBoundsMillis) +
+				", acquireWaitBucketCounts=" + Arrays.toString(acquireWaitBucketCounts) +
+				", acquireWaitP50Millis=" + acquireWaitP50Millis +
+				", acquireWaitP99Millis=" + acquireWaitP99Millis +
+				", longHeldConnections=" + longHeldConnections +
+				'}';
+	}
+}
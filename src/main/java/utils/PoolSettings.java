@@ -0,0 +1,136 @@
+package utils;
+
+/**
+ * Connection pool configuration read from {@code application.properties}.
+ *
+ * <p>
+ * Recognised keys, with their defaults:
+ * </p>
+ * <ul>
+ * <li>{@code database.pool.provider} - {@code c3p0} or {@code hikari}
+ * ({@code c3p0})</li>
+ * <li>{@code database.pool.minSize} (5), {@code database.pool.maxSize} (20),
+ * {@code database.pool.initialSize} (5),
+ * {@code database.pool.acquireIncrement} (5)</li>
+ * <li>{@code database.pool.acquireTimeoutMillis} (30000) - how long a caller
+ * waits for a free connection before failing</li>
+ * <li>{@code database.pool.idleTimeoutSeconds} (600),
+ * {@code database.pool.maxLifetimeSeconds} (1800)</li>
+ * <li>{@code database.pool.statementCacheSize} (100) - prepared statements
+ * cached per pool (C3P0) or per connection in the driver (Hikari)</li>
+ * <li>{@code database.pool.longHoldThresholdMillis} (5000) - connections held
+ * longer than this are reported in {@link PoolMetrics}</li>
+ * </ul>
+ */
+public class PoolSettings {
+
+	public static final String PROVIDER_C3P0 = "c3p0";
+	public static final String PROVIDER_HIKARI = "hikari";
+
+	private String provider;
+	private String jdbcUrl;
+	private String username;
+	private String password;
+	private int minSize;
+	private int maxSize;
+	private int initialSize;
+	private int acquireIncrement;
+	private long acquireTimeoutMillis;
+	private int idleTimeoutSeconds;
+	private int maxLifetimeSeconds;
+	private int statementCacheSize;
+	private long longHoldThresholdMillis;
+
+	/**
+	 * Builds the settings from the loaded application properties.
+	 *
+	 * @return the pool settings
+	 */
+	public static PoolSettings fromApplicationProperties() {
+		PoolSettings settings = new PoolSettings();
+		settings.provider = ApplicationProperties.getString("database.pool.provider", PROVIDER_C3P0).toLowerCase();
+		settings.jdbcUrl = ApplicationProperties.getString("database.url", null);
+		settings.username = ApplicationProperties.getString("database.username", null);
+		settings.password = ApplicationProperties.getString("database.password", null);
+		settings.minSize = ApplicationProperties.getInt("database.pool.minSize", 5);
+		settings.maxSize = ApplicationProperties.getInt("database.pool.maxSize", 20);
+		settings.initialSize = ApplicationProperties.getInt("database.pool.initialSize", settings.minSize);
+		settings.acquireIncrement = ApplicationProperties.getInt("database.pool.acquireIncrement", 5);
+		settings.acquireTimeoutMillis = ApplicationProperties.getLong("database.pool.acquireTimeoutMillis", 30000L);
+		settings.idleTimeoutSeconds = ApplicationProperties.getInt("database.pool.idleTimeoutSeconds", 600);
+		settings.maxLifetimeSeconds = ApplicationProperties.getInt("database.pool.maxLifetimeSeconds", 1800);
+		settings.statementCacheSize = ApplicationProperties.getInt("database.pool.statementCacheSize", 100);
+		settings.longHoldThresholdMillis = ApplicationProperties.getLong("database.pool.longHoldThresholdMillis",
+				5000L);
+		return settings;
+	}
+
+	public String getProvider() {
+		return provider;
+	}
+
+	public String getJdbcUrl() {
+		return jdbcUrl;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public int getInitialSize() {
+		return initialSize;
+	}
+
+	public int getAcquireIncrement() {
+		return acquireIncrement;
+	}
+
+	public long getAcquireTimeoutMillis() {
+		return acquireTimeoutMillis;
+	}
+
+	public int getIdleTimeoutSeconds() {
+		return idleTimeoutSeconds;
+	}
+
+	public int getMaxLifetimeSeconds() {
+		return maxLifetimeSeconds;
+	}
+
+	public int getStatementCacheSize() {
+		return statementCacheSize;
+	}
+
+	public long getLongHoldThresholdMillis() {
+		return longHoldThresholdMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "PoolSettings{" +
+				"provider='" + provider + '\'' +
+				", jdbcUrl='" + jdbcUrl + '\'' +
+				", minSize=" + minSize +
+				", maxSize=" + maxSize +
+				", initialSize=" + initialSize +
+				", acquireIncrement=" + acquireIncrement +
+				", acquireTimeoutMillis=" + acquireTimeoutMillis +
+				", idleTimeoutSeconds=" + idleTimeoutSeconds +
+				", maxLifetimeSeconds=" + maxLifetimeSeconds +
+				", statementCacheSize=" + statementCacheSize +
+				", longHoldThresholdMillis=" + longHoldThresholdMillis +
+				'}';
+	}
+}
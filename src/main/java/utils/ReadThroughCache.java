@@ -0,0 +1,178 @@
+package utils;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * Small in-process read-through cache for reference data, bounded both by
+ * entry count (least recently used entries are evicted first) and by a
+ * time-to-live per entry.
+ *
+ * <p>
+ * Values are loaded on a miss by the {@link Loader} passed to
+ * {@link #get(Object, Loader)}. Loads run outside the cache lock, so a slow
+ * query never blocks hits on other keys. A failed load is not cached; the
+ * {@link SQLException} is passed on to the caller. Every invalidation bumps a
+ * generation counter, and a load which started before an invalidation is
+ * returned to its caller but not stored, so a write racing with a read can
+ * never leave a stale entry behind.
+ * </p>
+ *
+ * <p>
+ * Cached values are shared between callers and should be immutable. Mutable
+ * values, such as model objects with setters, need a copier: every caller then
+ * gets its own copy, and the cached value is never handed out.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ReadThroughCache<K, V> {
+
+	/**
+	 * Loads the value for a key which is not cached.
+	 */
+	@FunctionalInterface
+	public interface Loader<V> {
+		V load() throws SQLException;
+	}
+
+	private static final class Entry<V> {
+		final V value;
+		final long expiresAtNanos;
+
+		Entry(V value, long expiresAtNanos) {
+			this.value = value;
+			this.expiresAtNanos = expiresAtNanos;
+		}
+	}
+
+	private final String name;
+	private final int maxEntries;
+	private final long ttlNanos;
+	private final UnaryOperator<V> copier;
+	private final LinkedHashMap<K, Entry<V>> entries;
+	private long generation;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong loadFailures = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	/**
+	 * @param name       the name reported in {@link CacheStats}
+	 * @param maxEntries the maximum number of cached keys
+	 * @param ttlSeconds how long an entry may be served after it was loaded
+	 */
+	public ReadThroughCache(String name, int maxEntries, long ttlSeconds) {
+		this(name, maxEntries, ttlSeconds, UnaryOperator.identity());
+	}
+
+	/**
+	 * @param name       the name reported in {@link CacheStats}
+	 * @param maxEntries the maximum number of cached keys
+	 * @param ttlSeconds how long an entry may be served after it was loaded
+	 * @param copier     copies a value for each caller
+	 */
+	public ReadThroughCache(String name, int maxEntries, long ttlSeconds, UnaryOperator<V> copier) {
+		this.name = name;
+		this.maxEntries = Math.max(1, maxEntries);
+		this.ttlNanos = ttlSeconds * 1000000000L;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		this.copier = copier;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the cached value for the key, loading and caching it on a miss
+	 * or after the entry has expired. With a copier, the caller gets a copy.
+	 *
+	 * @throws SQLException if the value had to be loaded and the load failed
+	 */
+	public V get(K key, Loader<V> loader) throws SQLException {
+		long loadGeneration;
+		Entry<V> hit = null;
+		synchronized (this) {
+			Entry<V> entry = entries.get(key);
+			if (entry != null) {
+				if (System.nanoTime() - entry.expiresAtNanos < 0) {
+					hit = entry;
+				} else {
+					entries.remove(key);
+				}
+			}
+			loadGeneration = generation;
+		}
+		if (hit != null) {
+			// Copied outside the lock, as the cached value is never modified.
+			hits.incrementAndGet();
+			return copy(hit.value);
+		}
+		misses.incrementAndGet();
+		V value;
+		try {
+			value = loader.load();
+		} catch (SQLException | RuntimeException e) {
+			loadFailures.incrementAndGet();
+			throw e;
+		}
+		synchronized (this) {
+			if (loadGeneration == generation) {
+				entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+				evictOverflow();
+			}
+		}
+		return copy(value);
+	}
+
+	/**
+	 * Removes a single key.
+	 */
+	public synchronized void invalidate(K key) {
+		generation++;
+		invalidations.incrementAndGet();
+		entries.remove(key);
+	}
+
+	/**
+	 * Removes every cached entry.
+	 */
+	public synchronized void invalidateAll() {
+		generation++;
+		invalidations.incrementAndGet();
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * @return a snapshot of this cache's counters
+	 */
+	public CacheStats getStats() {
+		return new CacheStats(name, hits.get(), misses.get(), loadFailures.get(), evictions.get(),
+				invalidations.get(), size(), maxEntries);
+	}
+
+	private V copy(V value) {
+		return value == null ? null : copier.apply(value);
+	}
+
+	private void evictOverflow() {
+		Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+		while (entries.size() > maxEntries && it.hasNext()) {
+			it.next();
+			it.remove();
+			evictions.incrementAndGet();
+		}
+	}
+}
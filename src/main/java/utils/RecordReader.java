@@ -0,0 +1,50 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+/**
+ * Streaming reader of flat, named records from a text source, one record at a
+ * time. Memory use is bounded by the size of a single record.
+ */
+public interface RecordReader extends Closeable {
+
+	/**
+	 * Supported input formats.
+	 */
+	enum Format {
+		/** RFC 4180 CSV with a header row naming the fields. */
+		CSV,
+		/** One flat JSON object per line. */
+		JSON_LINES
+	}
+
+	/**
+	 * @return the next record keyed by field name, with null for missing or
+	 *         null values, or null at the end of the input
+	 * @throws IOException if the input cannot be read or a record is malformed
+	 */
+	Map<String, String> next() throws IOException;
+
+	/**
+	 * @return the line on which the last returned record started, for error
+	 *         reporting
+	 */
+	long getLineNumber();
+
+	/**
+	 * Opens a reader for the given format.
+	 */
+	static RecordReader open(Reader source, Format format) throws IOException {
+		switch (format) {
+		case CSV:
+			return new CsvRecordReader(source);
+		case JSON_LINES:
+			return new JsonLinesRecordReader(source);
+		default:
+			throw new IllegalArgumentException("Unsupported format: " + format);
+		}
+	}
+}
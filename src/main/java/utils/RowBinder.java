@@ -0,0 +1,18 @@
+package utils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds the values of one row to a {@link PreparedStatement} for batched
+ * execution by {@link JdbcTemplate#batchInsert}. Implementations may throw
+ * {@link IllegalArgumentException} to reject a row before it reaches the
+ * database; the rejection is reported for that row only.
+ *
+ * @param <T> the row type
+ */
+@FunctionalInterface
+public interface RowBinder<T> {
+
+	void bind(PreparedStatement ps, T row) throws SQLException;
+}
@@ -0,0 +1,137 @@
+package utils;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maps a single {@link ResultSet} row to an entity.
+ *
+ * <p>
+ * Subclasses declare the columns they read by calling {@link #column(String)}
+ * from field initializers, which returns a slot number. Before iterating a
+ * result set, {@link JdbcTemplate} calls {@link #resolveColumns(ResultSetMetaData)}
+ * once to translate those slots into JDBC column indexes; the translation is
+ * cached per distinct result-set shape, so rows are read by index rather than
+ * by name. Columns missing from a particular query map to index 0 and the
+ * {@code get*} helpers return the type's default for them, which lets one
+ * mapper serve both {@code SELECT *} and narrower projections.
+ * </p>
+ *
+ * <p>
+ * Mappers are stateless apart from the shape cache and are meant to be shared
+ * as singletons.
+ * </p>
+ *
+ * @param <T> the mapped entity type
+ */
+public abstract class RowMapper<T> {
+
+	private final List<String> columns = new ArrayList<>();
+	private final ConcurrentMap<String, int[]> indexesByShape = new ConcurrentHashMap<>();
+
+	/**
+	 * Registers a column read by this mapper. Must only be called while the
+	 * mapper is being constructed.
+	 *
+	 * @param label the column label, case-insensitive
+	 * @return the slot to pass to the {@code get*} helpers
+	 */
+	protected final int column(String label) {
+		columns.add(label.toLowerCase(Locale.ROOT));
+		return columns.size() - 1;
+	}
+
+	/**
+	 * Translates this mapper's column slots into JDBC indexes for the given
+	 * result-set shape.
+	 *
+	 * @param metaData the metadata of the result set about to be mapped
+	 * @return the JDBC index for every slot, or 0 where the column is absent
+	 * @throws SQLException if the metadata cannot be read
+	 */
+	public final int[] resolveColumns(ResultSetMetaData metaData) throws SQLException {
+		int count = metaData.getColumnCount();
+		String[] labels = new String[count];
+		StringBuilder shape = new StringBuilder();
+		for (int i = 0; i < count; i++) {
+			labels[i] = metaData.getColumnLabel(i + 1).toLowerCase(Locale.ROOT);
+			shape.append(labels[i]).append(',');
+		}
+		return indexesByShape.computeIfAbsent(shape.toString(), key -> {
+			int[] indexes = new int[columns.size()];
+			for (int slot = 0; slot < indexes.length; slot++) {
+				for (int i = 0; i < labels.length; i++) {
+					if (labels[i].equals(columns.get(slot))) {
+						indexes[slot] = i + 1;
+						break;
+					}
+				}
+			}
+			return indexes;
+		});
+	}
+
+	/**
+	 * Maps the current row.
+	 *
+	 * @param rs      the result set positioned on the row to map
+	 * @param indexes the JDBC indexes returned by
+	 *                {@link #resolveColumns(ResultSetMetaData)}
+	 * @return the mapped entity
+	 * @throws SQLException if a column cannot be read
+	 */
+	public abstract T mapRow(ResultSet rs, int[] indexes) throws SQLException;
+
+	protected static boolean has(int[] indexes, int slot) {
+		return indexes[slot] > 0;
+	}
+
+	protected static int getInt(ResultSet rs, int[] indexes, int slot) throws SQLException {
+		return indexes[slot] > 0 ? rs.getInt(indexes[slot]) : 0;
+	}
+
+	protected static long getLong(ResultSet rs, int[] indexes, int slot) throws SQLException {
+		return indexes[slot] > 0 ? rs.getLong(indexes[slot]) : 0L;
+	}
+
+	protected static double getDouble(ResultSet rs, int[] indexes, int slot) throws SQLException {
+		return indexes[slot] > 0 ? rs.getDouble(indexes[slot]) : 0D;
+	}
+
+	protected static boolean getBoolean(ResultSet rs, int[] indexes, int slot) throws SQLException {
+		return indexes[slot] > 0 && rs.getBoolean(indexes[slot]);
+	}
+
+	protected static String getString(ResultSet rs, int[] indexes, int slot) throws SQLException {
+		return indexes[slot] > 0 ? rs.getString(indexes[slot]) : null;
+	}
+
+	protected static java.sql.Date getDate(ResultSet rs, int[] indexes, int slot) throws SQLException {
+		return indexes[slot] > 0 ? rs.getDate(indexes[slot]) : null;
+	}
+
+	protected static Timestamp getTimestamp(ResultSet rs, int[] indexes, int slot) throws SQLException {
+		return indexes[slot] > 0 ? rs.getTimestamp(indexes[slot]) : null;
+	}
+
+	protected static BigDecimal getBigDecimal(ResultSet rs, int[] indexes, int slot) throws SQLException {
+		return indexes[slot] > 0 ? rs.getBigDecimal(indexes[slot]) : null;
+	}
+
+	protected static byte[] getBytes(ResultSet rs, int[] indexes, int slot) throws SQLException {
+		return indexes[slot] > 0 ? rs.getBytes(indexes[slot]) : null;
+	}
+
+	protected static <E extends Enum<E>> E getEnum(ResultSet rs, int[] indexes, int slot, EnumLookup<E> lookup)
+			throws SQLException {
+		return indexes[slot] > 0 ? lookup.lookup(rs.getString(indexes[slot])) : null;
+	}
+}
@@ -0,0 +1,21 @@
+package utils;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds parameters to a {@link PreparedStatement} before it is executed by
+ * {@link JdbcTemplate}. Usually written as a lambda, for example
+ * {@code ps -> ps.setInt(1, complaintId)}.
+ */
+@FunctionalInterface
+public interface StatementBinder {
+
+	/**
+	 * A binder for statements without parameters.
+	 */
+	StatementBinder NONE = ps -> {
+	};
+
+	void bind(PreparedStatement ps) throws SQLException;
+}
@@ -0,0 +1,22 @@
+package utils;
+
+import java.sql.SQLException;
+
+/**
+ * Wraps an {@link SQLException} raised while a lazily consumed result, such as
+ * a stream returned by {@link JdbcTemplate#stream}, is being iterated and a
+ * checked exception cannot be thrown.
+ */
+public class UncheckedSQLException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	public UncheckedSQLException(SQLException cause) {
+		super(cause.getMessage(), cause);
+	}
+
+	@Override
+	public synchronized SQLException getCause() {
+		return (SQLException) super.getCause();
+	}
+}
@@ -0,0 +1,471 @@
+package utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only record log on local disk.
+ *
+ * <p>
+ * Records are appended to fixed-size, memory-mapped segment files named after
+ * the log position they start at. Each record is written as its length, a
+ * CRC32 of its payload and the payload itself, so a record torn by a crash is
+ * detected and discarded on the next open. Appending only copies into the
+ * mapping; {@link #awaitDurable(long)} blocks until a background thread has
+ * forced the segment to disk. That thread waits {@code fsyncIntervalMillis}
+ * after the first request before forcing, so concurrent appenders share one
+ * fsync.
+ * </p>
+ *
+ * <p>
+ * Consumers read durable records from the persisted checkpoint in append
+ * order and advance the checkpoint once they have handled them. Segments
+ * entirely before the checkpoint are deleted. A consumer that fails between
+ * handling records and checkpointing them reads them again after a restart,
+ * so delivery is at least once.
+ * </p>
+ */
+public class WriteAheadSpool implements Closeable {
+
+	private static final Logger LOGGER = Logger.getLogger(WriteAheadSpool.class.getName());
+
+	private static final String SEGMENT_SUFFIX = ".wal";
+	private static final String CHECKPOINT_FILE = "checkpoint";
+	private static final int HEADER_BYTES = 8;
+	/** Written in place of a length when the rest of a segment is unused. */
+	private static final int END_OF_SEGMENT = -1;
+
+	private final Path directory;
+	private final int segmentBytes;
+	private final long fsyncIntervalMillis;
+
+	private final Object appendLock = new Object();
+	private final TreeMap<Long, Path> segments = new TreeMap<>();
+	private MappedByteBuffer active;
+	private long activeBase;
+	private long writePosition;
+
+	private final Object syncLock = new Object();
+	private long durablePosition;
+	private long requestedPosition;
+	private IOException syncFailure;
+
+	private volatile long checkpoint;
+	private volatile boolean open = true;
+	private final Thread syncer;
+
+	/**
+	 * Opens the spool in the given directory, creating it if needed, and
+	 * recovers the tail of the last segment.
+	 *
+	 * @param directory           where segments and the checkpoint are kept
+	 * @param segmentBytes        the size of each new segment file
+	 * @param fsyncIntervalMillis how long to gather appends before forcing
+	 * @throws IOException if the directory or a segment cannot be read
+	 */
+	public WriteAheadSpool(Path directory, int segmentBytes, long fsyncIntervalMillis) throws IOException {
+		this.directory = directory;
+		this.segmentBytes = segmentBytes;
+		this.fsyncIntervalMillis = fsyncIntervalMillis;
+		Files.createDirectories(directory);
+		checkpoint = readCheckpoint();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+			for (Path file : files) {
+				String name = file.getFileName().toString();
+				segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+			}
+		}
+		if (segments.isEmpty()) {
+			openSegment(checkpoint);
+		} else {
+			checkpoint = Math.max(checkpoint, segments.firstKey());
+			recoverLastSegment();
+		}
+		durablePosition = writePosition;
+		requestedPosition = writePosition;
+		syncer = new Thread(this::syncLoop, "wal-sync-" + directory.getFileName());
+		syncer.setDaemon(true);
+		syncer.start();
+	}
+
+	/**
+	 * Appends a record. It is not durable until {@link #awaitDurable(long)}
+	 * returns for the returned position.
+	 *
+	 * @param record a non-empty payload no larger than a segment allows
+	 * @return the log position just after the record
+	 * @throws IOException if a new segment cannot be created
+	 */
+	public long append(byte[] record) throws IOException {
+		if (record.length == 0 || record.length > segmentBytes - 2 * HEADER_BYTES) {
+			throw new IllegalArgumentException("Record size " + record.length + " does not fit a segment");
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record);
+		synchronized (appendLock) {
+			if (!open) {
+				throw new IOException("Spool " + directory + " is closed");
+			}
+			if (active.remaining() < HEADER_BYTES + record.length) {
+				rollSegment();
+			}
+			active.putInt(record.length);
+			active.putInt((int) crc.getValue());
+			active.put(record);
+			writePosition = activeBase + active.position();
+			return writePosition;
+		}
+	}
+
+	/**
+	 * Blocks until everything up to the given position has been forced to
+	 * disk.
+	 *
+	 * @throws IOException if forcing failed or the spool was closed first
+	 */
+	public void awaitDurable(long position) throws IOException {
+		synchronized (syncLock) {
+			if (position > requestedPosition) {
+				requestedPosition = position;
+				syncLock.notifyAll();
+			}
+			while (durablePosition < position) {
+				if (syncFailure != null) {
+					throw syncFailure;
+				}
+				if (!open) {
+					throw new IOException("Spool " + directory + " closed before position " + position + " was synced");
+				}
+				try {
+					syncLock.wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted waiting for the spool to sync", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads durable records in append order.
+	 *
+	 * @param from       the position to read from, normally
+	 *                   {@link #getCheckpoint()} or a value this method
+	 *                   returned
+	 * @param maxRecords the most records to read
+	 * @param out        receives the payloads
+	 * @return the position after the last record read, to pass to
+	 *         {@link #checkpoint(long)} or the next read
+	 * @throws IOException if a segment cannot be read
+	 */
+	public long read(long from, int maxRecords, List<byte[]> out) throws IOException {
+		long limit;
+		synchronized (syncLock) {
+			limit = durablePosition;
+		}
+		long position = from;
+		FileChannel channel = null;
+		long channelBase = -1;
+		long channelSize = 0;
+		try {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			int read = 0;
+			while (read < maxRecords && position < limit) {
+				Map.Entry<Long, Path> segment;
+				synchronized (appendLock) {
+					segment = segments.floorEntry(position);
+				}
+				if (segment == null) {
+					throw new IOException("No segment holds spool position " + position);
+				}
+				if (segment.getKey() != channelBase) {
+					if (channel != null) {
+						channel.close();
+					}
+					channel = FileChannel.open(segment.getValue(), StandardOpenOption.READ);
+					channelBase = segment.getKey();
+					channelSize = channel.size();
+				}
+				long offset = position - channelBase;
+				long nextSegment = channelBase + channelSize;
+				if (offset + HEADER_BYTES > channelSize) {
+					position = nextSegment;
+					continue;
+				}
+				header.clear();
+				readFully(channel, header, offset);
+				header.flip();
+				int length = header.getInt();
+				int checksum = header.getInt();
+				if (length == END_OF_SEGMENT) {
+					position = nextSegment;
+					continue;
+				}
+				if (length <= 0 || offset + HEADER_BYTES + length > channelSize) {
+					LOGGER.log(Level.SEVERE, "Corrupt record header at spool position {0}, skipping to {1}",
+							new Object[] { position, nextSegment });
+					position = nextSegment;
+					continue;
+				}
+				ByteBuffer payload = ByteBuffer.allocate(length);
+				readFully(channel, payload, offset + HEADER_BYTES);
+				CRC32 crc = new CRC32();
+				crc.update(payload.array());
+				if ((int) crc.getValue() != checksum) {
+					LOGGER.log(Level.SEVERE, "Checksum mismatch at spool position {0}, skipping to {1}",
+							new Object[] { position, nextSegment });
+					position = nextSegment;
+					continue;
+				}
+				out.add(payload.array());
+				read++;
+				position += HEADER_BYTES + length;
+			}
+			return position;
+		} finally {
+			if (channel != null) {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * @return the position consumers have handled everything before
+	 */
+	public long getCheckpoint() {
+		return checkpoint;
+	}
+
+	/**
+	 * Persists a new checkpoint and deletes segments that lie entirely before
+	 * it.
+	 *
+	 * @param position a position returned by {@link #read(long, int, List)}
+	 * @throws IOException if the checkpoint cannot be written
+	 */
+	public void checkpoint(long position) throws IOException {
+		if (position <= checkpoint) {
+			return;
+		}
+		Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+		ByteBuffer data = ByteBuffer.allocate(12);
+		data.putLong(position);
+		CRC32 crc = new CRC32();
+		crc.update(data.array(), 0, 8);
+		data.putInt((int) crc.getValue());
+		data.flip();
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+			channel.force(true);
+		}
+		Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+		checkpoint = position;
+		synchronized (appendLock) {
+			while (segments.size() > 1) {
+				Map.Entry<Long, Path> first = segments.firstEntry();
+				Long next = segments.higherKey(first.getKey());
+				if (next > position) {
+					break;
+				}
+				Files.deleteIfExists(first.getValue());
+				segments.remove(first.getKey());
+			}
+		}
+	}
+
+	/**
+	 * @return true if every durable record has been checkpointed
+	 */
+	public boolean isEmpty() {
+		synchronized (syncLock) {
+			return checkpoint >= durablePosition;
+		}
+	}
+
+	/**
+	 * Forces what has been appended so far and wakes waiting appenders.
+	 */
+	public void sync() {
+		long target;
+		MappedByteBuffer buffer;
+		synchronized (appendLock) {
+			target = writePosition;
+			buffer = active;
+		}
+		synchronized (syncLock) {
+			if (target <= durablePosition) {
+				return;
+			}
+		}
+		try {
+			buffer.force();
+		} catch (RuntimeException e) {
+			synchronized (syncLock) {
+				syncFailure = new IOException("Failed to force spool " + directory, e);
+				syncLock.notifyAll();
+			}
+			LOGGER.log(Level.SEVERE, "Failed to force spool " + directory, e);
+			return;
+		}
+		markDurable(target);
+	}
+
+	/**
+	 * Forces outstanding appends and stops the sync thread. Waiting appenders
+	 * that were not synced fail.
+	 */
+	@Override
+	public void close() {
+		sync();
+		synchronized (appendLock) {
+			open = false;
+		}
+		synchronized (syncLock) {
+			syncLock.notifyAll();
+		}
+		syncer.interrupt();
+	}
+
+	private void syncLoop() {
+		while (open) {
+			try {
+				synchronized (syncLock) {
+					while (open && requestedPosition <= durablePosition) {
+						syncLock.wait();
+					}
+				}
+				if (fsyncIntervalMillis > 0) {
+					Thread.sleep(fsyncIntervalMillis);
+				}
+				sync();
+			} catch (InterruptedException e) {
+				if (!open) {
+					break;
+				}
+			}
+		}
+	}
+
+	private void markDurable(long position) {
+		synchronized (syncLock) {
+			if (position > durablePosition) {
+				durablePosition = position;
+				syncFailure = null;
+				syncLock.notifyAll();
+			}
+		}
+	}
+
+	/** Called with the append lock held. */
+	private void rollSegment() throws IOException {
+		if (active.remaining() >= 4) {
+			active.putInt(END_OF_SEGMENT);
+		}
+		active.force();
+		markDurable(writePosition);
+		openSegment(activeBase + active.capacity());
+	}
+
+	private void openSegment(long base) throws IOException {
+		Path file = directory.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			active = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+		}
+		segments.put(base, file);
+		activeBase = base;
+		writePosition = base;
+	}
+
+	/**
+	 * Maps the last segment and positions the writer after its last intact
+	 * record. Anything after that is a torn write and is zeroed so it cannot be
+	 * mistaken for data once new records follow it.
+	 */
+	private void recoverLastSegment() throws IOException {
+		Map.Entry<Long, Path> last = segments.lastEntry();
+		try (FileChannel channel = FileChannel.open(last.getValue(), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			active = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+		}
+		activeBase = last.getKey();
+		boolean rolled = false;
+		while (active.remaining() >= HEADER_BYTES) {
+			int start = active.position();
+			int length = active.getInt();
+			int checksum = active.getInt();
+			if (length == END_OF_SEGMENT) {
+				active.position(start);
+				rolled = true;
+				break;
+			}
+			if (length <= 0 || length > active.remaining()) {
+				active.position(start);
+				break;
+			}
+			byte[] payload = new byte[length];
+			active.get(payload);
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			if ((int) crc.getValue() != checksum) {
+				LOGGER.log(Level.WARNING, "Discarding torn record at spool position {0}", activeBase + start);
+				active.position(start);
+				break;
+			}
+		}
+		writePosition = activeBase + active.position();
+		if (rolled) {
+			openSegment(activeBase + active.capacity());
+			return;
+		}
+		for (int i = active.position(); i < active.capacity(); i++) {
+			active.put(i, (byte) 0);
+		}
+		active.force();
+	}
+
+	private long readCheckpoint() throws IOException {
+		Path file = directory.resolve(CHECKPOINT_FILE);
+		if (!Files.exists(file)) {
+			return 0;
+		}
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file));
+		if (data.remaining() != 12) {
+			throw new IOException("Corrupt spool checkpoint " + file);
+		}
+		long position = data.getLong();
+		CRC32 crc = new CRC32();
+		crc.update(data.array(), 0, 8);
+		if ((int) crc.getValue() != data.getInt()) {
+			throw new IOException("Corrupt spool checkpoint " + file);
+		}
+		return position;
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position + buffer.position());
+			if (n < 0) {
+				throw new IOException("Unexpected end of spool segment");
+			}
+		}
+	}
+}